@@ -0,0 +1,97 @@
+/*******************************************************************************
+ * Copyright 2011 Netflix
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package com.netflix.astyanax.benchmarks;
+
+import java.nio.ByteBuffer;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.netflix.astyanax.annotations.Component;
+import com.netflix.astyanax.serializers.AnnotatedCompositeSerializer;
+import com.netflix.astyanax.util.TimeUUIDUtils;
+
+/**
+ * Round trip cost of a typical three component composite column name using
+ * the compiled component codecs or the reflective Serializer based path.
+ *
+ * @author elandau
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AnnotatedCompositeSerializerBenchmark {
+    public static class SessionEvent {
+        @Component(ordinal = 0)
+        String sessionId;
+
+        @Component(ordinal = 1)
+        Long sequence;
+
+        @Component(ordinal = 2)
+        UUID timestamp;
+
+        public SessionEvent() {
+        }
+    }
+
+    @Param({"true", "false"})
+    public boolean compiled;
+
+    private AnnotatedCompositeSerializer<SessionEvent> serializer;
+    private SessionEvent event;
+    private ByteBuffer serialized;
+
+    @Setup
+    public void setup() {
+        serializer = new AnnotatedCompositeSerializer<SessionEvent>(SessionEvent.class, 128, false, compiled);
+
+        event = new SessionEvent();
+        event.sessionId = "session-0123456789";
+        event.sequence  = 42L;
+        event.timestamp = TimeUUIDUtils.getUniqueTimeUUIDinMicros();
+        serialized = serializer.toByteBuffer(event);
+    }
+
+    @Benchmark
+    public ByteBuffer serialize() {
+        return serializer.toByteBuffer(event);
+    }
+
+    @Benchmark
+    public SessionEvent deserialize() {
+        return serializer.fromByteBuffer(serialized.duplicate());
+    }
+
+    @Benchmark
+    public SessionEvent roundTrip() {
+        return serializer.fromByteBuffer(serializer.toByteBuffer(event));
+    }
+}
@@ -0,0 +1,85 @@
+/*******************************************************************************
+ * Copyright 2011 Netflix
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package com.netflix.astyanax.benchmarks;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.cassandra.thrift.ColumnOrSuperColumn;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.google.common.collect.Lists;
+import com.netflix.astyanax.model.Column;
+import com.netflix.astyanax.serializers.StringSerializer;
+import com.netflix.astyanax.thrift.model.ThriftColumnOrSuperColumnListImpl;
+
+/**
+ * Cost of walking the columns of a row returned by a slice query.
+ *
+ * @author elandau
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ColumnListBenchmark {
+    @Param({"10", "1000"})
+    public int columnCount;
+
+    private List<ColumnOrSuperColumn> columns;
+
+    @Setup
+    public void setup() {
+        columns = Lists.newArrayList();
+        for (int i = 0; i < columnCount; i++) {
+            org.apache.cassandra.thrift.Column column = new org.apache.cassandra.thrift.Column()
+                .setName(StringSerializer.get().toByteBuffer("column-" + i))
+                .setValue(StringSerializer.get().toByteBuffer("value-" + i))
+                .setTimestamp(i);
+            columns.add(new ColumnOrSuperColumn().setColumn(column));
+        }
+    }
+
+    @Benchmark
+    public void iterate(Blackhole bh) {
+        ThriftColumnOrSuperColumnListImpl<String> list
+            = new ThriftColumnOrSuperColumnListImpl<String>(columns, StringSerializer.get());
+        for (Column<String> column : list) {
+            bh.consume(column.getName());
+            bh.consume(column.getByteBufferValue());
+        }
+    }
+
+    @Benchmark
+    public void getColumnByName(Blackhole bh) {
+        ThriftColumnOrSuperColumnListImpl<String> list
+            = new ThriftColumnOrSuperColumnListImpl<String>(columns, StringSerializer.get());
+        bh.consume(list.getColumnByName("column-" + (columnCount - 1)));
+    }
+}
@@ -0,0 +1,122 @@
+/*******************************************************************************
+ * Copyright 2011 Netflix
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package com.netflix.astyanax.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.netflix.astyanax.connectionpool.Connection;
+import com.netflix.astyanax.connectionpool.Host;
+import com.netflix.astyanax.connectionpool.HostConnectionPool;
+import com.netflix.astyanax.connectionpool.exceptions.ConnectionException;
+import com.netflix.astyanax.connectionpool.impl.ConnectionPoolConfigurationImpl;
+import com.netflix.astyanax.connectionpool.impl.CountingConnectionPoolMonitor;
+import com.netflix.astyanax.connectionpool.impl.HostConnectionPoolType;
+import com.netflix.astyanax.connectionpool.impl.RingBufferHostConnectionPool;
+import com.netflix.astyanax.connectionpool.impl.SimpleHostConnectionPool;
+import com.netflix.astyanax.shallows.EmptyPartitioner;
+import com.netflix.astyanax.test.TestClient;
+import com.netflix.astyanax.test.TestConnectionFactory;
+import com.netflix.astyanax.test.TestHostType;
+
+/**
+ * Borrow/return throughput of the host connection pool implementations with
+ * few connections shared by many threads.
+ *
+ * @author elandau
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class HostConnectionPoolBenchmark {
+    @Param({"SIMPLE", "RING_BUFFER"})
+    public HostConnectionPoolType type;
+
+    @Param({"8"})
+    public int maxConnsPerHost;
+
+    private SimpleHostConnectionPool<TestClient> pool;
+
+    @Setup
+    public void setup() throws Exception {
+        ConnectionPoolConfigurationImpl config = new ConnectionPoolConfigurationImpl("benchmark")
+            .setMaxConnsPerHost(maxConnsPerHost)
+            .setPartitioner(new EmptyPartitioner());
+        config.initialize();
+
+        CountingConnectionPoolMonitor monitor = new CountingConnectionPoolMonitor();
+        Host host = new Host("127.0.0.1", TestHostType.GOOD_IMMEDIATE.ordinal());
+        SimpleHostConnectionPool.Listener<TestClient> listener = new SimpleHostConnectionPool.Listener<TestClient>() {
+            @Override
+            public void onHostDown(HostConnectionPool<TestClient> pool) {
+            }
+
+            @Override
+            public void onHostUp(HostConnectionPool<TestClient> pool) {
+            }
+        };
+
+        switch (type) {
+        case RING_BUFFER:
+            pool = new RingBufferHostConnectionPool<TestClient>(host, new TestConnectionFactory(config, monitor), monitor, config, listener);
+            break;
+        case SIMPLE:
+        default:
+            pool = new SimpleHostConnectionPool<TestClient>(host, new TestConnectionFactory(config, monitor), monitor, config, listener);
+            break;
+        }
+        pool.primeConnections(maxConnsPerHost);
+    }
+
+    @TearDown
+    public void tearDown() {
+        pool.shutdown();
+    }
+
+    @Benchmark
+    @Threads(1)
+    public Connection<TestClient> borrowAndReturnSingleThread() throws ConnectionException {
+        return borrowAndReturn();
+    }
+
+    @Benchmark
+    @Threads(64)
+    public Connection<TestClient> borrowAndReturnContended() throws ConnectionException {
+        return borrowAndReturn();
+    }
+
+    private Connection<TestClient> borrowAndReturn() throws ConnectionException {
+        Connection<TestClient> connection = pool.borrowConnection(1000);
+        pool.returnConnection(connection);
+        return connection;
+    }
+}
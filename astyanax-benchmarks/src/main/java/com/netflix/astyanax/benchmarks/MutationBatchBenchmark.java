@@ -0,0 +1,125 @@
+/*******************************************************************************
+ * Copyright 2011 Netflix
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package com.netflix.astyanax.benchmarks;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.google.common.util.concurrent.ListenableFuture;
+import com.netflix.astyanax.ColumnListMutation;
+import com.netflix.astyanax.MutationBatch;
+import com.netflix.astyanax.clock.MicrosecondsClock;
+import com.netflix.astyanax.connectionpool.OperationResult;
+import com.netflix.astyanax.model.ColumnFamily;
+import com.netflix.astyanax.model.ConsistencyLevel;
+import com.netflix.astyanax.retry.RunOnce;
+import com.netflix.astyanax.serializers.StringSerializer;
+import com.netflix.astyanax.thrift.AbstractThriftMutationBatchImpl;
+
+/**
+ * Cost of building a mutation batch and serializing it, which is what every
+ * write and every write ahead log entry pays before touching the network.
+ *
+ * @author elandau
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MutationBatchBenchmark {
+    private static final ColumnFamily<String, String> CF_STANDARD = ColumnFamily.newColumnFamily(
+            "Standard1", StringSerializer.get(), StringSerializer.get());
+
+    @Param({"1", "100"})
+    public int rowCount;
+
+    @Param({"10"})
+    public int columnCount;
+
+    private String[] rowKeys;
+    private String[] columnNames;
+    private MutationBatch serialized;
+
+    @Setup
+    public void setup() throws Exception {
+        rowKeys = new String[rowCount];
+        for (int i = 0; i < rowCount; i++) {
+            rowKeys[i] = "row-" + i;
+        }
+        columnNames = new String[columnCount];
+        for (int i = 0; i < columnCount; i++) {
+            columnNames[i] = "column-" + i;
+        }
+        serialized = build();
+    }
+
+    @Benchmark
+    public MutationBatch build() {
+        MutationBatch m = new BenchmarkMutationBatch();
+        for (String rowKey : rowKeys) {
+            ColumnListMutation<String> row = m.withRow(CF_STANDARD, rowKey);
+            for (String columnName : columnNames) {
+                row.putColumn(columnName, "value", null);
+            }
+        }
+        return m;
+    }
+
+    @Benchmark
+    public ByteBuffer buildAndSerialize() throws Exception {
+        return build().serialize();
+    }
+
+    @Benchmark
+    public MutationBatch deserialize() throws Exception {
+        MutationBatch m = new BenchmarkMutationBatch();
+        m.deserialize(serialized.serialize());
+        return m;
+    }
+
+    /**
+     * Mutation batch that is never executed
+     */
+    private static class BenchmarkMutationBatch extends AbstractThriftMutationBatchImpl {
+        BenchmarkMutationBatch() {
+            super(new MicrosecondsClock(), ConsistencyLevel.CL_ONE, RunOnce.get());
+        }
+
+        @Override
+        public OperationResult<Void> execute() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public ListenableFuture<OperationResult<Void>> executeAsync() {
+            throw new UnsupportedOperationException();
+        }
+    }
+}
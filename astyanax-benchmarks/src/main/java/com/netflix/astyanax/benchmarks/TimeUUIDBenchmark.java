@@ -0,0 +1,66 @@
+/*******************************************************************************
+ * Copyright 2011 Netflix
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package com.netflix.astyanax.benchmarks;
+
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.netflix.astyanax.util.TimeUUIDUtils;
+
+/**
+ * Time UUID generation, alone and with many threads generating ids at once.
+ *
+ * @author elandau
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TimeUUIDBenchmark {
+    @Benchmark
+    @Threads(1)
+    public UUID uniqueMicros() {
+        return TimeUUIDUtils.getUniqueTimeUUIDinMicros();
+    }
+
+    @Benchmark
+    @Threads(8)
+    public UUID uniqueMicrosContended() {
+        return TimeUUIDUtils.getUniqueTimeUUIDinMicros();
+    }
+
+    @Benchmark
+    @Threads(1)
+    public UUID uniqueMillis() {
+        return TimeUUIDUtils.getUniqueTimeUUIDinMillis();
+    }
+
+    @Benchmark
+    @Threads(1)
+    public UUID fromTime() {
+        return TimeUUIDUtils.getTimeUUID(System.currentTimeMillis());
+    }
+}
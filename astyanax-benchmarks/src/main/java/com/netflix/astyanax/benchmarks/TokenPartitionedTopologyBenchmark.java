@@ -0,0 +1,105 @@
+/*******************************************************************************
+ * Copyright 2011 Netflix
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package com.netflix.astyanax.benchmarks;
+
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.google.common.collect.Lists;
+import com.netflix.astyanax.connectionpool.Host;
+import com.netflix.astyanax.connectionpool.HostConnectionPool;
+import com.netflix.astyanax.connectionpool.impl.SmaLatencyScoreStrategyImpl;
+import com.netflix.astyanax.connectionpool.impl.TokenHostConnectionPoolPartition;
+import com.netflix.astyanax.connectionpool.impl.TokenPartitionedTopology;
+import com.netflix.astyanax.partitioner.BigInteger127Partitioner;
+import com.netflix.astyanax.partitioner.Murmur3Partitioner;
+import com.netflix.astyanax.partitioner.Partitioner;
+import com.netflix.astyanax.test.TestClient;
+import com.netflix.astyanax.test.TestHostConnectionPool;
+import com.netflix.astyanax.test.TestTokenRange;
+
+/**
+ * Cost of mapping a row key to the partition that owns it, which is paid on
+ * every token aware operation.
+ *
+ * @author elandau
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TokenPartitionedTopologyBenchmark {
+    private static final int KEY_COUNT = 1024;
+
+    @Param({"MURMUR3", "RANDOM"})
+    public String partitionerType;
+
+    @Param({"12", "256"})
+    public int hostCount;
+
+    private TokenPartitionedTopology<TestClient> topology;
+    private ByteBuffer[] keys;
+    private int next = 0;
+
+    @Setup
+    public void setup() {
+        Partitioner partitioner;
+        if (partitionerType.equals("MURMUR3"))
+            partitioner = Murmur3Partitioner.get();
+        else
+            partitioner = BigInteger127Partitioner.get();
+
+        List<Host> hosts = TestTokenRange.makeRing(hostCount, 3, 0,
+                new BigInteger(partitioner.getMinToken()), new BigInteger(partitioner.getMaxToken()));
+        List<HostConnectionPool<TestClient>> pools = Lists.newArrayList();
+        for (Host host : hosts) {
+            pools.add(new TestHostConnectionPool(host));
+        }
+
+        topology = new TokenPartitionedTopology<TestClient>(partitioner,
+                new SmaLatencyScoreStrategyImpl(10000, 60000, 100, 4.0));
+        topology.setPools(pools);
+
+        Random random = new Random(1);
+        keys = new ByteBuffer[KEY_COUNT];
+        for (int i = 0; i < KEY_COUNT; i++) {
+            keys[i] = ByteBuffer.wrap(("key-" + random.nextLong()).getBytes());
+        }
+    }
+
+    @Benchmark
+    public TokenHostConnectionPoolPartition<TestClient> getPartition() {
+        next = (next + 1) & (KEY_COUNT - 1);
+        return topology.getPartition(keys[next].duplicate());
+    }
+}
@@ -15,12 +15,15 @@ import com.netflix.astyanax.connectionpool.Host;
 import com.netflix.astyanax.connectionpool.NodeDiscovery;
 import com.netflix.astyanax.connectionpool.NodeDiscoveryType;
 import com.netflix.astyanax.connectionpool.impl.CountingConnectionPoolMonitor;
+import com.netflix.astyanax.connectionpool.impl.HistogramConnectionPoolMonitor;
 import com.netflix.astyanax.connectionpool.impl.NodeDiscoveryImpl;
 import com.netflix.astyanax.connectionpool.impl.BagOfConnectionsConnectionPoolImpl;
+import com.netflix.astyanax.connectionpool.impl.ConnectionPoolConfigurationImpl;
 import com.netflix.astyanax.connectionpool.impl.ConnectionPoolType;
 import com.netflix.astyanax.connectionpool.impl.RoundRobinConnectionPoolImpl;
 import com.netflix.astyanax.connectionpool.impl.TokenAwareConnectionPoolImpl;
 import com.netflix.astyanax.impl.FilteringHostSupplier;
+import com.netflix.astyanax.impl.HistogramKeyspaceTracerFactory;
 import com.netflix.astyanax.impl.RingDescribeHostSupplier;
 import com.netflix.astyanax.shallows.EmptyKeyspaceTracerFactory;
 
@@ -41,6 +44,9 @@ public class AstyanaxContext<Entity> {
     private final String keyspaceName;
     private final Entity entity;
     private final ConnectionPoolMonitor monitor;
+    private final ConnectionPool<?> asyncCp;
+    private final NodeDiscovery asyncDiscovery;
+    private final Runnable asyncFactoryShutdown;
 
     public static class Builder {
         protected ConnectionPool<?> cp;
@@ -52,6 +58,10 @@ public class AstyanaxContext<Entity> {
         protected KeyspaceTracerFactory tracerFactory = EmptyKeyspaceTracerFactory.getInstance();
         protected Supplier<List<Host>> hostSupplier;
         protected ConnectionPoolMonitor monitor = new CountingConnectionPoolMonitor();
+        protected boolean asyncConnectionPool = false;
+        protected ConnectionPool<?> asyncCp;
+        protected NodeDiscovery asyncDiscovery;
+        protected Runnable asyncFactoryShutdown;
 
         public Builder forCluster(String clusterName) {
             this.clusterName = clusterName;
@@ -88,6 +98,31 @@ public class AstyanaxContext<Entity> {
             return this;
         }
 
+        /**
+         * Create a second connection pool of non-blocking connections which the
+         * keyspace uses for executeAsync().  Requires a type factory that
+         * implements AsyncAstyanaxTypeFactory.  The async pool shares the
+         * connection pool configuration and host discovery of the main pool.
+         * 
+         * @param enabled
+         */
+        public Builder withAsyncConnectionPool(boolean enabled) {
+            this.asyncConnectionPool = enabled;
+            return this;
+        }
+
+        /**
+         * Operation latencies per operation type are only known to the tracer so
+         * a histogram monitor gets its own tracer unless one was provided
+         */
+        protected KeyspaceTracerFactory getTracerFactory() {
+            if (tracerFactory == EmptyKeyspaceTracerFactory.getInstance() 
+                    && monitor instanceof HistogramConnectionPoolMonitor) {
+                return new HistogramKeyspaceTracerFactory((HistogramConnectionPoolMonitor) monitor);
+            }
+            return tracerFactory;
+        }
+
         public NodeDiscoveryType getNodeDiscoveryType() {
             if (cpConfig.getSeeds() != null) {
                 if (asConfig.getConnectionPoolType() == ConnectionPoolType.TOKEN_AWARE)
@@ -105,6 +140,11 @@ public class AstyanaxContext<Entity> {
         }
 
         protected <T> ConnectionPool<T> createConnectionPool(ConnectionFactory<T> connectionFactory) {
+            return createConnectionPool(cpConfig, connectionFactory);
+        }
+
+        protected <T> ConnectionPool<T> createConnectionPool(ConnectionPoolConfiguration cpConfig, 
+                ConnectionFactory<T> connectionFactory) {
             ConnectionPool<T> connectionPool = null;
             switch (asConfig.getConnectionPoolType()) {
             case TOKEN_AWARE:
@@ -128,14 +168,24 @@ public class AstyanaxContext<Entity> {
             return connectionPool;
         }
 
+        @SuppressWarnings("unchecked")
         public <T> AstyanaxContext<Keyspace> buildKeyspace(AstyanaxTypeFactory<T> factory) {
             this.cpConfig.initialize();
             
+            KeyspaceTracerFactory tracerFactory = getTracerFactory();
             ConnectionPool<T> cp = createConnectionPool(factory.createConnectionFactory(asConfig, cpConfig, tracerFactory,
                     monitor));
             this.cp = cp;
 
-            final Keyspace keyspace = factory.createKeyspace(keyspaceName, cp, asConfig, tracerFactory);
+            final Keyspace keyspace;
+            if (asyncConnectionPool) {
+                Preconditions.checkArgument(factory instanceof AsyncAstyanaxTypeFactory, 
+                        "Type factory does not support async connection pools");
+                keyspace = createAsyncKeyspace((AsyncAstyanaxTypeFactory<T, ?>) factory, cp, tracerFactory);
+            }
+            else {
+                keyspace = factory.createKeyspace(keyspaceName, cp, asConfig, tracerFactory);
+            }
 
             Supplier<List<Host>> supplier = null;
 
@@ -167,14 +217,37 @@ public class AstyanaxContext<Entity> {
             if (supplier != null) {
                 discovery = new NodeDiscoveryImpl(StringUtils.join(Arrays.asList(clusterName, keyspaceName), "_"),
                         asConfig.getDiscoveryDelayInSeconds() * 1000, supplier, cp);
+                if (asyncCp != null) {
+                    asyncDiscovery = new NodeDiscoveryImpl(StringUtils.join(Arrays.asList(clusterName, keyspaceName, "async"), "_"),
+                            asConfig.getDiscoveryDelayInSeconds() * 1000, supplier, asyncCp);
+                }
             }
 
             return new AstyanaxContext<Keyspace>(this, keyspace);
         }
 
+        private <T, A> Keyspace createAsyncKeyspace(final AsyncAstyanaxTypeFactory<T, A> factory, ConnectionPool<T> cp, 
+                KeyspaceTracerFactory tracerFactory) {
+            // The async pool needs its own name for its MBean and must not shut
+            // down the executors it shares with the main pool
+            ConnectionPoolConfiguration asyncConfig = new ConnectionPoolConfigurationImpl(cpConfig.getName() + "_async", cpConfig);
+            final ConnectionFactory<A> asyncFactory = factory.createAsyncConnectionFactory(asConfig, asyncConfig, 
+                    tracerFactory, monitor);
+            ConnectionPool<A> asyncCp = createConnectionPool(asyncConfig, asyncFactory);
+            this.asyncCp = asyncCp;
+            this.asyncFactoryShutdown = new Runnable() {
+                @Override
+                public void run() {
+                    factory.shutdownAsyncConnectionFactory(asyncFactory);
+                }
+            };
+            return factory.createKeyspace(keyspaceName, cp, asyncCp, asConfig, tracerFactory);
+        }
+
         public <T> AstyanaxContext<Cluster> buildCluster(AstyanaxTypeFactory<T> factory) {
             this.cpConfig.initialize();
             
+            KeyspaceTracerFactory tracerFactory = getTracerFactory();
             ConnectionPool<T> cp = createConnectionPool(factory.createConnectionFactory(asConfig, cpConfig, tracerFactory,
                     monitor));
             this.cp = cp;
@@ -196,6 +269,9 @@ public class AstyanaxContext<Entity> {
         this.entity = entity;
         this.discovery = builder.discovery;
         this.monitor = builder.monitor;
+        this.asyncCp = builder.asyncCp;
+        this.asyncDiscovery = builder.asyncDiscovery;
+        this.asyncFactoryShutdown = builder.asyncFactoryShutdown;
     }
 
     public Entity getEntity() {
@@ -206,6 +282,14 @@ public class AstyanaxContext<Entity> {
         return this.cp;
     }
 
+    /**
+     * @return Pool of non-blocking connections or null if the context was not
+     *         built with an async connection pool
+     */
+    public ConnectionPool<?> getAsyncConnectionPool() {
+        return this.asyncCp;
+    }
+
     public ConnectionPoolConfiguration getConnectionPoolConfiguration() {
         return cpConfig;
     }
@@ -226,9 +310,20 @@ public class AstyanaxContext<Entity> {
         cp.start();
         if (discovery != null)
             discovery.start();
+        if (asyncCp != null) {
+            asyncCp.start();
+            if (asyncDiscovery != null)
+                asyncDiscovery.start();
+        }
     }
 
     public void shutdown() {
+        if (asyncCp != null) {
+            if (asyncDiscovery != null)
+                asyncDiscovery.shutdown();
+            asyncCp.shutdown();
+            asyncFactoryShutdown.run();
+        }
         if (discovery != null)
             discovery.shutdown();
         cp.shutdown();
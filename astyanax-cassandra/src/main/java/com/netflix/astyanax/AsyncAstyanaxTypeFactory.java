@@ -0,0 +1,32 @@
+package com.netflix.astyanax;
+
+import com.netflix.astyanax.connectionpool.ConnectionFactory;
+import com.netflix.astyanax.connectionpool.ConnectionPool;
+import com.netflix.astyanax.connectionpool.ConnectionPoolConfiguration;
+import com.netflix.astyanax.connectionpool.ConnectionPoolMonitor;
+
+/**
+ * Type factory for an RPC family that also has a non-blocking client.  The
+ * non-blocking connections live in a second connection pool which the keyspace
+ * uses for executeAsync() so that in flight requests don't park a thread.
+ * 
+ * @author elandau
+ * 
+ * @param <T>   Blocking client type
+ * @param <A>   Non-blocking client type
+ */
+public interface AsyncAstyanaxTypeFactory<T, A> extends AstyanaxTypeFactory<T> {
+    Keyspace createKeyspace(String ksName, ConnectionPool<T> cp, ConnectionPool<A> asyncCp,
+            AstyanaxConfiguration asConfig, KeyspaceTracerFactory tracerFactory);
+
+    ConnectionFactory<A> createAsyncConnectionFactory(AstyanaxConfiguration asConfig, ConnectionPoolConfiguration cfConfig, 
+            KeyspaceTracerFactory tracerFactory, ConnectionPoolMonitor monitor);
+
+    /**
+     * Release resources held by a factory created with createAsyncConnectionFactory.
+     * Called once the connection pool using the factory has been shut down.
+     * 
+     * @param connectionFactory
+     */
+    void shutdownAsyncConnectionFactory(ConnectionFactory<A> connectionFactory);
+}
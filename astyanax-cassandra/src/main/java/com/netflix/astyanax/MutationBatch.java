@@ -156,6 +156,19 @@ public interface MutationBatch extends Execution<Void> {
      */
     MutationBatch withRetryPolicy(RetryPolicy retry);
 
+    /**
+     * Split a multi-row mutation into one batch per token range and send each
+     * batch directly to a host that owns the range, in parallel.  This avoids
+     * the extra hop through a coordinator that does not own most of the rows.
+     * Rows sent to different replicas are not applied atomically with respect
+     * to each other, which is no different from a regular multi-row batch.
+     * Only used when the connection pool is token aware and the batch is not
+     * pinned to a host.
+     * 
+     * @param enabled
+     */
+    MutationBatch withTokenAwareSplitting(boolean enabled);
+
     /**
      * Specify a write ahead log implementation to use for this mutation
      * 
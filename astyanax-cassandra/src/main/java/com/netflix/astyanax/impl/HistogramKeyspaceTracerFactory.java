@@ -0,0 +1,80 @@
+/*******************************************************************************
+ * Copyright 2011 Netflix
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package com.netflix.astyanax.impl;
+
+import com.netflix.astyanax.CassandraOperationTracer;
+import com.netflix.astyanax.CassandraOperationType;
+import com.netflix.astyanax.KeyspaceTracerFactory;
+import com.netflix.astyanax.connectionpool.exceptions.ConnectionException;
+import com.netflix.astyanax.connectionpool.impl.HistogramConnectionPoolMonitor;
+import com.netflix.astyanax.model.ColumnFamily;
+
+/**
+ * Tracer factory that records the latency of every operation, per
+ * CassandraOperationType, in a HistogramConnectionPoolMonitor.  Both
+ * successful and failed attempts are recorded.
+ * 
+ * AstyanaxContext uses this factory automatically when it is given a 
+ * HistogramConnectionPoolMonitor and no other tracer factory.
+ * 
+ * @author elandau
+ */
+public class HistogramKeyspaceTracerFactory implements KeyspaceTracerFactory {
+    private final HistogramConnectionPoolMonitor monitor;
+
+    public HistogramKeyspaceTracerFactory(HistogramConnectionPoolMonitor monitor) {
+        this.monitor = monitor;
+    }
+
+    @Override
+    public CassandraOperationTracer newTracer(CassandraOperationType type) {
+        return new Tracer(type);
+    }
+
+    @Override
+    public CassandraOperationTracer newTracer(CassandraOperationType type, ColumnFamily<?, ?> columnFamily) {
+        return new Tracer(type);
+    }
+
+    private class Tracer implements CassandraOperationTracer {
+        private final CassandraOperationType type;
+        private volatile long startTime;
+
+        Tracer(CassandraOperationType type) {
+            this.type = type;
+        }
+
+        @Override
+        public CassandraOperationTracer start() {
+            startTime = System.nanoTime();
+            return this;
+        }
+
+        @Override
+        public void success() {
+            monitor.recordOperationLatency(type.name(), System.nanoTime() - startTime);
+        }
+
+        @Override
+        public void failure(ConnectionException e) {
+            monitor.recordOperationLatency(type.name(), System.nanoTime() - startTime);
+        }
+    }
+
+    public String toString() {
+        return "HistogramKeyspaceTracerFactory";
+    }
+}
@@ -0,0 +1,604 @@
+/*******************************************************************************
+ * Copyright 2011 Netflix
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package com.netflix.astyanax.impl;
+
+import java.io.File;
+import java.io.FileFilter;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.CRC32;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.Lists;
+import com.netflix.astyanax.MutationBatch;
+import com.netflix.astyanax.WriteAheadEntry;
+import com.netflix.astyanax.WriteAheadLog;
+import com.netflix.astyanax.connectionpool.exceptions.WalException;
+
+/**
+ * Durable write ahead log backed by preallocated, memory mapped segment files
+ * in a local directory.
+ * 
+ * Each entry holds the bytes returned by MutationBatch.serialize() framed as
+ * 
+ *   [int length][byte state][long entry id][int crc][payload]
+ *   
+ * where the crc covers the segment generation, entry id and payload.  A segment
+ * starts with a header holding a magic number and its generation.  Removing an
+ * entry only flips the state byte in place.  Once a full segment has no live
+ * entries left it is given a new generation and reused for new writes, which
+ * invalidates every record still in the file without having to zero it.
+ * 
+ * writeMutation() returns only once the entry has been forced to disk.  Forcing
+ * is done by whichever writer arrives first while the others wait, so all entries 
+ * appended while a force is in progress are made durable by a single force of the
+ * next writer (group commit).
+ * 
+ * At startup all segments are scanned and live entries are queued for 
+ * readNextEntry().  Scanning stops at the first record in a segment that is 
+ * incomplete or fails its crc.  New entries are always written to a fresh segment.
+ * 
+ * @author elandau
+ */
+public class MappedFileWriteAheadLog implements WriteAheadLog {
+    private static final Logger LOG = LoggerFactory.getLogger(MappedFileWriteAheadLog.class);
+    
+    private static final int    MAGIC               = 0x57414c31;
+    private static final int    SEGMENT_HEADER_SIZE = 12;
+    private static final int    ENTRY_HEADER_SIZE   = 17;
+    private static final byte   STATE_LIVE          = 1;
+    private static final byte   STATE_REMOVED       = 2;
+    private static final String SEGMENT_PREFIX      = "segment-";
+    private static final String SEGMENT_SUFFIX      = ".wal";
+    
+    private static final int    DEFAULT_SEGMENT_SIZE      = 64 * 1024 * 1024;
+    private static final int    DEFAULT_MAX_FREE_SEGMENTS = 2;
+    
+    public static class Builder {
+        private final File directory;
+        private int     segmentSize     = DEFAULT_SEGMENT_SIZE;
+        private int     maxFreeSegments = DEFAULT_MAX_FREE_SEGMENTS;
+        private boolean syncOnWrite     = true;
+        
+        public Builder(File directory) {
+            this.directory = directory;
+        }
+        
+        /**
+         * Size of each preallocated segment file.  This also limits the size of a 
+         * single serialized mutation batch.
+         * 
+         * @param segmentSize
+         * @return
+         */
+        public Builder withSegmentSize(int segmentSize) {
+            Preconditions.checkArgument(segmentSize > SEGMENT_HEADER_SIZE + ENTRY_HEADER_SIZE, "Segment size too small");
+            this.segmentSize = segmentSize;
+            return this;
+        }
+        
+        /**
+         * Maximum number of empty segments to keep around for reuse.  Additional 
+         * empty segments are deleted.
+         * 
+         * @param maxFreeSegments
+         * @return
+         */
+        public Builder withMaxFreeSegments(int maxFreeSegments) {
+            Preconditions.checkArgument(maxFreeSegments >= 0, "Max free segments must be >= 0");
+            this.maxFreeSegments = maxFreeSegments;
+            return this;
+        }
+        
+        /**
+         * When false writeMutation() returns as soon as the entry is in the mapped 
+         * segment and it is left to the OS to write it to disk.  Entries then survive
+         * a process crash but not necessarily a machine crash.
+         * 
+         * @param syncOnWrite
+         * @return
+         */
+        public Builder withSyncOnWrite(boolean syncOnWrite) {
+            this.syncOnWrite = syncOnWrite;
+            return this;
+        }
+        
+        /**
+         * Open the log, creating the directory if needed, and queue all live entries
+         * found in existing segments for replay.
+         * 
+         * @return
+         * @throws WalException
+         */
+        public MappedFileWriteAheadLog build() throws WalException {
+            MappedFileWriteAheadLog wal = new MappedFileWriteAheadLog(directory, segmentSize, maxFreeSegments, syncOnWrite);
+            wal.open();
+            return wal;
+        }
+    }
+    
+    /**
+     * A preallocated and mapped segment file
+     */
+    private static class Segment {
+        final File              file;
+        final RandomAccessFile  raf;
+        final MappedByteBuffer  buffer;
+        final AtomicInteger     liveCount = new AtomicInteger();
+        final AtomicBoolean     recycled  = new AtomicBoolean();
+        volatile boolean        sealed;
+        long                    generation;
+        int                     position;
+        
+        Segment(File file, int size) throws IOException {
+            this.file   = file;
+            this.raf    = new RandomAccessFile(file, "rw");
+            if (raf.length() != size)
+                raf.setLength(size);
+            this.buffer = raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, size);
+        }
+        
+        /**
+         * Start a new generation of this segment.  Any records left over from a
+         * previous generation will fail their crc.
+         */
+        void reset(long generation) {
+            this.generation = generation;
+            this.position   = SEGMENT_HEADER_SIZE;
+            this.sealed     = false;
+            this.liveCount.set(0);
+            this.recycled.set(false);
+            buffer.putInt(0, MAGIC);
+            buffer.putLong(4, generation);
+            buffer.putInt(SEGMENT_HEADER_SIZE, 0);
+        }
+        
+        void close() {
+            try {
+                raf.close();
+            } catch (IOException e) {
+                LOG.warn("Failed to close WAL segment " + file, e);
+            }
+        }
+    }
+    
+    /**
+     * Entry in a segment.  The payload is only held on to for entries read back
+     * for replay.
+     */
+    private class MappedEntry implements WriteAheadEntry {
+        private Segment segment;
+        private int     offset;
+        private long    id;
+        private byte[]  payload;
+        private final AtomicBoolean removed = new AtomicBoolean();
+        
+        @Override
+        public void readMutation(MutationBatch mutation) throws WalException {
+            if (payload == null)
+                throw new WalException("Entry has no data to replay");
+            try {
+                mutation.deserialize(ByteBuffer.wrap(payload));
+            } catch (WalException e) {
+                throw e;
+            } catch (Exception e) {
+                throw new WalException("Failed to deserialize WAL entry " + id, e);
+            }
+        }
+
+        @Override
+        public void writeMutation(MutationBatch mutation) throws WalException {
+            if (segment != null)
+                throw new WalException("Entry " + id + " already written");
+            
+            byte[] data;
+            try {
+                ByteBuffer bb = mutation.serialize();
+                data = new byte[bb.remaining()];
+                bb.duplicate().get(data);
+            } catch (Exception e) {
+                throw new WalException("Failed to serialize mutation", e);
+            }
+            
+            long sequence = append(this, data);
+            if (syncOnWrite)
+                sync(sequence);
+        }
+    }
+    
+    private final File      directory;
+    private final int       segmentSize;
+    private final int       maxFreeSegments;
+    private final boolean   syncOnWrite;
+    
+    private final AtomicLong nextEntryId    = new AtomicLong();
+    private final ConcurrentLinkedQueue<MappedEntry> replay = new ConcurrentLinkedQueue<MappedEntry>();
+    
+    // Guarded by this
+    private final LinkedList<Segment> freeSegments  = Lists.newLinkedList();
+    private final List<Segment>       dirtySegments = Lists.newArrayList();
+    private final List<Segment>       allSegments   = Lists.newArrayList();
+    private Segment                   activeSegment;
+    private long                      nextGeneration;
+    private int                       nextFileIndex;
+    private long                      appendSequence;
+    private boolean                   closed;
+    
+    // Guarded by syncLock
+    private final Object              syncLock = new Object();
+    private long                      syncedSequence;
+    private boolean                   syncing;
+    
+    private MappedFileWriteAheadLog(File directory, int segmentSize, int maxFreeSegments, boolean syncOnWrite) {
+        this.directory       = directory;
+        this.segmentSize     = segmentSize;
+        this.maxFreeSegments = maxFreeSegments;
+        this.syncOnWrite     = syncOnWrite;
+    }
+    
+    private synchronized void open() throws WalException {
+        if (!directory.isDirectory() && !directory.mkdirs())
+            throw new WalException("Unable to create WAL directory " + directory);
+        
+        File[] files = directory.listFiles(new FileFilter() {
+            @Override
+            public boolean accept(File file) {
+                return file.getName().startsWith(SEGMENT_PREFIX) && file.getName().endsWith(SEGMENT_SUFFIX);
+            }
+        });
+        
+        // Scan existing segments and order them by generation so entries replay in the order written
+        List<Segment> segments = Lists.newArrayList();
+        long maxEntryId = 0;
+        try {
+            for (File file : files) {
+                nextFileIndex = Math.max(nextFileIndex, parseFileIndex(file) + 1);
+                Segment segment = new Segment(file, segmentSize);
+                segments.add(segment);
+                if (segment.buffer.getInt(0) == MAGIC) {
+                    segment.generation = segment.buffer.getLong(4);
+                    nextGeneration = Math.max(nextGeneration, segment.generation + 1);
+                }
+                else {
+                    segment.generation = -1;
+                }
+            }
+        } catch (IOException e) {
+            for (Segment segment : segments) 
+                segment.close();
+            throw new WalException("Unable to open WAL segments in " + directory, e);
+        }
+        
+        Collections.sort(segments, new Comparator<Segment>() {
+            @Override
+            public int compare(Segment s1, Segment s2) {
+                return s1.generation < s2.generation ? -1 : (s1.generation == s2.generation ? 0 : 1);
+            }
+        });
+        
+        for (Segment segment : segments) {
+            allSegments.add(segment);
+            segment.sealed = true;
+            if (segment.generation >= 0)
+                maxEntryId = Math.max(maxEntryId, scan(segment));
+            if (segment.liveCount.get() == 0) 
+                recycle(segment);
+        }
+        nextEntryId.set(maxEntryId + 1);
+        
+        LOG.info("Opened WAL in " + directory + " with " + replay.size() + " entries to replay");
+    }
+    
+    /**
+     * Queue all live entries in a segment for replay
+     * 
+     * @return Highest entry id seen in the segment
+     */
+    private long scan(Segment segment) {
+        ByteBuffer buffer = segment.buffer.duplicate();
+        CRC32 crc = new CRC32();
+        long maxEntryId = 0;
+        int offset = SEGMENT_HEADER_SIZE;
+        while (offset + ENTRY_HEADER_SIZE <= segmentSize) {
+            int  length = buffer.getInt(offset);
+            byte state  = buffer.get(offset + 4);
+            if (length <= 0 || length > segmentSize - offset - ENTRY_HEADER_SIZE || (state != STATE_LIVE && state != STATE_REMOVED))
+                break;
+            
+            long id = buffer.getLong(offset + 5);
+            byte[] payload = new byte[length];
+            buffer.position(offset + ENTRY_HEADER_SIZE);
+            buffer.get(payload);
+            if (buffer.getInt(offset + 13) != checksum(crc, segment.generation, id, payload)) 
+                break;
+            
+            maxEntryId = Math.max(maxEntryId, id);
+            if (state == STATE_LIVE) {
+                MappedEntry entry = new MappedEntry();
+                entry.segment = segment;
+                entry.offset  = offset;
+                entry.id      = id;
+                entry.payload = payload;
+                segment.liveCount.incrementAndGet();
+                replay.add(entry);
+            }
+            offset += ENTRY_HEADER_SIZE + length;
+        }
+        segment.position = offset;
+        return maxEntryId;
+    }
+    
+    private static int checksum(CRC32 crc, long generation, long id, byte[] payload) {
+        crc.reset();
+        for (int i = 0; i < 8; i++) 
+            crc.update((int)(generation >>> (i * 8)));
+        for (int i = 0; i < 8; i++) 
+            crc.update((int)(id >>> (i * 8)));
+        crc.update(payload, 0, payload.length);
+        return (int)crc.getValue();
+    }
+    
+    private static int parseFileIndex(File file) {
+        String name = file.getName();
+        try {
+            return Integer.parseInt(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+    
+    /**
+     * Append an entry to the active segment, rolling over to a new segment if it 
+     * doesn't fit.
+     * 
+     * @return Sequence number to pass to sync() to make the entry durable
+     */
+    private long append(MappedEntry entry, byte[] payload) throws WalException {
+        if (payload.length > segmentSize - SEGMENT_HEADER_SIZE - ENTRY_HEADER_SIZE)
+            throw new WalException("Mutation of " + payload.length + " bytes exceeds WAL segment size " + segmentSize);
+        
+        synchronized (this) {
+            if (closed)
+                throw new WalException("WAL is closed");
+            
+            if (activeSegment == null || activeSegment.position + ENTRY_HEADER_SIZE + payload.length > segmentSize) 
+                rollSegment();
+            
+            Segment segment = activeSegment;
+            entry.segment = segment;
+            entry.offset  = segment.position;
+            entry.id      = nextEntryId.getAndIncrement();
+            int crcValue  = checksum(new CRC32(), segment.generation, entry.id, payload);
+            
+            MappedByteBuffer buffer = segment.buffer;
+            int offset = segment.position;
+            buffer.put(offset + 4, STATE_LIVE);
+            buffer.putLong(offset + 5, entry.id);
+            buffer.putInt(offset + 13, crcValue);
+            ByteBuffer data = buffer.duplicate();
+            data.position(offset + ENTRY_HEADER_SIZE);
+            data.put(payload);
+            buffer.putInt(offset, payload.length);
+            
+            segment.position += ENTRY_HEADER_SIZE + payload.length;
+            if (segment.position + ENTRY_HEADER_SIZE <= segmentSize)
+                buffer.putInt(segment.position, 0);
+            segment.liveCount.incrementAndGet();
+            
+            if (!dirtySegments.contains(segment))
+                dirtySegments.add(segment);
+            return ++appendSequence;
+        }
+    }
+    
+    /**
+     * Seal the active segment and switch to a free or newly created segment.  
+     * Must be called while holding the lock on this.
+     */
+    private void rollSegment() throws WalException {
+        Segment previous = activeSegment;
+        
+        Segment segment = freeSegments.poll();
+        if (segment == null) {
+            File file = new File(directory, SEGMENT_PREFIX + nextFileIndex++ + SEGMENT_SUFFIX);
+            try {
+                segment = new Segment(file, segmentSize);
+            } catch (IOException e) {
+                throw new WalException("Unable to create WAL segment " + file, e);
+            }
+            allSegments.add(segment);
+        }
+        segment.reset(nextGeneration++);
+        activeSegment = segment;
+        
+        if (previous != null) {
+            previous.sealed = true;
+            if (previous.liveCount.get() == 0) 
+                recycle(previous);
+        }
+    }
+    
+    /**
+     * Return a sealed segment with no live entries to the free list, or delete it
+     * if there are enough free segments already.
+     */
+    private void recycle(Segment segment) {
+        if (!segment.recycled.compareAndSet(false, true))
+            return;
+        
+        synchronized (this) {
+            if (closed)
+                return;
+            
+            if (freeSegments.size() < maxFreeSegments) {
+                freeSegments.add(segment);
+            }
+            else {
+                allSegments.remove(segment);
+                dirtySegments.remove(segment);
+                segment.close();
+                if (!segment.file.delete())
+                    LOG.warn("Failed to delete WAL segment " + segment.file);
+            }
+        }
+    }
+    
+    /**
+     * Make sure all entries up to and including the sequence number are on disk.
+     * The first thread to get here forces all dirty segments on behalf of every 
+     * entry appended so far while other threads wait for it to finish.
+     */
+    private void sync(long sequence) throws WalException {
+        while (true) {
+            synchronized (syncLock) {
+                while (syncing && syncedSequence < sequence) {
+                    try {
+                        syncLock.wait();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new WalException("Interrupted waiting for WAL sync", e);
+                    }
+                }
+                if (syncedSequence >= sequence)
+                    return;
+                syncing = true;
+            }
+            
+            long target;
+            List<Segment> segments;
+            synchronized (this) {
+                target   = appendSequence;
+                segments = Lists.newArrayList(dirtySegments);
+                dirtySegments.clear();
+            }
+            
+            boolean success = false;
+            try {
+                for (Segment segment : segments) 
+                    segment.buffer.force();
+                success = true;
+            }
+            finally {
+                synchronized (syncLock) {
+                    syncing = false;
+                    if (success)
+                        syncedSequence = Math.max(syncedSequence, target);
+                    syncLock.notifyAll();
+                }
+                if (!success) {
+                    synchronized (this) {
+                        for (Segment segment : segments) {
+                            if (!dirtySegments.contains(segment))
+                                dirtySegments.add(segment);
+                        }
+                    }
+                }
+            }
+        }
+    }
+    
+    @Override
+    public WriteAheadEntry createEntry() throws WalException {
+        synchronized (this) {
+            if (closed)
+                throw new WalException("WAL is closed");
+        }
+        return new MappedEntry();
+    }
+
+    @Override
+    public void removeEntry(WriteAheadEntry walEntry) {
+        MappedEntry entry = (MappedEntry)walEntry;
+        if (entry.segment == null || !entry.removed.compareAndSet(false, true))
+            return;
+        
+        Segment segment = entry.segment;
+        segment.buffer.put(entry.offset + 4, STATE_REMOVED);
+        entry.payload = null;
+        if (segment.liveCount.decrementAndGet() == 0 && segment.sealed)
+            recycle(segment);
+    }
+
+    @Override
+    public WriteAheadEntry readNextEntry() {
+        return replay.poll();
+    }
+
+    @Override
+    public void retryEntry(WriteAheadEntry walEntry) {
+        MappedEntry entry = (MappedEntry)walEntry;
+        if (!entry.removed.get() && entry.payload != null)
+            replay.add(entry);
+    }
+    
+    /**
+     * @return Number of entries read at startup that are waiting to be replayed
+     */
+    public int getReplayCount() {
+        return replay.size();
+    }
+    
+    /**
+     * @return Number of segment files currently owned by the log 
+     */
+    public synchronized int getSegmentCount() {
+        return allSegments.size();
+    }
+    
+    /**
+     * Force all pending entries to disk and release the segment files.  Live 
+     * entries will be replayed the next time the log is opened.
+     */
+    public void close() {
+        List<Segment> segments;
+        synchronized (this) {
+            if (closed)
+                return;
+            closed = true;
+            segments = Lists.newArrayList(allSegments);
+        }
+        
+        synchronized (syncLock) {
+            while (syncing) {
+                try {
+                    syncLock.wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+            }
+        }
+        
+        for (Segment segment : segments) {
+            segment.buffer.force();
+            segment.close();
+        }
+    }
+}
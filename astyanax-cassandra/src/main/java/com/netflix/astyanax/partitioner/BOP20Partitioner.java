@@ -64,6 +64,40 @@ public class BOP20Partitioner implements Partitioner {
         return new BigInteger(token, 16).subtract(ONE).toString(16);
     }
 
+    @Override
+    public Token getToken(ByteBuffer key) {
+        return parseToken(getTokenForKey(key));
+    }
+
+    @Override
+    public Token parseToken(String token) {
+        return new BigIntegerToken(new BigInteger(token, 16), 16);
+    }
+
+    @Override
+    public Token getMinimumToken() {
+        return parseToken(MINIMUM);
+    }
+
+    @Override
+    public Token getMaximumToken() {
+        return parseToken(MAXIMUM);
+    }
+
+    @Override
+    public Token getTokenMinusOne(Token token) {
+        return parseToken(getTokenMinusOne(token.toString()));
+    }
+
+    @Override
+    public List<Token> splitTokens(Token first, Token last, int count) {
+        List<Token> tokens = Lists.newArrayList();
+        for (int i = 0; i <= count; i++) {
+            tokens.add(parseToken(getSegmentToken(count, i, first.toBigInteger(), last.toBigInteger())));
+        }
+        return tokens;
+    }
+
     public static String getSegmentToken(int size, int position, BigInteger minInitialToken, BigInteger maxInitialToken ) {
         BigInteger decValue = minInitialToken;
         if (position != 0)
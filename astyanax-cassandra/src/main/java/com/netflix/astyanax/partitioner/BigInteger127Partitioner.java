@@ -2,12 +2,13 @@ package com.netflix.astyanax.partitioner;
 
 import java.math.BigInteger;
 import java.nio.ByteBuffer;
+import java.security.DigestException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
 
-import org.apache.cassandra.dht.RandomPartitioner;
-
 import com.google.common.collect.Lists;
 import com.netflix.astyanax.Serializer;
 import com.netflix.astyanax.connectionpool.TokenRange;
@@ -19,9 +20,22 @@ public class BigInteger127Partitioner implements Partitioner {
     public static final BigInteger MAXIMUM = new BigInteger("" + 2).pow(127).subtract(new BigInteger("1"));
     public static final BigInteger ONE     = new BigInteger("1");
     
-    private static final RandomPartitioner partitioner = new RandomPartitioner();
+    private static final Int128Token MINIMUM_TOKEN = Int128Token.valueOf(MINIMUM);
+    private static final Int128Token MAXIMUM_TOKEN = Int128Token.valueOf(MAXIMUM);
+    private static final Int128Token EMPTY_KEY_TOKEN = new Int128Token(-1L, -1L);
+    
     private static final BigInteger127Partitioner instance = new BigInteger127Partitioner();
     
+    /**
+     * MD5 digest and output buffer reused by each thread
+     */
+    private static final ThreadLocal<Md5> md5 = new ThreadLocal<Md5>() {
+        @Override
+        protected Md5 initialValue() {
+            return new Md5();
+        }
+    };
+    
     public static Partitioner get() {
         return instance;
     }
@@ -48,11 +62,11 @@ public class BigInteger127Partitioner implements Partitioner {
         }
         
         List<TokenRange> tokens = Lists.newArrayList();
-        List<String> splits = splitRange(new BigInteger(first), new BigInteger(last), count);
-        Iterator<String> iter = splits.iterator();
-        String current = iter.next();
+        List<Token> splits = splitTokens(parseToken(first), parseToken(last), count);
+        Iterator<Token> iter = splits.iterator();
+        String current = iter.next().toString();
         while (iter.hasNext()) {
-            String next = iter.next();
+            String next = iter.next().toString();
             tokens.add(new TokenRangeImpl(current, next, new ArrayList<String>()));
             current = next;
         }
@@ -66,21 +80,69 @@ public class BigInteger127Partitioner implements Partitioner {
 
     @Override
     public String getTokenForKey(ByteBuffer key) {
-        return partitioner.getToken(key).toString();
+        return getToken(key).toString();
     }
     
     public <T> String getTokenForKey(T key, Serializer<T> serializer) {
-        return partitioner.getToken(serializer.toByteBuffer(key)).toString();
+        return getTokenForKey(serializer.toByteBuffer(key));
     }
 
     @Override
     public String getTokenMinusOne(String token) {
-        BigInteger bigInt = new BigInteger(token);
+        return getTokenMinusOne(parseToken(token)).toString();
+    }
+
+    /**
+     * Same token as Cassandra's RandomPartitioner, the absolute value of the 
+     * MD5 of the key, but without going through BigInteger.  
+     */
+    @Override
+    public Token getToken(ByteBuffer key) {
+        // Cassandra's minimum token, which is -1 for the random partitioner
+        if (key.remaining() == 0)
+            return EMPTY_KEY_TOKEN;
+        
+        Int128Token token = md5.get().digest(key);
+        if (token.isNegative()) {
+            token = token.negate();
+            // Only a digest of exactly -2^127 can't be negated.  Cassandra's 
+            // token for it is 2^127 which is outside the token space anyway
+            if (token.isNegative())
+                token = MAXIMUM_TOKEN;
+        }
+        return token;
+    }
+
+    @Override
+    public Token parseToken(String token) {
+        return Int128Token.valueOf(new BigInteger(token));
+    }
+
+    @Override
+    public Token getMinimumToken() {
+        return MINIMUM_TOKEN;
+    }
+
+    @Override
+    public Token getMaximumToken() {
+        return MAXIMUM_TOKEN;
+    }
+
+    @Override
+    public Token getTokenMinusOne(Token token) {
         // if zero rotate to the Maximum else minus one.
-        if (bigInt.equals(MINIMUM))
-            return MAXIMUM.toString();
-        else
-            return bigInt.subtract(ONE).toString();
+        if (token.equals(MINIMUM_TOKEN))
+            return MAXIMUM_TOKEN;
+        return ((Int128Token) token).minusOne();
+    }
+
+    @Override
+    public List<Token> splitTokens(Token first, Token last, int count) {
+        List<Token> tokens = Lists.newArrayList();
+        for (String token : splitRange(first.toBigInteger(), last.toBigInteger(), count)) {
+            tokens.add(parseToken(token));
+        }
+        return tokens;
     }
 
     public static List<String> splitRange(BigInteger first, BigInteger last, int count) {
@@ -90,8 +152,34 @@ public class BigInteger127Partitioner implements Partitioner {
         BigInteger current = first;
         for (int i = 0; i < count-1; i++) {
             current = current.add(delta);
+            tokens.add(current.toString());
         }
         tokens.add(last.toString());
         return tokens;
     }
+    
+    private static class Md5 {
+        private final MessageDigest digest;
+        private final byte[] buffer = new byte[16];
+        
+        Md5() {
+            try {
+                digest = MessageDigest.getInstance("MD5");
+            } 
+            catch (NoSuchAlgorithmException e) {
+                throw new RuntimeException(e);
+            }
+        }
+        
+        Int128Token digest(ByteBuffer key) {
+            digest.update(key.duplicate());
+            try {
+                digest.digest(buffer, 0, buffer.length);
+            } 
+            catch (DigestException e) {
+                throw new RuntimeException(e);
+            }
+            return Int128Token.valueOf(buffer, 0);
+        }
+    }
 }
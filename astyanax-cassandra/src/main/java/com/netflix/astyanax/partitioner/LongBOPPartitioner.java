@@ -22,4 +22,10 @@ public class LongBOPPartitioner extends BigInteger127Partitioner {
     public String getTokenForKey(ByteBuffer key) {
         return Long.toString(key.duplicate().asLongBuffer().get());
     }
+
+    @Override
+    public Token getToken(ByteBuffer key) {
+        long token = key.getLong(key.position());
+        return new Int128Token(token < 0 ? -1L : 0L, token);
+    }
 }
\ No newline at end of file
@@ -11,13 +11,15 @@ import com.netflix.astyanax.Serializer;
 import com.netflix.astyanax.connectionpool.TokenRange;
 import com.netflix.astyanax.connectionpool.impl.TokenRangeImpl;
 
-public class Murmur3Partitioner implements Partitioner {
+public class Murmur3Partitioner implements LongTokenPartitioner {
     public static final BigInteger MINIMUM = new BigInteger(Long.toString(Long.MIN_VALUE));
     public static final BigInteger MAXIMUM = new BigInteger(Long.toString(Long.MAX_VALUE));
 
     public static final BigInteger ONE     = new BigInteger("1");
     
-    private static final org.apache.cassandra.dht.Murmur3Partitioner partitioner = new org.apache.cassandra.dht.Murmur3Partitioner();
+    private static final LongToken MINIMUM_TOKEN = new LongToken(Long.MIN_VALUE);
+    private static final LongToken MAXIMUM_TOKEN = new LongToken(Long.MAX_VALUE);
+    
     private static final Murmur3Partitioner instance = new Murmur3Partitioner();
     
     public static Partitioner get() {
@@ -45,11 +47,11 @@ public class Murmur3Partitioner implements Partitioner {
         }
         
         List<TokenRange> tokens = Lists.newArrayList();
-        List<String> splits = splitRange(new BigInteger(first), new BigInteger(last), count);
-        Iterator<String> iter = splits.iterator();
-        String current = iter.next();
+        List<Token> splits = splitTokens(parseToken(first), parseToken(last), count);
+        Iterator<Token> iter = splits.iterator();
+        String current = iter.next().toString();
         while (iter.hasNext()) {
-            String next = iter.next();
+            String next = iter.next().toString();
             tokens.add(new TokenRangeImpl(current, next, new ArrayList<String>()));
             current = next;
         }
@@ -63,21 +65,66 @@ public class Murmur3Partitioner implements Partitioner {
 
     @Override
     public String getTokenForKey(ByteBuffer key) {
-        return partitioner.getToken(key).toString();
+        return Long.toString(getLongTokenForKey(key));
     }
     
     public <T> String getTokenForKey(T key, Serializer<T> serializer) {
-        return partitioner.getToken(serializer.toByteBuffer(key)).toString();
+        return getTokenForKey(serializer.toByteBuffer(key));
+    }
+
+    /**
+     * Same token as Cassandra's Murmur3Partitioner but without allocating
+     */
+    @Override
+    public long getLongTokenForKey(ByteBuffer key) {
+        if (key.remaining() == 0)
+            return Long.MIN_VALUE;
+        long hash = hash3_x64_128(key, key.position(), key.remaining(), 0);
+        // Long.MIN_VALUE is reserved for the minimum token
+        return hash == Long.MIN_VALUE ? Long.MAX_VALUE : hash;
     }
 
     @Override
     public String getTokenMinusOne(String token) {
-        Long lToken = Long.parseLong(token);
+        return getTokenMinusOne(parseToken(token)).toString();
+    }
+
+    @Override
+    public Token getToken(ByteBuffer key) {
+        return new LongToken(getLongTokenForKey(key));
+    }
+
+    @Override
+    public Token parseToken(String token) {
+        return new LongToken(Long.parseLong(token));
+    }
+
+    @Override
+    public Token getMinimumToken() {
+        return MINIMUM_TOKEN;
+    }
+
+    @Override
+    public Token getMaximumToken() {
+        return MAXIMUM_TOKEN;
+    }
+
+    @Override
+    public Token getTokenMinusOne(Token token) {
+        long value = ((LongToken) token).longValue();
         // if zero rotate to the Maximum else minus one.
-        if (lToken.equals(MINIMUM))
-            return MAXIMUM.toString();
-        else
-            return Long.toString(lToken - 1);
+        if (value == Long.MIN_VALUE)
+            return MAXIMUM_TOKEN;
+        return new LongToken(value - 1);
+    }
+
+    @Override
+    public List<Token> splitTokens(Token first, Token last, int count) {
+        List<Token> tokens = Lists.newArrayList();
+        for (String token : splitRange(first.toBigInteger(), last.toBigInteger(), count)) {
+            tokens.add(parseToken(token));
+        }
+        return tokens;
     }
 
     public static List<String> splitRange(BigInteger first, BigInteger last, int count) {
@@ -87,9 +134,94 @@ public class Murmur3Partitioner implements Partitioner {
         BigInteger current = first;
         for (int i = 0; i < count-1; i++) {
             current = current.add(delta);
+            tokens.add(current.toString());
         }
         tokens.add(last.toString());
         return tokens;
     }
 
+    /**
+     * First half of the 128 bit MurmurHash3 (x64 variant) as computed by 
+     * Cassandra, including its sign extension of the trailing bytes
+     */
+    @SuppressWarnings("fallthrough")
+    private static long hash3_x64_128(ByteBuffer key, int offset, int length, long seed) {
+        final int nblocks = length >> 4;
+
+        long h1 = seed;
+        long h2 = seed;
+
+        final long c1 = 0x87c37b91114253d5L;
+        final long c2 = 0x4cf5ad432745937fL;
+
+        for (int i = 0; i < nblocks; i++) {
+            long k1 = getblock(key, offset, i * 2 + 0);
+            long k2 = getblock(key, offset, i * 2 + 1);
+
+            k1 *= c1; k1 = Long.rotateLeft(k1, 31); k1 *= c2; h1 ^= k1;
+            h1 = Long.rotateLeft(h1, 27); h1 += h2; h1 = h1 * 5 + 0x52dce729;
+
+            k2 *= c2; k2 = Long.rotateLeft(k2, 33); k2 *= c1; h2 ^= k2;
+            h2 = Long.rotateLeft(h2, 31); h2 += h1; h2 = h2 * 5 + 0x38495ab5;
+        }
+
+        offset += nblocks * 16;
+
+        long k1 = 0;
+        long k2 = 0;
+
+        // Each case falls through to the next, as in the reference MurmurHash3 tail
+        switch (length & 15) {
+        case 15: k2 ^= ((long) key.get(offset + 14)) << 48;
+        case 14: k2 ^= ((long) key.get(offset + 13)) << 40;
+        case 13: k2 ^= ((long) key.get(offset + 12)) << 32;
+        case 12: k2 ^= ((long) key.get(offset + 11)) << 24;
+        case 11: k2 ^= ((long) key.get(offset + 10)) << 16;
+        case 10: k2 ^= ((long) key.get(offset + 9)) << 8;
+        case 9:  k2 ^= ((long) key.get(offset + 8));
+            k2 *= c2; k2 = Long.rotateLeft(k2, 33); k2 *= c1; h2 ^= k2;
+
+        case 8:  k1 ^= ((long) key.get(offset + 7)) << 56;
+        case 7:  k1 ^= ((long) key.get(offset + 6)) << 48;
+        case 6:  k1 ^= ((long) key.get(offset + 5)) << 40;
+        case 5:  k1 ^= ((long) key.get(offset + 4)) << 32;
+        case 4:  k1 ^= ((long) key.get(offset + 3)) << 24;
+        case 3:  k1 ^= ((long) key.get(offset + 2)) << 16;
+        case 2:  k1 ^= ((long) key.get(offset + 1)) << 8;
+        case 1:  k1 ^= ((long) key.get(offset));
+            k1 *= c1; k1 = Long.rotateLeft(k1, 31); k1 *= c2; h1 ^= k1;
+        }
+
+        h1 ^= length;
+        h2 ^= length;
+
+        h1 += h2;
+        h2 += h1;
+
+        h1 = fmix(h1);
+        h2 = fmix(h2);
+
+        return h1 + h2;
+    }
+
+    private static long getblock(ByteBuffer key, int offset, int index) {
+        int i = offset + (index << 3);
+        return ((long) key.get(i + 0) & 0xff) 
+            + (((long) key.get(i + 1) & 0xff) << 8) 
+            + (((long) key.get(i + 2) & 0xff) << 16) 
+            + (((long) key.get(i + 3) & 0xff) << 24) 
+            + (((long) key.get(i + 4) & 0xff) << 32) 
+            + (((long) key.get(i + 5) & 0xff) << 40) 
+            + (((long) key.get(i + 6) & 0xff) << 48) 
+            + (((long) key.get(i + 7) & 0xff) << 56);
+    }
+
+    private static long fmix(long k) {
+        k ^= k >>> 33;
+        k *= 0xff51afd7ed558ccdL;
+        k ^= k >>> 33;
+        k *= 0xc4ceb9fe1a85ec53L;
+        k ^= k >>> 33;
+        return k;
+    }
 }
@@ -19,4 +19,9 @@ public class OrderedBigIntegerPartitioner extends BigInteger127Partitioner {
     public String getTokenForKey(ByteBuffer key) {
         return BigIntegerSerializer.get().fromByteBuffer(key).toString();
     }
+
+    @Override
+    public Token getToken(ByteBuffer key) {
+        return Int128Token.valueOf(BigIntegerSerializer.get().fromByteBuffer(key));
+    }
 }
\ No newline at end of file
@@ -22,6 +22,7 @@ import com.netflix.astyanax.Execution;
 import com.netflix.astyanax.RowCopier;
 import com.netflix.astyanax.connectionpool.exceptions.ConnectionException;
 import com.netflix.astyanax.model.ByteBufferRange;
+import com.netflix.astyanax.model.Column;
 import com.netflix.astyanax.model.ColumnFamily;
 import com.netflix.astyanax.model.ColumnList;
 import com.netflix.astyanax.model.ColumnSlice;
@@ -115,6 +116,20 @@ public interface RowQuery<K, C> extends Execution<ColumnList<C>> {
      */
     RowQuery<K, C> autoPaginate(boolean enabled);
 
+    /**
+     * Iterate through all columns in the column range, fetching the next pages in 
+     * the background while the current page is being consumed.  The count of the 
+     * column range is used as the size of the first page after which the page size 
+     * adapts to the size of the columns being read.  Each call to iterator() starts 
+     * a new scan from the beginning of the range.
+     * 
+     * Errors reading a page are thrown from the iterator as a RuntimeException 
+     * wrapping the ConnectionException.
+     * 
+     * @param prefetchPages Maximum number of pages fetched ahead of the page being consumed
+     */
+    Iterable<Column<C>> iterateColumns(int prefetchPages);
+
     /**
      * Copy the results of the query to another column family
      * 
@@ -89,6 +89,19 @@ public interface RowSliceQuery<K, C> extends Execution<Rows<K, C>> {
      */
     RowSliceQuery<K, C> withColumnRange(ByteBufferRange range);
     
+    /**
+     * Split the keys by the token partition that owns them and issue the 
+     * resulting sub-multigets concurrently to the owning hosts instead of 
+     * sending one multiget to a single coordinator.  Rows are returned in
+     * the order in which the keys were requested.  Has no effect when the 
+     * query is pinned to a host.
+     * 
+     * @param maxKeysPerBatch   Maximum number of keys in a single sub-multiget
+     * @param maxParallelism    Maximum number of sub-multigets in flight at once
+     * @return
+     */
+    RowSliceQuery<K, C> withTokenAwareScatter(int maxKeysPerBatch, int maxParallelism);
+    
     /**
      * Get column counts for the slice or range
      * @return
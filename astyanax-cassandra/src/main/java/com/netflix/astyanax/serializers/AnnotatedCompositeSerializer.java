@@ -1,11 +1,14 @@
 package com.netflix.astyanax.serializers;
 
+import java.lang.reflect.Constructor;
 import java.lang.reflect.Field;
 import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.UUID;
 
+import com.google.common.base.Charsets;
 import com.netflix.astyanax.Serializer;
 import com.netflix.astyanax.annotations.Component;
 import com.netflix.astyanax.model.Equality;
@@ -18,6 +21,13 @@ import java.util.Arrays;
  * Serialized data is formatted as a list of components with each component
  * having the format: <2 byte length><data><0>
  * 
+ * Unless disabled in the constructor, a specialized codec is chosen for each
+ * component when the serializer is created.  Common types (String, Long, 
+ * Integer, Short, Byte, Boolean and UUID including their primitive forms) are 
+ * then encoded straight into a single buffer of the exact encoded size and 
+ * decoded directly from the source buffer without intermediate buffers.  Other 
+ * types go through their Serializer as before.
+ * 
  * @author elandau
  * 
  * @param <T>
@@ -72,9 +82,337 @@ public class AnnotatedCompositeSerializer<T> extends AbstractSerializer<T> {
         }
     }
 
+    /**
+     * Compiled encoder/decoder for a single component.  Encoding happens in two 
+     * passes, the first computing the exact size and the second writing into 
+     * the final buffer.  Codecs that need to carry state between the two passes 
+     * (such as an encoded value) keep it in the prepared array.
+     */
+    private static abstract class ComponentCodec {
+        protected final Field field;
+        
+        ComponentCodec(Field field) {
+            this.field = field;
+        }
+        
+        /**
+         * @return Encoded size of the component's value, not including the component overhead
+         */
+        abstract int prepare(Object obj, Object[] prepared, int index) throws Exception;
+        
+        abstract void write(Object obj, Object[] prepared, int index, ByteBuffer out) throws Exception;
+        
+        /**
+         * Set the field from length > 0 bytes of the buffer starting at offset
+         */
+        abstract void read(Object obj, ByteBuffer in, int offset, int length) throws Exception;
+        
+        boolean usesPrepared() {
+            return false;
+        }
+    }
+    
+    /**
+     * Codec for a fixed size object value.  Values with an unexpected size are 
+     * decoded by the component's serializer.
+     */
+    private static abstract class FixedSizeCodec extends ComponentCodec {
+        private final int size;
+        private final Serializer<?> serializer;
+        
+        FixedSizeCodec(Field field, Serializer<?> serializer, int size) {
+            super(field);
+            this.size       = size;
+            this.serializer = serializer;
+        }
+        
+        @Override
+        int prepare(Object obj, Object[] prepared, int index) throws Exception {
+            return field.get(obj) != null ? size : 0;
+        }
+        
+        @Override
+        void write(Object obj, Object[] prepared, int index, ByteBuffer out) throws Exception {
+            Object value = field.get(obj);
+            if (value != null)
+                writeValue(value, out);
+        }
+        
+        @Override
+        void read(Object obj, ByteBuffer in, int offset, int length) throws Exception {
+            if (length != size) 
+                field.set(obj, readSerialized(in, offset, length));
+            else 
+                field.set(obj, readValue(in, offset));
+        }
+        
+        int size() {
+            return size;
+        }
+        
+        /**
+         * @return Value decoded by the component's serializer
+         */
+        Object readSerialized(ByteBuffer in, int offset, int length) {
+            return serializer.fromByteBuffer(slice(in, offset, length));
+        }
+        
+        abstract void writeValue(Object value, ByteBuffer out);
+        abstract Object readValue(ByteBuffer in, int offset);
+    }
+    
+    /**
+     * Codec for a fixed size value that may be declared as either a primitive 
+     * or its boxed type.  Primitive fields are accessed without boxing.
+     */
+    private static abstract class PrimitiveCodec extends FixedSizeCodec {
+        private final boolean primitive;
+        
+        PrimitiveCodec(Field field, Serializer<?> serializer, int size) {
+            super(field, serializer, size);
+            this.primitive = field.getType().isPrimitive();
+        }
+        
+        @Override
+        int prepare(Object obj, Object[] prepared, int index) throws Exception {
+            return primitive ? size() : super.prepare(obj, prepared, index);
+        }
+        
+        @Override
+        void write(Object obj, Object[] prepared, int index, ByteBuffer out) throws Exception {
+            if (primitive) 
+                writePrimitive(obj, out);
+            else 
+                super.write(obj, prepared, index, out);
+        }
+        
+        @Override
+        void read(Object obj, ByteBuffer in, int offset, int length) throws Exception {
+            if (!primitive) 
+                super.read(obj, in, offset, length);
+            else if (length == size()) 
+                readPrimitive(obj, in, offset);
+            else {
+                Object value = readSerialized(in, offset, length);
+                if (value != null)
+                    field.set(obj, value);
+            }
+        }
+        
+        abstract void writePrimitive(Object obj, ByteBuffer out) throws Exception;
+        abstract void readPrimitive(Object obj, ByteBuffer in, int offset) throws Exception;
+    }
+    
+    private static class LongCodec extends PrimitiveCodec {
+        LongCodec(Field field, Serializer<?> serializer) {
+            super(field, serializer, 8);
+        }
+        
+        void writePrimitive(Object obj, ByteBuffer out) throws Exception   { out.putLong(field.getLong(obj)); }
+        void writeValue(Object value, ByteBuffer out)                      { out.putLong((Long)value); }
+        void readPrimitive(Object obj, ByteBuffer in, int offset) throws Exception { field.setLong(obj, in.getLong(offset)); }
+        Object readValue(ByteBuffer in, int offset)                        { return in.getLong(offset); }
+    }
+    
+    private static class IntegerCodec extends PrimitiveCodec {
+        IntegerCodec(Field field, Serializer<?> serializer) {
+            super(field, serializer, 4);
+        }
+        
+        void writePrimitive(Object obj, ByteBuffer out) throws Exception   { out.putInt(field.getInt(obj)); }
+        void writeValue(Object value, ByteBuffer out)                      { out.putInt((Integer)value); }
+        void readPrimitive(Object obj, ByteBuffer in, int offset) throws Exception { field.setInt(obj, in.getInt(offset)); }
+        Object readValue(ByteBuffer in, int offset)                        { return in.getInt(offset); }
+    }
+    
+    private static class ShortCodec extends PrimitiveCodec {
+        ShortCodec(Field field, Serializer<?> serializer) {
+            super(field, serializer, 2);
+        }
+        
+        void writePrimitive(Object obj, ByteBuffer out) throws Exception   { out.putShort(field.getShort(obj)); }
+        void writeValue(Object value, ByteBuffer out)                      { out.putShort((Short)value); }
+        void readPrimitive(Object obj, ByteBuffer in, int offset) throws Exception { field.setShort(obj, in.getShort(offset)); }
+        Object readValue(ByteBuffer in, int offset)                        { return in.getShort(offset); }
+    }
+    
+    private static class ByteCodec extends PrimitiveCodec {
+        ByteCodec(Field field, Serializer<?> serializer) {
+            super(field, serializer, 1);
+        }
+        
+        void writePrimitive(Object obj, ByteBuffer out) throws Exception   { out.put(field.getByte(obj)); }
+        void writeValue(Object value, ByteBuffer out)                      { out.put((Byte)value); }
+        void readPrimitive(Object obj, ByteBuffer in, int offset) throws Exception { field.setByte(obj, in.get(offset)); }
+        Object readValue(ByteBuffer in, int offset)                        { return in.get(offset); }
+    }
+    
+    private static class BooleanCodec extends PrimitiveCodec {
+        BooleanCodec(Field field, Serializer<?> serializer) {
+            super(field, serializer, 1);
+        }
+        
+        void writePrimitive(Object obj, ByteBuffer out) throws Exception   { out.put(field.getBoolean(obj) ? (byte)1 : (byte)0); }
+        void writeValue(Object value, ByteBuffer out)                      { out.put((Boolean)value ? (byte)1 : (byte)0); }
+        void readPrimitive(Object obj, ByteBuffer in, int offset) throws Exception { field.setBoolean(obj, in.get(offset) == 1); }
+        Object readValue(ByteBuffer in, int offset)                        { return in.get(offset) == 1; }
+    }
+    
+    private static class UUIDCodec extends FixedSizeCodec {
+        UUIDCodec(Field field, Serializer<?> serializer) {
+            super(field, serializer, 16);
+        }
+        
+        void writeValue(Object value, ByteBuffer out) {
+            UUID uuid = (UUID)value;
+            out.putLong(uuid.getMostSignificantBits());
+            out.putLong(uuid.getLeastSignificantBits());
+        }
+        
+        Object readValue(ByteBuffer in, int offset) { 
+            return new UUID(in.getLong(offset), in.getLong(offset + 8)); 
+        }
+    }
+    
+    /**
+     * UTF-8 strings.  ASCII strings, which is what most row and column name 
+     * components are, are written char by char without an intermediate array.
+     */
+    private static class StringCodec extends ComponentCodec {
+        StringCodec(Field field) {
+            super(field);
+        }
+        
+        @Override
+        int prepare(Object obj, Object[] prepared, int index) throws Exception {
+            String value = (String)field.get(obj);
+            if (value == null)
+                return 0;
+            for (int i = 0; i < value.length(); i++) {
+                if (value.charAt(i) >= 0x80) {
+                    byte[] bytes = value.getBytes(Charsets.UTF_8);
+                    prepared[index] = bytes;
+                    return bytes.length;
+                }
+            }
+            prepared[index] = value;
+            return value.length();
+        }
+
+        @Override
+        void write(Object obj, Object[] prepared, int index, ByteBuffer out) {
+            Object value = prepared[index];
+            if (value instanceof byte[]) {
+                out.put((byte[])value);
+            }
+            else if (value != null) {
+                String str = (String)value;
+                int length = str.length();
+                if (out.hasArray()) {
+                    byte[] array = out.array();
+                    int offset = out.arrayOffset() + out.position();
+                    for (int i = 0; i < length; i++) 
+                        array[offset + i] = (byte)str.charAt(i);
+                    out.position(out.position() + length);
+                }
+                else {
+                    for (int i = 0; i < length; i++) 
+                        out.put((byte)str.charAt(i));
+                }
+            }
+        }
+
+        @Override
+        void read(Object obj, ByteBuffer in, int offset, int length) throws Exception {
+            if (in.hasArray()) {
+                field.set(obj, new String(in.array(), in.arrayOffset() + offset, length, Charsets.UTF_8));
+            }
+            else {
+                byte[] bytes = new byte[length];
+                ByteBuffer dup = in.duplicate();
+                dup.position(offset);
+                dup.get(bytes);
+                field.set(obj, new String(bytes, Charsets.UTF_8));
+            }
+        }
+        
+        @Override
+        boolean usesPrepared() {
+            return true;
+        }
+    }
+    
+    /**
+     * Any other type goes through the component's serializer
+     */
+    private static class SerializerCodec extends ComponentCodec {
+        private final ComponentSerializer<?> component;
+        
+        SerializerCodec(ComponentSerializer<?> component) {
+            super(component.getField());
+            this.component = component;
+        }
+        
+        @Override
+        int prepare(Object obj, Object[] prepared, int index) throws Exception {
+            ByteBuffer value = component.serialize(obj);
+            prepared[index] = value;
+            return value == null ? 0 : value.remaining();
+        }
+
+        @Override
+        void write(Object obj, Object[] prepared, int index, ByteBuffer out) {
+            ByteBuffer value = (ByteBuffer)prepared[index];
+            if (value != null)
+                out.put(value.duplicate());
+        }
+
+        @Override
+        void read(Object obj, ByteBuffer in, int offset, int length) throws Exception {
+            component.deserialize(obj, slice(in, offset, length));
+        }
+        
+        @Override
+        boolean usesPrepared() {
+            return true;
+        }
+    }
+    
+    private static ByteBuffer slice(ByteBuffer in, int offset, int length) {
+        ByteBuffer data = in.duplicate();
+        data.limit(offset + length);
+        data.position(offset);
+        return data;
+    }
+    
+    private static ComponentCodec compile(ComponentSerializer<?> component) {
+        Field field = component.getField();
+        Serializer<?> serializer = component.serializer;
+        Class<?> type = field.getType();
+        
+        if (serializer instanceof StringSerializer && type == String.class)
+            return new StringCodec(field);
+        if (serializer instanceof LongSerializer && (type == Long.class || type == long.class))
+            return new LongCodec(field, serializer);
+        if (serializer instanceof Int32Serializer && (type == Integer.class || type == int.class))
+            return new IntegerCodec(field, serializer);
+        if (serializer instanceof ShortSerializer && (type == Short.class || type == short.class))
+            return new ShortCodec(field, serializer);
+        if (serializer instanceof ByteSerializer && (type == Byte.class || type == byte.class))
+            return new ByteCodec(field, serializer);
+        if (serializer instanceof BooleanSerializer && (type == Boolean.class || type == boolean.class))
+            return new BooleanCodec(field, serializer);
+        if (serializer instanceof UUIDSerializer && type == UUID.class)
+            return new UUIDCodec(field, serializer);
+        return new SerializerCodec(component);
+    }
+    
     private final List<ComponentSerializer<?>> components;
     private final Class<T> clazz;
     private final int bufferSize;
+    private final ComponentCodec[] codecs;
+    private final boolean usesPrepared;
+    private final Constructor<T> constructor;
     
     public AnnotatedCompositeSerializer(Class<T> clazz, boolean includeParentFields) {
         this(clazz, DEFAULT_BUFFER_SIZE, includeParentFields);
@@ -89,6 +427,14 @@ public class AnnotatedCompositeSerializer<T> extends AbstractSerializer<T> {
 	}
 
     public AnnotatedCompositeSerializer(Class<T> clazz, int bufferSize, boolean includeParentFields) {
+        this(clazz, bufferSize, includeParentFields, true);
+    }
+    
+    /**
+     * @param compiled Use the compiled component codecs.  When false every component 
+     *                 is serialized through its Serializer using reflection.
+     */
+    public AnnotatedCompositeSerializer(Class<T> clazz, int bufferSize, boolean includeParentFields, boolean compiled) {
         this.clazz      = clazz;
         this.components = new ArrayList<ComponentSerializer<?>>();
         this.bufferSize = bufferSize;
@@ -102,6 +448,30 @@ public class AnnotatedCompositeSerializer<T> extends AbstractSerializer<T> {
         }
 
         Collections.sort(this.components);
+        
+        if (compiled) {
+            this.codecs = new ComponentCodec[components.size()];
+            boolean prepared = false;
+            for (int i = 0; i < codecs.length; i++) {
+                codecs[i] = compile(components.get(i));
+                prepared |= codecs[i].usesPrepared();
+            }
+            this.usesPrepared = prepared;
+            
+            Constructor<T> ctor;
+            try {
+                ctor = clazz.getDeclaredConstructor();
+                ctor.setAccessible(true);
+            } catch (NoSuchMethodException e) {
+                ctor = null;
+            }
+            this.constructor = ctor;
+        }
+        else {
+            this.codecs       = null;
+            this.usesPrepared = false;
+            this.constructor  = null;
+        }
     }
 
 	private List<Field> getFields(Class clazz, boolean recursuvely) {
@@ -117,6 +487,9 @@ public class AnnotatedCompositeSerializer<T> extends AbstractSerializer<T> {
 
     @Override
     public ByteBuffer toByteBuffer(T obj) {
+        if (codecs != null)
+            return toByteBufferCompiled(obj);
+        
         ByteBuffer bb = ByteBuffer.allocate(bufferSize);
         
         for (ComponentSerializer<?> serializer : components) {
@@ -149,8 +522,66 @@ public class AnnotatedCompositeSerializer<T> extends AbstractSerializer<T> {
         return bb;
     }
 
+    private ByteBuffer toByteBufferCompiled(T obj) {
+        try {
+            Object[] prepared = usesPrepared ? new Object[codecs.length] : null;
+            int size = 0;
+            for (int i = 0; i < codecs.length; i++) {
+                size += codecs[i].prepare(obj, prepared, i) + COMPONENT_OVERHEAD;
+            }
+            
+            ByteBuffer bb = ByteBuffer.allocate(size);
+            int start = 0;
+            for (int i = 0; i < codecs.length; i++) {
+                // Write the data: <length><data><0>.  The length is filled in once the data is written
+                bb.position(start + 2);
+                codecs[i].write(obj, prepared, i, bb);
+                bb.putShort(start, (short) (bb.position() - start - 2));
+                bb.put(END_OF_COMPONENT);
+                start = bb.position();
+            }
+            bb.flip();
+            return bb;
+        }
+        catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+    }
+    
+    private T fromByteBufferCompiled(ByteBuffer byteBuffer) {
+        try {
+            T obj = constructor != null ? constructor.newInstance() : createContents(clazz);
+            int position = byteBuffer.position();
+            int limit    = byteBuffer.limit();
+            for (ComponentCodec codec : codecs) {
+                if (position + COMPONENT_OVERHEAD > limit) {
+                    throw new RuntimeException("Missing component data in composite type");
+                }
+                int length = ((byteBuffer.get(position) & 0xFF) << 8) | (byteBuffer.get(position + 1) & 0xFF);
+                position += 2;
+                if (position + length >= limit) {
+                    throw new RuntimeException("Missing component data in composite type");
+                }
+                if (length > 0) {
+                    codec.read(obj, byteBuffer, position, length);
+                }
+                position += length;
+                if (byteBuffer.get(position++) != END_OF_COMPONENT) {
+                    throw new RuntimeException("Invalid composite column.  Expected END_OF_COMPONENT.");
+                }
+            }
+            return obj;
+        }
+        catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+    }
+
     @Override
     public T fromByteBuffer(ByteBuffer byteBuffer) {
+        if (codecs != null)
+            return fromByteBufferCompiled(byteBuffer);
+        
         byteBuffer = byteBuffer.duplicate();
         try {
             T obj = createContents(clazz);
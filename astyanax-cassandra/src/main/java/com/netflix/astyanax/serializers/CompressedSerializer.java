@@ -0,0 +1,211 @@
+/*******************************************************************************
+ * Copyright 2011 Netflix
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package com.netflix.astyanax.serializers;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+import org.xerial.snappy.Snappy;
+
+import com.google.common.base.Preconditions;
+import com.netflix.astyanax.Serializer;
+import com.netflix.astyanax.connectionpool.exceptions.SerializationException;
+
+/**
+ * Serializer that compresses the output of another serializer.  Values whose
+ * serialized size is below the threshold, or that don't get any smaller, are 
+ * stored as is.
+ * 
+ * The stored format is a single flag byte followed by either the uncompressed 
+ * value, a raw snappy block or, for DEFLATE, the 4 byte uncompressed length and 
+ * a raw deflate block.  Compression and decompression work directly on the
+ * arrays backing heap buffers (including sliced buffers) using per thread 
+ * scratch arrays and compressors, so the only allocations per value are the 
+ * result and whatever the inner serializer allocates.  
+ * 
+ * Note that this format is not compatible with SnappyStringSerializer or
+ * GzipStringSerializer.
+ * 
+ * @author elandau
+ *
+ * @param <T>
+ */
+public class CompressedSerializer<T> extends AbstractSerializer<T> {
+    public static final int DEFAULT_THRESHOLD = 128;
+    
+    public static enum Compression {
+        SNAPPY,
+        DEFLATE,
+    }
+    
+    private static final byte FLAG_NONE    = 0;
+    private static final byte FLAG_SNAPPY  = 1;
+    private static final byte FLAG_DEFLATE = 2;
+    
+    private static final ThreadLocal<Deflater> deflater = new ThreadLocal<Deflater>() {
+        @Override
+        protected Deflater initialValue() {
+            return new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+        }
+    };
+    
+    private static final ThreadLocal<Inflater> inflater = new ThreadLocal<Inflater>() {
+        @Override
+        protected Inflater initialValue() {
+            return new Inflater(true);
+        }
+    };
+    
+    private final Serializer<T> serializer;
+    private final Compression   compression;
+    private final int           threshold;
+    
+    public CompressedSerializer(Serializer<T> serializer, Compression compression, int threshold) {
+        Preconditions.checkNotNull(serializer);
+        Preconditions.checkNotNull(compression);
+        this.serializer  = serializer;
+        this.compression = compression;
+        this.threshold   = threshold;
+    }
+    
+    public static <T> CompressedSerializer<T> snappy(Serializer<T> serializer) {
+        return new CompressedSerializer<T>(serializer, Compression.SNAPPY, DEFAULT_THRESHOLD);
+    }
+    
+    public static <T> CompressedSerializer<T> deflate(Serializer<T> serializer) {
+        return new CompressedSerializer<T>(serializer, Compression.DEFLATE, DEFAULT_THRESHOLD);
+    }
+    
+    @Override
+    public ByteBuffer toByteBuffer(T obj) {
+        if (obj == null) {
+            return null;
+        }
+        
+        ByteBuffer value = serializer.toByteBuffer(obj);
+        if (value == null) {
+            return null;
+        }
+        
+        int length = value.remaining();
+        if (length >= threshold) {
+            byte[] input  = ScratchBuffers.arrayOf(value);
+            int    offset = ScratchBuffers.arrayOffset(value);
+            try {
+                switch (compression) {
+                case SNAPPY: {
+                    byte[] output = ScratchBuffers.output(Snappy.maxCompressedLength(length));
+                    int compressed = Snappy.compress(input, offset, length, output, 0);
+                    if (compressed + 1 < length) 
+                        return wrap(FLAG_SNAPPY, -1, output, compressed);
+                    break;
+                }
+                case DEFLATE: {
+                    // Anything larger than the input is of no use
+                    byte[] output = ScratchBuffers.output(length);
+                    Deflater d = deflater.get();
+                    try {
+                        d.setInput(input, offset, length);
+                        d.finish();
+                        int compressed = d.deflate(output, 0, length);
+                        if (d.finished() && compressed + 5 < length) 
+                            return wrap(FLAG_DEFLATE, length, output, compressed);
+                    }
+                    finally {
+                        d.reset();
+                    }
+                    break;
+                }
+                }
+            }
+            catch (IOException e) {
+                throw new SerializationException(e);
+            }
+        }
+        
+        ByteBuffer result = ByteBuffer.allocate(length + 1);
+        result.put(FLAG_NONE);
+        result.put(value.duplicate());
+        result.flip();
+        return result;
+    }
+    
+    private static ByteBuffer wrap(byte flag, int uncompressedLength, byte[] data, int length) {
+        ByteBuffer result = ByteBuffer.allocate(length + (uncompressedLength >= 0 ? 5 : 1));
+        result.put(flag);
+        if (uncompressedLength >= 0)
+            result.putInt(uncompressedLength);
+        result.put(data, 0, length);
+        result.flip();
+        return result;
+    }
+
+    @Override
+    public T fromByteBuffer(ByteBuffer byteBuffer) {
+        if (byteBuffer == null) {
+            return null;
+        }
+        if (!byteBuffer.hasRemaining()) {
+            throw new SerializationException("Missing compression flag");
+        }
+        
+        ByteBuffer data = byteBuffer.duplicate();
+        byte flag = data.get();
+        try {
+            switch (flag) {
+            case FLAG_NONE:
+                return serializer.fromByteBuffer(data.slice());
+                
+            case FLAG_SNAPPY: {
+                byte[] input  = ScratchBuffers.arrayOf(data);
+                int    offset = ScratchBuffers.arrayOffset(data);
+                byte[] output = new byte[Snappy.uncompressedLength(input, offset, data.remaining())];
+                Snappy.uncompress(input, offset, data.remaining(), output, 0);
+                return serializer.fromByteBuffer(ByteBuffer.wrap(output));
+            }
+                
+            case FLAG_DEFLATE: {
+                int length    = data.getInt();
+                byte[] input  = ScratchBuffers.arrayOf(data);
+                int    offset = ScratchBuffers.arrayOffset(data);
+                byte[] output = new byte[length];
+                Inflater i = inflater.get();
+                try {
+                    i.setInput(input, offset, data.remaining());
+                    if (i.inflate(output) != length) 
+                        throw new SerializationException("Truncated compressed value");
+                }
+                finally {
+                    i.reset();
+                }
+                return serializer.fromByteBuffer(ByteBuffer.wrap(output));
+            }
+                
+            default:
+                throw new SerializationException("Unknown compression flag " + flag);
+            }
+        }
+        catch (IOException e) {
+            throw new SerializationException(e);
+        }
+        catch (DataFormatException e) {
+            throw new SerializationException(e);
+        }
+    }
+}
@@ -5,6 +5,7 @@ import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.nio.charset.Charset;
+import java.util.Arrays;
 import java.util.zip.GZIPInputStream;
 import java.util.zip.GZIPOutputStream;
 
@@ -16,6 +17,10 @@ public class GzipStringSerializer extends AbstractSerializer<String> {
     private static final String UTF_8 = "UTF-8";
     private static final GzipStringSerializer instance = new GzipStringSerializer();
     private static final Charset charset = Charset.forName(UTF_8);
+    
+    // The size in the trailer isn't verified until the whole stream is read so
+    // never trust it beyond this multiple of the compressed length
+    private static final int MAX_SIZE_HINT_RATIO = 16;
 
     public static GzipStringSerializer get() {
         return instance;
@@ -46,22 +51,22 @@ public class GzipStringSerializer extends AbstractSerializer<String> {
         }
         
         GZIPInputStream gzipInputStream = null;
-        ByteArrayOutputStream baos = null;
         try {
-            gzipInputStream = new GZIPInputStream(
-                    new ByteArrayInputStream(byteBuffer.array(), 0,
-                            byteBuffer.limit()));
+            gzipInputStream = new GZIPInputStream(new ByteArrayInputStream(
+                    ScratchBuffers.arrayOf(byteBuffer), ScratchBuffers.arrayOffset(byteBuffer), byteBuffer.remaining()));
             
-            baos = new ByteArrayOutputStream();
-            for (int value = 0; value != -1;) {
-                value = gzipInputStream.read();
-                if (value != -1) {
-                    baos.write(value);
+            // The gzip trailer holds the uncompressed size (mod 2^32) so the output 
+            // buffer is normally sized right the first time and grows otherwise
+            byte[] buffer = ScratchBuffers.output(uncompressedSizeHint(byteBuffer) + 1);
+            int length = 0;
+            int count;
+            while ((count = gzipInputStream.read(buffer, length, buffer.length - length)) != -1) {
+                length += count;
+                if (length == buffer.length) {
+                    buffer = Arrays.copyOf(buffer, buffer.length * 2);
                 }
             }
-            gzipInputStream.close();
-            baos.close();
-            return new String(baos.toByteArray(), charset);
+            return new String(buffer, 0, length, charset);
         } catch (IOException e) {
             throw new RuntimeException("Error decompressing column data", e);
         } finally {
@@ -71,14 +76,21 @@ public class GzipStringSerializer extends AbstractSerializer<String> {
                 } catch (IOException e) {
                 }
             }
-            if (baos != null) {
-                try {
-                    baos.close();
-                } catch (IOException e) {
-                }
-            }
         }
     }
+    
+    private static int uncompressedSizeHint(ByteBuffer byteBuffer) {
+        int limit = byteBuffer.limit();
+        if (byteBuffer.remaining() < 4) 
+            return 0;
+        int size = (byteBuffer.get(limit - 4) & 0xff) 
+                | (byteBuffer.get(limit - 3) & 0xff) << 8
+                | (byteBuffer.get(limit - 2) & 0xff) << 16
+                | (byteBuffer.get(limit - 1) & 0xff) << 24;
+        if (size < 0 || size == Integer.MAX_VALUE)
+            return 0;
+        return (int)Math.min(size, (long)byteBuffer.remaining() * MAX_SIZE_HINT_RATIO);
+    }
 
     @Override
     public ComparatorType getComparatorType() {
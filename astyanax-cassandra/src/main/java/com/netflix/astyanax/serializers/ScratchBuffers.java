@@ -0,0 +1,88 @@
+/*******************************************************************************
+ * Copyright 2011 Netflix
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package com.netflix.astyanax.serializers;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Per thread scratch arrays used by the compressing serializers to avoid 
+ * allocating intermediate buffers for every value.  Arrays larger than 
+ * MAX_CACHED_SIZE are allocated on demand and not kept.
+ * 
+ * @author elandau
+ */
+final class ScratchBuffers {
+    private static final int MAX_CACHED_SIZE = 1024 * 1024;
+    private static final int MIN_SIZE        = 4096;
+    
+    private static class Holder extends ThreadLocal<byte[]> {
+        @Override
+        protected byte[] initialValue() {
+            return new byte[MIN_SIZE];
+        }
+        
+        byte[] get(int size) {
+            byte[] buffer = get();
+            if (buffer.length >= size)
+                return buffer;
+            if (size > MAX_CACHED_SIZE)
+                return new byte[size];
+            buffer = new byte[Math.min(MAX_CACHED_SIZE, Math.max(size, buffer.length * 2))];
+            set(buffer);
+            return buffer;
+        }
+    }
+    
+    private static final Holder INPUT  = new Holder();
+    private static final Holder OUTPUT = new Holder();
+    
+    private ScratchBuffers() {
+    }
+    
+    /**
+     * @return Scratch array of at least size bytes for holding input data
+     */
+    static byte[] input(int size) {
+        return INPUT.get(size);
+    }
+    
+    /**
+     * @return Scratch array of at least size bytes for holding output data
+     */
+    static byte[] output(int size) {
+        return OUTPUT.get(size);
+    }
+    
+    /**
+     * Return the array backing a heap buffer or copy the remaining bytes of a 
+     * direct buffer into the input scratch array.  Use arrayOffset() to find 
+     * the first byte.  The buffer's position is not changed.
+     */
+    static byte[] arrayOf(ByteBuffer buffer) {
+        if (buffer.hasArray())
+            return buffer.array();
+        byte[] array = input(buffer.remaining());
+        buffer.duplicate().get(array, 0, buffer.remaining());
+        return array;
+    }
+    
+    /**
+     * Offset of the first remaining byte in the array returned by arrayOf()
+     */
+    static int arrayOffset(ByteBuffer buffer) {
+        return buffer.hasArray() ? buffer.arrayOffset() + buffer.position() : 0;
+    }
+}
@@ -4,12 +4,15 @@ import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.util.Arrays;
 
 import org.apache.cassandra.db.marshal.UTF8Type;
 import org.apache.commons.codec.binary.StringUtils;
 import org.xerial.snappy.SnappyInputStream;
 import org.xerial.snappy.SnappyOutputStream;
 
+import com.google.common.base.Charsets;
+
 public class SnappyStringSerializer extends AbstractSerializer<String> {
 
     private static final SnappyStringSerializer instance = new SnappyStringSerializer();
@@ -43,22 +46,21 @@ public class SnappyStringSerializer extends AbstractSerializer<String> {
         }
         
         SnappyInputStream snappy = null;
-        ByteArrayOutputStream baos = null;
         try {
-            snappy = new SnappyInputStream(
-                    new ByteArrayInputStream(byteBuffer.array(), 0,
-                            byteBuffer.limit()));
+            snappy = new SnappyInputStream(new ByteArrayInputStream(
+                    ScratchBuffers.arrayOf(byteBuffer), ScratchBuffers.arrayOffset(byteBuffer), byteBuffer.remaining()));
             
-            baos = new ByteArrayOutputStream();
-            for (int value = 0; value != -1;) {
-                value = snappy.read();
-                if (value != -1) {
-                    baos.write(value);
+            // Read whole blocks into a reusable buffer, growing it as needed
+            byte[] buffer = ScratchBuffers.output(byteBuffer.remaining() * 4);
+            int length = 0;
+            int count;
+            while ((count = snappy.read(buffer, length, buffer.length - length)) != -1) {
+                length += count;
+                if (length == buffer.length) {
+                    buffer = Arrays.copyOf(buffer, buffer.length * 2);
                 }
             }
-            snappy.close();
-            baos.close();
-            return StringUtils.newStringUtf8(baos.toByteArray());
+            return new String(buffer, 0, length, Charsets.UTF_8);
         } catch (IOException e) {
             throw new RuntimeException("Error decompressing column data", e);
         } finally {
@@ -68,12 +70,6 @@ public class SnappyStringSerializer extends AbstractSerializer<String> {
                 } catch (IOException e) {
                 }
             }
-            if (baos != null) {
-                try {
-                    baos.close();
-                } catch (IOException e) {
-                }
-            }
         }
     }
 
@@ -1,8 +1,10 @@
 package com.netflix.astyanax.connectionpool.impl;
 
 import java.math.BigInteger;
+import java.nio.ByteBuffer;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 
@@ -15,9 +17,13 @@ import com.google.common.collect.Maps;
 import com.netflix.astyanax.connectionpool.Host;
 import com.netflix.astyanax.connectionpool.HostConnectionPool;
 import com.netflix.astyanax.connectionpool.LatencyScoreStrategy;
+import com.netflix.astyanax.partitioner.BigInteger127Partitioner;
 import com.netflix.astyanax.partitioner.LongBOPPartitioner;
+import com.netflix.astyanax.partitioner.Murmur3Partitioner;
+import com.netflix.astyanax.partitioner.Partitioner;
 import com.netflix.astyanax.test.TestClient;
 import com.netflix.astyanax.test.TestHostConnectionPool;
+import com.netflix.astyanax.test.TestTokenRange;
 
 public class HostConnectionPoolPartitionTest {
 
@@ -130,6 +136,54 @@ public class HostConnectionPoolPartitionTest {
 //        Assert.assertEquals(0, topology.getAllPools().getPools().size());
     }
 
+    @Test
+    public void testLongTokenTopology() {
+        assertTopologyLookup(Murmur3Partitioner.get());
+    }
+
+    @Test
+    public void testTypedTokenTopology() {
+        assertTopologyLookup(BigInteger127Partitioner.get());
+    }
+
+    private void assertTopologyLookup(Partitioner partitioner) {
+        LatencyScoreStrategy strategy = new SmaLatencyScoreStrategyImpl(10000, 60000, 100, 4.0);
+
+        TokenPartitionedTopology<TestClient> topology = new TokenPartitionedTopology<TestClient>(partitioner, strategy);
+        List<HostConnectionPool<TestClient>> pools = Lists.newArrayList();
+        for (Host host : TestTokenRange.makeRing(6, 3, 0, 
+                new BigInteger(partitioner.getMinToken()), new BigInteger(partitioner.getMaxToken()))) {
+            pools.add(new TestHostConnectionPool(host));
+        }
+        Assert.assertTrue(topology.setPools(pools));
+        Assert.assertEquals(6, topology.getPartitionCount());
+
+        List<BigInteger> tokens = Lists.newArrayList();
+        for (String token : topology.getPartitionNames()) {
+            tokens.add(new BigInteger(token));
+        }
+        Collections.sort(tokens);
+
+        // The owning partition is the first one with an end token >= the key's token 
+        for (int i = 0; i < 1000; i++) {
+            ByteBuffer key = ByteBuffer.wrap(("key" + i).getBytes());
+            BigInteger token = new BigInteger(partitioner.getTokenForKey(key));
+            BigInteger expected = tokens.get(0);
+            for (BigInteger candidate : tokens) {
+                if (candidate.compareTo(token) >= 0) {
+                    expected = candidate;
+                    break;
+                }
+            }
+            Assert.assertEquals(expected, topology.getPartition(key).id());
+            Assert.assertEquals(0, key.position());
+        }
+
+        // Shrinking the ring drops the partitions that are gone
+        Assert.assertTrue(topology.setPools(pools.subList(0, 1)));
+        Assert.assertEquals(3, topology.getPartitionCount());
+    }
+
     public TestHostConnectionPool makePool(int index) {
         return new TestHostConnectionPool(new Host("127.0.0." + index, 0));
     }
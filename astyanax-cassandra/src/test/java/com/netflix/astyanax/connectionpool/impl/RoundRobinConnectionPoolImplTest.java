@@ -15,15 +15,21 @@
  ******************************************************************************/
 package com.netflix.astyanax.connectionpool.impl;
 
+import com.google.common.util.concurrent.ListenableFuture;
+import com.netflix.astyanax.connectionpool.AsyncCallback;
+import com.netflix.astyanax.connectionpool.AsyncOperation;
 import com.netflix.astyanax.connectionpool.ConnectionPool;
 import com.netflix.astyanax.connectionpool.ConnectionPoolConfiguration;
 import com.netflix.astyanax.connectionpool.Host;
 import com.netflix.astyanax.connectionpool.HostConnectionPool;
+import com.netflix.astyanax.connectionpool.IdempotentOperation;
 import com.netflix.astyanax.connectionpool.Operation;
 import com.netflix.astyanax.connectionpool.OperationResult;
 import com.netflix.astyanax.connectionpool.exceptions.ConnectionException;
 import com.netflix.astyanax.connectionpool.exceptions.NoAvailableHostsException;
 import com.netflix.astyanax.connectionpool.exceptions.OperationException;
+import com.netflix.astyanax.connectionpool.exceptions.TimeoutException;
+import com.netflix.astyanax.retry.RetryNTimes;
 import com.netflix.astyanax.retry.RunOnce;
 import com.netflix.astyanax.test.TestClient;
 import com.netflix.astyanax.test.TestConnectionFactory;
@@ -31,6 +37,12 @@ import com.netflix.astyanax.test.TestConstants;
 import com.netflix.astyanax.test.TestHostType;
 import com.netflix.astyanax.test.TestOperation;
 
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
 import org.apache.log4j.Logger;
 import org.junit.Assert;
 import org.junit.Ignore;
@@ -56,6 +68,216 @@ public class RoundRobinConnectionPoolImplTest extends BaseConnectionPoolTest {
         return pool;
     }
 
+    @Test
+    public void testHedgedOperation() throws ConnectionException {
+        CountingConnectionPoolMonitor monitor = new CountingConnectionPoolMonitor();
+
+        ConnectionPoolConfigurationImpl config = new ConnectionPoolConfigurationImpl(
+                TestConstants.CLUSTER_NAME + "_" + TestConstants.KEYSPACE_NAME)
+            .setLatencyScoreStrategy(new SmaLatencyScoreStrategyImpl())
+            .setHedgeLatencyPercentile(0.9f);
+        config.initialize();
+
+        ConnectionPool<TestClient> pool = new RoundRobinConnectionPoolImpl<TestClient>(
+                config, new TestConnectionFactory(config, monitor), monitor);
+
+        pool.addHost(new Host("127.0.0.1", TestHostType.GOOD_IMMEDIATE.ordinal()), true);
+        pool.addHost(new Host("127.0.0.2", TestHostType.GOOD_IMMEDIATE.ordinal()), true);
+
+        // Build up some latency history for both hosts
+        for (int i = 0; i < 10; i++) {
+            pool.executeWithFailover(dummyOperation, RunOnce.get());
+        }
+        
+        // Only the first execution stalls, simulating a GC pause on one replica
+        class StallFirstOperation extends TestOperation implements IdempotentOperation {
+            private final AtomicInteger counter = new AtomicInteger();
+            private volatile Thread primaryThread;
+            
+            @Override
+            public String execute(TestClient client, ConnectionContext context) throws ConnectionException {
+                if (counter.incrementAndGet() == 1) {
+                    primaryThread = Thread.currentThread();
+                    think(2000);
+                }
+                return "RESULT";
+            }
+        }
+
+        StallFirstOperation operation = new StallFirstOperation();
+        long startTime = System.currentTimeMillis();
+        OperationResult<String> result = pool.executeWithFailover(operation, RunOnce.get());
+        long elapsed = System.currentTimeMillis() - startTime;
+        
+        Assert.assertEquals("RESULT", result.getResult());
+        Assert.assertTrue("Took " + elapsed, elapsed < 1000);
+        Assert.assertEquals(1, monitor.getHedgeSentCount());
+        Assert.assertEquals(1, monitor.getHedgeWonCount());
+        
+        // Only the hedge is handed off to another thread
+        Assert.assertSame(Thread.currentThread(), operation.primaryThread);
+        
+        pool.shutdown();
+    }
+
+    @Test
+    public void testHedgeLosingToPrimary() throws ConnectionException {
+        final List<Host> successHosts = new CopyOnWriteArrayList<Host>();
+        final List<Host> hedgeHosts   = new CopyOnWriteArrayList<Host>();
+        CountingConnectionPoolMonitor monitor = new CountingConnectionPoolMonitor() {
+            @Override
+            public void incOperationSuccess(Host host, long latency) {
+                successHosts.add(host);
+                super.incOperationSuccess(host, latency);
+            }
+
+            @Override
+            public void incHedgeSent(Host host) {
+                hedgeHosts.add(host);
+                super.incHedgeSent(host);
+            }
+        };
+
+        ConnectionPoolConfigurationImpl config = new ConnectionPoolConfigurationImpl(
+                TestConstants.CLUSTER_NAME + "_" + TestConstants.KEYSPACE_NAME)
+            .setLatencyScoreStrategy(new SmaLatencyScoreStrategyImpl())
+            .setHedgeLatencyPercentile(0.9f);
+        config.initialize();
+
+        ConnectionPool<TestClient> pool = new RoundRobinConnectionPoolImpl<TestClient>(
+                config, new TestConnectionFactory(config, monitor), monitor);
+
+        pool.addHost(new Host("127.0.0.1", TestHostType.GOOD_IMMEDIATE.ordinal()), true);
+        pool.addHost(new Host("127.0.0.2", TestHostType.GOOD_IMMEDIATE.ordinal()), true);
+
+        for (int i = 0; i < 10; i++) {
+            pool.executeWithFailover(dummyOperation, RunOnce.get());
+        }
+        successHosts.clear();
+
+        // The primary is slow enough to be hedged but the hedge is slower still
+        class SlowHedgeOperation extends TestOperation implements IdempotentOperation {
+            private final AtomicInteger counter = new AtomicInteger();
+
+            @Override
+            public String execute(TestClient client, ConnectionContext context) throws ConnectionException {
+                think(counter.incrementAndGet() == 1 ? 300 : 1000);
+                return "RESULT";
+            }
+        }
+
+        OperationResult<String> result = pool.executeWithFailover(new SlowHedgeOperation(), RunOnce.get());
+        Assert.assertEquals("RESULT", result.getResult());
+        Assert.assertEquals(1, hedgeHosts.size());
+        Assert.assertEquals(0, monitor.getHedgeWonCount());
+
+        // The success belongs to the primary host, not the host the hedge went to
+        Assert.assertEquals(1, successHosts.size());
+        Assert.assertFalse(successHosts.get(0).equals(hedgeHosts.get(0)));
+
+        pool.shutdown();
+    }
+
+    /**
+     * Async operation that completes with the same result as TestOperation
+     */
+    private static class TestAsyncOperation extends TestOperation implements AsyncOperation<TestClient, String> {
+        @Override
+        public void executeAsync(TestClient client, ConnectionContext state, AsyncCallback<String> callback)
+                throws ConnectionException {
+            callback.success(execute(client, state));
+        }
+    }
+
+    private ConnectionPool<TestClient> createAsyncPool(CountingConnectionPoolMonitor monitor, TestHostType... types) {
+        ConnectionPoolConfigurationImpl config = new ConnectionPoolConfigurationImpl(
+                TestConstants.CLUSTER_NAME + "_" + TestConstants.KEYSPACE_NAME)
+            .setAsyncThreadCount(2);
+        config.initialize();
+
+        ConnectionPool<TestClient> pool = new RoundRobinConnectionPoolImpl<TestClient>(
+                config, new TestConnectionFactory(config, monitor), monitor);
+        for (int i = 0; i < types.length; i++) {
+            pool.addHost(new Host("127.0.0." + (i + 1), types[i].ordinal()), true);
+        }
+        return pool;
+    }
+
+    @Test
+    public void testAsyncOperation() throws Exception {
+        CountingConnectionPoolMonitor monitor = new CountingConnectionPoolMonitor();
+        ConnectionPool<TestClient> pool = createAsyncPool(monitor, TestHostType.GOOD_IMMEDIATE);
+
+        OperationResult<String> result = pool.executeWithFailoverAsync(new TestAsyncOperation(), RunOnce.get())
+                .get(1, TimeUnit.SECONDS);
+        
+        Assert.assertEquals("RESULT", result.getResult());
+        Assert.assertEquals(1, monitor.getOperationSuccessCount());
+        Assert.assertEquals(monitor.getConnectionBorrowedCount(), monitor.getConnectionReturnedCount());
+        
+        pool.shutdown();
+    }
+
+    @Test
+    public void testAsyncFailover() throws Exception {
+        CountingConnectionPoolMonitor monitor = new CountingConnectionPoolMonitor();
+        ConnectionPool<TestClient> pool = createAsyncPool(monitor, TestHostType.LOST_CONNECTION, TestHostType.GOOD_IMMEDIATE);
+
+        // Round robin starts on either host so run enough operations to hit the bad one
+        for (int i = 0; i < 10; i++) {
+            OperationResult<String> result = pool.executeWithFailoverAsync(new TestAsyncOperation(), RunOnce.get())
+                    .get(1, TimeUnit.SECONDS);
+            Assert.assertEquals("RESULT", result.getResult());
+        }
+        
+        Assert.assertEquals(10, monitor.getOperationSuccessCount());
+        Assert.assertTrue(monitor.getFailoverCount() > 0);
+        
+        pool.shutdown();
+    }
+
+    @Test
+    public void testAsyncRetryExhausted() throws Exception {
+        CountingConnectionPoolMonitor monitor = new CountingConnectionPoolMonitor();
+        ConnectionPool<TestClient> pool = createAsyncPool(monitor, TestHostType.LOST_CONNECTION);
+
+        RetryNTimes retry = new RetryNTimes(2);
+        try {
+            pool.executeWithFailoverAsync(new TestAsyncOperation(), retry).get(1, TimeUnit.SECONDS);
+            Assert.fail();
+        }
+        catch (ExecutionException e) {
+            Assert.assertTrue(e.getCause() instanceof ConnectionException);
+        }
+        
+        Assert.assertEquals(2, retry.getAttemptCount());
+        Assert.assertEquals(0, monitor.getOperationSuccessCount());
+        
+        pool.shutdown();
+    }
+
+    @Test
+    public void testAsyncTimeout() throws Exception {
+        CountingConnectionPoolMonitor monitor = new CountingConnectionPoolMonitor();
+        ConnectionPool<TestClient> pool = createAsyncPool(monitor, TestHostType.SOCKET_TIMEOUT);
+
+        // The caller must not wait for the slow host
+        long startTime = System.currentTimeMillis();
+        ListenableFuture<OperationResult<String>> future = pool.executeWithFailoverAsync(new TestAsyncOperation(), RunOnce.get());
+        long elapsed = System.currentTimeMillis() - startTime;
+        Assert.assertTrue("Took " + elapsed, elapsed < 1000);
+        
+        try {
+            future.get(5, TimeUnit.SECONDS);
+            Assert.fail();
+        }
+        catch (ExecutionException e) {
+            Assert.assertTrue(e.getCause() instanceof TimeoutException);
+        }
+        
+        pool.shutdown();
+    }
+
     @Test
     public void testUncheckedException() {
         CountingConnectionPoolMonitor monitor = new CountingConnectionPoolMonitor();
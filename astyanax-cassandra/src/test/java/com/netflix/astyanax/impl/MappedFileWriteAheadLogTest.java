@@ -0,0 +1,198 @@
+package com.netflix.astyanax.impl;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import junit.framework.Assert;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.common.base.Charsets;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+import com.google.common.io.Files;
+import com.netflix.astyanax.MutationBatch;
+import com.netflix.astyanax.WriteAheadEntry;
+
+public class MappedFileWriteAheadLogTest {
+    private File directory;
+    
+    @Before
+    public void setUp() {
+        directory = Files.createTempDir();
+    }
+    
+    @After
+    public void tearDown() throws Exception {
+        for (File file : directory.listFiles())
+            file.delete();
+        directory.delete();
+    }
+    
+    @Test
+    public void testReplayLiveEntries() throws Exception {
+        MappedFileWriteAheadLog wal = new MappedFileWriteAheadLog.Builder(directory).withSegmentSize(4096).build();
+        List<WriteAheadEntry> entries = Lists.newArrayList();
+        for (int i = 0; i < 100; i++) {
+            WriteAheadEntry entry = wal.createEntry();
+            entry.writeMutation(new FakeMutation("mutation-" + i).batch);
+            entries.add(entry);
+        }
+        for (int i = 0; i < 100; i += 2) {
+            wal.removeEntry(entries.get(i));
+        }
+        Assert.assertNull(wal.readNextEntry());
+        wal.close();
+        
+        wal = new MappedFileWriteAheadLog.Builder(directory).withSegmentSize(4096).build();
+        Assert.assertEquals(50, wal.getReplayCount());
+        for (int i = 1; i < 100; i += 2) {
+            WriteAheadEntry entry = wal.readNextEntry();
+            FakeMutation mutation = new FakeMutation(null);
+            entry.readMutation(mutation.batch);
+            Assert.assertEquals("mutation-" + i, mutation.value);
+            wal.removeEntry(entry);
+        }
+        Assert.assertNull(wal.readNextEntry());
+        
+        // New writes go after the replayed segments were recycled
+        WriteAheadEntry entry = wal.createEntry();
+        entry.writeMutation(new FakeMutation("after").batch);
+        wal.close();
+        
+        wal = new MappedFileWriteAheadLog.Builder(directory).withSegmentSize(4096).build();
+        Assert.assertEquals(1, wal.getReplayCount());
+        FakeMutation mutation = new FakeMutation(null);
+        wal.readNextEntry().readMutation(mutation.batch);
+        Assert.assertEquals("after", mutation.value);
+        wal.close();
+    }
+    
+    @Test
+    public void testSegmentRecycling() throws Exception {
+        MappedFileWriteAheadLog wal = new MappedFileWriteAheadLog.Builder(directory)
+            .withSegmentSize(1024)
+            .withMaxFreeSegments(1)
+            .build();
+        
+        for (int i = 0; i < 1000; i++) {
+            WriteAheadEntry entry = wal.createEntry();
+            entry.writeMutation(new FakeMutation("mutation-" + i).batch);
+            wal.removeEntry(entry);
+        }
+        Assert.assertTrue(wal.getSegmentCount() <= 2);
+        Assert.assertEquals(wal.getSegmentCount(), directory.listFiles().length);
+        wal.close();
+        
+        wal = new MappedFileWriteAheadLog.Builder(directory).withSegmentSize(1024).build();
+        Assert.assertNull(wal.readNextEntry());
+        wal.close();
+    }
+    
+    @Test
+    public void testCorruptEntryStopsReplay() throws Exception {
+        MappedFileWriteAheadLog wal = new MappedFileWriteAheadLog.Builder(directory).withSegmentSize(4096).build();
+        for (int i = 0; i < 3; i++) {
+            wal.createEntry().writeMutation(new FakeMutation("mutation-" + i).batch);
+        }
+        wal.close();
+        
+        // Flip the last byte of the last entry's payload
+        File file = directory.listFiles()[0];
+        int lastEntryEnd = 12 + 3 * (17 + "mutation-0".length());
+        RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        raf.seek(lastEntryEnd - 1);
+        int b = raf.read();
+        raf.seek(lastEntryEnd - 1);
+        raf.write(b ^ 0xff);
+        raf.close();
+        
+        wal = new MappedFileWriteAheadLog.Builder(directory).withSegmentSize(4096).build();
+        Assert.assertEquals(2, wal.getReplayCount());
+        wal.close();
+    }
+    
+    @Test
+    public void testConcurrentWriters() throws Exception {
+        final MappedFileWriteAheadLog wal = new MappedFileWriteAheadLog.Builder(directory).withSegmentSize(64 * 1024).build();
+        final int threadCount = 8;
+        final int perThread   = 200;
+        final AtomicInteger errors = new AtomicInteger();
+        final CountDownLatch done = new CountDownLatch(threadCount);
+        for (int t = 0; t < threadCount; t++) {
+            final int thread = t;
+            new Thread() {
+                @Override
+                public void run() {
+                    try {
+                        for (int i = 0; i < perThread; i++) {
+                            WriteAheadEntry entry = wal.createEntry();
+                            entry.writeMutation(new FakeMutation(thread + "-" + i).batch);
+                            if (i % 2 == 0)
+                                wal.removeEntry(entry);
+                        }
+                    }
+                    catch (Exception e) {
+                        errors.incrementAndGet();
+                    }
+                    finally {
+                        done.countDown();
+                    }
+                }
+            }.start();
+        }
+        Assert.assertTrue(done.await(60, TimeUnit.SECONDS));
+        Assert.assertEquals(0, errors.get());
+        wal.close();
+        
+        MappedFileWriteAheadLog reopened = new MappedFileWriteAheadLog.Builder(directory).withSegmentSize(64 * 1024).build();
+        Set<String> values = Sets.newHashSet();
+        WriteAheadEntry entry;
+        while (null != (entry = reopened.readNextEntry())) {
+            FakeMutation mutation = new FakeMutation(null);
+            entry.readMutation(mutation.batch);
+            values.add(mutation.value);
+        }
+        Assert.assertEquals(threadCount * perThread / 2, values.size());
+        Assert.assertTrue(values.contains("0-1"));
+        Assert.assertFalse(values.contains("0-0"));
+        reopened.close();
+    }
+    
+    /**
+     * Mutation batch stand in that serializes to a single string
+     */
+    private static class FakeMutation implements InvocationHandler {
+        final MutationBatch batch;
+        String value;
+        
+        FakeMutation(String value) {
+            this.value = value;
+            this.batch = (MutationBatch)Proxy.newProxyInstance(MutationBatch.class.getClassLoader(), 
+                    new Class<?>[] { MutationBatch.class }, this);
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            if (method.getName().equals("serialize")) 
+                return ByteBuffer.wrap(value.getBytes(Charsets.UTF_8));
+            if (method.getName().equals("deserialize")) {
+                ByteBuffer data = (ByteBuffer)args[0];
+                value = new String(data.array(), data.position(), data.remaining(), Charsets.UTF_8);
+                return null;
+            }
+            throw new UnsupportedOperationException(method.getName());
+        }
+    }
+}
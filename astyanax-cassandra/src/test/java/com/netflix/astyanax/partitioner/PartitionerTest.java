@@ -1,6 +1,11 @@
 package com.netflix.astyanax.partitioner;
 
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
 import java.util.List;
+import java.util.Random;
+
+import junit.framework.Assert;
 
 import org.junit.Test;
 
@@ -36,4 +41,86 @@ public class PartitionerTest {
             System.out.println(range);
         }
     }
-}   
+    
+    @Test
+    public void testMurmur3TokenMatchesCassandra() {
+        org.apache.cassandra.dht.Murmur3Partitioner cassandra = new org.apache.cassandra.dht.Murmur3Partitioner();
+        Partitioner partitioner = Murmur3Partitioner.get();
+        
+        Random random = new Random(0);
+        for (int length = 0; length < 64; length++) {
+            for (int i = 0; i < 50; i++) {
+                byte[] bytes = new byte[length + 3];
+                random.nextBytes(bytes);
+                // Key in the middle of a larger buffer
+                ByteBuffer key = ByteBuffer.wrap(bytes, 2, length).slice();
+                Assert.assertEquals(cassandra.getToken(key).toString(), partitioner.getTokenForKey(key));
+                Assert.assertEquals(length, key.remaining());
+            }
+        }
+    }
+    
+    @Test
+    public void testRandomTokenMatchesCassandra() {
+        org.apache.cassandra.dht.RandomPartitioner cassandra = new org.apache.cassandra.dht.RandomPartitioner();
+        Partitioner partitioner = BigInteger127Partitioner.get();
+        
+        Random random = new Random(0);
+        for (int i = 0; i < 1000; i++) {
+            byte[] bytes = new byte[random.nextInt(40)];
+            random.nextBytes(bytes);
+            ByteBuffer key = ByteBuffer.wrap(bytes);
+            Token token = partitioner.getToken(key);
+            Assert.assertEquals(cassandra.getToken(key).toString(), token.toString());
+            Assert.assertEquals(token, partitioner.parseToken(token.toString()));
+        }
+    }
+    
+    @Test
+    public void testInt128Token() {
+        Random random = new Random(0);
+        BigInteger range = BigInteger.ONE.shiftLeft(127);
+        Int128Token previous = null;
+        for (int i = 0; i < 1000; i++) {
+            BigInteger value = new BigInteger(128, random).subtract(range);
+            Int128Token token = Int128Token.valueOf(value);
+            Assert.assertEquals(value, token.toBigInteger());
+            Assert.assertEquals(value.negate(), token.negate().toBigInteger());
+            Assert.assertEquals(value.subtract(BigInteger.ONE).max(range.negate()), 
+                    token.equals(Int128Token.MIN_VALUE) ? range.negate() : token.minusOne().toBigInteger());
+            if (previous != null) 
+                Assert.assertEquals(Integer.signum(previous.toBigInteger().compareTo(value)), 
+                        Integer.signum(previous.compareTo(token)));
+            previous = token;
+        }
+        
+        Assert.assertEquals(Int128Token.MAX_VALUE, Int128Token.MIN_VALUE.minusOne());
+        Assert.assertEquals(BigInteger.ONE.shiftLeft(64).subtract(BigInteger.ONE), 
+                Int128Token.valueOf(BigInteger.ONE.shiftLeft(64)).minusOne().toBigInteger());
+    }
+    
+    @Test
+    public void testTokenMinusOneWraps() {
+        Partitioner murmur = Murmur3Partitioner.get();
+        Assert.assertEquals(murmur.getMaxToken(), murmur.getTokenMinusOne(murmur.getMinToken()));
+        Assert.assertEquals("41", murmur.getTokenMinusOne("42"));
+        
+        Partitioner random = BigInteger127Partitioner.get();
+        Assert.assertEquals(random.getMaxToken(), random.getTokenMinusOne(random.getMinToken()));
+        Assert.assertEquals("18446744073709551615", random.getTokenMinusOne("18446744073709551616"));
+    }
+    
+    @Test
+    public void testSplitTokens() {
+        for (Partitioner partitioner : new Partitioner[] { Murmur3Partitioner.get(), BigInteger127Partitioner.get() }) {
+            List<Token> tokens = partitioner.splitTokens(partitioner.getMinimumToken(), partitioner.getMaximumToken(), 4);
+            Assert.assertEquals(5, tokens.size());
+            Assert.assertEquals(partitioner.getMinimumToken(), tokens.get(0));
+            Assert.assertEquals(partitioner.getMaximumToken(), tokens.get(4));
+            for (int i = 1; i < tokens.size(); i++) {
+                Assert.assertTrue(tokens.get(i - 1).compareTo(tokens.get(i)) < 0);
+            }
+            Assert.assertEquals(4, partitioner.splitTokenRange(4).size());
+        }
+    }
+}
@@ -2,9 +2,14 @@ package com.netflix.astyanax.serializers;
 
 import com.google.common.base.Strings;
 import com.netflix.astyanax.annotations.Component;
+
+import junit.framework.Assert;
+
 import org.junit.Test;
 
 import java.nio.ByteBuffer;
+import java.util.Date;
+import java.util.UUID;
 
 /**
  * Created with IntelliJ IDEA.
@@ -26,6 +31,77 @@ public class AnnotatedCompositeSerializerTest {
         ByteBuffer byteBuffer = serializer.toByteBuffer(foo);
     }
 
+    @Test
+    public void testCompiledMatchesReflective() {
+        AnnotatedCompositeSerializer<AllTypes> compiled   = new AnnotatedCompositeSerializer<AllTypes>(AllTypes.class, 128, false, true);
+        AnnotatedCompositeSerializer<AllTypes> reflective = new AnnotatedCompositeSerializer<AllTypes>(AllTypes.class, 128, false, false);
+
+        AllTypes full = new AllTypes();
+        full.string     = "h\u00e9llo w\u00f6rld";
+        full.ascii      = "plain";
+        full.boxedLong  = -5L;
+        full.primLong   = Long.MAX_VALUE;
+        full.boxedInt   = 12;
+        full.primInt    = -7;
+        full.primShort  = 3;
+        full.primByte   = 9;
+        full.primBool   = true;
+        full.uuid       = UUID.randomUUID();
+        full.date       = new Date(1234567L);
+
+        // Null values are written as empty components
+        AllTypes empty = new AllTypes();
+
+        for (AllTypes value : new AllTypes[] { full, empty }) {
+            ByteBuffer expected = reflective.toByteBuffer(value);
+            ByteBuffer actual   = compiled.toByteBuffer(value);
+            Assert.assertEquals(expected, actual);
+            Assert.assertEquals(value, compiled.fromByteBuffer(actual));
+            Assert.assertEquals(value, reflective.fromByteBuffer(actual));
+
+            // Decode from the middle of a larger direct buffer
+            ByteBuffer direct = ByteBuffer.allocateDirect(actual.remaining() + 10);
+            direct.position(5);
+            direct.put(actual.duplicate());
+            direct.position(5);
+            direct.limit(5 + actual.remaining());
+            Assert.assertEquals(value, compiled.fromByteBuffer(direct));
+            Assert.assertEquals(5, direct.position());
+        }
+    }
+
+    public static class AllTypes {
+        @Component(ordinal = 0)  String  string;
+        @Component(ordinal = 1)  String  ascii;
+        @Component(ordinal = 2)  Long    boxedLong;
+        @Component(ordinal = 3)  long    primLong;
+        @Component(ordinal = 4)  Integer boxedInt;
+        @Component(ordinal = 5)  int     primInt;
+        @Component(ordinal = 6)  short   primShort;
+        @Component(ordinal = 7)  byte    primByte;
+        @Component(ordinal = 8)  boolean primBool;
+        @Component(ordinal = 9)  UUID    uuid;
+        @Component(ordinal = 10) Date    date;
+
+        @Override
+        public boolean equals(Object obj) {
+            AllTypes other = (AllTypes) obj;
+            return eq(string, other.string) && eq(ascii, other.ascii) && eq(boxedLong, other.boxedLong)
+                && primLong == other.primLong && eq(boxedInt, other.boxedInt) && primInt == other.primInt
+                && primShort == other.primShort && primByte == other.primByte && primBool == other.primBool
+                && eq(uuid, other.uuid) && eq(date, other.date);
+        }
+
+        @Override
+        public int hashCode() {
+            return primInt;
+        }
+
+        private static boolean eq(Object a, Object b) {
+            return a == null ? b == null : a.equals(b);
+        }
+    }
+
     public static class Foo {
 
         @Component(ordinal = 0)
@@ -4,6 +4,7 @@ import java.lang.reflect.Field;
 import java.math.BigDecimal;
 import java.math.BigInteger;
 import java.nio.ByteBuffer;
+import java.util.List;
 
 import junit.framework.Assert;
 
@@ -15,6 +16,7 @@ import org.junit.Test;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.google.common.collect.Lists;
 import com.netflix.astyanax.annotations.Component;
 import com.netflix.astyanax.model.Composite;
 
@@ -75,6 +77,26 @@ public class SerializersTest {
 	    LOG.info(String.format("Compressed at ratio: %2f", (double)(origLength - compLength) / (double)origLength));
 	}
 	
+	@Test
+	public void testCompressedSerializerSizeHint() {
+	    GzipStringSerializer ser = new GzipStringSerializer();
+	    
+	    // Highly compressible values decode even though they exceed the capped size hint 
+	    String str = StringUtils.repeat("a", 100000);
+	    Assert.assertEquals(str, ser.fromByteBuffer(ser.toByteBuffer(str)));
+	    
+	    // A corrupt trailer claiming a huge uncompressed size fails on the trailer 
+	    // check rather than on allocating the claimed size
+	    ByteBuffer compressed = ser.toByteBuffer("short");
+	    compressed.putInt(compressed.limit() - 4, Integer.reverseBytes(Integer.MAX_VALUE - 16));
+	    try {
+	        ser.fromByteBuffer(compressed);
+	        Assert.fail();
+	    }
+	    catch (RuntimeException e) {
+	    }
+	}
+	
 	@Test
 	public void testSnappyCompressedSerializer() {
 	    SnappyStringSerializer ser = new SnappyStringSerializer();
@@ -90,6 +112,53 @@ public class SerializersTest {
         LOG.info(String.format("Compressed at ratio: %2f", (double)(origLength - compLength) / (double)origLength));
 	}
 	
+	@Test
+	public void testCompressedStringSerializersWithOffsets() {
+        String str = StringUtils.repeat("{The : 'quick', brown : 'fox', jumped : 'over', the : 'lazy cow'}", 100);
+        List<AbstractSerializer<String>> serializers = Lists.newArrayList();
+        serializers.add(GzipStringSerializer.get());
+        serializers.add(SnappyStringSerializer.get());
+        for (AbstractSerializer<String> ser : serializers) {
+            Assert.assertEquals(str, ser.fromByteBuffer(embed(ser.toByteBuffer(str), false)));
+            Assert.assertEquals(str, ser.fromByteBuffer(embed(ser.toByteBuffer(str), true)));
+        }
+	}
+	
+	@Test
+	public void testGenericCompressedSerializer() {
+        String str = StringUtils.repeat("{The : 'quick', brown : 'fox', jumped : 'over', the : 'lazy cow'}", 100);
+        for (CompressedSerializer.Compression compression : CompressedSerializer.Compression.values()) {
+            CompressedSerializer<String> ser = new CompressedSerializer<String>(StringSerializer.get(), compression, 128);
+            
+            ByteBuffer compressed = ser.toByteBuffer(str);
+            Assert.assertTrue(compressed.remaining() < str.length() / 4);
+            Assert.assertEquals(str, ser.fromByteBuffer(compressed));
+            Assert.assertEquals(str, ser.fromByteBuffer(embed(compressed, false)));
+            Assert.assertEquals(str, ser.fromByteBuffer(embed(compressed, true)));
+            
+            // Below the threshold values are stored as is
+            ByteBuffer small = ser.toByteBuffer("short");
+            Assert.assertEquals(6, small.remaining());
+            Assert.assertEquals("short", ser.fromByteBuffer(embed(small, true)));
+            
+            Assert.assertNull(ser.toByteBuffer(null));
+            Assert.assertNull(ser.fromByteBuffer(null));
+        }
+	}
+	
+	/**
+	 * Copy the buffer into the middle of a larger heap or direct buffer and return a slice
+	 */
+	private static ByteBuffer embed(ByteBuffer value, boolean direct) {
+	    int length = value.remaining();
+	    ByteBuffer buffer = direct ? ByteBuffer.allocateDirect(length + 20) : ByteBuffer.allocate(length + 20);
+	    buffer.position(10);
+	    buffer.put(value.duplicate());
+	    buffer.position(10);
+	    buffer.limit(10 + length);
+	    return buffer.slice();
+	}
+	
 	@Test
 	public void testBytesArraySerializer() {
 		BytesArraySerializer ser = new BytesArraySerializer();
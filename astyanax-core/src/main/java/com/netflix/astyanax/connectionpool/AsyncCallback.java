@@ -0,0 +1,42 @@
+/*******************************************************************************
+ * Copyright 2011 Netflix
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package com.netflix.astyanax.connectionpool;
+
+/**
+ * Completion callback for operations executed without blocking the calling
+ * thread. Exactly one of success or failure is called, typically from the
+ * I/O thread that completed the request, so implementations must not block.
+ * 
+ * @author elandau
+ * 
+ * @param <R>
+ */
+public interface AsyncCallback<R> {
+    /**
+     * Called once the operation completed successfully
+     * 
+     * @param result
+     */
+    void success(R result);
+
+    /**
+     * Called when the operation failed.  Connection level callbacks always
+     * receive a ConnectionException.
+     * 
+     * @param e
+     */
+    void failure(Exception e);
+}
@@ -0,0 +1,38 @@
+/*******************************************************************************
+ * Copyright 2011 Netflix
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package com.netflix.astyanax.connectionpool;
+
+/**
+ * Connection which can execute operations without tying up the calling
+ * thread.  The connection must remain borrowed until the callback has been
+ * called, at which point it may be returned to its pool.
+ * 
+ * @author elandau
+ * 
+ * @param <CL>
+ */
+public interface AsyncConnection<CL> extends Connection<CL> {
+    /**
+     * Execute an operation on the connection and call the callback once the
+     * result is available.  Failures are always reported to the callback as
+     * a ConnectionException and never thrown.
+     * 
+     * @param <R>
+     * @param op
+     * @param callback
+     */
+    <R> void executeAsync(AsyncOperation<CL, R> op, AsyncCallback<OperationResult<R>> callback);
+}
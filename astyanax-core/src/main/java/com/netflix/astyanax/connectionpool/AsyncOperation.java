@@ -0,0 +1,42 @@
+/*******************************************************************************
+ * Copyright 2011 Netflix
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package com.netflix.astyanax.connectionpool;
+
+import com.netflix.astyanax.connectionpool.exceptions.ConnectionException;
+
+/**
+ * Operation that can be executed on a non-blocking client.  The operation
+ * still exposes the blocking execute() from {@link Operation} so it can run
+ * on any connection, but an {@link AsyncConnection} will call executeAsync()
+ * and complete the callback directly from the I/O thread.
+ * 
+ * @author elandau
+ * 
+ * @param <CL>
+ * @param <R>
+ */
+public interface AsyncOperation<CL, R> extends Operation<CL, R> {
+    /**
+     * Start the operation on the client and return immediately.  The callback
+     * is called once the response has been received.
+     * 
+     * @param client - The client object
+     * @param state  - State and metadata specific to the connection
+     * @param callback
+     * @throws ConnectionException
+     */
+    void executeAsync(CL client, ConnectionContext state, AsyncCallback<R> callback) throws ConnectionException;
+}
@@ -18,6 +18,7 @@ package com.netflix.astyanax.connectionpool;
 import java.util.List;
 import java.util.Collection;
 
+import com.google.common.util.concurrent.ListenableFuture;
 import com.netflix.astyanax.connectionpool.exceptions.ConnectionException;
 import com.netflix.astyanax.connectionpool.exceptions.OperationException;
 import com.netflix.astyanax.connectionpool.impl.Topology;
@@ -98,6 +99,18 @@ public interface ConnectionPool<CL> {
     <R> OperationResult<R> executeWithFailover(Operation<CL, R> op, RetryPolicy retry) throws ConnectionException,
             OperationException;
 
+    /**
+     * Execute an operation with failover without blocking the calling thread.
+     * The connection pool must have been created with a connection factory
+     * that produces {@link AsyncConnection}s.  Errors, including exhausted
+     * retries, are reported through the returned future.
+     * 
+     * @param <R>
+     * @param op
+     * @param retry
+     */
+    <R> ListenableFuture<OperationResult<R>> executeWithFailoverAsync(AsyncOperation<CL, R> op, RetryPolicy retry);
+
     /**
      * Shut down the connection pool and terminate all existing connections
      */
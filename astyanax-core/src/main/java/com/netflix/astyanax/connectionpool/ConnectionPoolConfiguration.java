@@ -19,6 +19,7 @@ import java.util.List;
 import java.util.concurrent.ScheduledExecutorService;
 
 import com.netflix.astyanax.AuthenticationCredentials;
+import com.netflix.astyanax.connectionpool.impl.HostConnectionPoolType;
 import com.netflix.astyanax.partitioner.Partitioner;
 
 public interface ConnectionPoolConfiguration {
@@ -27,6 +28,11 @@ public interface ConnectionPoolConfiguration {
      */
     LatencyScoreStrategy getLatencyScoreStrategy();
 
+    /**
+     * @return Return the implementation to use for each host's connection pool
+     */
+    HostConnectionPoolType getHostConnectionPoolType();
+
     /**
      * TODO
      */
@@ -72,6 +78,20 @@ public interface ConnectionPoolConfiguration {
      */
     int getMaxFailoverCount();
 
+    /**
+     * @return Percentile (0.0 - 1.0) of a host's recent latency after which an
+     * idempotent operation is speculatively sent to the next host in its
+     * partition.  0 disables hedging.  Requires a latency score strategy
+     * that tracks samples.
+     */
+    float getHedgeLatencyPercentile();
+
+    /**
+     * @return Max number of threads used to dispatch async failover attempts and
+     * hedged operations.  Work beyond this limit is queued.
+     */
+    int getAsyncThreadCount();
+
     /**
      * @return Return the backoff strategy to use.
      * 
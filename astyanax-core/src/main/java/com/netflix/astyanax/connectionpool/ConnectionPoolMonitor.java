@@ -43,6 +43,21 @@ public interface ConnectionPoolMonitor {
 
     long getFailoverCount();
 
+    /**
+     * A hedged (speculative) request was sent to another host because the 
+     * first host did not respond within its expected latency
+     */
+    void incHedgeSent(Host host);
+
+    long getHedgeSentCount();
+
+    /**
+     * A hedged request completed before the original request
+     */
+    void incHedgeWon(Host host);
+
+    long getHedgeWonCount();
+
     /**
      * Succeeded in executing an operation
      * 
@@ -53,6 +68,16 @@ public interface ConnectionPoolMonitor {
 
     long getOperationSuccessCount();
 
+    /**
+     * An operation finished, successfully or not, after the given number of
+     * attempts.  Called once per operation, after incOperationSuccess or 
+     * incOperationFailure.
+     * 
+     * @param host      Host of the last attempt
+     * @param attempts
+     */
+    void onOperationComplete(Host host, int attempts);
+
     /**
      * Created a connection successfully
      */
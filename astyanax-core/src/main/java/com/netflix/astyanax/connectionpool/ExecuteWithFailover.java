@@ -15,8 +15,21 @@
  ******************************************************************************/
 package com.netflix.astyanax.connectionpool;
 
+import java.util.concurrent.Executor;
+
+import com.google.common.util.concurrent.ListenableFuture;
 import com.netflix.astyanax.connectionpool.exceptions.ConnectionException;
 
 public interface ExecuteWithFailover<CL, R> {
     OperationResult<R> tryOperation(Operation<CL, R> operation) throws ConnectionException;
+
+    /**
+     * Execute the operation on an {@link AsyncConnection} without blocking the
+     * calling thread.  Failover to the next host happens from the callback.
+     * 
+     * @param operation
+     * @param executor  Executor on which failover attempts are started so that
+     *                  borrowing a connection never blocks an I/O thread
+     */
+    ListenableFuture<OperationResult<R>> tryOperationAsync(AsyncOperation<CL, R> operation, Executor executor);
 }
@@ -128,6 +128,12 @@ public interface HostConnectionPool<CL> {
      */
     double getScore();
 
+    /**
+     * @return Return the recent operation latency (in nanoseconds) at the given
+     * percentile (0.0 - 1.0) or 0 if the latency is not being tracked
+     */
+    double getLatencyPercentile(double percentile);
+
     /**
      * Add a single latency sample after an operation on a connection belonging
      * to this pool
@@ -1,9 +1,13 @@
 package com.netflix.astyanax.connectionpool;
 
+import java.util.Map.Entry;
+
 import org.apache.commons.lang.StringUtils;
 
 import com.google.common.base.Function;
 import com.google.common.collect.Lists;
+import com.netflix.astyanax.connectionpool.impl.HistogramConnectionPoolMonitor;
+import com.netflix.astyanax.connectionpool.impl.LatencyHistogram;
 
 /**
  * MBean monitoring for a connection pool
@@ -13,11 +17,17 @@ import com.google.common.collect.Lists;
  */
 public class JmxConnectionPoolMonitor implements JmxConnectionPoolMonitorMBean {
     private final ConnectionPool<?> pool;
+    private final ConnectionPoolMonitor monitor;
 
     private final static int DEFAULT_PORT = 7102;
 
     public JmxConnectionPoolMonitor(ConnectionPool<?> pool) {
-        this.pool = pool;
+        this(pool, null);
+    }
+
+    public JmxConnectionPoolMonitor(ConnectionPool<?> pool, ConnectionPoolMonitor monitor) {
+        this.pool    = pool;
+        this.monitor = monitor;
     }
 
     @Override
@@ -49,4 +59,68 @@ public class JmxConnectionPoolMonitor implements JmxConnectionPoolMonitorMBean {
             }
         }), ",");
     }
+
+    @Override
+    public String getLatencyHistograms() {
+        HistogramConnectionPoolMonitor histograms = getHistogramMonitor();
+        if (histograms == null)
+            return "";
+        return histograms.getHistogramSummary();
+    }
+
+    @Override
+    public long getOperationLatencyPercentile(String operationType, double percentile) {
+        HistogramConnectionPoolMonitor histograms = getHistogramMonitor();
+        if (histograms == null)
+            return 0;
+        return getPercentile(histograms.getOperationLatency(operationType), percentile);
+    }
+
+    @Override
+    public long getHostLatencyPercentile(String host, double percentile) {
+        HistogramConnectionPoolMonitor histograms = getHistogramMonitor();
+        if (histograms == null)
+            return 0;
+        for (Entry<Host, LatencyHistogram.Snapshot> entry : histograms.getHostLatencies().entrySet()) {
+            Host candidate = entry.getKey();
+            if (host.equals(candidate.getName()) || host.equals(candidate.getHostName()) || host.equals(candidate.getIpAddress()))
+                return getPercentile(entry.getValue(), percentile);
+        }
+        return 0;
+    }
+
+    @Override
+    public long getBorrowWaitPercentile(double percentile) {
+        HistogramConnectionPoolMonitor histograms = getHistogramMonitor();
+        if (histograms == null)
+            return 0;
+        return getPercentile(histograms.getBorrowWaitTimes(), percentile);
+    }
+
+    @Override
+    public long getAttemptsPercentile(double percentile) {
+        HistogramConnectionPoolMonitor histograms = getHistogramMonitor();
+        if (histograms == null)
+            return 0;
+        return getPercentile(histograms.getAttempts(), percentile);
+    }
+
+    @Override
+    public void resetLatencyHistograms() {
+        HistogramConnectionPoolMonitor histograms = getHistogramMonitor();
+        if (histograms != null)
+            histograms.resetHistograms();
+    }
+
+    private HistogramConnectionPoolMonitor getHistogramMonitor() {
+        if (monitor instanceof HistogramConnectionPoolMonitor)
+            return (HistogramConnectionPoolMonitor) monitor;
+        return null;
+    }
+
+    private static long getPercentile(LatencyHistogram.Snapshot snapshot, double percentile) {
+        if (snapshot == null)
+            return 0;
+        return snapshot.getPercentile(percentile);
+    }
 }
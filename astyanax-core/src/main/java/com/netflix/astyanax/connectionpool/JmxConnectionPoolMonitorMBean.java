@@ -10,4 +10,32 @@ public interface JmxConnectionPoolMonitorMBean {
     boolean hasHost(String host);
 
     String getActiveHosts();
+
+    /**
+     * @return Summary of all latency histograms or an empty string if the pool's 
+     *         monitor does not keep histograms
+     */
+    String getLatencyHistograms();
+
+    /**
+     * @return Operation latency in nanoseconds at the percentile (0.0 - 1.0)
+     */
+    long getOperationLatencyPercentile(String operationType, double percentile);
+
+    /**
+     * @return Latency in nanoseconds of operations on the host at the percentile (0.0 - 1.0)
+     */
+    long getHostLatencyPercentile(String host, double percentile);
+
+    /**
+     * @return Time in milliseconds waiting to borrow a connection at the percentile (0.0 - 1.0)
+     */
+    long getBorrowWaitPercentile(double percentile);
+
+    /**
+     * @return Attempts per operation at the percentile (0.0 - 1.0)
+     */
+    long getAttemptsPercentile(double percentile);
+
+    void resetLatencyHistograms();
 }
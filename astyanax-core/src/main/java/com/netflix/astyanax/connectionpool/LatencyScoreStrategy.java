@@ -27,6 +27,12 @@ public interface LatencyScoreStrategy {
          */
         double getScore();
 
+        /**
+         * @return Latency (in the same unit as the samples) at the given
+         * percentile (0.0 - 1.0) of the recent samples, or 0 if there are none
+         */
+        double getLatencyPercentile(double percentile);
+
         /**
          * Reset the score and any internal stats
          */
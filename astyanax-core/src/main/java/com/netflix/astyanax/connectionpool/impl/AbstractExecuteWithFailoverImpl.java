@@ -15,15 +15,30 @@
  ******************************************************************************/
 package com.netflix.astyanax.connectionpool.impl;
 
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.SettableFuture;
+import com.netflix.astyanax.connectionpool.AsyncCallback;
+import com.netflix.astyanax.connectionpool.AsyncConnection;
+import com.netflix.astyanax.connectionpool.AsyncOperation;
 import com.netflix.astyanax.connectionpool.Connection;
 import com.netflix.astyanax.connectionpool.ConnectionPoolConfiguration;
 import com.netflix.astyanax.connectionpool.ConnectionPoolMonitor;
 import com.netflix.astyanax.connectionpool.ExecuteWithFailover;
 import com.netflix.astyanax.connectionpool.Host;
 import com.netflix.astyanax.connectionpool.HostConnectionPool;
+import com.netflix.astyanax.connectionpool.IdempotentOperation;
 import com.netflix.astyanax.connectionpool.Operation;
 import com.netflix.astyanax.connectionpool.OperationResult;
+import com.netflix.astyanax.connectionpool.exceptions.BadConfigurationException;
 import com.netflix.astyanax.connectionpool.exceptions.ConnectionException;
+import com.netflix.astyanax.connectionpool.exceptions.InterruptedOperationException;
 import com.netflix.astyanax.connectionpool.exceptions.IsRetryableException;
 import com.netflix.astyanax.connectionpool.exceptions.UnknownException;
 
@@ -34,11 +49,22 @@ public abstract class AbstractExecuteWithFailoverImpl<CL, R> implements ExecuteW
     private int attemptCounter = 0;
     private final ConnectionPoolMonitor monitor;
     protected final ConnectionPoolConfiguration config;
+    private final Executor hedgeExecutor;
     
     public AbstractExecuteWithFailoverImpl(ConnectionPoolConfiguration config, ConnectionPoolMonitor monitor)
             throws ConnectionException {
+        this(config, monitor, null);
+    }
+    
+    /**
+     * @param hedgeExecutor Executor on which hedged attempts are run.  Hedging is
+     *                      disabled if null.
+     */
+    public AbstractExecuteWithFailoverImpl(ConnectionPoolConfiguration config, ConnectionPoolMonitor monitor, 
+            Executor hedgeExecutor) throws ConnectionException {
     	this.monitor = monitor;
     	this.config = config;
+    	this.hedgeExecutor = hedgeExecutor;
         startTime = poolStartTime = System.currentTimeMillis();
     }
     
@@ -56,19 +82,44 @@ public abstract class AbstractExecuteWithFailoverImpl<CL, R> implements ExecuteW
 
 	abstract public boolean canRetry();
 	
+	/**
+	 * @return Pool of the host to send a hedged attempt to, without failing over
+	 *         to it, or null if the operation can't be hedged
+	 */
+	protected HostConnectionPool<CL> getHedgeConnectionPool() {
+	    return null;
+	}
+	
 	@Override
 	public OperationResult<R> tryOperation(Operation<CL, R> operation) throws ConnectionException {
 	    Operation<CL, R> filteredOperation = config.getOperationFilterFactory().attachFilter(operation);
 	    
+	    // Only the first attempt is hedged, failover takes care of the rest
+	    boolean hedge = hedgeExecutor != null 
+	                 && config.getHedgeLatencyPercentile() > 0 
+	                 && operation instanceof IdempotentOperation;
+	    
         while (true) {
             attemptCounter++;
             
             try {
                 connection = borrowConnection(filteredOperation);
                 startTime = System.currentTimeMillis();
-                OperationResult<R> result = connection.execute(filteredOperation);
+                Host host = getCurrentHost();
+                OperationResult<R> result;
+                if (hedge) {
+                    hedge = false;
+                    Hedge hedged = new Hedge(filteredOperation, connection, getCurrentHostConnectionPool());
+                    result = executeHedged(hedged);
+                    if (hedged.won)
+                        host = hedged.hedgePool.getHost();
+                }
+                else {
+                    result = connection.execute(filteredOperation);
+                }
                 result.setAttemptsCount(attemptCounter);
-                monitor.incOperationSuccess(getCurrentHost(), result.getLatency());
+                monitor.incOperationSuccess(host, result.getLatency());
+                monitor.onOperationComplete(host, attemptCounter);
                 return result;
             }
             catch (Exception e) {
@@ -80,6 +131,7 @@ public abstract class AbstractExecuteWithFailoverImpl<CL, R> implements ExecuteW
             	}
             	catch (ConnectionException ex) {
                     monitor.incOperationFailure(getCurrentHost(), ex);
+                    monitor.onOperationComplete(getCurrentHost(), attemptCounter);
                     throw ex;
             	}
             }
@@ -89,6 +141,254 @@ public abstract class AbstractExecuteWithFailoverImpl<CL, R> implements ExecuteW
         }
     }
 
+	/**
+	 * Execute the operation on the borrowed connection from the calling thread.
+	 * If it has not completed within the configured percentile of the host's
+	 * recent latency, the same operation is sent to the next host from the 
+	 * hedge executor.  A hedge that succeeds while the original attempt is 
+	 * still running closes the original connection to unblock the caller, 
+	 * which then returns the hedged result.
+	 */
+	private OperationResult<R> executeHedged(final Hedge hedge) throws ConnectionException {
+	    Operation<CL, R> operation = hedge.operation;
+	    HostConnectionPool<CL> primaryPool = hedge.primaryPool;
+	    long delay = (long)primaryPool.getLatencyPercentile(config.getHedgeLatencyPercentile());
+	    ScheduledExecutorService scheduler = config.getMaintainanceScheduler();
+	    if (delay <= 0 || scheduler == null) {
+	        // No latency history for this host yet
+	        return connection.execute(operation);
+	    }
+	    
+	    Future<?> timer;
+	    try {
+	        timer = scheduler.schedule(new Runnable() {
+	            @Override
+	            public void run() {
+	                try {
+	                    hedgeExecutor.execute(hedge);
+	                }
+	                catch (RejectedExecutionException e) {
+	                    // Can't hedge, the primary carries on alone
+	                }
+	            }
+	        }, delay, TimeUnit.NANOSECONDS);
+	    }
+	    catch (RejectedExecutionException e) {
+	        return connection.execute(operation);
+	    }
+	    
+	    OperationResult<R> result = null;
+	    ConnectionException primaryFailure = null;
+	    try {
+	        result = connection.execute(operation);
+	    }
+	    catch (ConnectionException e) {
+	        primaryFailure = e;
+	    }
+	    finally {
+	        timer.cancel(false);
+	    }
+	    
+	    SettableFuture<OperationResult<R>> hedgeResult;
+	    boolean aborted;
+	    synchronized (this) {
+	        hedge.primaryDone = true;
+	        hedgeResult = hedge.result;
+	        aborted = hedge.primaryAborted;
+	    }
+	    
+	    if (aborted) {
+	        // The hedge won and closed the original connection
+	        primaryPool.closeConnection(connection);
+	        connection = null;
+	    }
+	    else if (primaryFailure == null) {
+	        return result;
+	    }
+	    else if (hedgeResult == null) {
+	        throw primaryFailure;
+	    }
+	    
+	    // Either the hedge already won or the primary failed while it was in flight
+	    try {
+	        result = hedgeResult.get();
+	        if (primaryFailure != null)
+	            monitor.incFailover(primaryPool.getHost(), primaryFailure);
+	        monitor.incHedgeWon(hedge.hedgePool.getHost());
+	        hedge.won = true;
+	        return result;
+	    }
+	    catch (InterruptedException e) {
+	        Thread.currentThread().interrupt();
+	        throw new InterruptedOperationException("Interrupted waiting for hedged operation");
+	    }
+	    catch (ExecutionException e) {
+	        if (primaryFailure != null)
+	            throw primaryFailure;
+	        Throwable cause = e.getCause();
+	        if (cause instanceof ConnectionException)
+	            throw (ConnectionException)cause;
+	        throw new UnknownException(cause);
+	    }
+	}
+	
+	/**
+	 * Hedged attempt run on the hedge executor.  The hedge connection is
+	 * borrowed straight from the hedge host's pool so the failover state of
+	 * the calling thread is left alone.  The fields shared with the calling 
+	 * thread are guarded by the lock on this failover instance.
+	 */
+	private class Hedge implements Runnable {
+	    private final Operation<CL, R> operation;
+	    private final Connection<CL> primaryConnection;
+	    private final HostConnectionPool<CL> primaryPool;
+	    
+	    // Guarded by the failover instance
+	    private boolean primaryDone = false;
+	    private boolean primaryAborted = false;
+	    private SettableFuture<OperationResult<R>> result;
+	    private HostConnectionPool<CL> hedgePool;
+	    
+	    // Only used by the calling thread
+	    private boolean won = false;
+	    
+	    Hedge(Operation<CL, R> operation, Connection<CL> primaryConnection, HostConnectionPool<CL> primaryPool) {
+	        this.operation         = operation;
+	        this.primaryConnection = primaryConnection;
+	        this.primaryPool       = primaryPool;
+	    }
+	    
+        @Override
+        public void run() {
+            HostConnectionPool<CL> pool;
+            synchronized (AbstractExecuteWithFailoverImpl.this) {
+                if (primaryDone)
+                    return;
+                pool = getHedgeConnectionPool();
+            }
+            if (pool == null || pool == primaryPool)
+                return;
+            
+            Connection<CL> hedgeConnection;
+            try {
+                hedgeConnection = pool.borrowConnection(config.getConnectTimeout());
+            }
+            catch (ConnectionException e) {
+                // Can't hedge, just wait for the primary
+                return;
+            }
+            
+            SettableFuture<OperationResult<R>> future = SettableFuture.create();
+            synchronized (AbstractExecuteWithFailoverImpl.this) {
+                if (primaryDone) {
+                    pool.returnConnection(hedgeConnection);
+                    return;
+                }
+                hedgePool = pool;
+                result    = future;
+            }
+            monitor.incHedgeSent(pool.getHost());
+            
+            try {
+                future.set(hedgeConnection.execute(operation));
+            }
+            catch (Exception e) {
+                monitor.incFailover(pool.getHost(), e);
+                future.setException(e);
+                return;
+            }
+            finally {
+                pool.returnConnection(hedgeConnection);
+            }
+            
+            synchronized (AbstractExecuteWithFailoverImpl.this) {
+                if (!primaryDone) {
+                    primaryAborted = true;
+                    primaryConnection.close();
+                }
+            }
+        }
+	}
+	
+	@Override
+	public ListenableFuture<OperationResult<R>> tryOperationAsync(AsyncOperation<CL, R> operation, Executor executor) {
+	    SettableFuture<OperationResult<R>> future = SettableFuture.create();
+	    
+	    // Filters that don't preserve the async contract are skipped
+	    Operation<CL, R> filteredOperation = config.getOperationFilterFactory().attachFilter(operation);
+	    if (filteredOperation instanceof AsyncOperation) 
+	        tryOperationAsync((AsyncOperation<CL, R>) filteredOperation, executor, future);
+	    else 
+	        tryOperationAsync(operation, executor, future);
+	    return future;
+	}
+	
+	private void tryOperationAsync(final AsyncOperation<CL, R> operation, final Executor executor, 
+	        final SettableFuture<OperationResult<R>> future) {
+        attemptCounter++;
+        
+        try {
+            connection = borrowConnection(operation);
+            if (!(connection instanceof AsyncConnection)) {
+                throw new BadConfigurationException("connection", connection.getClass().getName(), AsyncConnection.class.getName());
+            }
+        }
+        catch (Exception e) {
+            onAsyncFailure(e, operation, executor, future);
+            return;
+        }
+        
+        startTime = System.currentTimeMillis();
+        ((AsyncConnection<CL>) connection).executeAsync(operation, new AsyncCallback<OperationResult<R>>() {
+            @Override
+            public void success(OperationResult<R> result) {
+                result.setAttemptsCount(attemptCounter);
+                monitor.incOperationSuccess(getCurrentHost(), result.getLatency());
+                monitor.onOperationComplete(getCurrentHost(), attemptCounter);
+                releaseConnection();
+                future.set(result);
+            }
+
+            @Override
+            public void failure(Exception e) {
+                onAsyncFailure(e, operation, executor, future);
+            }
+        });
+	}
+	
+	private void onAsyncFailure(Exception e, final AsyncOperation<CL, R> operation, final Executor executor, 
+	        final SettableFuture<OperationResult<R>> future) {
+        ConnectionException ce = (e instanceof ConnectionException) ? (ConnectionException) e
+                : new UnknownException(e);
+        try {
+            informException(ce);
+            monitor.incFailover(ce.getHost(), ce);
+        }
+        catch (ConnectionException ex) {
+            monitor.incOperationFailure(getCurrentHost(), ex);
+            monitor.onOperationComplete(getCurrentHost(), attemptCounter);
+            releaseConnection();
+            future.setException(ex);
+            return;
+        }
+        
+        releaseConnection();
+        
+        // Borrowing the next connection may block so never do it on the thread 
+        // that completed the previous attempt
+        try {
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    tryOperationAsync(operation, executor, future);
+                }
+            });
+        }
+        catch (Exception rejected) {
+            future.setException(ce);
+        }
+	}
+	
 	protected void releaseConnection() {
         if (connection != null) {
 	    	connection.getHostConnectionPool().returnConnection(connection);
@@ -22,12 +22,23 @@ import java.util.Comparator;
 import java.util.List;
 import java.util.Set;
 import java.util.Map.Entry;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 import org.cliffc.high_scale_lib.NonBlockingHashMap;
 
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Sets;
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.SettableFuture;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.netflix.astyanax.connectionpool.AsyncOperation;
 import com.netflix.astyanax.connectionpool.ConnectionFactory;
 import com.netflix.astyanax.connectionpool.ConnectionPool;
 import com.netflix.astyanax.connectionpool.ConnectionPoolConfiguration;
@@ -60,6 +71,11 @@ public abstract class AbstractHostPartitionConnectionPool<CL> implements Connect
     protected final ConnectionPoolMonitor                            monitor;
     protected final Topology<CL>                                     topology;
     protected final Partitioner                                      partitioner;
+    
+    // Created on first use since most pools never run async operations or hedges
+    private final Object                                             asyncExecutorLock = new Object();
+    private volatile ExecutorService                                 asyncExecutor;
+    private boolean                                                  isShutdown = false;
 
     public AbstractHostPartitionConnectionPool(ConnectionPoolConfiguration config, ConnectionFactory<CL> factory,
             ConnectionPoolMonitor monitor) {
@@ -70,10 +86,42 @@ public abstract class AbstractHostPartitionConnectionPool<CL> implements Connect
         this.topology   = new TokenPartitionedTopology<CL>(config.getPartitioner(), config.getLatencyScoreStrategy());
         this.partitioner = config.getPartitioner();
     }
+    
+    /**
+     * @return Executor for async failover and retries, created on first use
+     */
+    protected ExecutorService getAsyncExecutor() {
+        ExecutorService executor = asyncExecutor;
+        if (executor != null)
+            return executor;
+        
+        synchronized (asyncExecutorLock) {
+            if (asyncExecutor == null) {
+                ThreadPoolExecutor newExecutor = new ThreadPoolExecutor(config.getAsyncThreadCount(), config.getAsyncThreadCount(), 
+                        60, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(), new ThreadFactoryBuilder().setDaemon(true)
+                        .setNameFormat("AstyanaxAsyncFailover-" + config.getName() + "-%d").build());
+                newExecutor.allowCoreThreadTimeOut(true);
+                // Reject everything once the pool is shut down
+                if (isShutdown)
+                    newExecutor.shutdown();
+                asyncExecutor = newExecutor;
+            }
+            return asyncExecutor;
+        }
+    }
+    
+    /**
+     * @return Executor for hedged attempts or null if hedging is disabled
+     */
+    protected Executor getHedgeExecutor() {
+        if (config.getHedgeLatencyPercentile() > 0)
+            return getAsyncExecutor();
+        return null;
+    }
 
     @Override
     public void start() {
-        ConnectionPoolMBeanManager.getInstance().registerMonitor(config.getName(), this);
+        ConnectionPoolMBeanManager.getInstance().registerMonitor(config.getName(), this, monitor);
 
         String seeds = config.getSeeds();
         if (seeds != null && !seeds.isEmpty()) {
@@ -103,11 +151,22 @@ public abstract class AbstractHostPartitionConnectionPool<CL> implements Connect
 
         config.getLatencyScoreStrategy().shutdown();
         config.shutdown();
+        synchronized (asyncExecutorLock) {
+            isShutdown = true;
+            if (asyncExecutor != null)
+                asyncExecutor.shutdownNow();
+        }
     }
 
     protected HostConnectionPool<CL> newHostConnectionPool(Host host, ConnectionFactory<CL> factory,
             ConnectionPoolConfiguration config) {
-        return new SimpleHostConnectionPool<CL>(host, factory, monitor, config, this);
+        switch (config.getHostConnectionPoolType()) {
+        case RING_BUFFER:
+            return new RingBufferHostConnectionPool<CL>(host, factory, monitor, config, this);
+        case SIMPLE:
+        default:
+            return new SimpleHostConnectionPool<CL>(host, factory, monitor, config, this);
+        }
     }
 
     @Override
@@ -269,6 +328,65 @@ public abstract class AbstractHostPartitionConnectionPool<CL> implements Connect
         throw lastException;
     }
 
+    @Override
+    public <R> ListenableFuture<OperationResult<R>> executeWithFailoverAsync(AsyncOperation<CL, R> op, RetryPolicy retry) {
+        SettableFuture<OperationResult<R>> future = SettableFuture.create();
+        retry.begin();
+        executeWithFailoverAsync(op, retry, future);
+        return future;
+    }
+    
+    private <R> void executeWithFailoverAsync(final AsyncOperation<CL, R> op, final RetryPolicy retry, 
+            final SettableFuture<OperationResult<R>> future) {
+        ListenableFuture<OperationResult<R>> attempt;
+        try {
+            ExecuteWithFailover<CL, R> failover = newExecuteWithFailover(op);
+            attempt = failover.tryOperationAsync(op, getAsyncExecutor());
+        }
+        catch (ConnectionException e) {
+            attempt = Futures.immediateFailedFuture(e);
+        }
+        
+        Futures.addCallback(attempt, new FutureCallback<OperationResult<R>>() {
+            @Override
+            public void onSuccess(OperationResult<R> result) {
+                retry.success();
+                future.set(result);
+            }
+
+            @Override
+            public void onFailure(Throwable t) {
+                if (!(t instanceof ConnectionException) || t instanceof OperationException) {
+                    if (t instanceof Exception)
+                        retry.failure((Exception) t);
+                    future.setException(t);
+                    return;
+                }
+                
+                // The retry policy may sleep so never call it on the I/O thread
+                final ConnectionException ce = (ConnectionException) t;
+                try {
+                    getAsyncExecutor().execute(new Runnable() {
+                        @Override
+                        public void run() {
+                            if (retry.allowRetry()) {
+                                executeWithFailoverAsync(op, retry, future);
+                            }
+                            else {
+                                retry.failure(ce);
+                                future.setException(ce);
+                            }
+                        }
+                    });
+                }
+                catch (Exception e) {
+                    retry.failure(ce);
+                    future.setException(ce);
+                }
+            }
+        });
+    }
+
     /**
      * Return a new failover context. The context captures the connection pool
      * state and implements the necessary failover logic.
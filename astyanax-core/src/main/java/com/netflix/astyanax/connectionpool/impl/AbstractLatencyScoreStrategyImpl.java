@@ -1,6 +1,8 @@
 package com.netflix.astyanax.connectionpool.impl;
 
 import java.util.Collections;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.Comparator;
 import java.util.Iterator;
 import java.util.List;
@@ -76,6 +78,41 @@ public abstract class AbstractLatencyScoreStrategyImpl implements LatencyScoreSt
         return instance;
     }
     
+    /**
+     * Return the value at the given percentile (0.0 - 1.0) of a sorted
+     * array of samples
+     * 
+     * @param sorted
+     * @param percentile
+     * @return
+     */
+    protected static double getPercentile(long[] sorted, double percentile) {
+        if (sorted.length == 0)
+            return 0.0;
+        int index = (int)Math.ceil(percentile * sorted.length) - 1;
+        return sorted[Math.min(sorted.length - 1, Math.max(0, index))];
+    }
+    
+    /**
+     * Copy samples into a sorted array
+     * 
+     * @param samples
+     * @return
+     */
+    protected static long[] toSortedArray(Collection<Long> samples) {
+        long[] sorted = new long[samples.size()];
+        int i = 0;
+        for (Long sample : samples) {
+            if (i == sorted.length)
+                break;
+            sorted[i++] = sample;
+        }
+        if (i < sorted.length)
+            sorted = Arrays.copyOf(sorted, i);
+        Arrays.sort(sorted);
+        return sorted;
+    }
+    
     /**
      * Template method for creating a new latency tracking instance for a host
      * @return
@@ -0,0 +1,199 @@
+/*******************************************************************************
+ * Copyright 2011 Netflix
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package com.netflix.astyanax.connectionpool.impl;
+
+import java.util.AbstractQueue;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import com.google.common.collect.Lists;
+
+/**
+ * Bounded lock free pool of idle elements with thread affinity.
+ *
+ * Elements live in a fixed array of slots.  A thread that takes an element
+ * remembers the slot it came from and puts the element back into the same
+ * slot when it is returned, so the next take from that thread will most
+ * likely find the element it last used.  Taking and returning are a single
+ * CAS on the slot plus a CAS on the count of available elements.  Nothing is
+ * allocated per operation, other than when a thread has to block waiting for
+ * an element.
+ *
+ * This is not a general purpose queue.  There is no ordering, put() and
+ * offer(timeout) never block and iterator() returns a read only snapshot.
+ *
+ * @author elandau
+ *
+ * @param <E>
+ */
+public class AffinityRingBuffer<E> extends AbstractQueue<E> implements BlockingQueue<E> {
+    private final AtomicReferenceArray<E> slots;
+    private final int                     mask;
+
+    /**
+     * One permit per element in the buffer.  An element is always placed
+     * before its permit is released so a thread holding a permit is guaranteed
+     * to find an element.
+     */
+    private final Semaphore               available = new Semaphore(0);
+
+    /**
+     * Slot last used by each thread
+     */
+    private final ThreadLocal<int[]>      lastSlot  = new ThreadLocal<int[]>() {
+        @Override
+        protected int[] initialValue() {
+            return new int[] { (int) Thread.currentThread().getId() };
+        }
+    };
+
+    public AffinityRingBuffer(int capacity) {
+        int size = 1;
+        while (size < capacity)
+            size <<= 1;
+        this.slots = new AtomicReferenceArray<E>(size);
+        this.mask  = size - 1;
+    }
+
+    @Override
+    public boolean offer(E e) {
+        if (e == null)
+            throw new NullPointerException();
+
+        int[] last  = lastSlot.get();
+        int   start = last[0];
+        for (int i = 0; i <= mask; i++) {
+            int index = (start + i) & mask;
+            if (slots.get(index) == null && slots.compareAndSet(index, null, e)) {
+                last[0] = index;
+                available.release();
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public E poll() {
+        if (!available.tryAcquire())
+            return null;
+        return takeSlot();
+    }
+
+    @Override
+    public E poll(long timeout, TimeUnit unit) throws InterruptedException {
+        if (!available.tryAcquire(timeout, unit))
+            return null;
+        return takeSlot();
+    }
+
+    @Override
+    public E take() throws InterruptedException {
+        available.acquire();
+        return takeSlot();
+    }
+
+    /**
+     * Remove an element from the slots.  Must only be called while holding
+     * a permit.
+     */
+    private E takeSlot() {
+        int[] last  = lastSlot.get();
+        int   start = last[0];
+        while (true) {
+            for (int i = 0; i <= mask; i++) {
+                int index = (start + i) & mask;
+                E e = slots.get(index);
+                if (e != null && slots.compareAndSet(index, e, null)) {
+                    last[0] = index;
+                    return e;
+                }
+            }
+        }
+    }
+
+    @Override
+    public E peek() {
+        for (int i = 0; i <= mask; i++) {
+            E e = slots.get(i);
+            if (e != null)
+                return e;
+        }
+        return null;
+    }
+
+    /**
+     * Does not block.  Throws IllegalStateException if the buffer is full.
+     */
+    @Override
+    public void put(E e) {
+        add(e);
+    }
+
+    /**
+     * Does not wait for space to free up
+     */
+    @Override
+    public boolean offer(E e, long timeout, TimeUnit unit) {
+        return offer(e);
+    }
+
+    @Override
+    public int size() {
+        return available.availablePermits();
+    }
+
+    @Override
+    public int remainingCapacity() {
+        return mask + 1 - size();
+    }
+
+    @Override
+    public int drainTo(Collection<? super E> c) {
+        return drainTo(c, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public int drainTo(Collection<? super E> c, int maxElements) {
+        int count = 0;
+        E e;
+        while (count < maxElements && (e = poll()) != null) {
+            c.add(e);
+            count++;
+        }
+        return count;
+    }
+
+    /**
+     * @return Read only snapshot of the elements currently in the buffer
+     */
+    @Override
+    public Iterator<E> iterator() {
+        List<E> snapshot = Lists.newArrayList();
+        for (int i = 0; i <= mask; i++) {
+            E e = slots.get(i);
+            if (e != null)
+                snapshot.add(e);
+        }
+        return Collections.unmodifiableList(snapshot).iterator();
+    }
+}
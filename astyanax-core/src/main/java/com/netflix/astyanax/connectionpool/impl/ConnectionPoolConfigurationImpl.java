@@ -48,6 +48,8 @@ public class ConnectionPoolConfigurationImpl implements ConnectionPoolConfigurat
     public static final int DEFAULT_INIT_PER_PARTITION = 0;
     public static final int DEFAULT_PORT = 9160;
     public static final int DEFAULT_FAILOVER_COUNT = -1;
+    public static final float DEFAULT_HEDGE_LATENCY_PERCENTILE = 0.0f;
+    public static final int DEFAULT_ASYNC_THREAD_COUNT = 10;
     public static final int DEFAULT_MAX_CONNS = 1;
     public static final int DEFAULT_LATENCY_AWARE_WINDOW_SIZE = 100;
     public static final float DEFAULT_LATENCY_AWARE_SENTINEL_COMPARE = 0.768f;
@@ -82,6 +84,8 @@ public class ConnectionPoolConfigurationImpl implements ConnectionPoolConfigurat
     private int socketTimeout                    = DEFAULT_SOCKET_TIMEOUT;
     private int connectTimeout                   = DEFAULT_CONNECT_TIMEOUT;
     private int maxFailoverCount                 = DEFAULT_FAILOVER_COUNT;
+    private float hedgeLatencyPercentile         = DEFAULT_HEDGE_LATENCY_PERCENTILE;
+    private int asyncThreadCount                 = DEFAULT_ASYNC_THREAD_COUNT;
     private int latencyAwareWindowSize           = DEFAULT_LATENCY_AWARE_WINDOW_SIZE;
     private float latencyAwareSentinelCompare    = DEFAULT_LATENCY_AWARE_SENTINEL_COMPARE;
     private float latencyAwareBadnessThreshold   = DEFAULT_LATENCY_AWARE_BADNESS_THRESHOLD;
@@ -104,6 +108,7 @@ public class ConnectionPoolConfigurationImpl implements ConnectionPoolConfigurat
     private String seeds = null;
     private RetryBackoffStrategy hostRetryBackoffStrategy = null;
     private LatencyScoreStrategy latencyScoreStrategy     = new EmptyLatencyScoreStrategyImpl();
+    private HostConnectionPoolType hostConnectionPoolType = HostConnectionPoolType.SIMPLE;
     private BadHostDetector badHostDetector               = DEFAULT_BAD_HOST_DETECTOR;
     private AuthenticationCredentials credentials         = null;
     private OperationFilterFactory filterFactory          = EmptyOperationFilterFactory.getInstance();
@@ -124,6 +129,57 @@ public class ConnectionPoolConfigurationImpl implements ConnectionPoolConfigurat
         this.hostRetryBackoffStrategy = new ExponentialRetryBackoffStrategy(this);
     }
 
+    /**
+     * Copy of an initialized configuration under a different name.  The copy 
+     * shares the executors, latency score strategy and other helpers of the 
+     * original, which remains responsible for shutting them down.
+     * 
+     * @param name
+     * @param config
+     */
+    public ConnectionPoolConfigurationImpl(String name, ConnectionPoolConfiguration config) {
+        this(name);
+        setPort(config.getPort())
+            .setMaxConnsPerHost(config.getMaxConnsPerHost())
+            .setInitConnsPerHost(config.getInitConnsPerHost())
+            .setMaxConns(config.getMaxConns())
+            .setMaxTimeoutWhenExhausted(config.getMaxTimeoutWhenExhausted())
+            .setMaxFailoverCount(config.getMaxFailoverCount())
+            .setHedgeLatencyPercentile(config.getHedgeLatencyPercentile())
+            .setAsyncThreadCount(config.getAsyncThreadCount())
+            .setSeeds(config.getSeeds())
+            .setLocalDatacenter(config.getLocalDatacenter())
+            .setSocketTimeout(config.getSocketTimeout())
+            .setConnectTimeout(config.getConnectTimeout())
+            .setConnectionLimiterWindowSize(config.getConnectionLimiterWindowSize())
+            .setConnectionLimiterMaxPendingCount(config.getConnectionLimiterMaxPendingCount())
+            .setLatencyAwareWindowSize(config.getLatencyAwareWindowSize())
+            .setLatencyAwareSentinelCompare(config.getLatencyAwareSentinelCompare())
+            .setLatencyAwareBadnessThreshold(config.getLatencyAwareBadnessThreshold())
+            .setLatencyAwareUpdateInterval(config.getLatencyAwareUpdateInterval())
+            .setLatencyAwareResetInterval(config.getLatencyAwareResetInterval())
+            .setBlockedThreadThreshold(config.getBlockedThreadThreshold())
+            .setMinHostInPoolRatio(config.getMinHostInPoolRatio())
+            .setMaxPendingConnectionsPerHost(config.getMaxPendingConnectionsPerHost())
+            .setMaxBlockedThreadsPerHost(config.getMaxBlockedThreadsPerHost())
+            .setTimeoutWindow(config.getTimeoutWindow())
+            .setMaxTimeoutCount(config.getMaxTimeoutCount())
+            .setRetrySuspendWindow(config.getRetrySuspendWindow())
+            .setRetryMaxDelaySlice(config.getRetryMaxDelaySlice())
+            .setRetryDelaySlice(config.getRetryDelaySlice())
+            .setMaxOperationsPerConnection(config.getMaxOperationsPerConnection())
+            .setLatencyScoreStrategy(config.getLatencyScoreStrategy())
+            .setHostConnectionPoolType(config.getHostConnectionPoolType())
+            .setBadHostDetector(config.getBadHostDetector())
+            .setRetryBackoffStrategy(config.getRetryBackoffStrategy())
+            .setAuthenticationCredentials(config.getAuthenticationCredentials())
+            .setOperationFilterFactory(config.getOperationFilterFactory())
+            .setPartitioner(config.getPartitioner())
+            .setSSLConnectionContext(config.getSSLConnectionContext())
+            .setMaintainanceScheduler(config.getMaintainanceScheduler())
+            .setHostReconnectExecutor(config.getHostReconnectExecutor());
+    }
+
     @Override
     public void initialize() {
         if (partitioner == null) {
@@ -337,6 +393,26 @@ public class ConnectionPoolConfigurationImpl implements ConnectionPoolConfigurat
         return this;
     }
 
+    @Override
+    public float getHedgeLatencyPercentile() {
+        return this.hedgeLatencyPercentile;
+    }
+
+    public ConnectionPoolConfigurationImpl setHedgeLatencyPercentile(float percentile) {
+        this.hedgeLatencyPercentile = percentile;
+        return this;
+    }
+
+    @Override
+    public int getAsyncThreadCount() {
+        return this.asyncThreadCount;
+    }
+
+    public ConnectionPoolConfigurationImpl setAsyncThreadCount(int asyncThreadCount) {
+        this.asyncThreadCount = asyncThreadCount;
+        return this;
+    }
+
     @Override
     public int getMaxConns() {
         return this.maxConns;
@@ -487,6 +563,16 @@ public class ConnectionPoolConfigurationImpl implements ConnectionPoolConfigurat
         return this;
     }
 
+    @Override
+    public HostConnectionPoolType getHostConnectionPoolType() {
+        return hostConnectionPoolType;
+    }
+
+    public ConnectionPoolConfigurationImpl setHostConnectionPoolType(HostConnectionPoolType type) {
+        this.hostConnectionPoolType = type;
+        return this;
+    }
+
     @Override
     public BadHostDetector getBadHostDetector() {
         return badHostDetector;
@@ -11,6 +11,7 @@ import org.slf4j.LoggerFactory;
 
 import com.google.common.collect.Maps;
 import com.netflix.astyanax.connectionpool.ConnectionPool;
+import com.netflix.astyanax.connectionpool.ConnectionPoolMonitor;
 import com.netflix.astyanax.connectionpool.JmxConnectionPoolMonitor;
 import com.netflix.astyanax.connectionpool.JmxConnectionPoolMonitorMBean;
 
@@ -36,6 +37,10 @@ public class ConnectionPoolMBeanManager {
     }
 
     public synchronized void registerMonitor(String name, ConnectionPool<?> pool) {
+        registerMonitor(name, pool, null);
+    }
+
+    public synchronized void registerMonitor(String name, ConnectionPool<?> pool, ConnectionPoolMonitor monitor) {
 
         String monitorName = generateMonitorName(name);
 
@@ -44,7 +49,7 @@ public class ConnectionPoolMBeanManager {
             try {
                 LOG.info("Registering mbean: " + monitorName);
                 ObjectName oName = new ObjectName(monitorName);
-                mbean = new JmxConnectionPoolMonitor(pool);
+                mbean = new JmxConnectionPoolMonitor(pool, monitor);
                 monitors.put(monitorName, mbean);
                 mbs.registerMBean(mbean, oName);
 
@@ -58,7 +63,9 @@ public class ConnectionPoolMBeanManager {
 
     public synchronized void unregisterMonitor(String name, ConnectionPool<?> pool) {
         String monitorName = generateMonitorName(name);
-        monitors.remove(monitorName);
+        // Pools that were never started have nothing to unregister
+        if (monitors.remove(monitorName) == null)
+            return;
         try {
             mbs.unregisterMBean(new ObjectName(monitorName));
         }
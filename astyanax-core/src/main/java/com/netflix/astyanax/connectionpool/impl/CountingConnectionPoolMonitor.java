@@ -32,6 +32,8 @@ public class CountingConnectionPoolMonitor implements ConnectionPoolMonitor {
     private AtomicLong connectionReturnCount  = new AtomicLong();
     
     private AtomicLong operationFailoverCount = new AtomicLong();
+    private AtomicLong hedgeSentCount         = new AtomicLong();
+    private AtomicLong hedgeWonCount          = new AtomicLong();
     
     private AtomicLong hostAddedCount         = new AtomicLong();
     private AtomicLong hostRemovedCount       = new AtomicLong();
@@ -107,6 +109,10 @@ public class CountingConnectionPoolMonitor implements ConnectionPoolMonitor {
         return this.operationSuccessCount.get();
     }
 
+    @Override
+    public void onOperationComplete(Host host, int attempts) {
+    }
+
     @Override
     public void incConnectionCreated(Host host) {
         this.connectionCreateCount.incrementAndGet();
@@ -176,6 +182,26 @@ public class CountingConnectionPoolMonitor implements ConnectionPoolMonitor {
         return this.operationFailoverCount.get();
     }
 
+    @Override
+    public void incHedgeSent(Host host) {
+        this.hedgeSentCount.incrementAndGet();
+    }
+
+    @Override
+    public long getHedgeSentCount() {
+        return this.hedgeSentCount.get();
+    }
+
+    @Override
+    public void incHedgeWon(Host host) {
+        this.hedgeWonCount.incrementAndGet();
+    }
+
+    @Override
+    public long getHedgeWonCount() {
+        return this.hedgeWonCount.get();
+    }
+
     @Override
     public void onHostAdded(Host host, HostConnectionPool<?> pool) {
         LOG.info("AddHost: " + host.getHostName());
@@ -274,6 +300,8 @@ public class CountingConnectionPoolMonitor implements ConnectionPoolMonitor {
                     .append(",optimeout="  ).append(operationTimeoutCount.get())
                     .append(",timeout="    ).append(socketTimeoutCount.get())
                     .append(",failover="   ).append(operationFailoverCount.get())
+                    .append(",hedged="     ).append(hedgeSentCount.get())
+                    .append(",hedgewon="   ).append(hedgeWonCount.get())
                     .append(",nohosts="    ).append(noHostsCount.get())
                     .append(",unknown="    ).append(unknownErrorCount.get())
                     .append(",interrupted=").append(interruptedCount.get())
@@ -47,6 +47,7 @@ public class EmaLatencyScoreStrategyImpl extends AbstractLatencyScoreStrategyImp
         return new Instance() {
             private final LinkedBlockingQueue<Long> latencies = new LinkedBlockingQueue<Long>(N);
             private volatile double cachedScore = 0.0d;
+            private volatile long[] lastWindow  = new long[0];
     
             @Override
             public void addSample(long sample) {
@@ -65,9 +66,19 @@ public class EmaLatencyScoreStrategyImpl extends AbstractLatencyScoreStrategyImp
                 return cachedScore;
             }
     
+            /**
+             * Samples are drained on every update so the percentile is taken
+             * from the samples consumed by the last update
+             */
+            @Override
+            public double getLatencyPercentile(double percentile) {
+                return getPercentile(lastWindow, percentile);
+            }
+    
             @Override
             public void reset() {
                 cachedScore = 0.0;
+                lastWindow  = new long[0];
                 latencies.clear();
             }
     
@@ -79,6 +90,9 @@ public class EmaLatencyScoreStrategyImpl extends AbstractLatencyScoreStrategyImp
                 Double ema = cachedScore;
                 ArrayList<Long> samples = Lists.newArrayList();
                 latencies.drainTo(samples);
+                if (!samples.isEmpty()) {
+                    lastWindow = toSortedArray(samples);
+                }
                 if (samples.size() == 0) {
                     samples.add(0L);
                 }                    
@@ -0,0 +1,186 @@
+/*******************************************************************************
+ * Copyright 2011 Netflix
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package com.netflix.astyanax.connectionpool.impl;
+
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.ConcurrentMap;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Maps;
+import com.netflix.astyanax.connectionpool.Host;
+
+/**
+ * Connection pool monitor that keeps latency distributions on top of the
+ * counts kept by {@link CountingConnectionPoolMonitor}:
+ * 
+ * - Operation latency per operation type, in nanoseconds.  Operation types are
+ *   recorded by calling {@link #recordOperationLatency(String, long)}, 
+ *   usually from a keyspace tracer.
+ * - Operation latency per host, in nanoseconds
+ * - Time spent waiting to borrow a connection, in milliseconds
+ * - Attempts per operation, including failovers
+ * 
+ * Histograms are cumulative until {@link #resetHistograms()} is called.
+ * 
+ * @author elandau
+ */
+public class HistogramConnectionPoolMonitor extends CountingConnectionPoolMonitor {
+    private final ConcurrentMap<String, LatencyHistogram> operationLatency = Maps.newConcurrentMap();
+    private final ConcurrentMap<Host,   LatencyHistogram> hostLatency      = Maps.newConcurrentMap();
+    private final LatencyHistogram borrowWait = new LatencyHistogram();
+    private final LatencyHistogram attempts   = new LatencyHistogram();
+
+    public HistogramConnectionPoolMonitor() {
+    }
+
+    /**
+     * Record the latency of a single operation of the given type
+     * 
+     * @param operationType
+     * @param latency       Latency in nanoseconds
+     */
+    public void recordOperationLatency(String operationType, long latency) {
+        getHistogram(operationLatency, operationType).record(latency);
+    }
+
+    @Override
+    public void incOperationSuccess(Host host, long latency) {
+        super.incOperationSuccess(host, latency);
+        getHistogram(hostLatency, host).record(latency);
+    }
+
+    @Override
+    public void incConnectionBorrowed(Host host, long delay) {
+        super.incConnectionBorrowed(host, delay);
+        borrowWait.record(delay);
+    }
+
+    @Override
+    public void onOperationComplete(Host host, int attempts) {
+        super.onOperationComplete(host, attempts);
+        this.attempts.record(attempts);
+    }
+
+    @Override
+    public void onHostRemoved(Host host) {
+        super.onHostRemoved(host);
+        hostLatency.remove(host);
+    }
+
+    /**
+     * @return Latency distribution (nanoseconds) for each operation type recorded so far
+     */
+    public Map<String, LatencyHistogram.Snapshot> getOperationLatencies() {
+        return getSnapshots(operationLatency);
+    }
+
+    /**
+     * @return Latency distribution (nanoseconds) for one operation type, or null if 
+     *         no operation of that type was recorded
+     */
+    public LatencyHistogram.Snapshot getOperationLatency(String operationType) {
+        LatencyHistogram histogram = operationLatency.get(operationType);
+        return histogram == null ? null : histogram.getSnapshot();
+    }
+
+    /**
+     * @return Latency distribution (nanoseconds) of successful operations per host
+     */
+    public Map<Host, LatencyHistogram.Snapshot> getHostLatencies() {
+        return getSnapshots(hostLatency);
+    }
+
+    /**
+     * @return Latency distribution (nanoseconds) for one host, or null if no operation 
+     *         completed on the host
+     */
+    public LatencyHistogram.Snapshot getHostLatency(Host host) {
+        LatencyHistogram histogram = hostLatency.get(host);
+        return histogram == null ? null : histogram.getSnapshot();
+    }
+
+    /**
+     * @return Distribution of time spent waiting to borrow a connection (milliseconds)
+     */
+    public LatencyHistogram.Snapshot getBorrowWaitTimes() {
+        return borrowWait.getSnapshot();
+    }
+
+    /**
+     * @return Distribution of attempts per operation
+     */
+    public LatencyHistogram.Snapshot getAttempts() {
+        return attempts.getSnapshot();
+    }
+
+    public void resetHistograms() {
+        for (LatencyHistogram histogram : operationLatency.values()) {
+            histogram.reset();
+        }
+        for (LatencyHistogram histogram : hostLatency.values()) {
+            histogram.reset();
+        }
+        borrowWait.reset();
+        attempts.reset();
+    }
+
+    /**
+     * @return Human readable summary of all histograms
+     */
+    public String getHistogramSummary() {
+        StringBuilder sb = new StringBuilder()
+            .append("Borrow[").append(borrowWait).append("]")
+            .append(", Attempts[").append(attempts).append("]");
+        for (Entry<String, LatencyHistogram.Snapshot> entry : getOperationLatencies().entrySet()) {
+            sb.append(", ").append(entry.getKey()).append("[").append(entry.getValue()).append("]");
+        }
+        for (Entry<Host, LatencyHistogram.Snapshot> entry : getHostLatencies().entrySet()) {
+            sb.append(", ").append(entry.getKey().getName()).append("[").append(entry.getValue()).append("]");
+        }
+        return sb.toString();
+    }
+
+    @Override
+    public String toString() {
+        return new StringBuilder()
+            .append("HistogramConnectionPoolMonitor(")
+            .append(super.toString())
+            .append(", ")
+            .append(getHistogramSummary())
+            .append(")")
+            .toString();
+    }
+
+    private static <K> LatencyHistogram getHistogram(ConcurrentMap<K, LatencyHistogram> histograms, K key) {
+        LatencyHistogram histogram = histograms.get(key);
+        if (histogram == null) {
+            histogram = new LatencyHistogram();
+            LatencyHistogram existing = histograms.putIfAbsent(key, histogram);
+            if (existing != null)
+                histogram = existing;
+        }
+        return histogram;
+    }
+
+    private static <K> Map<K, LatencyHistogram.Snapshot> getSnapshots(Map<K, LatencyHistogram> histograms) {
+        ImmutableMap.Builder<K, LatencyHistogram.Snapshot> builder = ImmutableMap.builder();
+        for (Entry<K, LatencyHistogram> entry : histograms.entrySet()) {
+            builder.put(entry.getKey(), entry.getValue().getSnapshot());
+        }
+        return builder.build();
+    }
+}
@@ -0,0 +1,28 @@
+/*******************************************************************************
+ * Copyright 2011 Netflix
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package com.netflix.astyanax.connectionpool.impl;
+
+/**
+ * Implementation used for the per host connection pools
+ * 
+ * SIMPLE      - Idle connections are kept in a LinkedBlockingQueue
+ * RING_BUFFER - Idle connections are kept in a lock free ring buffer with 
+ *               thread affinity.  Better suited to many application threads 
+ *               sharing a small number of connections per host.
+ */
+public enum HostConnectionPoolType {
+    SIMPLE, RING_BUFFER
+}
@@ -0,0 +1,204 @@
+/*******************************************************************************
+ * Copyright 2011 Netflix
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package com.netflix.astyanax.connectionpool.impl;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock free histogram of non negative long values, typically latencies.
+ *
+ * Values are counted in log linear buckets: every power of two is split into
+ * 16 equal sub buckets so any reported value is within ~6% of the value that
+ * was recorded.  Values beyond 2^40 are counted in the last bucket.
+ *
+ * Recording is striped to keep threads from contending on the same counters.
+ * Each stripe is a separate region of one AtomicLongArray and a thread always
+ * records into the stripe selected by its id.  Recording never allocates.
+ * Reading merges the stripes into a {@link Snapshot}.
+ *
+ * @author elandau
+ */
+public class LatencyHistogram {
+    private static final int  SUB_BUCKET_BITS  = 4;
+    private static final int  SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+    private static final long MAX_VALUE        = (1L << 40) - 1;
+    private static final int  BUCKET_COUNT     = indexOf(MAX_VALUE) + 1;
+
+    /**
+     * Each stripe holds BUCKET_COUNT counters followed by the sum of the
+     * values recorded in the stripe
+     */
+    private static final int  STRIPE_SIZE      = BUCKET_COUNT + 1;
+
+    private static final int  DEFAULT_STRIPES  = 8;
+
+    private final AtomicLongArray cells;
+    private final AtomicLong      max = new AtomicLong();
+    private final int             stripeMask;
+
+    public LatencyHistogram() {
+        this(DEFAULT_STRIPES);
+    }
+
+    /**
+     * @param stripes Number of stripes, rounded up to a power of two
+     */
+    public LatencyHistogram(int stripes) {
+        int size = 1;
+        while (size < stripes)
+            size <<= 1;
+        this.stripeMask = size - 1;
+        this.cells      = new AtomicLongArray(size * STRIPE_SIZE);
+    }
+
+    /**
+     * Record a single value.  Negative values are counted as 0.
+     */
+    public void record(long value) {
+        if (value < 0)
+            value = 0;
+
+        int offset = ((int) Thread.currentThread().getId() & stripeMask) * STRIPE_SIZE;
+        cells.incrementAndGet(offset + indexOf(value));
+        cells.addAndGet(offset + BUCKET_COUNT, value);
+
+        long current;
+        while (value > (current = max.get())) {
+            if (max.compareAndSet(current, value))
+                break;
+        }
+    }
+
+    /**
+     * Clear all recorded values.  Values recorded concurrently with the
+     * reset may or may not be kept.
+     */
+    public void reset() {
+        for (int i = 0; i < cells.length(); i++) {
+            cells.set(i, 0);
+        }
+        max.set(0);
+    }
+
+    /**
+     * @return Merged copy of all values recorded so far
+     */
+    public Snapshot getSnapshot() {
+        long[] buckets = new long[BUCKET_COUNT];
+        long   count   = 0;
+        long   sum     = 0;
+        for (int offset = 0; offset < cells.length(); offset += STRIPE_SIZE) {
+            for (int i = 0; i < BUCKET_COUNT; i++) {
+                long c = cells.get(offset + i);
+                buckets[i] += c;
+                count      += c;
+            }
+            sum += cells.get(offset + BUCKET_COUNT);
+        }
+        return new Snapshot(buckets, count, sum, max.get());
+    }
+
+    @Override
+    public String toString() {
+        return getSnapshot().toString();
+    }
+
+    static int indexOf(long value) {
+        if (value > MAX_VALUE)
+            value = MAX_VALUE;
+        if (value < SUB_BUCKET_COUNT)
+            return (int) value;
+        int shift = (63 - Long.numberOfLeadingZeros(value)) - SUB_BUCKET_BITS;
+        return (shift << SUB_BUCKET_BITS) + (int) (value >>> shift);
+    }
+
+    /**
+     * @return Largest value that is counted in the bucket at index
+     */
+    static long highestValueAt(int index) {
+        if (index < SUB_BUCKET_COUNT)
+            return index;
+        int  shift    = (index >>> SUB_BUCKET_BITS) - 1;
+        long mantissa = SUB_BUCKET_COUNT + (index & (SUB_BUCKET_COUNT - 1));
+        return ((mantissa + 1) << shift) - 1;
+    }
+
+    /**
+     * Immutable view of a histogram at a point in time
+     */
+    public static class Snapshot {
+        private final long[] buckets;
+        private final long   count;
+        private final long   sum;
+        private final long   max;
+
+        Snapshot(long[] buckets, long count, long sum, long max) {
+            this.buckets = buckets;
+            this.count   = count;
+            this.sum     = sum;
+            this.max     = max;
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        public long getMax() {
+            return max;
+        }
+
+        public double getMean() {
+            if (count == 0)
+                return 0;
+            return (double) sum / count;
+        }
+
+        /**
+         * @param percentile 0.0 - 1.0
+         * @return Upper bound of the bucket holding the value at the
+         *         percentile, or 0 if nothing was recorded
+         */
+        public long getPercentile(double percentile) {
+            if (count == 0)
+                return 0;
+
+            long rank = (long) Math.ceil(percentile * count);
+            if (rank < 1)
+                rank = 1;
+
+            long seen = 0;
+            for (int i = 0; i < buckets.length; i++) {
+                seen += buckets[i];
+                if (seen >= rank)
+                    return Math.min(highestValueAt(i), max);
+            }
+            return max;
+        }
+
+        @Override
+        public String toString() {
+            return new StringBuilder()
+                .append("count=").append(count)
+                .append(",mean=").append((long) getMean())
+                .append(",p50=" ).append(getPercentile(0.5))
+                .append(",p99=" ).append(getPercentile(0.99))
+                .append(",p999=").append(getPercentile(0.999))
+                .append(",max=" ).append(max)
+                .toString();
+        }
+    }
+}
@@ -0,0 +1,43 @@
+/*******************************************************************************
+ * Copyright 2011 Netflix
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package com.netflix.astyanax.connectionpool.impl;
+
+import com.netflix.astyanax.connectionpool.Connection;
+import com.netflix.astyanax.connectionpool.ConnectionFactory;
+import com.netflix.astyanax.connectionpool.ConnectionPoolConfiguration;
+import com.netflix.astyanax.connectionpool.ConnectionPoolMonitor;
+import com.netflix.astyanax.connectionpool.Host;
+
+/**
+ * Host connection pool that keeps its idle connections in an AffinityRingBuffer
+ * instead of a LinkedBlockingQueue.  Borrowing and returning a connection is 
+ * lock free and does not allocate, and a thread will usually get back the 
+ * connection it last used.  Connection management and metrics are the same
+ * as SimpleHostConnectionPool.
+ * 
+ * The ring buffer is sized to the max connections per host.  Connections 
+ * that don't fit because the max was raised at runtime are closed on return.
+ * 
+ * @author elandau
+ *
+ * @param <CL>
+ */
+public class RingBufferHostConnectionPool<CL> extends SimpleHostConnectionPool<CL> {
+    public RingBufferHostConnectionPool(Host host, ConnectionFactory<CL> factory, ConnectionPoolMonitor monitor,
+            ConnectionPoolConfiguration config, Listener<CL> listener) {
+        super(host, factory, monitor, config, listener, new AffinityRingBuffer<Connection<CL>>(config.getMaxConnsPerHost()));
+    }
+}
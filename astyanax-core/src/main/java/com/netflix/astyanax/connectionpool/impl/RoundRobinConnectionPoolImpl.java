@@ -56,7 +56,7 @@ public class RoundRobinConnectionPoolImpl<CL> extends AbstractHostPartitionConne
                 roundRobinCounter.set(0);
             }
             
-            return new RoundRobinExecuteWithFailover<CL, R>(config, monitor, topology.getAllPools().getPools(), index);
+            return new RoundRobinExecuteWithFailover<CL, R>(config, monitor, topology.getAllPools().getPools(), index, getHedgeExecutor());
         }
         catch (ConnectionException e) {
             monitor.incOperationFailure(e.getHost(), e);
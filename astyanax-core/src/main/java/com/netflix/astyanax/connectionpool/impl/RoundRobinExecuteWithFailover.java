@@ -1,6 +1,7 @@
 package com.netflix.astyanax.connectionpool.impl;
 
 import java.util.List;
+import java.util.concurrent.Executor;
 
 import com.netflix.astyanax.connectionpool.Connection;
 import com.netflix.astyanax.connectionpool.ConnectionPoolConfiguration;
@@ -21,7 +22,12 @@ public class RoundRobinExecuteWithFailover<CL, R> extends AbstractExecuteWithFai
 
     public RoundRobinExecuteWithFailover(ConnectionPoolConfiguration config, ConnectionPoolMonitor monitor,
             List<HostConnectionPool<CL>> pools, int index) throws ConnectionException {
-        super(config, monitor);
+        this(config, monitor, pools, index, null);
+    }
+
+    public RoundRobinExecuteWithFailover(ConnectionPoolConfiguration config, ConnectionPoolMonitor monitor,
+            List<HostConnectionPool<CL>> pools, int index, Executor hedgeExecutor) throws ConnectionException {
+        super(config, monitor, hedgeExecutor);
 
         this.index = index;
         this.pools = pools;
@@ -60,6 +66,16 @@ public class RoundRobinExecuteWithFailover<CL, R> extends AbstractExecuteWithFai
         return pool;
     }
 
+    /**
+     * Hedge to the host that would be failed over to next
+     */
+    @Override
+    protected HostConnectionPool<CL> getHedgeConnectionPool() {
+        if (size < 2)
+            return null;
+        return pools.get(index % size);
+    }
+
     @Override
     public Connection<CL> borrowConnection(Operation<CL, R> operation) throws ConnectionException {
         pool = pools.get(getNextHostIndex());
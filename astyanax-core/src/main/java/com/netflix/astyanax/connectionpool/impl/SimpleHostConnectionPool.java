@@ -108,6 +108,15 @@ public class SimpleHostConnectionPool<CL> implements HostConnectionPool<CL> {
 
     public SimpleHostConnectionPool(Host host, ConnectionFactory<CL> factory, ConnectionPoolMonitor monitor,
             ConnectionPoolConfiguration config, Listener<CL> listener) {
+        this(host, factory, monitor, config, listener, new LinkedBlockingQueue<Connection<CL>>());
+    }
+
+    /**
+     * @param availableConnections  Container for idle connections.  Subclasses may provide 
+     *                              an alternate implementation tuned for contention.
+     */
+    protected SimpleHostConnectionPool(Host host, ConnectionFactory<CL> factory, ConnectionPoolMonitor monitor,
+            ConnectionPoolConfiguration config, Listener<CL> listener, BlockingQueue<Connection<CL>> availableConnections) {
         
         this.host            = host;
         this.config          = config;
@@ -117,7 +126,7 @@ public class SimpleHostConnectionPool<CL> implements HostConnectionPool<CL> {
         this.latencyStrategy = config.getLatencyScoreStrategy().createInstance();
         this.badHostDetector = config.getBadHostDetector().createInstance();
         this.monitor         = monitor;
-        this.availableConnections = new LinkedBlockingQueue<Connection<CL>>();
+        this.availableConnections = availableConnections;
         this.executor        = config.getHostReconnectExecutor();
         
         Preconditions.checkNotNull(config.getHostReconnectExecutor(), "HostReconnectExecutor cannot be null");
@@ -252,7 +261,10 @@ public class SimpleHostConnectionPool<CL> implements HostConnectionPool<CL> {
 
         // Still within the number of max active connection
         if (activeCount.get() <= config.getMaxConnsPerHost()) {
-            availableConnections.add(connection);
+            if (!availableConnections.offer(connection)) {
+                internalCloseConnection(connection);
+                return true;
+            }
 
             if (isShutdown()) {
                 discardIdleConnections();
@@ -362,8 +374,9 @@ public class SimpleHostConnectionPool<CL> implements HostConnectionPool<CL> {
                     connection.open();
                     
                     errorsSinceLastSuccess.set(0);
-                    availableConnections.add(connection);
                     openConnections.incrementAndGet();
+                    if (!availableConnections.offer(connection)) 
+                        internalCloseConnection(connection);
                 }
                 else {
                     activeCount.decrementAndGet();
@@ -419,7 +432,10 @@ public class SimpleHostConnectionPool<CL> implements HostConnectionPool<CL> {
                                 public void success(Connection<CL> connection) {
                                     openConnections.incrementAndGet();
                                     pendingConnections.decrementAndGet();
-                                    availableConnections.add(connection);
+                                    if (!availableConnections.offer(connection)) {
+                                        internalCloseConnection(connection);
+                                        return;
+                                    }
     
                                     // Sanity check in case the connection
                                     // pool was closed
@@ -525,6 +541,11 @@ public class SimpleHostConnectionPool<CL> implements HostConnectionPool<CL> {
         return latencyStrategy.getScore();
     }
 
+    @Override
+    public double getLatencyPercentile(double percentile) {
+        return latencyStrategy.getLatencyPercentile(percentile);
+    }
+
     @Override
     public void addLatencySample(long latency, long now) {
         latencyStrategy.addSample(latency);
@@ -26,6 +26,8 @@ public class SmaLatencyScoreStrategyImpl extends AbstractLatencyScoreStrategyImp
         return new Instance() {
             private final LinkedBlockingQueue<Long> latencies = new LinkedBlockingQueue<Long>(windowSize);
             private volatile Double cachedScore = 0.0d;
+            private volatile long[] sortedWindow = new long[0];
+            private volatile long sortedTime = 0;
     
             @Override
             public void addSample(long sample) {
@@ -44,14 +46,35 @@ public class SmaLatencyScoreStrategyImpl extends AbstractLatencyScoreStrategyImp
                 return cachedScore;
             }
     
+            /**
+             * The sorted window is refreshed by update() and at most once per 
+             * update interval here, so that a strategy which isn't running its
+             * update thread still provides percentiles
+             */
+            @Override
+            public double getLatencyPercentile(double percentile) {
+                long now = System.currentTimeMillis();
+                if (now - sortedTime >= getUpdateInterval()) {
+                    updateSortedWindow(now);
+                }
+                return getPercentile(sortedWindow, percentile);
+            }
+    
             @Override
             public void reset() {
                 latencies.clear();
+                sortedWindow = new long[0];
             }
     
             @Override
             public void update() {
                 cachedScore = getMean();
+                updateSortedWindow(System.currentTimeMillis());
+            }
+            
+            private void updateSortedWindow(long now) {
+                sortedTime   = now;
+                sortedWindow = toSortedArray(latencies);
             }
     
             private double getMean() {
@@ -77,7 +77,7 @@ public class TokenAwareConnectionPoolImpl<CL> extends AbstractHostPartitionConne
                 roundRobinCounter.set(0);
             }
     
-            return new RoundRobinExecuteWithFailover<CL, R>(config, monitor, pools, isSorted ? 0 : index);
+            return new RoundRobinExecuteWithFailover<CL, R>(config, monitor, pools, isSorted ? 0 : index, getHedgeExecutor());
         }
         catch (ConnectionException e) {
             monitor.incOperationFailure(e.getHost(), e);
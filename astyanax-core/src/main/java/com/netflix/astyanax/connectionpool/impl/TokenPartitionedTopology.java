@@ -3,6 +3,7 @@ package com.netflix.astyanax.connectionpool.impl;
 import java.math.BigInteger;
 import java.nio.ByteBuffer;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
@@ -25,7 +26,9 @@ import com.google.common.collect.Sets;
 import com.netflix.astyanax.connectionpool.HostConnectionPool;
 import com.netflix.astyanax.connectionpool.LatencyScoreStrategy;
 import com.netflix.astyanax.connectionpool.TokenRange;
+import com.netflix.astyanax.partitioner.LongTokenPartitioner;
 import com.netflix.astyanax.partitioner.Partitioner;
+import com.netflix.astyanax.partitioner.Token;
 
 /**
  * Partition hosts by start token.  Each token may map to a list of partitions.
@@ -36,11 +39,12 @@ import com.netflix.astyanax.partitioner.Partitioner;
  */
 public class TokenPartitionedTopology<CL> implements Topology<CL> {
     /**
-     * Sorted list of partitions.  A binary search is performed on this list to determine
-     * the list of hosts that own the token range.
+     * Sorted ring of partitions.  A binary search is performed on the ring to determine
+     * the list of hosts that own the token range.  The ring is immutable and replaced
+     * as a whole whenever the topology changes.
      */
-    private AtomicReference<List<TokenHostConnectionPoolPartition<CL>>> sortedRing
-    	= new AtomicReference<List<TokenHostConnectionPoolPartition<CL>>>(new ArrayList<TokenHostConnectionPoolPartition<CL>>());
+    private AtomicReference<Ring<CL>> sortedRing 
+        = new AtomicReference<Ring<CL>>(new Ring<CL>(new ArrayList<TokenHostConnectionPoolPartition<CL>>(), null));
 
     /**
      * Lookup of end token to partition 
@@ -63,20 +67,6 @@ public class TokenPartitionedTopology<CL> implements Topology<CL> {
      */
     private final Partitioner partitioner;
 
-    /**
-     * Comparator used to find the partition mapping to a token
-     */
-    @SuppressWarnings("rawtypes")
-    private Comparator tokenSearchComparator = new Comparator() {
-        @SuppressWarnings("unchecked")
-        @Override
-        public int compare(Object arg0, Object arg1) {
-            TokenHostConnectionPoolPartition<CL> partition = (TokenHostConnectionPoolPartition<CL>) arg0;
-            BigInteger token = (BigInteger) arg1;
-            return partition.id().compareTo(token);
-        }
-    };
-
     /**
      * Compartor used to sort partitions in token order.  
      */
@@ -131,7 +121,7 @@ public class TokenPartitionedTopology<CL> implements Topology<CL> {
         }
 
         // Temporary list of token that will be removed if not found in the new ring
-        Set<BigInteger> tokensToRemove = Sets.newHashSet(tokenHostMap.keySet());
+        Set<BigInteger> tokensToRemove = Sets.newHashSet(tokenToPartitionMap.keySet());
 
         // Iterate all tokens
         for (Entry<BigInteger, List<HostConnectionPool<CL>>> entry : tokenHostMap.entrySet()) {
@@ -151,7 +141,7 @@ public class TokenPartitionedTopology<CL> implements Topology<CL> {
 
         // Remove the tokens that are no longer in the ring
         for (BigInteger token : tokensToRemove) {
-            tokenHostMap.remove(token);
+            tokenToPartitionMap.remove(token);
             didChange = true;
         }
 
@@ -161,7 +151,7 @@ public class TokenPartitionedTopology<CL> implements Topology<CL> {
             Collections.sort(partitions, partitionComparator);
             this.allPools.setPools(allPools);
             refresh();
-            this.sortedRing.set(Collections.unmodifiableList(partitions));
+            this.sortedRing.set(new Ring<CL>(Collections.unmodifiableList(partitions), partitioner));
         }
 
         return didChange;
@@ -196,13 +186,11 @@ public class TokenPartitionedTopology<CL> implements Topology<CL> {
         if (rowkey == null)
             return getAllPools();
         
-        BigInteger token = new BigInteger(partitioner.getTokenForKey(rowkey));
-        
         // First, get a copy of the partitions.
-    	List<TokenHostConnectionPoolPartition<CL>> partitions = this.sortedRing.get();
+        Ring<CL> ring = this.sortedRing.get();
         // Must have a token otherwise we default to the base class
         // implementation
-        if (token == null || partitions == null || partitions.isEmpty()) {
+        if (ring.partitions.isEmpty()) {
             return getAllPools();
         }
 
@@ -214,12 +202,23 @@ public class TokenPartitionedTopology<CL> implements Topology<CL> {
         // index where the token would have been inserted into the list.
         // We convert this index (which is negative) to the index of the
         // previous position in the list.
-        @SuppressWarnings("unchecked")
-        int partitionIndex = Collections.binarySearch(partitions, token, tokenSearchComparator);
+        int partitionIndex;
+        if (ring.longTokens != null) {
+            // Fast path which doesn't allocate
+            long token = ((LongTokenPartitioner) partitioner).getLongTokenForKey(rowkey);
+            partitionIndex = Arrays.binarySearch(ring.longTokens, token);
+        }
+        else if (ring.typedTokens != null) {
+            partitionIndex = Arrays.binarySearch(ring.typedTokens, partitioner.getToken(rowkey));
+        }
+        else {
+            BigInteger token = new BigInteger(partitioner.getTokenForKey(rowkey));
+            partitionIndex = Arrays.binarySearch(ring.tokens, token);
+        }
         if (partitionIndex < 0) {
             partitionIndex = -(partitionIndex + 1);
         }
-        return partitions.get(partitionIndex % partitions.size());
+        return ring.partitions.get(partitionIndex % ring.partitions.size());
     }
 
     @Override
@@ -268,7 +267,7 @@ public class TokenPartitionedTopology<CL> implements Topology<CL> {
     public String toString() {
         StringBuilder sb = new StringBuilder();
         sb.append("TokenPartitionTopology[");
-        sb.append(StringUtils.join(Lists.transform(this.sortedRing.get(), new Function<TokenHostConnectionPoolPartition<CL>, String>() {
+        sb.append(StringUtils.join(Lists.transform(this.sortedRing.get().partitions, new Function<TokenHostConnectionPoolPartition<CL>, String>() {
             @Override
             public String apply(@Nullable TokenHostConnectionPoolPartition<CL> input) {
                 return input.id().toString() + "\n";
@@ -278,4 +277,66 @@ public class TokenPartitionedTopology<CL> implements Topology<CL> {
         return sb.toString();
     }
 
+    /**
+     * Snapshot of the partitions sorted by token along with their tokens in 
+     * arrays that can be searched directly
+     */
+    private static class Ring<CL> {
+        final List<TokenHostConnectionPoolPartition<CL>> partitions;
+        final BigInteger[] tokens;
+        
+        /**
+         * Tokens in the partitioner's own representation or null if the 
+         * partitioner doesn't support typed tokens
+         */
+        final Token[] typedTokens;
+        
+        /**
+         * Tokens as primitive longs or null if the partitioner's tokens don't 
+         * fit in a long
+         */
+        final long[] longTokens;
+        
+        Ring(List<TokenHostConnectionPoolPartition<CL>> partitions, Partitioner partitioner) {
+            this.partitions = partitions;
+            this.tokens     = new BigInteger[partitions.size()];
+            for (int i = 0; i < tokens.length; i++) {
+                tokens[i] = partitions.get(i).id();
+            }
+            this.longTokens  = toLongTokens(tokens, partitioner);
+            this.typedTokens = toTypedTokens(tokens, partitioner);
+        }
+        
+        private static long[] toLongTokens(BigInteger[] tokens, Partitioner partitioner) {
+            if (!(partitioner instanceof LongTokenPartitioner))
+                return null;
+            
+            long[] longTokens = new long[tokens.length];
+            for (int i = 0; i < tokens.length; i++) {
+                if (tokens[i].bitLength() > 63)
+                    return null;
+                longTokens[i] = tokens[i].longValue();
+            }
+            return longTokens;
+        }
+        
+        private static Token[] toTypedTokens(BigInteger[] tokens, Partitioner partitioner) {
+            if (partitioner == null)
+                return null;
+            
+            Token[] typedTokens = new Token[tokens.length];
+            try {
+                for (int i = 0; i < tokens.length; i++) {
+                    typedTokens[i] = partitioner.parseToken(tokens[i].toString());
+                    if (typedTokens[i] == null)
+                        return null;
+                }
+            }
+            catch (RuntimeException e) {
+                // Token doesn't belong to the partitioner's token space
+                return null;
+            }
+            return typedTokens;
+        }
+    }
 }
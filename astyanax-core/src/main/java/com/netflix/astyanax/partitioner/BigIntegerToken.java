@@ -0,0 +1,66 @@
+/*******************************************************************************
+ * Copyright 2011 Netflix
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package com.netflix.astyanax.partitioner;
+
+import java.math.BigInteger;
+
+/**
+ * Token of arbitrary size.  Used by partitioners for which there is no 
+ * specialized token type.
+ * 
+ * @author elandau
+ */
+public final class BigIntegerToken extends Token {
+    private final BigInteger token;
+    private final int radix;
+
+    public BigIntegerToken(BigInteger token) {
+        this(token, 10);
+    }
+
+    /**
+     * @param radix Radix of the token's string format
+     */
+    public BigIntegerToken(BigInteger token, int radix) {
+        this.token = token;
+        this.radix = radix;
+    }
+
+    @Override
+    public int compareTo(Token other) {
+        return token.compareTo(((BigIntegerToken) other).token);
+    }
+
+    @Override
+    public BigInteger toBigInteger() {
+        return token;
+    }
+
+    @Override
+    public int hashCode() {
+        return token.hashCode();
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        return obj instanceof BigIntegerToken && ((BigIntegerToken) obj).token.equals(token);
+    }
+
+    @Override
+    public String toString() {
+        return token.toString(radix);
+    }
+}
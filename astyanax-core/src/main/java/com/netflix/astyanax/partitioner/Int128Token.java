@@ -0,0 +1,132 @@
+/*******************************************************************************
+ * Copyright 2011 Netflix
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package com.netflix.astyanax.partitioner;
+
+import java.math.BigInteger;
+
+/**
+ * Signed 128 bit token held in two longs, such as those of the random 
+ * partitioner.  
+ * 
+ * @author elandau
+ */
+public final class Int128Token extends Token {
+    public static final Int128Token MIN_VALUE = new Int128Token(Long.MIN_VALUE, 0);
+    public static final Int128Token MAX_VALUE = new Int128Token(Long.MAX_VALUE, -1L);
+
+    private static final BigInteger MASK_64 = BigInteger.ONE.shiftLeft(64).subtract(BigInteger.ONE);
+
+    /**
+     * Most significant 64 bits, signed
+     */
+    private final long high;
+
+    /**
+     * Least significant 64 bits, unsigned
+     */
+    private final long low;
+
+    public Int128Token(long high, long low) {
+        this.high = high;
+        this.low  = low;
+    }
+
+    /**
+     * @param value Between -2^127 and 2^127 - 1
+     */
+    public static Int128Token valueOf(BigInteger value) {
+        if (value.bitLength() > 127)
+            throw new IllegalArgumentException("Token out of range " + value);
+        return new Int128Token(value.shiftRight(64).longValue(), value.and(MASK_64).longValue());
+    }
+
+    /**
+     * @param bytes Big endian two's complement value
+     */
+    public static Int128Token valueOf(byte[] bytes, int offset) {
+        return new Int128Token(getLong(bytes, offset), getLong(bytes, offset + 8));
+    }
+
+    public long getHigh() {
+        return high;
+    }
+
+    public long getLow() {
+        return low;
+    }
+
+    public boolean isNegative() {
+        return high < 0;
+    }
+
+    /**
+     * @return Two's complement negation.  MIN_VALUE is its own negation.
+     */
+    public Int128Token negate() {
+        long newLow  = ~low + 1;
+        long newHigh = ~high + (newLow == 0 ? 1 : 0);
+        return new Int128Token(newHigh, newLow);
+    }
+
+    /**
+     * @return This token minus one, wrapping from MIN_VALUE to MAX_VALUE
+     */
+    public Int128Token minusOne() {
+        return new Int128Token(low == 0 ? high - 1 : high, low - 1);
+    }
+
+    @Override
+    public int compareTo(Token other) {
+        Int128Token o = (Int128Token) other;
+        if (high != o.high)
+            return high < o.high ? -1 : 1;
+        if (low != o.low)
+            return (low ^ Long.MIN_VALUE) < (o.low ^ Long.MIN_VALUE) ? -1 : 1;
+        return 0;
+    }
+
+    @Override
+    public BigInteger toBigInteger() {
+        return BigInteger.valueOf(high).shiftLeft(64).add(BigInteger.valueOf(low).and(MASK_64));
+    }
+
+    @Override
+    public int hashCode() {
+        long h = high * 31 + low;
+        return (int) (h ^ (h >>> 32));
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (!(obj instanceof Int128Token))
+            return false;
+        Int128Token other = (Int128Token) obj;
+        return other.high == high && other.low == low;
+    }
+
+    @Override
+    public String toString() {
+        return toBigInteger().toString();
+    }
+
+    private static long getLong(byte[] bytes, int offset) {
+        long value = 0;
+        for (int i = 0; i < 8; i++) {
+            value = (value << 8) | (bytes[offset + i] & 0xff);
+        }
+        return value;
+    }
+}
@@ -0,0 +1,61 @@
+/*******************************************************************************
+ * Copyright 2011 Netflix
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package com.netflix.astyanax.partitioner;
+
+import java.math.BigInteger;
+
+/**
+ * Token that fits in a long, such as those of the Murmur3 partitioner
+ * 
+ * @author elandau
+ */
+public final class LongToken extends Token {
+    private final long token;
+
+    public LongToken(long token) {
+        this.token = token;
+    }
+
+    public long longValue() {
+        return token;
+    }
+
+    @Override
+    public int compareTo(Token other) {
+        long otherToken = ((LongToken) other).token;
+        return token < otherToken ? -1 : (token == otherToken ? 0 : 1);
+    }
+
+    @Override
+    public BigInteger toBigInteger() {
+        return BigInteger.valueOf(token);
+    }
+
+    @Override
+    public int hashCode() {
+        return (int) (token ^ (token >>> 32));
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        return obj instanceof LongToken && ((LongToken) obj).token == token;
+    }
+
+    @Override
+    public String toString() {
+        return Long.toString(token);
+    }
+}
@@ -0,0 +1,34 @@
+/*******************************************************************************
+ * Copyright 2011 Netflix
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package com.netflix.astyanax.partitioner;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Partitioner whose tokens all fit in a long.  Token lookups for such 
+ * partitioners can be done without converting tokens to String or BigInteger.
+ * 
+ * @author elandau
+ */
+public interface LongTokenPartitioner extends Partitioner {
+    /**
+     * Return the token for the specified key.  Must not modify the position
+     * of the key.
+     * 
+     * @param key
+     */
+    long getLongTokenForKey(ByteBuffer key);
+}
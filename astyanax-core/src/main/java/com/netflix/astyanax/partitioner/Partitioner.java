@@ -49,4 +49,47 @@ public interface Partitioner {
      */
     String getTokenForKey(ByteBuffer key);
     
+    /**
+     * Typed versions of the methods above.  Tokens are compared and manipulated
+     * without going through their String form, which makes these preferable on
+     * hot paths.  Token.toString() returns the String form expected by Cassandra.
+     */
+    
+    /**
+     * @return Return the token for the specified key
+     * @param key
+     */
+    Token getToken(ByteBuffer key);
+    
+    /**
+     * @return Return the token for its String form
+     * @param token
+     */
+    Token parseToken(String token);
+    
+    /**
+     * @return Return the smallest token in the token space
+     */
+    Token getMinimumToken();
+    
+    /**
+     * @return Return the largest token in the token space
+     */
+    Token getMaximumToken();
+    
+    /**
+     * @return Return the token immediately before this one, wrapping around
+     *         from the smallest to the largest token
+     */
+    Token getTokenMinusOne(Token token);
+    
+    /**
+     * Split the token range between first and last into 'count' equal size segments
+     * 
+     * @param first
+     * @param last
+     * @param count
+     * @return count + 1 segment boundaries, starting with first and ending with last
+     */
+    List<Token> splitTokens(Token first, Token last, int count);
 }
@@ -0,0 +1,41 @@
+/*******************************************************************************
+ * Copyright 2011 Netflix
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package com.netflix.astyanax.partitioner;
+
+import java.math.BigInteger;
+
+/**
+ * Typed token of a partitioner.  Tokens are compared, hashed and manipulated
+ * in their native representation and are only converted to their String form,
+ * using toString(), when passed to Cassandra.
+ * 
+ * Tokens of different partitioners are not comparable.
+ * 
+ * @author elandau
+ */
+public abstract class Token implements Comparable<Token> {
+    /**
+     * @return The token as a BigInteger.  Used for arithmetic that is too 
+     *         infrequent to be worth specializing, such as range splitting
+     */
+    public abstract BigInteger toBigInteger();
+
+    /**
+     * @return The token in the string format used by Cassandra
+     */
+    @Override
+    public abstract String toString();
+}
@@ -149,6 +149,28 @@ public class EmptyConnectionPoolMonitor implements ConnectionPoolMonitor {
         return 0;
     }
 
+    @Override
+    public void incHedgeSent(Host host) {
+    }
+
+    @Override
+    public long getHedgeSentCount() {
+        return 0;
+    }
+
+    @Override
+    public void incHedgeWon(Host host) {
+    }
+
+    @Override
+    public void onOperationComplete(Host host, int attempts) {
+    }
+
+    @Override
+    public long getHedgeWonCount() {
+        return 0;
+    }
+
     @Override
     public long getNoHostCount() {
         return 0;
@@ -5,6 +5,7 @@ import java.util.List;
 
 import com.netflix.astyanax.connectionpool.TokenRange;
 import com.netflix.astyanax.partitioner.Partitioner;
+import com.netflix.astyanax.partitioner.Token;
 
 public class EmptyPartitioner implements Partitioner {
 
@@ -44,4 +45,33 @@ public class EmptyPartitioner implements Partitioner {
         return null;
     }
 
+    @Override
+    public Token getToken(ByteBuffer key) {
+        return null;
+    }
+
+    @Override
+    public Token parseToken(String token) {
+        return null;
+    }
+
+    @Override
+    public Token getMinimumToken() {
+        return null;
+    }
+
+    @Override
+    public Token getMaximumToken() {
+        return null;
+    }
+
+    @Override
+    public Token getTokenMinusOne(Token token) {
+        return null;
+    }
+
+    @Override
+    public List<Token> splitTokens(Token first, Token last, int count) {
+        return null;
+    }
 }
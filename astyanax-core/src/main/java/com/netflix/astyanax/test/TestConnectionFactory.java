@@ -21,6 +21,9 @@ import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicLong;
 
 import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.netflix.astyanax.connectionpool.AsyncCallback;
+import com.netflix.astyanax.connectionpool.AsyncConnection;
+import com.netflix.astyanax.connectionpool.AsyncOperation;
 import com.netflix.astyanax.connectionpool.Connection;
 import com.netflix.astyanax.connectionpool.ConnectionFactory;
 import com.netflix.astyanax.connectionpool.ConnectionPoolConfiguration;
@@ -51,14 +54,39 @@ public class TestConnectionFactory implements ConnectionFactory<TestClient> {
     public Connection<TestClient> createConnection(
             final HostConnectionPool<TestClient> pool)
             throws ThrottledException {
-        return new Connection<TestClient>() {
+        return new AsyncConnection<TestClient>() {
             private ConnectionException lastException;
             private boolean isOpen = false;
             private AtomicLong operationCounter = new AtomicLong();
+            private Thread executingThread = null;
+            private boolean interruptedByClose = false;
 
+            /**
+             * Closing a connection that is in use interrupts the thread executing
+             * on it, the same way closing a socket unblocks a pending read
+             */
             @Override
             public <R> OperationResult<R> execute(Operation<TestClient, R> op)
                     throws ConnectionException {
+                synchronized (this) {
+                    executingThread = Thread.currentThread();
+                }
+                try {
+                    return executeOperation(op);
+                }
+                finally {
+                    synchronized (this) {
+                        executingThread = null;
+                        if (interruptedByClose) {
+                            interruptedByClose = false;
+                            Thread.interrupted();
+                        }
+                    }
+                }
+            }
+
+            private <R> OperationResult<R> executeOperation(Operation<TestClient, R> op)
+                    throws ConnectionException {
                 long startTime = System.nanoTime();
                 long latency = 0;
 
@@ -91,8 +119,33 @@ public class TestConnectionFactory implements ConnectionFactory<TestClient> {
                 }
             }
 
+            @Override
+            public <R> void executeAsync(final AsyncOperation<TestClient, R> op,
+                    final AsyncCallback<OperationResult<R>> callback) {
+                // The executor plays the part of the I/O thread
+                executor.submit(new Runnable() {
+                    @Override
+                    public void run() {
+                        OperationResult<R> result;
+                        try {
+                            result = execute(op);
+                        } catch (ConnectionException e) {
+                            callback.failure(e);
+                            return;
+                        }
+                        callback.success(result);
+                    }
+                });
+            }
+
             @Override
             public void close() {
+                synchronized (this) {
+                    if (executingThread != null) {
+                        interruptedByClose = true;
+                        executingThread.interrupt();
+                    }
+                }
                 if (isOpen) {
                     monitor.incConnectionClosed(getHost(), lastException);
                     executor.submit(new Runnable() {
@@ -18,6 +18,9 @@ package com.netflix.astyanax.test;
 import java.util.Collection;
 import java.util.List;
 
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.netflix.astyanax.connectionpool.AsyncOperation;
 import com.netflix.astyanax.connectionpool.ConnectionPool;
 import com.netflix.astyanax.connectionpool.Host;
 import com.netflix.astyanax.connectionpool.HostConnectionPool;
@@ -59,6 +62,17 @@ public class TestConnectionPool implements ConnectionPool<TestClient> {
         return null;
     }
 
+    @Override
+    public <R> ListenableFuture<OperationResult<R>> executeWithFailoverAsync(
+            AsyncOperation<TestClient, R> op, RetryPolicy retry) {
+        try {
+            return Futures.immediateFuture(executeWithFailover(op, retry));
+        }
+        catch (ConnectionException e) {
+            return Futures.immediateFailedFuture(e);
+        }
+    }
+
     @Override
     public void shutdown() {
     }
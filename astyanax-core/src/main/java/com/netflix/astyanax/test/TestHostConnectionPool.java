@@ -98,6 +98,11 @@ public class TestHostConnectionPool implements HostConnectionPool<TestClient> {
         return 0;
     }
 
+    @Override
+    public double getLatencyPercentile(double percentile) {
+        return 0;
+    }
+
     @Override
     public void addLatencySample(long lastLatency, long now) {
 
@@ -0,0 +1,70 @@
+package com.netflix.astyanax.connectionpool.impl;
+
+import junit.framework.Assert;
+
+import org.junit.Test;
+
+import com.netflix.astyanax.connectionpool.Host;
+
+public class HistogramConnectionPoolMonitorTest {
+    @Test
+    public void testHistogram() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        Assert.assertEquals(0, histogram.getSnapshot().getPercentile(0.99));
+
+        for (long i = 1; i <= 10000; i++) {
+            histogram.record(i * 1000);
+        }
+
+        LatencyHistogram.Snapshot snapshot = histogram.getSnapshot();
+        Assert.assertEquals(10000, snapshot.getCount());
+        Assert.assertEquals(10000000, snapshot.getMax());
+        Assert.assertEquals(5000500.0, snapshot.getMean(), 0.1);
+        assertWithin(5000000,  snapshot.getPercentile(0.5),  0.07);
+        assertWithin(9900000,  snapshot.getPercentile(0.99), 0.07);
+        Assert.assertEquals(10000000, snapshot.getPercentile(1.0));
+
+        histogram.reset();
+        Assert.assertEquals(0, histogram.getSnapshot().getCount());
+    }
+
+    @Test
+    public void testBucketBoundaries() {
+        for (long value = 0; value < 100000; value++) {
+            int index = LatencyHistogram.indexOf(value);
+            Assert.assertTrue(value <= LatencyHistogram.highestValueAt(index));
+            if (index > 0)
+                Assert.assertTrue(value > LatencyHistogram.highestValueAt(index - 1));
+        }
+        Assert.assertEquals(LatencyHistogram.indexOf(1L << 40), LatencyHistogram.indexOf(Long.MAX_VALUE));
+    }
+
+    @Test
+    public void testMonitor() {
+        HistogramConnectionPoolMonitor monitor = new HistogramConnectionPoolMonitor();
+        Host host = new Host("127.0.0.1", 9160);
+
+        monitor.incConnectionBorrowed(host, 5);
+        monitor.incOperationSuccess(host, 2000);
+        monitor.onOperationComplete(host, 2);
+        monitor.recordOperationLatency("GET_ROW", 3000);
+
+        Assert.assertEquals(1, monitor.getOperationSuccessCount());
+        Assert.assertEquals(5, monitor.getBorrowWaitTimes().getMax());
+        Assert.assertEquals(2, monitor.getAttempts().getPercentile(0.5));
+        Assert.assertEquals(2000, monitor.getHostLatency(host).getMax());
+        Assert.assertEquals(3000, monitor.getOperationLatency("GET_ROW").getMax());
+        Assert.assertNull(monitor.getOperationLatency("GET_COLUMN"));
+        Assert.assertEquals(1, monitor.getOperationLatencies().size());
+
+        monitor.onHostRemoved(host);
+        Assert.assertNull(monitor.getHostLatency(host));
+
+        monitor.resetHistograms();
+        Assert.assertEquals(0, monitor.getAttempts().getCount());
+    }
+
+    private static void assertWithin(long expected, long actual, double error) {
+        Assert.assertTrue("expected " + expected + " got " + actual, Math.abs(expected - actual) <= expected * error);
+    }
+}
@@ -0,0 +1,137 @@
+package com.netflix.astyanax.connectionpool.impl;
+
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import junit.framework.Assert;
+
+import org.junit.Test;
+
+import com.google.common.collect.Lists;
+import com.netflix.astyanax.connectionpool.Connection;
+import com.netflix.astyanax.connectionpool.Host;
+import com.netflix.astyanax.connectionpool.exceptions.ConnectionException;
+import com.netflix.astyanax.connectionpool.exceptions.PoolTimeoutException;
+import com.netflix.astyanax.shallows.EmptyPartitioner;
+import com.netflix.astyanax.test.TestClient;
+import com.netflix.astyanax.test.TestConnectionFactory;
+import com.netflix.astyanax.test.TestHostType;
+
+public class RingBufferHostConnectionPoolTest {
+    @Test
+    public void testRingBuffer() throws Exception {
+        AffinityRingBuffer<String> buffer = new AffinityRingBuffer<String>(3);
+        Assert.assertEquals(4, buffer.remainingCapacity());
+        Assert.assertNull(buffer.poll());
+        Assert.assertNull(buffer.poll(10, TimeUnit.MILLISECONDS));
+
+        for (int i = 0; i < 4; i++) {
+            Assert.assertTrue(buffer.offer("" + i));
+        }
+        Assert.assertFalse(buffer.offer("4"));
+        Assert.assertEquals(4, buffer.size());
+
+        List<String> drained = Lists.newArrayList();
+        Assert.assertEquals(4, buffer.drainTo(drained));
+        Assert.assertEquals(0, buffer.size());
+        Assert.assertEquals(4, drained.size());
+    }
+
+    @Test
+    public void testThreadAffinity() {
+        AffinityRingBuffer<String> buffer = new AffinityRingBuffer<String>(8);
+        for (int i = 0; i < 8; i++) {
+            buffer.offer("" + i);
+        }
+
+        String last = buffer.poll();
+        for (int i = 0; i < 100; i++) {
+            buffer.offer(last);
+            Assert.assertSame(last, buffer.poll());
+        }
+    }
+
+    @Test
+    public void testConcurrentBorrowAndReturn() throws Exception {
+        final AffinityRingBuffer<Integer> buffer = new AffinityRingBuffer<Integer>(4);
+        for (int i = 0; i < 4; i++) {
+            buffer.offer(i);
+        }
+
+        final int threadCount = 16;
+        final AtomicInteger errors = new AtomicInteger();
+        final CountDownLatch done = new CountDownLatch(threadCount);
+        for (int t = 0; t < threadCount; t++) {
+            new Thread() {
+                @Override
+                public void run() {
+                    try {
+                        for (int i = 0; i < 10000; i++) {
+                            Integer element = buffer.poll(1, TimeUnit.SECONDS);
+                            if (element == null || !buffer.offer(element))
+                                errors.incrementAndGet();
+                        }
+                    }
+                    catch (InterruptedException e) {
+                        errors.incrementAndGet();
+                    }
+                    finally {
+                        done.countDown();
+                    }
+                }
+            }.start();
+        }
+
+        Assert.assertTrue(done.await(30, TimeUnit.SECONDS));
+        Assert.assertEquals(0, errors.get());
+        Assert.assertEquals(4, buffer.size());
+    }
+
+    @Test
+    public void testBorrowAndReturn() throws Exception {
+        ConnectionPoolConfigurationImpl config = new ConnectionPoolConfigurationImpl("cluster_keyspace");
+        config.setMaxConnsPerHost(2);
+        config.setConnectTimeout(200);
+        config.setPartitioner(new EmptyPartitioner());
+        config.initialize();
+
+        CountingConnectionPoolMonitor monitor = new CountingConnectionPoolMonitor();
+        Host host = new Host("127.0.0.1", TestHostType.GOOD_IMMEDIATE.ordinal());
+        RingBufferHostConnectionPool<TestClient> pool = new RingBufferHostConnectionPool<TestClient>(
+                host, new TestConnectionFactory(config, monitor), monitor,
+                config, new SimpleHostConnectionPoolTest.NoOpListener());
+
+        Assert.assertEquals(2, pool.primeConnections(2));
+        Assert.assertEquals(2, pool.getActiveConnectionCount());
+        Assert.assertEquals(2, pool.getIdleConnectionCount());
+
+        Connection<TestClient> c1 = pool.borrowConnection(100);
+        Connection<TestClient> c2 = pool.borrowConnection(100);
+        Assert.assertEquals(0, pool.getIdleConnectionCount());
+        Assert.assertEquals(2, pool.getBusyConnectionCount());
+
+        try {
+            pool.borrowConnection(50);
+            Assert.fail();
+        }
+        catch (PoolTimeoutException e) {
+        }
+        catch (ConnectionException e) {
+            Assert.fail(e.getMessage());
+        }
+
+        pool.returnConnection(c1);
+        Assert.assertSame(c1, pool.borrowConnection(100));
+
+        pool.returnConnection(c1);
+        pool.returnConnection(c2);
+        Assert.assertEquals(2, pool.getIdleConnectionCount());
+        Assert.assertEquals(0, pool.getBlockedThreadCount());
+
+        pool.shutdown();
+        Assert.assertEquals(0, pool.getActiveConnectionCount());
+        Assert.assertEquals(0, pool.getIdleConnectionCount());
+    }
+}
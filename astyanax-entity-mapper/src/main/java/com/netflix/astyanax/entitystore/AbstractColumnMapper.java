@@ -26,4 +26,8 @@ public abstract class AbstractColumnMapper implements ColumnMapper {
     public Field getField() {
         return this.field;
     }
+
+    boolean isNullable() {
+        return columnAnnotation.nullable();
+    }
 }
@@ -0,0 +1,388 @@
+package com.netflix.astyanax.entitystore;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import com.netflix.astyanax.ColumnListMutation;
+import com.netflix.astyanax.Serializer;
+import com.netflix.astyanax.model.Column;
+import com.netflix.astyanax.model.ColumnList;
+import com.netflix.astyanax.serializers.StringSerializer;
+
+/**
+ * Compile once form of the column mappers of an entity class.
+ *
+ * The tree of ColumnMappers is flattened up front so that reading a row is a
+ * single pass over its columns with one hash lookup per column on the full
+ * dotted column name.  Column names, serializers, nested entity constructors
+ * and the fields that need validation are all resolved here, so nothing is
+ * split or concatenated per column and no intermediate lists are created.
+ * Writes walk the same tree using the precomputed column names.
+ *
+ * @author elandau
+ *
+ * @param <T> entity type
+ */
+class CompiledEntityMapper<T> {
+    private final Class<T>              clazz;
+    private final Constructor<T>        constructor;
+    private final Node[]                nodes;
+    private final Node[]                validated;
+    private final Map<String, LeafNode> leaves     = Maps.newHashMap();
+    private final List<ContainerNode>   containers = Lists.newArrayList();
+
+    CompiledEntityMapper(Class<T> clazz, Collection<ColumnMapper> mappers) {
+        this.clazz       = clazz;
+        this.constructor = findConstructor(clazz);
+        this.nodes       = compile(mappers, null, "");
+
+        List<Node> validated = Lists.newArrayList();
+        for (Node node : nodes) {
+            if (node.needsValidation())
+                validated.add(node);
+        }
+        this.validated = validated.toArray(new Node[validated.size()]);
+    }
+
+    private Node[] compile(Collection<ColumnMapper> mappers, CompositeNode parent, String prefix) {
+        Node[] compiled = new Node[mappers.size()];
+        int i = 0;
+        for (ColumnMapper mapper : mappers) {
+            AbstractColumnMapper columnMapper = (AbstractColumnMapper) mapper;
+            Field   field    = columnMapper.getField();
+            boolean nullable = columnMapper.isNullable();
+            String  name     = prefix + columnMapper.getColumnName();
+
+            Node node;
+            if (mapper instanceof LeafColumnMapper) {
+                LeafNode leaf = new LeafNode(parent, field, nullable, name, ((LeafColumnMapper) mapper).getSerializer());
+                leaves.put(name, leaf);
+                node = leaf;
+            }
+            else if (mapper instanceof CompositeColumnMapper) {
+                CompositeNode composite = new CompositeNode(parent, field, nullable, name);
+                composite.children = compile(((CompositeColumnMapper) mapper).getChildren(), composite, name + ".");
+                List<Node> required = Lists.newArrayList();
+                for (Node child : composite.children) {
+                    if (!child.nullable)
+                        required.add(child);
+                }
+                composite.required = required.toArray(new Node[required.size()]);
+                node = composite;
+            }
+            else if (mapper instanceof MapColumnMapper) {
+                MapColumnMapper mapMapper = (MapColumnMapper) mapper;
+                MapNode map = new MapNode(parent, field, nullable, name, mapMapper.getKeySerializer(), mapMapper.getValueSerializer());
+                containers.add(map);
+                node = map;
+            }
+            else if (mapper instanceof SetColumnMapper) {
+                SetNode set = new SetNode(parent, field, nullable, name, ((SetColumnMapper) mapper).getSerializer());
+                containers.add(set);
+                node = set;
+            }
+            else {
+                throw new IllegalArgumentException("unsupported column mapper: " + mapper);
+            }
+            compiled[i++] = node;
+        }
+        return compiled;
+    }
+
+    T newInstance() throws Exception {
+        return newInstance(clazz, constructor);
+    }
+
+    /**
+     * Set the fields of the entity from all the columns of a row in one pass.
+     * Columns that don't map to any field are ignored
+     */
+    void read(T entity, ColumnList<String> columns) throws Exception {
+        for (Column<String> column : columns) {
+            String name = column.getName();
+            LeafNode leaf = leaves.get(name);
+            if (leaf != null) {
+                leaf.read(entity, column);
+                continue;
+            }
+
+            for (ContainerNode container : containers) {
+                String key = container.keyOf(name);
+                if (key != null) {
+                    container.read(entity, key, column);
+                    break;
+                }
+            }
+        }
+    }
+
+    void validate(T entity) throws Exception {
+        for (Node node : validated) {
+            node.validate(entity);
+        }
+    }
+
+    void write(T entity, ColumnListMutation<String> clm) throws Exception {
+        for (Node node : nodes) {
+            node.write(entity, clm);
+        }
+    }
+
+    private static <E> Constructor<E> findConstructor(Class<E> clazz) {
+        try {
+            Constructor<E> constructor = clazz.getDeclaredConstructor();
+            constructor.setAccessible(true);
+            return constructor;
+        }
+        catch (NoSuchMethodException e) {
+            // Let newInstance() fail the same way Class.newInstance() does
+            return null;
+        }
+    }
+
+    private static <E> E newInstance(Class<E> clazz, Constructor<E> constructor) throws Exception {
+        if (constructor == null)
+            return clazz.newInstance();
+        return constructor.newInstance();
+    }
+
+    private static abstract class Node {
+        final CompositeNode parent;
+        final Field         field;
+        final boolean       nullable;
+        final String        name;
+
+        Node(CompositeNode parent, Field field, boolean nullable, String name) {
+            this.parent   = parent;
+            this.field    = field;
+            this.nullable = nullable;
+            this.name     = name;
+        }
+
+        /**
+         * @return Object that holds this node's field, creating any missing
+         *         nested entities on the way down from the root entity
+         */
+        Object ownerOf(Object entity) throws Exception {
+            return parent == null ? entity : parent.instanceOf(entity);
+        }
+
+        /**
+         * @return The non null value of the field or null if it should be skipped
+         */
+        Object valueToWrite(Object owner) throws Exception {
+            Object value = field.get(owner);
+            if (value == null && !nullable)
+                throw new IllegalArgumentException("cannot write non-nullable column with null value: " + name);
+            return value;
+        }
+
+        boolean needsValidation() {
+            return false;
+        }
+
+        void validate(Object owner) throws Exception {
+        }
+
+        abstract boolean write(Object owner, ColumnListMutation<String> clm) throws Exception;
+    }
+
+    private static class LeafNode extends Node {
+        private final Serializer<Object> serializer;
+
+        @SuppressWarnings("unchecked")
+        LeafNode(CompositeNode parent, Field field, boolean nullable, String name, Serializer<?> serializer) {
+            super(parent, field, nullable, name);
+            this.serializer = (Serializer<Object>) serializer;
+        }
+
+        void read(Object entity, Column<String> column) throws Exception {
+            field.set(ownerOf(entity), column.getValue(serializer));
+        }
+
+        @Override
+        boolean needsValidation() {
+            return !nullable && !field.getType().isPrimitive();
+        }
+
+        @Override
+        void validate(Object owner) throws Exception {
+            if (field.get(owner) == null && !nullable)
+                throw new IllegalArgumentException("cannot find non-nullable column: " + name);
+        }
+
+        @Override
+        boolean write(Object owner, ColumnListMutation<String> clm) throws Exception {
+            Object value = valueToWrite(owner);
+            if (value == null)
+                return false;
+            clm.putColumn(name, value, serializer, null);
+            return true;
+        }
+    }
+
+    private static class CompositeNode extends Node {
+        private final Class<Object>       type;
+        private final Constructor<Object> constructor;
+        private Node[]                    children;
+        private Node[]                    required;
+
+        @SuppressWarnings("unchecked")
+        CompositeNode(CompositeNode parent, Field field, boolean nullable, String name) {
+            super(parent, field, nullable, name);
+            this.type        = (Class<Object>) field.getType();
+            this.constructor = findConstructor(type);
+        }
+
+        Object instanceOf(Object entity) throws Exception {
+            Object owner = ownerOf(entity);
+            Object instance = field.get(owner);
+            if (instance == null) {
+                instance = newInstance(type, constructor);
+                field.set(owner, instance);
+            }
+            return instance;
+        }
+
+        @Override
+        boolean needsValidation() {
+            return true;
+        }
+
+        @Override
+        void validate(Object owner) throws Exception {
+            Object instance = field.get(owner);
+            if (instance == null) {
+                if (!nullable)
+                    throw new IllegalArgumentException("cannot find non-nullable column: " + name);
+            }
+            else {
+                for (Node child : required) {
+                    child.validate(instance);
+                }
+            }
+        }
+
+        @Override
+        boolean write(Object owner, ColumnListMutation<String> clm) throws Exception {
+            Object instance = valueToWrite(owner);
+            if (instance == null)
+                return false;
+
+            boolean hasNonNullChildField = false;
+            for (Node child : children) {
+                if (child.write(instance, clm))
+                    hasNonNullChildField = true;
+            }
+            return hasNonNullChildField;
+        }
+    }
+
+    /**
+     * Field whose entries are stored in columns named <field>.<key>
+     */
+    private static abstract class ContainerNode extends Node {
+        protected final String prefix;
+
+        ContainerNode(CompositeNode parent, Field field, boolean nullable, String name) {
+            super(parent, field, nullable, name);
+            this.prefix = name + ".";
+        }
+
+        /**
+         * @return Key part of the column name or null if the column doesn't
+         *         belong to this field
+         */
+        String keyOf(String columnName) {
+            if (columnName.length() <= prefix.length() || !columnName.startsWith(prefix))
+                return null;
+            String key = columnName.substring(prefix.length());
+            return key.indexOf('.') >= 0 ? null : key;
+        }
+
+        abstract void read(Object entity, String key, Column<String> column) throws Exception;
+    }
+
+    private static class MapNode extends ContainerNode {
+        private final Serializer<?>      keySerializer;
+        private final Serializer<Object> valueSerializer;
+
+        MapNode(CompositeNode parent, Field field, boolean nullable, String name, Serializer<?> keySerializer, Serializer<Object> valueSerializer) {
+            super(parent, field, nullable, name);
+            this.keySerializer   = keySerializer;
+            this.valueSerializer = valueSerializer;
+        }
+
+        @SuppressWarnings("unchecked")
+        @Override
+        void read(Object entity, String key, Column<String> column) throws Exception {
+            Object owner = ownerOf(entity);
+            Map<Object, Object> map = (Map<Object, Object>) field.get(owner);
+            if (map == null) {
+                map = Maps.newLinkedHashMap();
+                field.set(owner, map);
+            }
+            map.put(fromString(keySerializer, key), valueSerializer.fromByteBuffer(column.getByteBufferValue()));
+        }
+
+        @Override
+        boolean write(Object owner, ColumnListMutation<String> clm) throws Exception {
+            Map<?, ?> map = (Map<?, ?>) valueToWrite(owner);
+            if (map == null)
+                return false;
+            for (Map.Entry<?, ?> entry : map.entrySet()) {
+                clm.putColumn(prefix + entry.getKey().toString(), entry.getValue(), valueSerializer, null);
+            }
+            return true;
+        }
+    }
+
+    private static class SetNode extends ContainerNode {
+        private final Serializer<?> serializer;
+
+        SetNode(CompositeNode parent, Field field, boolean nullable, String name, Serializer<?> serializer) {
+            super(parent, field, nullable, name);
+            this.serializer = serializer;
+        }
+
+        @SuppressWarnings("unchecked")
+        @Override
+        void read(Object entity, String key, Column<String> column) throws Exception {
+            Object owner = ownerOf(entity);
+            Set<Object> set = (Set<Object>) field.get(owner);
+            if (set == null) {
+                set = Sets.newHashSet();
+                field.set(owner, set);
+            }
+            set.add(fromString(serializer, key));
+        }
+
+        @Override
+        boolean write(Object owner, ColumnListMutation<String> clm) throws Exception {
+            Set<?> set = (Set<?>) valueToWrite(owner);
+            if (set == null)
+                return false;
+            for (Object entry : set) {
+                clm.putEmptyColumn(prefix + entry.toString(), null);
+            }
+            return true;
+        }
+    }
+
+    /**
+     * Convert the string form of a map key or set entry back to its type
+     * without a round trip through a ByteBuffer for string keys
+     */
+    private static Object fromString(Serializer<?> serializer, String value) {
+        if (serializer instanceof StringSerializer)
+            return value;
+        return serializer.fromByteBuffer(serializer.fromString(value));
+    }
+}
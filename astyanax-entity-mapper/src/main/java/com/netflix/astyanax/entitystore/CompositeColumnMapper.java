@@ -1,6 +1,7 @@
 package com.netflix.astyanax.entitystore;
 
 import java.lang.reflect.Field;
+import java.util.Collection;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
@@ -56,6 +57,10 @@ class CompositeColumnMapper extends AbstractColumnMapper {
 		}
 	}
 
+	Collection<ColumnMapper> getChildren() {
+	    return columnList.values();
+	}
+
 	@Override
 	public String toString() {
 		return String.format("CompositeColumnMapper(%s)", clazz);
@@ -1,8 +1,14 @@
 package com.netflix.astyanax.entitystore;
 
+import java.io.Closeable;
 import java.util.Collection;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
 
 import javax.annotation.Nullable;
 import javax.persistence.PersistenceException;
@@ -11,6 +17,8 @@ import org.apache.commons.lang.StringUtils;
 
 import com.google.common.base.Function;
 import com.google.common.base.Preconditions;
+import com.google.common.base.Supplier;
+import com.google.common.collect.AbstractIterator;
 import com.google.common.collect.Lists;
 import com.netflix.astyanax.Keyspace;
 import com.netflix.astyanax.MutationBatch;
@@ -21,6 +29,7 @@ import com.netflix.astyanax.model.ConsistencyLevel;
 import com.netflix.astyanax.model.CqlResult;
 import com.netflix.astyanax.model.Row;
 import com.netflix.astyanax.model.Rows;
+import com.netflix.astyanax.query.CheckpointManager;
 import com.netflix.astyanax.query.ColumnFamilyQuery;
 import com.netflix.astyanax.recipes.reader.AllRowsReader;
 import com.netflix.astyanax.retry.RetryPolicy;
@@ -47,6 +56,7 @@ public class DefaultEntityManager<T, K> implements EntityManager<T, K> {
 		private RetryPolicy retryPolicy = null;
 		private LifecycleEvents<T> lifecycleHandler = null;
 		private String columnFamilyName = null;
+		private EntityCache<T, K> cache = null;
 		
 		public Builder() {
 
@@ -145,6 +155,16 @@ public class DefaultEntityManager<T, K> implements EntityManager<T, K> {
 			return this;
 		}
 
+		/**
+		 * optional
+		 * @param cache near cache of entities read by id
+		 */
+		public Builder<T, K> withCache(EntityCache<T, K> cache) {
+			Preconditions.checkNotNull(cache);
+			this.cache = cache;
+			return this;
+		}
+
 		@SuppressWarnings("unchecked")
         public DefaultEntityManager<T, K> build() {
 			// check mandatory fields
@@ -172,6 +192,10 @@ public class DefaultEntityManager<T, K> implements EntityManager<T, K> {
 	//////////////////////////////////////////////////////////////////
 	// private members
 
+	private static final int DEFAULT_SCAN_QUEUE_SIZE = 1000;
+	private static final long SCAN_POLL_INTERVAL = 100;
+	private static final Object END_OF_SCAN = new Object();
+
 	private final EntityMapper<T,K> entityMapper;
 	private final Keyspace keyspace;
 	private final ColumnFamily<K, String> columnFamily;
@@ -179,6 +203,7 @@ public class DefaultEntityManager<T, K> implements EntityManager<T, K> {
 	private final ConsistencyLevel writeConsistency;
 	private final RetryPolicy retryPolicy;
 	private final LifecycleEvents<T> lifecycleHandler;
+	private final EntityCache<T, K> cache;
 	
 	private DefaultEntityManager(Builder<T, K> builder) {
 		entityMapper = builder.entityMapper;
@@ -188,6 +213,7 @@ public class DefaultEntityManager<T, K> implements EntityManager<T, K> {
 		writeConsistency = builder.writeConsistency;
 		retryPolicy = builder.retryPolicy;
 		lifecycleHandler = builder.lifecycleHandler;
+		cache = builder.cache;
 	}
 
 	//////////////////////////////////////////////////////////////////
@@ -201,7 +227,14 @@ public class DefaultEntityManager<T, K> implements EntityManager<T, K> {
 		    lifecycleHandler.onPrePersist(entity);
             MutationBatch mb = newMutationBatch();
 			entityMapper.fillMutationBatch(mb, columnFamily, entity);			
-			mb.execute();
+			try {
+				mb.execute();
+			} finally {
+				if (cache != null) 
+					cache.invalidate(entityMapper.getEntityId(entity));
+			}
+			if (cache != null)
+				cache.put(entityMapper.getEntityId(entity), entity, entityMapper.getTtl(entity));
             lifecycleHandler.onPostPersist(entity);
 		} catch(Exception e) {
 			throw new PersistenceException("failed to put entity ", e);
@@ -213,6 +246,14 @@ public class DefaultEntityManager<T, K> implements EntityManager<T, K> {
 	 */
 	public T get(K id) throws PersistenceException {
 		try {
+			long generation = 0;
+			if (cache != null) {
+				T entity = cache.get(id);
+				if (entity != null)
+					return entity;
+				generation = cache.getGeneration();
+			}
+			
 			ColumnFamilyQuery<K, String> cfq = newQuery();            
 			ColumnList<String> cl = cfq.getKey(id).execute().getResult();
 			// when a row is deleted in cassandra,
@@ -222,6 +263,11 @@ public class DefaultEntityManager<T, K> implements EntityManager<T, K> {
 				return null;
 			T entity = entityMapper.constructEntity(id, cl);
 			lifecycleHandler.onPostLoad(entity);
+			if (cache != null) {
+				int ttl = getRemainingTtl(cl, System.currentTimeMillis());
+				if (ttl >= 0)
+					cache.load(id, entity, ttl, generation);
+			}
 			return entity;
 		} catch(Exception e) {
 			throw new PersistenceException("failed to get entity " + id, e);
@@ -239,6 +285,9 @@ public class DefaultEntityManager<T, K> implements EntityManager<T, K> {
 			mb.execute();
 		} catch(Exception e) {
 			throw new PersistenceException("failed to delete entity " + id, e);
+		} finally {
+			if (cache != null)
+				cache.invalidate(id);
 		}
 	}
 	
@@ -250,7 +299,12 @@ public class DefaultEntityManager<T, K> implements EntityManager<T, K> {
             id = entityMapper.getEntityId(entity);
             MutationBatch mb = newMutationBatch();
             mb.withRow(columnFamily, id).delete();
-            mb.execute();
+            try {
+                mb.execute();
+            } finally {
+                if (cache != null)
+                    cache.invalidate(id);
+            }
             lifecycleHandler.onPostRemove(entity);
         } catch(Exception e) {
             throw new PersistenceException("failed to delete entity " + id, e);
@@ -262,21 +316,34 @@ public class DefaultEntityManager<T, K> implements EntityManager<T, K> {
      */
     @Override
     public List<T> getAll() throws PersistenceException {
-        final List<T> entities = Lists.newArrayList();
-        visitAll(new Function<T, Boolean>() {
+        // Each reader thread collects into its own list so they never contend
+        List<EntityCollector> collectors = newScan().forEachPerThread(new Supplier<EntityCollector>() {
             @Override
-            public synchronized Boolean apply(@Nullable T entity) {
-                entities.add(entity);
-                try {
-                    lifecycleHandler.onPostLoad(entity);
-                } catch (Exception e) {
-                    // TODO
-                }
-                return true;
+            public EntityCollector get() {
+                return new EntityCollector();
             }
         });
+        
+        int size = 0;
+        for (EntityCollector collector : collectors) {
+            size += collector.entities.size();
+        }
+        List<T> entities = Lists.newArrayListWithExpectedSize(size);
+        for (EntityCollector collector : collectors) {
+            entities.addAll(collector.entities);
+        }
         return entities;
     }
+    
+    private class EntityCollector implements Function<T, Boolean> {
+        private final List<T> entities = Lists.newArrayList();
+        
+        @Override
+        public Boolean apply(@Nullable T entity) {
+            entities.add(entity);
+            return true;
+        }
+    }
 
     /**
      * @inheritDoc
@@ -284,15 +351,38 @@ public class DefaultEntityManager<T, K> implements EntityManager<T, K> {
     @Override
     public List<T> get(Collection<K> ids) throws PersistenceException {
         try {
+            List<T> entities = Lists.newArrayListWithExpectedSize(ids.size());
+            
+            // Only read the ids that are not cached, in a single query
+            Collection<K> misses = ids;
+            long generation = 0;
+            if (cache != null) {
+                misses = Lists.newArrayList();
+                for (K id : ids) {
+                    T entity = cache.get(id);
+                    if (entity != null)
+                        entities.add(entity);
+                    else
+                        misses.add(id);
+                }
+                if (misses.isEmpty())
+                    return entities;
+                generation = cache.getGeneration();
+            }
+            
             ColumnFamilyQuery<K, String> cfq = newQuery();            
-            Rows<K, String> rows = cfq.getRowSlice(ids).execute().getResult();
+            Rows<K, String> rows = cfq.getRowSlice(misses).execute().getResult();
 
-            List<T> entities = Lists.newArrayListWithExpectedSize(rows.size());
             for (Row<K, String> row : rows) {
                 if (!row.getColumns().isEmpty()) { 
                     T entity = entityMapper.constructEntity(row.getKey(), row.getColumns());
                     lifecycleHandler.onPostLoad(entity);
                     entities.add(entity);
+                    if (cache != null) {
+                        int ttl = getRemainingTtl(row.getColumns(), System.currentTimeMillis());
+                        if (ttl >= 0)
+                            cache.load(row.getKey(), entity, ttl, generation);
+                    }
                 }
             }
             return entities;
@@ -314,6 +404,9 @@ public class DefaultEntityManager<T, K> implements EntityManager<T, K> {
             mb.execute();
         } catch(Exception e) {
             throw new PersistenceException("failed to delete entities " + ids, e);
+        } finally {
+            if (cache != null)
+                cache.invalidate(ids);
         }
     }
 
@@ -321,12 +414,19 @@ public class DefaultEntityManager<T, K> implements EntityManager<T, K> {
     public void remove(Collection<T> entities) throws PersistenceException {
         MutationBatch mb = newMutationBatch();        
         try {
+            List<K> ids = Lists.newArrayListWithExpectedSize(entities.size());
             for (T entity : entities) {
                 lifecycleHandler.onPreRemove(entity);
                 K id = entityMapper.getEntityId(entity);
                 mb.withRow(columnFamily, id).delete();
+                ids.add(id);
+            }
+            try {
+                mb.execute();
+            } finally {
+                if (cache != null)
+                    cache.invalidate(ids);
             }
-            mb.execute();
             for (T entity : entities) {
                 lifecycleHandler.onPostRemove(entity);
             }
@@ -346,7 +446,20 @@ public class DefaultEntityManager<T, K> implements EntityManager<T, K> {
                 lifecycleHandler.onPrePersist(entity);
                 entityMapper.fillMutationBatch(mb, columnFamily, entity);           
             }
-            mb.execute();
+            try {
+                mb.execute();
+            } finally {
+                if (cache != null) {
+                    for (T entity : entities) {
+                        cache.invalidate(entityMapper.getEntityId(entity));
+                    }
+                }
+            }
+            if (cache != null) {
+                for (T entity : entities) {
+                    cache.put(entityMapper.getEntityId(entity), entity, entityMapper.getTtl(entity));
+                }
+            }
             
             for (T entity : entities) {
                 lifecycleHandler.onPostPersist(entity);
@@ -362,8 +475,140 @@ public class DefaultEntityManager<T, K> implements EntityManager<T, K> {
      */
     @Override
     public void visitAll(final Function<T, Boolean> callback) throws PersistenceException {
-        try {
-            new AllRowsReader.Builder<K, String>(keyspace, columnFamily)
+        newScan().forEach(callback);
+    }
+    
+    /**
+     * Scan of all the entities with control over how the column family is read.
+     * For example, to stream all entities with bounded memory
+     * 
+     * <pre>
+     * ScanIterator iter = entityManager.newScan()
+     *      .withConcurrencyLevel(8)
+     *      .withPageSize(500)
+     *      .iterator();
+     * try {
+     *     while (iter.hasNext()) {
+     *         ...
+     *     }
+     * }
+     * finally {
+     *     iter.close();
+     * }
+     * </pre>
+     */
+    public Scan newScan() {
+        return new Scan();
+    }
+    
+    public class Scan {
+        private Integer concurrencyLevel = null;
+        private Integer pageSize = null;
+        private Integer readAheadDepth = null;
+        private CheckpointManager checkpointManager = null;
+        private int queueSize = DEFAULT_SCAN_QUEUE_SIZE;
+        
+        private Scan() {
+        }
+        
+        /**
+         * Split the token range into this many sub ranges that are read in parallel.
+         * By default each range in the ring is read in parallel.
+         * @param concurrencyLevel
+         */
+        public Scan withConcurrencyLevel(int concurrencyLevel) {
+            this.concurrencyLevel = concurrencyLevel;
+            return this;
+        }
+        
+        /**
+         * Number of rows to read per query
+         * @param pageSize
+         */
+        public Scan withPageSize(int pageSize) {
+            this.pageSize = pageSize;
+            return this;
+        }
+        
+        /**
+         * Number of pages to read ahead of each reader thread
+         * @param readAheadDepth
+         */
+        public Scan withReadAheadDepth(int readAheadDepth) {
+            this.readAheadDepth = readAheadDepth;
+            return this;
+        }
+        
+        /**
+         * Track progress of each token range so an interrupted scan can be 
+         * resumed.  Note that with iterator() the checkpoint may be ahead of 
+         * the consumer by up to queueSize entities.
+         * @param checkpointManager
+         */
+        public Scan withCheckpointManager(CheckpointManager checkpointManager) {
+            this.checkpointManager = checkpointManager;
+            return this;
+        }
+        
+        /**
+         * Maximum number of entities buffered between the reader threads and 
+         * the consumer of iterator()
+         * @param queueSize
+         */
+        public Scan withQueueSize(int queueSize) {
+            Preconditions.checkArgument(queueSize > 0, "queueSize must be > 0");
+            this.queueSize = queueSize;
+            return this;
+        }
+        
+        /**
+         * Visit all entities.  The callback is shared by all reader threads and
+         * must be thread safe.  Return false from the callback to stop the scan.
+         * @param callback
+         */
+        public void forEach(Function<T, Boolean> callback) throws PersistenceException {
+            call(newReader(callback));
+        }
+        
+        /**
+         * Visit all entities with a separate callback for each reader thread, 
+         * so callbacks can accumulate state without any synchronization.
+         * Return false from a callback to stop the scan.
+         * 
+         * @param callbackFactory Called once per reader thread
+         * @return All the callbacks that were created, once the scan is done
+         */
+        public <F extends Function<T, Boolean>> List<F> forEachPerThread(final Supplier<F> callbackFactory) throws PersistenceException {
+            final ConcurrentLinkedQueue<F> callbacks = new ConcurrentLinkedQueue<F>();
+            final ThreadLocal<F> threadCallback = new ThreadLocal<F>();
+            call(newReader(new Function<T, Boolean>() {
+                @Override
+                public Boolean apply(@Nullable T entity) {
+                    F callback = threadCallback.get();
+                    if (callback == null) {
+                        callback = callbackFactory.get();
+                        threadCallback.set(callback);
+                        callbacks.add(callback);
+                    }
+                    return callback.apply(entity);
+                }
+            }));
+            return Lists.newArrayList(callbacks);
+        }
+        
+        /**
+         * Stream all entities.  Entities are read in the background and at 
+         * most queueSize of them are held in memory at any time.  The
+         * iterator must be closed if it is not read to the end.
+         */
+        public ScanIterator iterator() {
+            ScanIterator iter = new ScanIterator(queueSize);
+            iter.start(newReader(iter));
+            return iter;
+        }
+        
+        private AllRowsReader<K, String> newReader(final Function<T, Boolean> callback) {
+            AllRowsReader.Builder<K, String> builder = new AllRowsReader.Builder<K, String>(keyspace, columnFamily)
                     .withIncludeEmptyRows(false)
                     .forEachRow(new Function<Row<K,String>, Boolean>() {
                         @Override
@@ -378,11 +623,112 @@ public class DefaultEntityManager<T, K> implements EntityManager<T, K> {
                             }
                             return callback.apply(entity);
                         }
-                    })
-                    .build()
-                    .call();
-        } catch (Exception e) {
-            throw new PersistenceException("Failed to fetch all entites", e);
+                    });
+            if (concurrencyLevel != null)
+                builder.withConcurrencyLevel(concurrencyLevel);
+            if (pageSize != null)
+                builder.withPageSize(pageSize);
+            if (readAheadDepth != null)
+                builder.withReadAheadDepth(readAheadDepth);
+            if (checkpointManager != null)
+                builder.withCheckpointManager(checkpointManager);
+            return builder.build();
+        }
+        
+        private void call(AllRowsReader<K, String> reader) throws PersistenceException {
+            try {
+                reader.call();
+            } catch (Exception e) {
+                throw new PersistenceException("Failed to fetch all entites", e);
+            }
+        }
+    }
+    
+    /**
+     * Iterator over entities that are read by a background scan.  Reader 
+     * threads block once the queue is full so memory use is bounded by the 
+     * queue size, not the size of the column family.
+     */
+    public class ScanIterator extends AbstractIterator<T> implements Function<T, Boolean>, Closeable {
+        private final BlockingQueue<Object> queue;
+        private final AtomicReference<Exception> error = new AtomicReference<Exception>();
+        private volatile boolean closed = false;
+        private AllRowsReader<K, String> reader;
+        
+        private ScanIterator(int queueSize) {
+            this.queue = new ArrayBlockingQueue<Object>(queueSize);
+        }
+        
+        private void start(AllRowsReader<K, String> reader) {
+            this.reader = reader;
+            Thread thread = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        ScanIterator.this.reader.call();
+                    } catch (Exception e) {
+                        error.set(e);
+                    } finally {
+                        enqueue(END_OF_SCAN);
+                    }
+                }
+            }, "DefaultEntityManagerScan-" + columnFamily.getName());
+            thread.setDaemon(true);
+            thread.start();
+        }
+        
+        /**
+         * Called by the reader threads for each entity
+         */
+        @Override
+        public Boolean apply(@Nullable T entity) {
+            return enqueue(entity);
+        }
+        
+        private boolean enqueue(Object element) {
+            try {
+                while (!closed) {
+                    if (queue.offer(element, SCAN_POLL_INTERVAL, TimeUnit.MILLISECONDS))
+                        return true;
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return false;
+        }
+        
+        @SuppressWarnings("unchecked")
+        @Override
+        protected T computeNext() {
+            if (closed)
+                return endOfData();
+            
+            Object next;
+            try {
+                next = queue.take();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                close();
+                throw new PersistenceException("Interrupted waiting for entities");
+            }
+            
+            if (next == END_OF_SCAN) {
+                closed = true;
+                if (error.get() != null)
+                    throw new PersistenceException("Failed to fetch all entites", error.get());
+                return endOfData();
+            }
+            return (T) next;
+        }
+        
+        /**
+         * Stop the scan and release any buffered entities
+         */
+        @Override
+        public void close() {
+            closed = true;
+            reader.cancel();
+            queue.clear();
         }
     }
     
@@ -415,6 +761,30 @@ public class DefaultEntityManager<T, K> implements EntityManager<T, K> {
         return mb;
     }
     
+    /**
+     * Cassandra only returns the TTL a column was written with, so the time
+     * left is derived from the column's write timestamp (in microseconds).
+     * 
+     * @param now Current time in milliseconds
+     * @return Smallest remaining TTL (in seconds) of the columns, which bounds how 
+     *         long the entity read from them may be cached, 0 if none of them have 
+     *         a TTL or -1 if a column is about to expire and the entity shouldn't 
+     *         be cached at all
+     */
+    static int getRemainingTtl(ColumnList<String> cl, long now) {
+        long remaining = Long.MAX_VALUE;
+        for (com.netflix.astyanax.model.Column<String> column : cl) {
+            int columnTtl = column.getTtl();
+            if (columnTtl > 0) 
+                remaining = Math.min(remaining, column.getTimestamp() / 1000 + columnTtl * 1000L - now);
+        }
+        if (remaining == Long.MAX_VALUE)
+            return 0;
+        if (remaining < 1000)
+            return -1;
+        return (int)Math.min(remaining / 1000, Integer.MAX_VALUE);
+    }
+    
     private ColumnFamilyQuery<K, String> newQuery() {
         ColumnFamilyQuery<K, String> cfq = keyspace.prepareQuery(columnFamily);
         if(readConsitency != null)
@@ -439,6 +809,9 @@ public class DefaultEntityManager<T, K> implements EntityManager<T, K> {
             keyspace.dropColumnFamily(this.columnFamily);
         } catch (ConnectionException e) {
             throw new PersistenceException("Unable to drop column family " + this.columnFamily.getName(), e);
+        } finally {
+            if (cache != null)
+                cache.invalidateAll();
         }
     }
 
@@ -448,6 +821,9 @@ public class DefaultEntityManager<T, K> implements EntityManager<T, K> {
             keyspace.truncateColumnFamily(this.columnFamily);
         } catch (ConnectionException e) {
             throw new PersistenceException("Unable to drop column family " + this.columnFamily.getName(), e);
+        } finally {
+            if (cache != null)
+                cache.invalidateAll();
         }
     }
 
@@ -0,0 +1,296 @@
+package com.netflix.astyanax.entitystore;
+
+import java.util.Collection;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.google.common.base.Preconditions;
+import com.googlecode.concurrentlinkedhashmap.ConcurrentLinkedHashMap;
+import com.googlecode.concurrentlinkedhashmap.EntryWeigher;
+import com.googlecode.concurrentlinkedhashmap.EvictionListener;
+import com.googlecode.concurrentlinkedhashmap.Weigher;
+import com.googlecode.concurrentlinkedhashmap.Weighers;
+
+/**
+ * Bounded read through near cache of entities keyed by id for use with
+ * DefaultEntityManager.
+ *
+ * Entries are evicted in LRU order once the total weight of the cache exceeds
+ * maxWeight.  By default every entity weighs 1 so maxWeight is simply the
+ * maximum number of entities.  An entry expires after the expireAfterWrite
+ * duration or after the TTL the entity's columns were written with, whichever
+ * comes first, so the cache never returns an entity that cassandra has
+ * already expired.
+ *
+ * Writes and deletes through the entity manager invalidate the cached entry.
+ * With write through enabled a put replaces the cached entry with the entity
+ * that was just written instead.  Scans (getAll, visitAll, find) bypass the
+ * cache so a full scan doesn't flush the hot entries.
+ *
+ * Cached entities are shared between all callers and must not be modified.
+ *
+ * @author elandau
+ *
+ * @param <T> entity type
+ * @param <K> rowKey type
+ */
+public class EntityCache<T, K> {
+
+    public static class Builder<T, K> {
+        private long                maxWeight         = 10000;
+        private Weigher<? super T>  weigher           = Weighers.singleton();
+        private long                expireAfterWrite  = 0;
+        private boolean             writeThrough      = false;
+        private int                 concurrencyLevel  = 16;
+
+        /**
+         * Maximum total weight of the cached entities.  This is the maximum
+         * number of entities unless a weigher is set.
+         * @param maxWeight
+         */
+        public Builder<T, K> withMaxWeight(long maxWeight) {
+            Preconditions.checkArgument(maxWeight > 0, "maxWeight must be > 0");
+            this.maxWeight = maxWeight;
+            return this;
+        }
+
+        /**
+         * optional
+         * @param weigher Relative weight of an entity, such as its approximate size in bytes
+         */
+        public Builder<T, K> withWeigher(Weigher<? super T> weigher) {
+            Preconditions.checkNotNull(weigher);
+            this.weigher = weigher;
+            return this;
+        }
+
+        /**
+         * Expire entries this long after they were loaded or written, even if
+         * the entity has no TTL.  Entries don't expire by time by default.
+         * @param duration
+         * @param units
+         */
+        public Builder<T, K> withExpireAfterWrite(long duration, TimeUnit units) {
+            Preconditions.checkArgument(duration >= 0, "duration must be >= 0");
+            this.expireAfterWrite = units.toNanos(duration);
+            return this;
+        }
+
+        /**
+         * Cache entities as they are put instead of only invalidating them.
+         * Only safe if entities are not modified after being put.
+         * @param writeThrough
+         */
+        public Builder<T, K> withWriteThrough(boolean writeThrough) {
+            this.writeThrough = writeThrough;
+            return this;
+        }
+
+        public Builder<T, K> withConcurrencyLevel(int concurrencyLevel) {
+            this.concurrencyLevel = concurrencyLevel;
+            return this;
+        }
+
+        public EntityCache<T, K> build() {
+            return new EntityCache<T, K>(this);
+        }
+    }
+
+    private static class Entry<T> {
+        final T    entity;
+        final long expireAt;
+
+        Entry(T entity, long expireAt) {
+            this.entity   = entity;
+            this.expireAt = expireAt;
+        }
+
+        boolean isExpired(long now) {
+            return expireAt != 0 && now - expireAt >= 0;
+        }
+    }
+
+    private final ConcurrentLinkedHashMap<K, Entry<T>> entries;
+    private final long       expireAfterWrite;
+    private final boolean    writeThrough;
+
+    /**
+     * Incremented by every write or invalidation.  A load only keeps its
+     * entry if no write happened while the row was being read, otherwise a
+     * slow read could put back an entity that was just updated or deleted.
+     */
+    private final AtomicLong generation       = new AtomicLong();
+
+    private final AtomicLong hitCount         = new AtomicLong();
+    private final AtomicLong missCount        = new AtomicLong();
+    private final AtomicLong loadCount        = new AtomicLong();
+    private final AtomicLong evictionCount    = new AtomicLong();
+    private final AtomicLong expirationCount  = new AtomicLong();
+
+    private EntityCache(Builder<T, K> builder) {
+        final Weigher<? super T> weigher = builder.weigher;
+        this.entries = new ConcurrentLinkedHashMap.Builder<K, Entry<T>>()
+                .maximumWeightedCapacity(builder.maxWeight)
+                .concurrencyLevel(builder.concurrencyLevel)
+                .weigher(new EntryWeigher<K, Entry<T>>() {
+                    @Override
+                    public int weightOf(K key, Entry<T> entry) {
+                        return weigher.weightOf(entry.entity);
+                    }
+                })
+                .listener(new EvictionListener<K, Entry<T>>() {
+                    @Override
+                    public void onEviction(K key, Entry<T> entry) {
+                        evictionCount.incrementAndGet();
+                    }
+                })
+                .build();
+        this.expireAfterWrite = builder.expireAfterWrite;
+        this.writeThrough     = builder.writeThrough;
+    }
+
+    /**
+     * @return Cached entity or null if not cached or expired
+     */
+    T get(K id) {
+        Entry<T> entry = entries.get(id);
+        if (entry != null) {
+            if (!entry.isExpired(System.nanoTime())) {
+                hitCount.incrementAndGet();
+                return entry.entity;
+            }
+            if (entries.remove(id, entry))
+                expirationCount.incrementAndGet();
+        }
+        missCount.incrementAndGet();
+        return null;
+    }
+
+    /**
+     * Must be called before reading a row that will be passed to load()
+     */
+    long getGeneration() {
+        return generation.get();
+    }
+
+    /**
+     * Cache an entity that was read from cassandra
+     *
+     * @param id
+     * @param entity
+     * @param ttl        Smallest TTL (in seconds) of the entity's columns or 0 for none
+     * @param generation getGeneration() from before the row was read
+     */
+    void load(K id, T entity, int ttl, long generation) {
+        if (this.generation.get() != generation)
+            return;
+
+        Entry<T> entry = newEntry(entity, ttl);
+        if (entries.putIfAbsent(id, entry) == null) {
+            loadCount.incrementAndGet();
+            // A write may have slipped in after the check above
+            if (this.generation.get() != generation)
+                entries.remove(id, entry);
+        }
+    }
+
+    /**
+     * Called once an entity has been written to cassandra
+     * @param id
+     * @param entity
+     * @param ttl   TTL (in seconds) the entity was written with, or null for none
+     */
+    void put(K id, T entity, Integer ttl) {
+        generation.incrementAndGet();
+        if (writeThrough)
+            entries.put(id, newEntry(entity, ttl == null ? 0 : ttl));
+        else
+            entries.remove(id);
+    }
+
+    void invalidate(K id) {
+        generation.incrementAndGet();
+        entries.remove(id);
+    }
+
+    void invalidate(Collection<K> ids) {
+        generation.incrementAndGet();
+        for (K id : ids) {
+            entries.remove(id);
+        }
+    }
+
+    public void invalidateAll() {
+        generation.incrementAndGet();
+        entries.clear();
+    }
+
+    private Entry<T> newEntry(T entity, int ttl) {
+        long expireAfter = expireAfterWrite;
+        if (ttl > 0) {
+            long ttlNanos = TimeUnit.SECONDS.toNanos(ttl);
+            if (expireAfter == 0 || ttlNanos < expireAfter)
+                expireAfter = ttlNanos;
+        }
+        long expireAt = 0;
+        if (expireAfter > 0) {
+            // 0 is reserved for 'never expires'
+            expireAt = System.nanoTime() + expireAfter;
+            if (expireAt == 0)
+                expireAt = 1;
+        }
+        return new Entry<T>(entity, expireAt);
+    }
+
+    public long getHitCount() {
+        return hitCount.get();
+    }
+
+    public long getMissCount() {
+        return missCount.get();
+    }
+
+    public double getHitRate() {
+        long hits     = hitCount.get();
+        long requests = hits + missCount.get();
+        return requests == 0 ? 1.0 : (double) hits / requests;
+    }
+
+    /**
+     * @return Number of entities read from cassandra and added to the cache
+     */
+    public long getLoadCount() {
+        return loadCount.get();
+    }
+
+    public long getEvictionCount() {
+        return evictionCount.get();
+    }
+
+    public long getExpirationCount() {
+        return expirationCount.get();
+    }
+
+    public int getSize() {
+        return entries.size();
+    }
+
+    public long getWeightedSize() {
+        return entries.weightedSize();
+    }
+
+    @Override
+    public String toString() {
+        return new StringBuilder()
+            .append("EntityCache[")
+            .append("size=").append(getSize())
+            .append(",weightedSize=").append(getWeightedSize())
+            .append(",hits=").append(getHitCount())
+            .append(",misses=").append(getMissCount())
+            .append(",loads=").append(getLoadCount())
+            .append(",evictions=").append(getEvictionCount())
+            .append(",expirations=").append(getExpirationCount())
+            .append("]")
+            .toString();
+    }
+}
@@ -39,6 +39,7 @@ class EntityMapper<T, K> {
 	private final Field idField;
 	private final Map<String, ColumnMapper> columnList;
 	private final String entityName;
+	private final CompiledEntityMapper<T> compiledMapper;
 	
 	/**
 	 * 
@@ -48,6 +49,16 @@ class EntityMapper<T, K> {
 	 * 		if column name contains illegal char (like dot)
 	 */
 	EntityMapper(Class<T> clazz, Integer ttl) {
+		this(clazz, ttl, true);
+	}
+
+	/**
+	 * @param clazz
+	 * @param ttl
+	 * @param compiled  Read and write entities through a CompiledEntityMapper 
+	 *                  instead of walking the column mappers for every column
+	 */
+	EntityMapper(Class<T> clazz, Integer ttl, boolean compiled) {
 		this.clazz = clazz;
 		
 		// clazz should be annotated with @Entity
@@ -117,6 +128,7 @@ class EntityMapper<T, K> {
 		Preconditions.checkNotNull(tmpIdField, "there are no field with @Id annotation");
 		//Preconditions.checkArgument(tmpIdField.getClass().equals(K.getClass()), String.format("@Id field type (%s) doesn't match generic type K (%s)", tmpIdField.getClass(), K.getClass()));
 		idField = tmpIdField;
+		compiledMapper = compiled ? new CompiledEntityMapper<T>(clazz, columnList.values()) : null;
 	}
 
     void fillMutationBatch(MutationBatch mb, ColumnFamily<K, String> columnFamily, T entity) {
@@ -125,16 +137,24 @@ class EntityMapper<T, K> {
 			K rowKey = (K) idField.get(entity);
 			ColumnListMutation<String> clm = mb.withRow(columnFamily, rowKey);
 			clm.setDefaultTtl(getTtl(entity));
-			
-			for (ColumnMapper mapper : columnList.values()) {
-				mapper.fillMutationBatch(entity, clm, "");
-			}
+			fillColumnListMutation(clm, entity);
 		} catch(Exception e) {
 			throw new PersistenceException("failed to fill mutation batch", e);
 		}
 	}
+
+	void fillColumnListMutation(ColumnListMutation<String> clm, T entity) throws Exception {
+		if (compiledMapper != null) {
+			compiledMapper.write(entity, clm);
+			return;
+		}
+		
+		for (ColumnMapper mapper : columnList.values()) {
+			mapper.fillMutationBatch(entity, clm, "");
+		}
+	}
     
-    private Integer getTtl(T entity) throws IllegalArgumentException, IllegalAccessException, InvocationTargetException {
+    Integer getTtl(T entity) throws IllegalArgumentException, IllegalAccessException, InvocationTargetException {
     	Integer retTtl = this.ttl;
     	// TTL method has higher priority
     	if(ttlMethod != null) {
@@ -146,6 +166,14 @@ class EntityMapper<T, K> {
 
 	T constructEntity(K id, ColumnList<String> cl) {
 		try {
+			if (compiledMapper != null) {
+				T entity = compiledMapper.newInstance();
+				idField.set(entity, id);
+				compiledMapper.read(entity, cl);
+				compiledMapper.validate(entity);
+				return entity;
+			}
+			
 		    T entity = clazz.newInstance();
 			idField.set(entity, id);
 			
@@ -28,6 +28,14 @@ public class MapColumnMapper extends AbstractColumnMapper {
         this.valueSerializer  = SerializerTypeInferer.getSerializer(this.valueClazz);
     }
 
+    Serializer<?> getKeySerializer() {
+        return keySerializer;
+    }
+
+    Serializer<Object> getValueSerializer() {
+        return valueSerializer;
+    }
+
     @Override
     public String getColumnName() {
         return this.columnName;
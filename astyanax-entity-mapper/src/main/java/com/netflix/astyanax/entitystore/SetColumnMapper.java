@@ -28,6 +28,10 @@ public class SetColumnMapper extends AbstractColumnMapper {
         this.serializer       = SerializerTypeInferer.getSerializer(this.clazz);
     }
 
+    Serializer<?> getSerializer() {
+        return serializer;
+    }
+
     @Override
     public String getColumnName() {
         return this.columnName;
@@ -246,6 +246,26 @@ public class DefaultEntityManagerTest {
 			Assert.assertEquals(entities.keySet(), entities2.keySet());
 		}
 
+		// Stream all
+		{
+			DefaultEntityManager<SimpleEntity, String>.ScanIterator iter = ((DefaultEntityManager<SimpleEntity, String>)entityPersister).newScan()
+					.withConcurrencyLevel(4)
+					.withPageSize(3)
+					.withQueueSize(2)
+					.iterator();
+			final Map<String, SimpleEntity> entities2 = Maps.newHashMap();
+			try {
+				while (iter.hasNext()) {
+					SimpleEntity entity = iter.next();
+					entities2.put(entity.getId(), entity);
+				}
+			} finally {
+				iter.close();
+			}
+
+			Assert.assertEquals(entities.keySet(), entities2.keySet());
+		}
+
 		// Delete multiple
 		{
 			System.out.println(entities.keySet());
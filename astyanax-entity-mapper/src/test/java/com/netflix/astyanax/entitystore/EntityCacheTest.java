@@ -0,0 +1,132 @@
+package com.netflix.astyanax.entitystore;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import junit.framework.Assert;
+
+import org.apache.cassandra.thrift.Column;
+import org.junit.Test;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.googlecode.concurrentlinkedhashmap.Weigher;
+import com.netflix.astyanax.model.ColumnList;
+import com.netflix.astyanax.serializers.StringSerializer;
+import com.netflix.astyanax.thrift.model.ThriftColumnListImpl;
+
+public class EntityCacheTest {
+
+	@Test
+	public void loadAndInvalidate() {
+		EntityCache<String, String> cache = new EntityCache.Builder<String, String>().build();
+
+		Assert.assertNull(cache.get("a"));
+		cache.load("a", "A", 0, cache.getGeneration());
+		Assert.assertEquals("A", cache.get("a"));
+		Assert.assertEquals(1, cache.getHitCount());
+		Assert.assertEquals(1, cache.getMissCount());
+		Assert.assertEquals(1, cache.getLoadCount());
+
+		cache.invalidate("a");
+		Assert.assertNull(cache.get("a"));
+
+		// put only invalidates unless write through is enabled
+		cache.load("a", "A", 0, cache.getGeneration());
+		cache.put("a", "A2", null);
+		Assert.assertNull(cache.get("a"));
+	}
+
+	@Test
+	public void staleLoadIsDropped() {
+		EntityCache<String, String> cache = new EntityCache.Builder<String, String>().build();
+
+		// Row is read, then deleted before the read result is cached
+		long generation = cache.getGeneration();
+		cache.invalidate(ImmutableList.of("a"));
+		cache.load("a", "A", 0, generation);
+		Assert.assertNull(cache.get("a"));
+		Assert.assertEquals(0, cache.getSize());
+	}
+
+	@Test
+	public void writeThrough() {
+		EntityCache<String, String> cache = new EntityCache.Builder<String, String>()
+				.withWriteThrough(true)
+				.build();
+
+		cache.put("a", "A", null);
+		Assert.assertEquals("A", cache.get("a"));
+		cache.put("a", "A2", null);
+		Assert.assertEquals("A2", cache.get("a"));
+	}
+
+	@Test
+	public void weightedEviction() {
+		EntityCache<String, String> cache = new EntityCache.Builder<String, String>()
+				.withMaxWeight(10)
+				.withWeigher(new Weigher<String>() {
+					@Override
+					public int weightOf(String value) {
+						return value.length();
+					}
+				})
+				.build();
+
+		cache.load("a", "AAAA", 0, cache.getGeneration());
+		cache.load("b", "BBBB", 0, cache.getGeneration());
+		Assert.assertEquals(8, cache.getWeightedSize());
+		cache.load("c", "CCCC", 0, cache.getGeneration());
+		Assert.assertEquals(2, cache.getSize());
+		Assert.assertEquals(1, cache.getEvictionCount());
+		Assert.assertNull(cache.get("a"));
+		Assert.assertEquals("CCCC", cache.get("c"));
+	}
+
+	@Test
+	public void expiration() throws Exception {
+		EntityCache<String, String> cache = new EntityCache.Builder<String, String>()
+				.withExpireAfterWrite(50, TimeUnit.MILLISECONDS)
+				.build();
+
+		// A long column TTL doesn't extend the cache expiration
+		cache.load("a", "A", 3600, cache.getGeneration());
+		Assert.assertEquals("A", cache.get("a"));
+		Thread.sleep(100);
+		Assert.assertNull(cache.get("a"));
+		Assert.assertEquals(1, cache.getExpirationCount());
+		Assert.assertEquals(0, cache.getSize());
+	}
+
+	@Test
+	public void remainingTtl() throws Exception {
+		long now = System.currentTimeMillis();
+
+		// Written 100 seconds ago with TTLs of 600 and 300 seconds
+		List<Column> columns = Lists.newArrayList(
+				newColumn("a", (now - 100000) * 1000, 600),
+				newColumn("b", (now - 100000) * 1000, 300),
+				newColumn("c", now * 1000, 0));
+		Assert.assertEquals(200, DefaultEntityManager.getRemainingTtl(newColumnList(columns), now));
+
+		// No TTL at all
+		Assert.assertEquals(0, DefaultEntityManager.getRemainingTtl(newColumnList(columns.subList(2, 3)), now));
+
+		// Expired between being read and being cached
+		columns.add(newColumn("d", (now - 60000) * 1000, 60));
+		Assert.assertEquals(-1, DefaultEntityManager.getRemainingTtl(newColumnList(columns), now));
+	}
+
+	private static Column newColumn(String name, long timestamp, int ttl) {
+		Column column = new Column(StringSerializer.get().toByteBuffer(name))
+				.setValue(StringSerializer.get().toByteBuffer("value"))
+				.setTimestamp(timestamp);
+		if (ttl > 0)
+			column.setTtl(ttl);
+		return column;
+	}
+
+	private static ColumnList<String> newColumnList(List<Column> columns) {
+		return new ThriftColumnListImpl<String>(columns, StringSerializer.get());
+	}
+}
@@ -2,6 +2,9 @@ package com.netflix.astyanax.entitystore;
 
 import java.lang.reflect.Field;
 import java.util.Collection;
+import java.util.Date;
+import java.util.List;
+import java.util.UUID;
 
 import javax.persistence.Column;
 import javax.persistence.Entity;
@@ -9,8 +12,19 @@ import javax.persistence.Id;
 
 import junit.framework.Assert;
 
+import org.apache.cassandra.thrift.Mutation;
 import org.junit.Test;
 
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Lists;
+import com.netflix.astyanax.entitystore.SampleEntity.Bar;
+import com.netflix.astyanax.entitystore.SampleEntity.Bar.BarBar;
+import com.netflix.astyanax.entitystore.SampleEntity.Foo;
+import com.netflix.astyanax.serializers.StringSerializer;
+import com.netflix.astyanax.thrift.ThriftColumnFamilyMutationImpl;
+import com.netflix.astyanax.thrift.model.ThriftColumnListImpl;
+
 public class EntityMapperTest {
 
 	@Test
@@ -76,4 +90,58 @@ public class EntityMapperTest {
 		// 3 cols: id, num, str
 		Assert.assertEquals(3, cols.size());
 	}
+
+	@Test
+	public void compiledMatchesReflective() throws Exception {
+		EntityMapper<SampleEntity, String> compiled   = new EntityMapper<SampleEntity, String>(SampleEntity.class, null, true);
+		EntityMapper<SampleEntity, String> reflective = new EntityMapper<SampleEntity, String>(SampleEntity.class, null, false);
+
+		SampleEntity entity = new SampleEntity();
+		entity.setId("compiled");
+		entity.setBooleanPrimitive(true);
+		entity.setBooleanObject(false);
+		entity.setBytePrimitive((byte)1);
+		entity.setByteObject((byte)2);
+		entity.setShortPrimitive((short)3);
+		entity.setShortObject((short)4);
+		entity.setIntPrimitive(5);
+		entity.setIntObject(6);
+		entity.setLongPrimitive(7L);
+		entity.setLongObject(8L);
+		entity.setFloatPrimitive(9.0f);
+		entity.setFloatObject(10.0f);
+		entity.setDoublePrimitive(11.0);
+		entity.setDoubleObject(12.0);
+		entity.setString("string");
+		entity.setByteArray(new byte[] {1, 2, 3});
+		entity.setDate(new Date());
+		entity.setUuid(UUID.randomUUID());
+		entity.setStringSet(ImmutableSet.of("A",  "B"));
+		entity.setStringMap(ImmutableMap.of("KA", "VA", "KB", "VB"));
+		entity.setLongSet(ImmutableSet.of(123L, 456L));
+		entity.setLongMap(ImmutableMap.of(1L, 11L, 2L, 22L));
+		entity.setFoo(new Foo(13, "foo"));
+		Bar bar = new Bar();
+		bar.i = 14;
+		bar.s = "bar";
+		bar.barbar = new BarBar();
+		bar.barbar.i = 15;
+		bar.barbar.s = "barbar";
+		entity.setBar(bar);
+
+		List<Mutation> compiledMutations = Lists.newArrayList();
+		compiled.fillColumnListMutation(new ThriftColumnFamilyMutationImpl<String>(0L, compiledMutations, StringSerializer.get()), entity);
+		List<Mutation> reflectiveMutations = Lists.newArrayList();
+		reflective.fillColumnListMutation(new ThriftColumnFamilyMutationImpl<String>(0L, reflectiveMutations, StringSerializer.get()), entity);
+		Assert.assertEquals(reflectiveMutations, compiledMutations);
+
+		List<org.apache.cassandra.thrift.Column> columns = Lists.newArrayList();
+		for (Mutation mutation : compiledMutations) {
+			columns.add(mutation.getColumn_or_supercolumn().getColumn());
+		}
+		ThriftColumnListImpl<String> cl = new ThriftColumnListImpl<String>(columns, StringSerializer.get());
+
+		Assert.assertEquals(entity, compiled.constructEntity("compiled", cl));
+		Assert.assertEquals(entity, reflective.constructEntity("compiled", cl));
+	}
 }
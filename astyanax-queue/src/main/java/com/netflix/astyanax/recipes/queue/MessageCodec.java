@@ -0,0 +1,564 @@
+package com.netflix.astyanax.recipes.queue;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.UUID;
+
+import org.codehaus.jackson.map.ObjectMapper;
+import org.codehaus.jackson.map.annotate.JsonSerialize;
+import org.xerial.snappy.Snappy;
+
+import com.google.common.base.Charsets;
+import com.google.common.collect.Maps;
+import com.netflix.astyanax.recipes.queue.triggers.RepeatingTrigger;
+import com.netflix.astyanax.recipes.queue.triggers.RunOnceTrigger;
+import com.netflix.astyanax.recipes.queue.triggers.Trigger;
+
+/**
+ * Encode and decode the message and message history columns of a queue.
+ *
+ * Columns are written in the configured MessageEncoding but read in whatever
+ * format they were written in.  A binary column starts with a version byte,
+ * which can never be the first byte of a JSON document.
+ *
+ * Binary format (version 1) of a message
+ *
+ *  version      byte
+ *  flags        varint   which of the optional fields follow and the boolean fields
+ *  token        16 bytes
+ *  random       16 bytes
+ *  priority     byte
+ *  timeout      zigzag varint
+ *  key          string
+ *  taskClass    string
+ *  trigger      varint trigger type followed by the trigger fields.  The
+ *               triggers that ship with the queue are interned, any other
+ *               trigger is written as its class name and JSON.
+ *  parameters   length prefixed block of (string name, type tag, value).
+ *               String, numeric, boolean and byte[] values are written as is
+ *               so binary payloads are passed through untouched.  A map with
+ *               any other type of value is written as JSON instead.  With
+ *               BINARY_SNAPPY a large parameter block is compressed.
+ *
+ * Strings are a varint length followed by UTF-8 bytes.
+ *
+ * @author elandau
+ *
+ */
+class MessageCodec {
+    private static final byte VERSION_1                    = 1;
+
+    private static final int  HAS_TOKEN                    = 0x001;
+    private static final int  HAS_RANDOM                   = 0x002;
+    private static final int  HAS_TRIGGER                  = 0x004;
+    private static final int  HAS_PARAMETERS               = 0x008;
+    private static final int  HAS_KEY                      = 0x010;
+    private static final int  HAS_TASK_CLASS               = 0x020;
+    private static final int  KEEP_HISTORY                 = 0x040;
+    private static final int  UNIQUE_KEY                   = 0x080;
+    private static final int  AUTO_COMMIT_TRIGGER          = 0x100;
+    private static final int  JSON_PARAMETERS              = 0x200;
+    private static final int  COMPRESSED_PARAMETERS        = 0x400;
+
+    private static final int  HAS_STATUS                   = 0x001;
+    private static final int  HAS_STACK_TRACE              = 0x002;
+    private static final int  HAS_ERROR                    = 0x004;
+
+    private static final int  HAS_DELAY                    = 0x001;
+    private static final int  HAS_REPEAT_COUNT             = 0x002;
+
+    // Trigger type ids.  Never reuse or renumber these.
+    private static final int  TRIGGER_CLASS                = 0;
+    private static final int  TRIGGER_RUN_ONCE             = 1;
+    private static final int  TRIGGER_REPEATING            = 2;
+
+    // Parameter value tags.  Never reuse or renumber these.
+    private static final byte TAG_NULL                     = 0;
+    private static final byte TAG_STRING                   = 1;
+    private static final byte TAG_INTEGER                  = 2;
+    private static final byte TAG_LONG                     = 3;
+    private static final byte TAG_BOOLEAN                  = 4;
+    private static final byte TAG_DOUBLE                   = 5;
+    private static final byte TAG_BYTES                    = 6;
+
+    /**
+     * Parameter blocks smaller than this are never worth compressing
+     */
+    private static final int  COMPRESSION_THRESHOLD        = 256;
+
+    /**
+     * Mapper for JSON columns, also used by the queue for its settings
+     */
+    static final ObjectMapper mapper = new ObjectMapper();
+
+    static {
+        mapper.setSerializationInclusion(JsonSerialize.Inclusion.NON_NULL);
+        mapper.enableDefaultTyping();
+    }
+
+    /**
+     * Wrapper that gives a parameter map written as JSON the same type
+     * information it has when it is part of a JSON message
+     */
+    static class JsonParameters {
+        public Map<String, Object> parameters;
+    }
+
+    private final MessageEncoding encoding;
+
+    /**
+     * @param encoding Encoding to write with, or null for JSON
+     */
+    MessageCodec(MessageEncoding encoding) {
+        this.encoding = encoding == null ? MessageEncoding.JSON : encoding;
+    }
+
+    MessageEncoding getEncoding() {
+        return encoding;
+    }
+
+    byte[] encodeMessage(Message message) throws IOException {
+        if (encoding == MessageEncoding.JSON)
+            return mapper.writeValueAsBytes(message);
+
+        Output out = new Output(128);
+        out.writeByte(VERSION_1);
+
+        byte[] parameters = null;
+        int flags = 0;
+        if (message.getToken() != null)         flags |= HAS_TOKEN;
+        if (message.getRandom() != null)        flags |= HAS_RANDOM;
+        if (message.hasTrigger())               flags |= HAS_TRIGGER;
+        if (message.hasKey())                   flags |= HAS_KEY;
+        if (message.hasTaskClass())             flags |= HAS_TASK_CLASS;
+        if (message.isKeepHistory())            flags |= KEEP_HISTORY;
+        if (message.hasUniqueKey())             flags |= UNIQUE_KEY;
+        if (message.isAutoCommitTrigger())      flags |= AUTO_COMMIT_TRIGGER;
+        if (message.getParameters() != null) {
+            flags |= HAS_PARAMETERS;
+            if (isSimple(message.getParameters())) {
+                parameters = encodeParameters(message.getParameters());
+            }
+            else {
+                JsonParameters json = new JsonParameters();
+                json.parameters = message.getParameters();
+                parameters = mapper.writeValueAsBytes(json);
+                flags |= JSON_PARAMETERS;
+            }
+
+            if (encoding == MessageEncoding.BINARY_SNAPPY && parameters.length >= COMPRESSION_THRESHOLD) {
+                byte[] compressed = Snappy.compress(parameters);
+                if (compressed.length < parameters.length) {
+                    parameters = compressed;
+                    flags |= COMPRESSED_PARAMETERS;
+                }
+            }
+        }
+        out.writeVarInt(flags);
+
+        if ((flags & HAS_TOKEN) != 0)
+            out.writeUUID(message.getToken());
+        if ((flags & HAS_RANDOM) != 0)
+            out.writeUUID(message.getRandom());
+        out.writeByte(message.getPriority());
+        out.writeSignedVarLong(message.getTimeout());
+        if ((flags & HAS_KEY) != 0)
+            out.writeString(message.getKey());
+        if ((flags & HAS_TASK_CLASS) != 0)
+            out.writeString(message.getTaskClass());
+        if ((flags & HAS_TRIGGER) != 0)
+            encodeTrigger(message.getTrigger(), out);
+        if (parameters != null)
+            out.writeBytes(parameters);
+
+        return out.toByteArray();
+    }
+
+    Message decodeMessage(byte[] data) throws IOException {
+        if (!isBinary(data))
+            return mapper.readValue(data, Message.class);
+
+        Input in = new Input(data);
+        int flags = in.readVarInt();
+
+        Message message = new Message();
+        if ((flags & HAS_TOKEN) != 0)
+            message.setToken(in.readUUID());
+        if ((flags & HAS_RANDOM) != 0)
+            message.setRandom(in.readUUID());
+        message.setPriority(in.readByte());
+        message.setTimeout((int) in.readSignedVarLong());
+        if ((flags & HAS_KEY) != 0) {
+            String key = in.readString();
+            if ((flags & UNIQUE_KEY) != 0)
+                message.setUniqueKey(key);
+            else
+                message.setKey(key);
+        }
+        if ((flags & HAS_TASK_CLASS) != 0)
+            message.setTaskClass(in.readString());
+        if ((flags & HAS_TRIGGER) != 0)
+            message.setTrigger(decodeTrigger(in));
+        if ((flags & HAS_PARAMETERS) != 0) {
+            byte[] parameters = in.readBytes();
+            if ((flags & COMPRESSED_PARAMETERS) != 0)
+                parameters = Snappy.uncompress(parameters);
+            if ((flags & JSON_PARAMETERS) != 0)
+                message.setParameters(mapper.readValue(parameters, JsonParameters.class).parameters);
+            else
+                message.setParameters(decodeParameters(parameters));
+        }
+        message.setKeepHistory((flags & KEEP_HISTORY) != 0);
+        message.setAutoCommitTrigger((flags & AUTO_COMMIT_TRIGGER) != 0);
+        return message;
+    }
+
+    byte[] encodeHistory(MessageHistory history) throws IOException {
+        if (encoding == MessageEncoding.JSON)
+            return mapper.writeValueAsBytes(history);
+
+        Output out = new Output(64);
+        out.writeByte(VERSION_1);
+
+        int flags = 0;
+        if (history.getToken() != null)         flags |= HAS_TOKEN;
+        if (history.getStatus() != null)        flags |= HAS_STATUS;
+        if (history.getStackTrace() != null)    flags |= HAS_STACK_TRACE;
+        if (history.getError() != null)         flags |= HAS_ERROR;
+        out.writeVarInt(flags);
+
+        if ((flags & HAS_TOKEN) != 0)
+            out.writeUUID(history.getToken());
+        out.writeSignedVarLong(history.getTriggerTime());
+        out.writeSignedVarLong(history.getStartTime());
+        out.writeSignedVarLong(history.getEndTime());
+        if ((flags & HAS_STATUS) != 0)
+            out.writeString(history.getStatus().name());
+        if ((flags & HAS_STACK_TRACE) != 0)
+            out.writeString(history.getStackTrace());
+        if ((flags & HAS_ERROR) != 0)
+            out.writeString(history.getError());
+
+        return out.toByteArray();
+    }
+
+    MessageHistory decodeHistory(byte[] data) throws IOException {
+        if (!isBinary(data))
+            return mapper.readValue(data, MessageHistory.class);
+
+        Input in = new Input(data);
+        int flags = in.readVarInt();
+
+        MessageHistory history = new MessageHistory();
+        if ((flags & HAS_TOKEN) != 0)
+            history.setToken(in.readUUID());
+        history.setTriggerTime(in.readSignedVarLong());
+        history.setStartTime(in.readSignedVarLong());
+        history.setEndTime(in.readSignedVarLong());
+        if ((flags & HAS_STATUS) != 0)
+            history.setStatus(MessageStatus.valueOf(in.readString()));
+        if ((flags & HAS_STACK_TRACE) != 0)
+            history.setStackTrace(in.readString());
+        if ((flags & HAS_ERROR) != 0)
+            history.setError(in.readString());
+        return history;
+    }
+
+    /**
+     * @return True if the column was written in the binary format.  Anything
+     *         else is assumed to be legacy JSON
+     */
+    private static boolean isBinary(byte[] data) {
+        return data.length > 0 && data[0] == VERSION_1;
+    }
+
+    private static void encodeTrigger(Trigger trigger, Output out) throws IOException {
+        if (trigger.getClass() == RunOnceTrigger.class) {
+            RunOnceTrigger runOnce = (RunOnceTrigger) trigger;
+            out.writeVarInt(TRIGGER_RUN_ONCE);
+            out.writeSignedVarLong(runOnce.getTriggerTime());
+            out.writeSignedVarLong(runOnce.getExecutionCount());
+        }
+        else if (trigger.getClass() == RepeatingTrigger.class) {
+            RepeatingTrigger repeating = (RepeatingTrigger) trigger;
+            out.writeVarInt(TRIGGER_REPEATING);
+            out.writeSignedVarLong(repeating.getTriggerTime());
+            out.writeSignedVarLong(repeating.getExecutionCount());
+            out.writeSignedVarLong(repeating.getInterval());
+            out.writeSignedVarLong(repeating.getEndTime());
+
+            int flags = 0;
+            if (repeating.getDelay() != null)       flags |= HAS_DELAY;
+            if (repeating.getRepeatCount() != null) flags |= HAS_REPEAT_COUNT;
+            out.writeVarInt(flags);
+            if ((flags & HAS_DELAY) != 0)
+                out.writeSignedVarLong(repeating.getDelay());
+            if ((flags & HAS_REPEAT_COUNT) != 0)
+                out.writeSignedVarLong(repeating.getRepeatCount());
+        }
+        else {
+            out.writeVarInt(TRIGGER_CLASS);
+            out.writeString(trigger.getClass().getName());
+            out.writeBytes(mapper.writeValueAsBytes(trigger));
+        }
+    }
+
+    private static Trigger decodeTrigger(Input in) throws IOException {
+        int type = in.readVarInt();
+        switch (type) {
+        case TRIGGER_RUN_ONCE: {
+            RunOnceTrigger runOnce = new RunOnceTrigger();
+            runOnce.setTriggerTime(in.readSignedVarLong());
+            runOnce.setExecutionCount(in.readSignedVarLong());
+            return runOnce;
+        }
+        case TRIGGER_REPEATING: {
+            RepeatingTrigger repeating = new RepeatingTrigger();
+            repeating.setTriggerTime(in.readSignedVarLong());
+            repeating.setExecutionCount(in.readSignedVarLong());
+            repeating.setInterval(in.readSignedVarLong());
+            repeating.setEndTime(in.readSignedVarLong());
+
+            int flags = in.readVarInt();
+            if ((flags & HAS_DELAY) != 0)
+                repeating.setDelay(in.readSignedVarLong());
+            if ((flags & HAS_REPEAT_COUNT) != 0)
+                repeating.setRepeatCount(in.readSignedVarLong());
+            return repeating;
+        }
+        case TRIGGER_CLASS: {
+            String className = in.readString();
+            try {
+                return (Trigger) mapper.readValue(in.readBytes(), Class.forName(className));
+            }
+            catch (ClassNotFoundException e) {
+                throw new IOException("Unknown trigger class " + className, e);
+            }
+        }
+        default:
+            throw new IOException("Unknown trigger type " + type);
+        }
+    }
+
+    private static boolean isSimple(Map<String, Object> parameters) {
+        for (Object value : parameters.values()) {
+            if (!(value == null
+               || value instanceof String
+               || value instanceof Integer
+               || value instanceof Long
+               || value instanceof Boolean
+               || value instanceof Double
+               || value instanceof byte[])) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static byte[] encodeParameters(Map<String, Object> parameters) {
+        Output out = new Output(64);
+        out.writeVarInt(parameters.size());
+        for (Map.Entry<String, Object> entry : parameters.entrySet()) {
+            out.writeString(entry.getKey());
+            Object value = entry.getValue();
+            if (value == null) {
+                out.writeByte(TAG_NULL);
+            }
+            else if (value instanceof String) {
+                out.writeByte(TAG_STRING);
+                out.writeString((String) value);
+            }
+            else if (value instanceof Integer) {
+                out.writeByte(TAG_INTEGER);
+                out.writeSignedVarLong((Integer) value);
+            }
+            else if (value instanceof Long) {
+                out.writeByte(TAG_LONG);
+                out.writeSignedVarLong((Long) value);
+            }
+            else if (value instanceof Boolean) {
+                out.writeByte(TAG_BOOLEAN);
+                out.writeByte((Boolean) value ? (byte) 1 : (byte) 0);
+            }
+            else if (value instanceof Double) {
+                out.writeByte(TAG_DOUBLE);
+                out.writeLong(Double.doubleToLongBits((Double) value));
+            }
+            else {
+                out.writeByte(TAG_BYTES);
+                out.writeBytes((byte[]) value);
+            }
+        }
+        return out.toByteArray();
+    }
+
+    private static Map<String, Object> decodeParameters(byte[] data) throws IOException {
+        Input in = new Input(data, 0);
+        int count = in.readVarInt();
+        Map<String, Object> parameters = Maps.newHashMapWithExpectedSize(count);
+        for (int i = 0; i < count; i++) {
+            String name = in.readString();
+            byte tag = in.readByte();
+            Object value;
+            switch (tag) {
+            case TAG_NULL:      value = null;                                           break;
+            case TAG_STRING:    value = in.readString();                                break;
+            case TAG_INTEGER:   value = (int) in.readSignedVarLong();                   break;
+            case TAG_LONG:      value = in.readSignedVarLong();                         break;
+            case TAG_BOOLEAN:   value = in.readByte() != 0;                             break;
+            case TAG_DOUBLE:    value = Double.longBitsToDouble(in.readLong());         break;
+            case TAG_BYTES:     value = in.readBytes();                                 break;
+            default:
+                throw new IOException("Unknown parameter type " + tag + " for '" + name + "'");
+            }
+            parameters.put(name, value);
+        }
+        return parameters;
+    }
+
+    private static class Output {
+        private byte[] buffer;
+        private int    length;
+
+        Output(int capacity) {
+            this.buffer = new byte[capacity];
+        }
+
+        private void ensure(int count) {
+            if (length + count > buffer.length)
+                buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, length + count));
+        }
+
+        void writeByte(byte value) {
+            ensure(1);
+            buffer[length++] = value;
+        }
+
+        void writeVarInt(int value) {
+            ensure(5);
+            while ((value & ~0x7F) != 0) {
+                buffer[length++] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            buffer[length++] = (byte) value;
+        }
+
+        void writeSignedVarLong(long value) {
+            ensure(10);
+            value = (value << 1) ^ (value >> 63);
+            while ((value & ~0x7FL) != 0) {
+                buffer[length++] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            buffer[length++] = (byte) value;
+        }
+
+        void writeLong(long value) {
+            ensure(8);
+            for (int shift = 56; shift >= 0; shift -= 8) {
+                buffer[length++] = (byte) (value >>> shift);
+            }
+        }
+
+        void writeUUID(UUID uuid) {
+            writeLong(uuid.getMostSignificantBits());
+            writeLong(uuid.getLeastSignificantBits());
+        }
+
+        void writeBytes(byte[] bytes) {
+            writeVarInt(bytes.length);
+            ensure(bytes.length);
+            System.arraycopy(bytes, 0, buffer, length, bytes.length);
+            length += bytes.length;
+        }
+
+        void writeString(String value) {
+            writeBytes(value.getBytes(Charsets.UTF_8));
+        }
+
+        byte[] toByteArray() {
+            return Arrays.copyOf(buffer, length);
+        }
+    }
+
+    private static class Input {
+        private final byte[] buffer;
+        private int          position;
+
+        /**
+         * Skip the version byte
+         */
+        Input(byte[] buffer) {
+            this(buffer, 1);
+        }
+
+        Input(byte[] buffer, int position) {
+            this.buffer   = buffer;
+            this.position = position;
+        }
+
+        private void require(int count) throws IOException {
+            if (count < 0 || position + count > buffer.length)
+                throw new IOException("Truncated message");
+        }
+
+        byte readByte() throws IOException {
+            require(1);
+            return buffer[position++];
+        }
+
+        int readVarInt() throws IOException {
+            int value = 0;
+            for (int shift = 0; shift < 32; shift += 7) {
+                byte b = readByte();
+                value |= (b & 0x7F) << shift;
+                if (b >= 0)
+                    return value;
+            }
+            throw new IOException("Malformed varint");
+        }
+
+        long readSignedVarLong() throws IOException {
+            long value = 0;
+            for (int shift = 0; shift < 64; shift += 7) {
+                byte b = readByte();
+                value |= (long) (b & 0x7F) << shift;
+                if (b >= 0)
+                    return (value >>> 1) ^ -(value & 1);
+            }
+            throw new IOException("Malformed varint");
+        }
+
+        long readLong() throws IOException {
+            require(8);
+            long value = 0;
+            for (int i = 0; i < 8; i++) {
+                value = (value << 8) | (buffer[position++] & 0xFF);
+            }
+            return value;
+        }
+
+        UUID readUUID() throws IOException {
+            long msb = readLong();
+            long lsb = readLong();
+            return new UUID(msb, lsb);
+        }
+
+        byte[] readBytes() throws IOException {
+            int count = readVarInt();
+            require(count);
+            byte[] bytes = Arrays.copyOfRange(buffer, position, position + count);
+            position += count;
+            return bytes;
+        }
+
+        String readString() throws IOException {
+            int count = readVarInt();
+            require(count);
+            String value = new String(buffer, position, count, Charsets.UTF_8);
+            position += count;
+            return value;
+        }
+    }
+}
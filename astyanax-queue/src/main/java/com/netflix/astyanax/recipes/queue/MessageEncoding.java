@@ -0,0 +1,28 @@
+package com.netflix.astyanax.recipes.queue;
+
+/**
+ * Format used to write messages and message history to cassandra.  Readers
+ * detect the format of each column so a queue can be switched from one
+ * encoding to another in place while it still holds messages written with
+ * the old encoding.
+ *
+ * @author elandau
+ *
+ */
+public enum MessageEncoding {
+    /**
+     * Jackson JSON.  This is the original format and the only one understood
+     * by older clients.
+     */
+    JSON,
+
+    /**
+     * Compact versioned binary format
+     */
+    BINARY,
+
+    /**
+     * Compact binary format with large message parameters compressed using snappy
+     */
+    BINARY_SNAPPY
+}
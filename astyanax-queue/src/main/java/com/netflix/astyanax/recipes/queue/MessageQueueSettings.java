@@ -16,6 +16,7 @@ public class MessageQueueSettings {
     public static final Integer       DEFAULT_HISTORY_TTL       = null;
     public static final String        DEFAULT_QUEUE_NAME        = "Queue";
     public static final long          DEFAULT_POLL_WAIT         = TimeUnit.MILLISECONDS.convert(100, TimeUnit.MILLISECONDS);
+    public static final MessageEncoding DEFAULT_MESSAGE_ENCODING = null;
     
     private Long      partitionDuration = DEFAULT_BUCKET_DURATION;
     private int       partitionCount    = DEFAULT_BUCKET_COUNT;
@@ -24,6 +25,7 @@ public class MessageQueueSettings {
     private Integer   historyTtl        = DEFAULT_HISTORY_TTL;
     private String    queueName         = DEFAULT_QUEUE_NAME;
     private long      pollInterval      = DEFAULT_POLL_WAIT;
+    private MessageEncoding messageEncoding = DEFAULT_MESSAGE_ENCODING;
     
     public Long getPartitionDuration() {
         return partitionDuration;
@@ -70,11 +72,21 @@ public class MessageQueueSettings {
     public void setPollInterval(long pollInterval) {
         this.pollInterval = pollInterval;
     }
+    /**
+     * @return Encoding used to write messages or null for the default, JSON.  
+     *         Left null so the persisted settings of a JSON queue stay readable by older clients.
+     */
+    public MessageEncoding getMessageEncoding() {
+        return messageEncoding;
+    }
+    public void setMessageEncoding(MessageEncoding messageEncoding) {
+        this.messageEncoding = messageEncoding;
+    }
     
     @Override
     public String toString() {
         return "MessageQueueSettings [partitionDuration=" + partitionDuration + ", partitionCount=" + partitionCount
                 + ", retentionTimeout=" + retentionTimeout + ", shardCount=" + shardCount + ", historyTtl=" + historyTtl
-                + ", queueName=" + queueName + ", pollInterval=" + pollInterval + "]";
+                + ", queueName=" + queueName + ", pollInterval=" + pollInterval + ", messageEncoding=" + messageEncoding + "]";
     }
 }
\ No newline at end of file
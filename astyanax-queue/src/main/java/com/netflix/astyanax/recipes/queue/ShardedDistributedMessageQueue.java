@@ -2,7 +2,6 @@ package com.netflix.astyanax.recipes.queue;
 
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
-import java.io.IOException;
 import java.util.Collection;
 import java.util.List;
 import java.util.Map;
@@ -10,6 +9,7 @@ import java.util.Random;
 import java.util.Set;
 import java.util.UUID;
 import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicLong;
 
@@ -17,11 +17,7 @@ import javax.annotation.Nullable;
 
 import org.apache.cassandra.thrift.SchemaDisagreementException;
 import org.apache.commons.lang.StringUtils;
-import org.codehaus.jackson.JsonGenerationException;
-import org.codehaus.jackson.JsonParseException;
-import org.codehaus.jackson.map.JsonMappingException;
 import org.codehaus.jackson.map.ObjectMapper;
-import org.codehaus.jackson.map.annotate.JsonSerialize;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -154,12 +150,7 @@ public class ShardedDistributedMessageQueue implements MessageQueue {
     private final static AnnotatedCompositeSerializer<MessageMetadataEntry>   metadataSerializer  
         = new AnnotatedCompositeSerializer<MessageMetadataEntry>(MessageMetadataEntry.class);
     
-    private static final ObjectMapper mapper = new ObjectMapper();
-
-    {
-        mapper.getSerializationConfig().setSerializationInclusion(JsonSerialize.Inclusion.NON_NULL);
-        mapper.enableDefaultTyping();
-    }
+    private static final ObjectMapper mapper = MessageCodec.mapper;
 
     /**
      * 
@@ -207,6 +198,16 @@ public class ShardedDistributedMessageQueue implements MessageQueue {
             return this;
         }
         
+        /**
+         * Keep a shard locked for up to this long while it keeps returning messages
+         * so that consecutive reads from the shard don't have to lock it again.  
+         * Disabled (0) by default.
+         */
+        public Builder withShardLeaseTime(Long leaseTime, TimeUnit units) {
+            queue.shardLeaseTime = TimeUnit.MICROSECONDS.convert(leaseTime,  units);
+            return this;
+        }
+        
         public Builder withPollInterval(Long internval, TimeUnit units) {
             queue.settings.setPollInterval(TimeUnit.MILLISECONDS.convert(internval,  units));
             return this;
@@ -262,6 +263,30 @@ public class ShardedDistributedMessageQueue implements MessageQueue {
             return this;
         }
         
+        /**
+         * Create the shard reader policy from the queue settings once they have 
+         * been loaded.  See AdaptiveShardReaderPolicy.Factory.
+         * @param factory
+         */
+        public Builder withShardReaderPolicy(ShardReaderPolicy.Factory factory) {
+            queue.shardReaderPolicyFactory = factory;
+            return this;
+        }
+        
+        /**
+         * Encoding used to write messages and history.  Columns written with any
+         * encoding can always be read so an existing queue can be switched to a 
+         * new encoding in place.  This overrides the encoding persisted with the 
+         * queue settings.  Only switch to a binary encoding once all clients of 
+         * the queue understand it.
+         * @param encoding
+         */
+        public Builder withMessageEncoding(MessageEncoding encoding) {
+            queue.messageEncoding = encoding;
+            queue.settings.setMessageEncoding(encoding);
+            return this;
+        }
+        
         public ShardedDistributedMessageQueue build() throws MessageQueueException {
             queue.queueColumnFamily    = ColumnFamily.newColumnFamily(columnFamilyName + DEFAULT_QUEUE_SUFFIX,    StringSerializer.get(), entrySerializer); 
             queue.keyIndexColumnFamily = ColumnFamily.newColumnFamily(columnFamilyName + DEFAULT_METADATA_SUFFIX, StringSerializer.get(), metadataSerializer); 
@@ -281,6 +306,7 @@ public class ShardedDistributedMessageQueue implements MessageQueue {
     private ConsistencyLevel                consistencyLevel    = DEFAULT_CONSISTENCY_LEVEL;
     private long                            lockTimeout         = DEFAULT_LOCK_TIMEOUT;
     private int                             lockTtl             = DEFAULT_LOCK_TTL;
+    private long                            shardLeaseTime      = 0;
     private MessageQueueStats               stats               = new CountingQueueStats();
     private AtomicLong                      counter             = new AtomicLong(new Random().nextInt(1000));
     private Collection<MessageQueueHooks>   hooks               = Lists.newArrayList();
@@ -288,7 +314,11 @@ public class ShardedDistributedMessageQueue implements MessageQueue {
     private Boolean                         bPoisonQueueEnabled = DEFAULT_POISON_QUEUE_ENABLED;
     private Map<String, Object>             columnFamilySettings = DEFAULT_COLUMN_FAMILY_SETTINGS;
     private ShardReaderPolicy               shardReaderPolicy;
+    private ShardReaderPolicy.Factory       shardReaderPolicyFactory;
     private ModShardPolicy                  modShardPolicy;
+    private MessageEncoding                 messageEncoding;
+    private MessageCodec                    codec;
+    private final ConcurrentMap<String, ShardLock> shardLeases  = Maps.newConcurrentMap();
     private Function<String, Message>       invalidMessageHandler  = new Function<String, Message>() {
                                                                         @Override
                                                                         public Message apply(@Nullable String input) {
@@ -297,6 +327,23 @@ public class ShardedDistributedMessageQueue implements MessageQueue {
                                                                         }
                                                                     };
     
+    /**
+     * Lock column held on a shard by this client
+     */
+    private static class ShardLock {
+        final MessageQueueEntry lockColumn;
+        final int               lockColumnCount;
+        final long              acquireTime;
+        volatile long           renewTime;
+        
+        ShardLock(MessageQueueEntry lockColumn, int lockColumnCount, long acquireTime) {
+            this.lockColumn      = lockColumn;
+            this.lockColumnCount = lockColumnCount;
+            this.acquireTime     = acquireTime;
+            this.renewTime       = acquireTime;
+        }
+    }
+    
     private void initialize() throws MessageQueueException {
         Preconditions.checkArgument(
                 TimeUnit.SECONDS.convert(lockTimeout, TimeUnit.MICROSECONDS) < lockTtl, 
@@ -329,8 +376,16 @@ public class ShardedDistributedMessageQueue implements MessageQueue {
             throw new MessageQueueException("Error getting message queue metadata", e);
         }
         
-        if (shardReaderPolicy == null)
-            shardReaderPolicy = new TimePartitionedShardReaderPolicy(settings);
+        if (messageEncoding != null)
+            settings.setMessageEncoding(messageEncoding);
+        codec = new MessageCodec(settings.getMessageEncoding());
+        
+        if (shardReaderPolicy == null) {
+            if (shardReaderPolicyFactory != null)
+                shardReaderPolicy = shardReaderPolicyFactory.create(settings);
+            else
+                shardReaderPolicy = new TimePartitionedShardReaderPolicy(settings);
+        }
         
         if (modShardPolicy == null)
             modShardPolicy = TimeModShardPolicy.getInstance();
@@ -373,25 +428,6 @@ public class ShardedDistributedMessageQueue implements MessageQueue {
         return parts;
     }
     
-    private <T> String serializeToString(T trigger) throws JsonGenerationException, JsonMappingException, IOException  {
-        ByteArrayOutputStream baos = new ByteArrayOutputStream();
-        mapper.writeValue(baos, trigger);
-        baos.flush();
-        return baos.toString();
-    }
-    
-    private <T> T deserializeString(String data, Class<T> clazz) throws JsonParseException, JsonMappingException, IOException {
-        return (T) mapper.readValue(
-                new ByteArrayInputStream(data.getBytes()), 
-                clazz);
-    }
-    
-    private <T> T deserializeString(String data, String className) throws JsonParseException, JsonMappingException, IOException, ClassNotFoundException {
-        return (T) mapper.readValue(
-                new ByteArrayInputStream(data.getBytes()), 
-                Class.forName(className));
-    }
-
     
     @Override
     public String getName() {
@@ -479,8 +515,7 @@ public class ShardedDistributedMessageQueue implements MessageQueue {
                         .getColumn(entry)
                     .execute().getResult();
             try {
-                ByteArrayInputStream bais = new ByteArrayInputStream(column.getByteArrayValue());
-                return mapper.readValue(bais, Message.class);
+                return codec.decodeMessage(column.getByteArrayValue());
             } catch (Exception e) {
                 LOG.warn("Error parsing message", e);
                 // Error parsing the message so we pass it on to the invalid message handler.
@@ -788,6 +823,8 @@ public class ShardedDistributedMessageQueue implements MessageQueue {
                         }
                     }
                     
+                    if (shardLeaseTime > 0)
+                        return readMessagesFromLeasedShard(shard.getName(), itemsToPop);
                     return readMessagesFromShard(shard.getName(), itemsToPop);
                 }
                 finally {
@@ -798,7 +835,38 @@ public class ShardedDistributedMessageQueue implements MessageQueue {
             
             @Override
             public List<MessageContext> readMessagesFromShard(String shardName, int itemsToPop) throws MessageQueueException, BusyLockException {
-                List<MessageContext> entries = Lists.newArrayList();
+                return readMessagesWithLock(shardName, itemsToPop, acquireShardLock(shardName), false);
+            }
+            
+            /**
+             * Read from a shard while holding on to its lock for up to shardLeaseTime 
+             * so consecutive reads skip the three round trips needed to lock the shard
+             */
+            private List<MessageContext> readMessagesFromLeasedShard(String shardName, int itemsToPop) throws MessageQueueException, BusyLockException {
+                ShardLock lease = shardLeases.get(shardName);
+                if (lease != null) {
+                    long curTimeMicros = TimeUnit.MICROSECONDS.convert(System.currentTimeMillis(), TimeUnit.MILLISECONDS);
+                    // Don't trust a lease that other clients may soon consider expired
+                    long renewInterval = Math.min(lockTimeout, TimeUnit.MICROSECONDS.convert(lockTtl, TimeUnit.SECONDS)) / 2;
+                    if (curTimeMicros - lease.renewTime >= renewInterval) {
+                        shardLeases.remove(shardName, lease);
+                        releaseShardLock(shardName, lease);
+                        lease = null;
+                    }
+                }
+                
+                if (lease == null) {
+                    lease = acquireShardLock(shardName);
+                    shardLeases.put(shardName, lease);
+                }
+                return readMessagesWithLock(shardName, itemsToPop, lease, true);
+            }
+            
+            /**
+             * Acquire the lock on a shard.  The acquired lock column stays in the shard 
+             * until it is deleted by the read that releases the lock.
+             */
+            private ShardLock acquireShardLock(String shardName) throws MessageQueueException, BusyLockException {
                 MutationBatch m              = null;
                 MessageQueueEntry lockColumn = null;
                 ColumnListMutation<MessageQueueEntry> rowMutation = null;
@@ -881,13 +949,36 @@ public class ShardedDistributedMessageQueue implements MessageQueue {
                     }
                 }
                 
-                long curTimeMicros = TimeUUIDUtils.getMicrosTimeFromUUID(lockColumn.getTimestamp());
+                return new ShardLock(lockColumn, lockColumnCount, TimeUUIDUtils.getMicrosTimeFromUUID(lockColumn.getTimestamp()));
+            }
+            
+            /**
+             * Read and remove up to itemsToPop messages from a shard that is locked by 
+             * this client.  Any lock column that doesn't belong to us makes the read fail
+             * with a BusyLockException before any message is processed.
+             * 
+             * @param leased  Keep the lock after the read, renewing it as part of the same 
+             *                mutation that removes the messages, unless the shard is now 
+             *                empty or the lease time is up.  Otherwise the lock is released.
+             */
+            private List<MessageContext> readMessagesWithLock(String shardName, int itemsToPop, ShardLock shardLock, boolean leased) throws MessageQueueException, BusyLockException {
+                List<MessageContext> entries = Lists.newArrayList();
+                MessageQueueEntry lockColumn = shardLock.lockColumn;
+                int lockColumnCount          = shardLock.lockColumnCount;
+                
+                // A leased lock was acquired some time ago so read up to now instead of
+                // up to the lock time 
+                UUID readTime      = leased ? TimeUUIDUtils.getUniqueTimeUUIDinMicros() : lockColumn.getTimestamp();
+                long curTimeMicros = TimeUUIDUtils.getMicrosTimeFromUUID(readTime);
+                boolean lockFound  = !leased;
+                boolean success    = false;
                 
-                m = keyspace.prepareMutationBatch().setConsistencyLevel(consistencyLevel);
+                MutationBatch m = keyspace.prepareMutationBatch().setConsistencyLevel(consistencyLevel);
                 
                 // First, release the lock column
-                rowMutation = m.withRow(queueColumnFamily, shardName);
-                rowMutation.deleteColumn(lockColumn);
+                ColumnListMutation<MessageQueueEntry> rowMutation = m.withRow(queueColumnFamily, shardName);
+                if (!leased)
+                    rowMutation.deleteColumn(lockColumn);
                 
                 // 2. Read back lock columns and entries
                 try {
@@ -899,7 +990,7 @@ public class ShardedDistributedMessageQueue implements MessageQueue {
                                 .setEnd(entrySerializer
                                         .makeEndpoint((byte)MessageQueueEntryType.Message.ordinal(), Equality.EQUAL)
                                         .append((byte)0, Equality.EQUAL)
-                                        .append(lockColumn.getTimestamp(), Equality.LESS_THAN_EQUALS).toBytes())
+                                        .append(readTime, Equality.LESS_THAN_EQUALS).toBytes())
                                 .build())
                         .execute()
                             .getResult();
@@ -918,10 +1009,16 @@ public class ShardedDistributedMessageQueue implements MessageQueue {
                                     if (!entry.getTimestamp().equals(lockColumn.getTimestamp())) {
                                         throw new BusyLockException("Someone else snuck in");
                                     }
+                                    lockFound = true;
                                 }
                                 break;
                                 
                             case Message: {
+                                // Lock columns sort before messages so by now we know if we still own the shard
+                                if (!lockFound) {
+                                    throw new BusyLockException("Shard lease lost");
+                                }
+                                
                                 itemsToPop--; 
                                 
                                 // First, we always want to remove the old item
@@ -947,7 +1044,7 @@ public class ShardedDistributedMessageQueue implements MessageQueue {
                                             history.setStatus(MessageStatus.RUNNING);
                                             try {
                                                 m.withRow(historyColumnFamily, message.getKey())
-                                                    .putColumn(entry.getTimestamp(), serializeToString(history), settings.getHistoryTtl());
+                                                    .putColumn(entry.getTimestamp(), codec.encodeHistory(history), settings.getHistoryTtl());
                                             }
                                             catch (Exception e) {
                                                 LOG.warn("Error serializing history for key '" + message.getKey() + "'", e);
@@ -966,7 +1063,7 @@ public class ShardedDistributedMessageQueue implements MessageQueue {
                                         message.setRandom(timeoutEntry.getRandom());
                                         
                                         m.withRow(queueColumnFamily, getShardKey(message))
-                                         .putColumn(timeoutEntry, column.getStringValue(), settings.getRetentionTimeout());
+                                         .putColumn(timeoutEntry, column.getByteArrayValue(), settings.getRetentionTimeout());
                                         
                                         MessageMetadataEntry messageIdEntry = MessageMetadataEntry.newMessageId(getCompositeKey(getShardKey(message), timeoutEntry.getMessageId()));
                                         
@@ -1025,6 +1122,11 @@ public class ShardedDistributedMessageQueue implements MessageQueue {
                         }
                     }
                     
+                    if (!lockFound) {
+                        throw new BusyLockException("Shard lease lost");
+                    }
+                    
+                    success = true;
                     return entries;
                 }
                 catch (BusyLockException e) {
@@ -1034,8 +1136,20 @@ public class ShardedDistributedMessageQueue implements MessageQueue {
                 catch (Exception e) {
                     throw new MessageQueueException("Error processing queue shard : " + shardName, e);
                 }
-                // 3. Release lock and remove any acquired entries
+                // 3. Release or renew the lock and remove any acquired entries
                 finally {
+                    if (leased) {
+                        if (!success || entries.isEmpty() || curTimeMicros - shardLock.acquireTime >= shardLeaseTime) {
+                            rowMutation.deleteColumn(lockColumn);
+                            shardLeases.remove(shardName, shardLock);
+                        }
+                        else {
+                            // Same lock value as when the lock was first acquired
+                            rowMutation.putColumn(lockColumn, TimeUUIDUtils.getTimeFromUUID(readTime) + lockTimeout, lockTtl);
+                            shardLock.renewTime = curTimeMicros;
+                        }
+                    }
+                    
                     try {
                         m.execute();
                     }
@@ -1045,6 +1159,17 @@ public class ShardedDistributedMessageQueue implements MessageQueue {
                 }
             }
             
+            private void releaseShardLock(String shardName, ShardLock shardLock) throws MessageQueueException {
+                MutationBatch m = keyspace.prepareMutationBatch().setConsistencyLevel(consistencyLevel);
+                m.withRow(queueColumnFamily, shardName).deleteColumn(shardLock.lockColumn);
+                try {
+                    m.execute();
+                }
+                catch (ConnectionException e) {
+                    throw new MessageQueueException("Error releasing lock on shard " + shardName, e);
+                }
+            }
+            
             @Override
             public void ackMessage(MessageContext context) throws MessageQueueException {
                 MutationBatch mb = keyspace.prepareMutationBatch().setConsistencyLevel(consistencyLevel);
@@ -1097,7 +1222,7 @@ public class ShardedDistributedMessageQueue implements MessageQueue {
                             try {
                                 mb.withRow(historyColumnFamily, message.getKey())
                                     .putColumn(history.getToken(),                      // Event time
-                                               serializeToString(context.getHistory()), // History data
+                                               codec.encodeHistory(context.getHistory()), // History data
                                                settings.getHistoryTtl());               // TTL
                             } catch (Exception e) {
                                 LOG.warn("Error serializing message history for " + message.getKey(), e);
@@ -1252,11 +1377,10 @@ public class ShardedDistributedMessageQueue implements MessageQueue {
                 message.getToken(), 
                 MessageQueueEntryState.Waiting);
 
-        // Convert the message object to JSON
-        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        // Encode the message
+        byte[] data;
         try {
-            mapper.writeValue(baos, message);
-            baos.flush();
+            data = codec.encodeMessage(message);
         } catch (Exception e) {
             throw new MessageQueueException("Failed to serialize message data: " + message, e);
         }
@@ -1264,7 +1388,7 @@ public class ShardedDistributedMessageQueue implements MessageQueue {
         // Write the queue entry  
         String shardKey = getShardKey(message);
         mb.withRow(queueColumnFamily, shardKey)
-          .putColumn(entry, new String(baos.toByteArray()), (Integer)settings.getRetentionTimeout());
+          .putColumn(entry, data, (Integer)settings.getRetentionTimeout());
             
         // Write the lookup from queue key to queue entry
         if (message.hasKey()) {
@@ -1280,6 +1404,9 @@ public class ShardedDistributedMessageQueue implements MessageQueue {
         
         // Update state and retun the token
         stats.incSendMessageCount();
+        MessageQueueShardStats shardStats = shardReaderPolicy.getShardStats().get(shardKey);
+        if (shardStats instanceof MessageQueueShard)
+            ((MessageQueueShard)shardStats).incInsertCount(1);
         return getCompositeKey(shardKey, entry.getMessageId());
     }
 
@@ -1304,7 +1431,7 @@ public class ShardedDistributedMessageQueue implements MessageQueue {
         
         for (Column<UUID> column : columns) {
             try {
-                list.add(deserializeString(column.getStringValue(), MessageHistory.class));
+                list.add(codec.decodeHistory(column.getByteArrayValue()));
             } catch (Exception e) {
                 LOG.info("Error deserializing history entry", e);
             }
@@ -1380,8 +1507,7 @@ public class ShardedDistributedMessageQueue implements MessageQueue {
         // Next, parse the message metadata and add a timeout entry
         Message message = null;
         try {
-            ByteArrayInputStream bais = new ByteArrayInputStream(column.getByteArrayValue());
-            message = mapper.readValue(bais, Message.class);
+            message = codec.decodeMessage(column.getByteArrayValue());
         } catch (Exception e) {
             LOG.warn("Error processing message ", e);
             try {
@@ -0,0 +1,332 @@
+package com.netflix.astyanax.recipes.queue.shard;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.netflix.astyanax.recipes.queue.MessageQueueSettings;
+import com.netflix.astyanax.recipes.queue.MessageQueueShard;
+import com.netflix.astyanax.recipes.queue.MessageQueueShardStats;
+
+/**
+ * Shard reader policy that steers consumers toward the shards that have a
+ * backlog and away from the ones that are empty.
+ *
+ * Each shard keeps a backlog estimate, which is a moving average of the
+ * number of messages read from it, plus the number of messages this client
+ * wrote to it since it was last read.  nextShard() makes a weighted random
+ * choice among the shards that aren't being read by another consumer, with a
+ * weight of 1 + the backlog estimate.  Hot shards are read most often while
+ * every shard still gets a fair chance.
+ *
+ * A read that comes back empty puts the shard into exponential backoff,
+ * starting at minBackoff and doubling up to maxBackoff with every further
+ * empty read.  Shards of the current time partition never back off for
+ * longer than the queue's poll interval, and a shard leaves backoff as soon
+ * as this client writes to it.  When no shard is eligible nextShard() waits
+ * for one, up to the poll interval, instead of polling empty shards.
+ *
+ * @author elandau
+ *
+ */
+public class AdaptiveShardReaderPolicy implements ShardReaderPolicy {
+    public static final long   DEFAULT_MIN_BACKOFF = 10;     // In milliseconds
+    public static final long   DEFAULT_MAX_BACKOFF = 5000;   // In milliseconds
+    public static final double DEFAULT_SMOOTHING   = 0.3;
+
+    private static final String SEPARATOR = ":";
+
+    public static class Factory implements ShardReaderPolicy.Factory {
+        private long   minBackoff = DEFAULT_MIN_BACKOFF;
+        private long   maxBackoff = DEFAULT_MAX_BACKOFF;
+        private double smoothing  = DEFAULT_SMOOTHING;
+
+        /**
+         * Backoff after the first empty read of a shard
+         */
+        public Factory withMinBackoff(long backoff, TimeUnit units) {
+            this.minBackoff = TimeUnit.MILLISECONDS.convert(backoff, units);
+            return this;
+        }
+
+        /**
+         * Longest backoff for a shard that keeps coming back empty
+         */
+        public Factory withMaxBackoff(long backoff, TimeUnit units) {
+            this.maxBackoff = TimeUnit.MILLISECONDS.convert(backoff, units);
+            return this;
+        }
+
+        /**
+         * Weight (0 to 1] of the latest read in the backlog estimate.  Higher
+         * values react faster to changes in load.
+         */
+        public Factory withSmoothing(double smoothing) {
+            this.smoothing = smoothing;
+            return this;
+        }
+
+        @Override
+        public ShardReaderPolicy create(MessageQueueSettings settings) {
+            return new AdaptiveShardReaderPolicy(settings, minBackoff, maxBackoff, smoothing);
+        }
+    }
+
+    /**
+     * Scheduling state of a shard.  Guarded by the policy.
+     */
+    private static class ShardState {
+        final MessageQueueShard shard;
+        boolean acquired       = false;
+        double  backlog        = 0;
+        long    lastWriteCount = 0;
+        int     emptyReads     = 0;
+        long    nextReadTime   = 0;
+
+        ShardState(MessageQueueShard shard) {
+            this.shard = shard;
+        }
+
+        long getPendingWrites() {
+            return Math.max(0, shard.getWriteCount() - lastWriteCount);
+        }
+
+        boolean isEligible(long now) {
+            return !acquired && (nextReadTime <= now || getPendingWrites() > 0);
+        }
+
+        double getWeight() {
+            return 1 + backlog + getPendingWrites();
+        }
+    }
+
+    private final MessageQueueSettings                settings;
+    private final long                                minBackoff;
+    private final long                                maxBackoff;
+    private final double                              smoothing;
+    private final List<MessageQueueShard>             shards;
+    private final Map<String, MessageQueueShardStats> shardStats;
+    private final Map<String, ShardState>             states;
+    private final ShardState[]                        stateArray;
+    private final Random                              random = new Random();
+
+    private int  currentTimePartition = -1;
+    private long readCount            = 0;
+    private long emptyReadCount       = 0;
+    private long emptyPollCount       = 0;
+
+    public AdaptiveShardReaderPolicy(MessageQueueSettings settings) {
+        this(settings, DEFAULT_MIN_BACKOFF, DEFAULT_MAX_BACKOFF, DEFAULT_SMOOTHING);
+    }
+
+    public AdaptiveShardReaderPolicy(MessageQueueSettings settings, long minBackoff, long maxBackoff, double smoothing) {
+        Preconditions.checkArgument(minBackoff > 0 && minBackoff <= maxBackoff, "Must have 0 < minBackoff <= maxBackoff");
+        Preconditions.checkArgument(smoothing > 0 && smoothing <= 1, "Smoothing must be in (0, 1]");
+
+        this.settings   = settings;
+        this.minBackoff = minBackoff;
+        this.maxBackoff = maxBackoff;
+        this.smoothing  = smoothing;
+
+        shards = Lists.newArrayListWithCapacity(settings.getPartitionCount() * settings.getShardCount());
+        for (int i = 0; i < settings.getPartitionCount(); i++) {
+            for (int j = 0; j < settings.getShardCount(); j++) {
+                shards.add(new MessageQueueShard(settings.getQueueName() + SEPARATOR + i + SEPARATOR + j, i, j));
+            }
+        }
+
+        Map<String, MessageQueueShardStats> shardStats = Maps.newHashMapWithExpectedSize(shards.size());
+        states     = Maps.newHashMapWithExpectedSize(shards.size());
+        stateArray = new ShardState[shards.size()];
+        int i = 0;
+        for (MessageQueueShard shard : shards) {
+            ShardState state = new ShardState(shard);
+            shardStats.put(shard.getName(), shard);
+            states.put(shard.getName(), state);
+            stateArray[i++] = state;
+        }
+        this.shardStats = Collections.unmodifiableMap(shardStats);
+    }
+
+    private int getCurrentPartitionIndex() {
+        if (settings.getPartitionCount() <= 1)
+            return 0;
+        return    (int) ((TimeUnit.MICROSECONDS.convert(System.currentTimeMillis(), TimeUnit.MILLISECONDS)
+                        / settings.getPartitionDuration())%settings.getPartitionCount());
+    }
+
+    @Override
+    public synchronized MessageQueueShard nextShard() throws InterruptedException {
+        long now      = System.currentTimeMillis();
+        long deadline = now + settings.getPollInterval();
+
+        while (true) {
+            updateTimePartition();
+
+            // Weighted random choice among the eligible shards, while
+            // tracking when the next shard comes out of backoff
+            double totalWeight = 0;
+            long   nextEligibleTime = deadline;
+            for (ShardState state : stateArray) {
+                if (state.isEligible(now))
+                    totalWeight += state.getWeight();
+                else if (!state.acquired && state.nextReadTime < nextEligibleTime)
+                    nextEligibleTime = state.nextReadTime;
+            }
+
+            if (totalWeight > 0) {
+                double target = random.nextDouble() * totalWeight;
+                ShardState selected = null;
+                for (ShardState state : stateArray) {
+                    if (state.isEligible(now)) {
+                        selected = state;
+                        target -= state.getWeight();
+                        if (target < 0)
+                            break;
+                    }
+                }
+                selected.acquired = true;
+                return selected.shard;
+            }
+
+            if (now >= deadline) {
+                emptyPollCount++;
+                return null;
+            }
+
+            // Woken up early by releaseShard()
+            wait(Math.max(1, nextEligibleTime - now));
+            now = System.currentTimeMillis();
+        }
+    }
+
+    /**
+     * Take the shards of a new time partition out of backoff since that is
+     * where new messages will go
+     */
+    private void updateTimePartition() {
+        int timePartition = getCurrentPartitionIndex();
+        if (timePartition != currentTimePartition) {
+            currentTimePartition = timePartition;
+            for (ShardState state : stateArray) {
+                if (state.shard.getPartition() == currentTimePartition) {
+                    state.emptyReads   = 0;
+                    state.nextReadTime = 0;
+                }
+            }
+        }
+    }
+
+    @Override
+    public void releaseShard(MessageQueueShard shard, int messagesRead) {
+        shard.setLastCount(messagesRead);
+
+        synchronized (this) {
+            ShardState state = states.get(shard.getName());
+            state.acquired       = false;
+            state.backlog        = smoothing * messagesRead + (1 - smoothing) * state.backlog;
+            state.lastWriteCount = shard.getWriteCount();
+            readCount++;
+
+            if (messagesRead == 0) {
+                emptyReadCount++;
+                state.emptyReads++;
+                long backoff = minBackoff << Math.min(state.emptyReads - 1, 30);
+                backoff = Math.min(backoff, maxBackoff);
+                if (shard.getPartition() == currentTimePartition)
+                    backoff = Math.min(backoff, settings.getPollInterval());
+                state.nextReadTime = System.currentTimeMillis() + backoff;
+            }
+            else {
+                state.emptyReads   = 0;
+                state.nextReadTime = 0;
+            }
+
+            notifyAll();
+        }
+    }
+
+    @Override
+    public Collection<MessageQueueShard> listShards() {
+        return Collections.unmodifiableList(shards);
+    }
+
+    @Override
+    public Map<String, MessageQueueShardStats> getShardStats() {
+        return shardStats;
+    }
+
+    /**
+     * @return Backlog estimate of each shard
+     */
+    public synchronized Map<String, Double> getBacklogEstimates() {
+        Map<String, Double> estimates = Maps.newLinkedHashMap();
+        for (ShardState state : stateArray) {
+            estimates.put(state.shard.getName(), state.backlog);
+        }
+        return estimates;
+    }
+
+    /**
+     * @return Ratio of the largest shard backlog estimate to the average
+     *         backlog estimate.  1 when load is spread evenly over all shards,
+     *         up to the number of shards when all load is on a single shard.
+     */
+    public synchronized double getSkew() {
+        double total = 0;
+        double max   = 0;
+        for (ShardState state : stateArray) {
+            total += state.backlog;
+            max    = Math.max(max, state.backlog);
+        }
+        if (total == 0)
+            return 1.0;
+        return max * stateArray.length / total;
+    }
+
+    /**
+     * @return Number of shards currently backing off after an empty read
+     */
+    public synchronized int getBackoffShardCount() {
+        long now = System.currentTimeMillis();
+        int count = 0;
+        for (ShardState state : stateArray) {
+            if (state.nextReadTime > now)
+                count++;
+        }
+        return count;
+    }
+
+    /**
+     * @return Number of shards released after being read
+     */
+    public synchronized long getReadCount() {
+        return readCount;
+    }
+
+    /**
+     * @return Number of reads that found no messages
+     */
+    public synchronized long getEmptyReadCount() {
+        return emptyReadCount;
+    }
+
+    /**
+     * @return Number of calls to nextShard() that found no eligible shard
+     */
+    public synchronized long getEmptyPollCount() {
+        return emptyPollCount;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "AdaptiveShardReaderPolicy [readCount=" + readCount + ", emptyReadCount=" + emptyReadCount
+                + ", emptyPollCount=" + emptyPollCount + ", skew=" + getSkew() + ", backoffShardCount=" + getBackoffShardCount() + "]";
+    }
+}
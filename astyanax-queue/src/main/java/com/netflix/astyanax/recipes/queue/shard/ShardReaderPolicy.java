@@ -3,6 +3,7 @@ package com.netflix.astyanax.recipes.queue.shard;
 import java.util.Collection;
 import java.util.Map;
 
+import com.netflix.astyanax.recipes.queue.MessageQueueSettings;
 import com.netflix.astyanax.recipes.queue.MessageQueueShard;
 import com.netflix.astyanax.recipes.queue.MessageQueueShardStats;
 
@@ -13,6 +14,13 @@ import com.netflix.astyanax.recipes.queue.MessageQueueShardStats;
  *
  */
 public interface ShardReaderPolicy {
+    /**
+     * Create a policy once the queue settings are known
+     */
+    public static interface Factory {
+        ShardReaderPolicy create(MessageQueueSettings settings);
+    }
+    
     /**
      * Acquire the next shard to be processed.  Must call releaseShard when done reading
      * from the shard
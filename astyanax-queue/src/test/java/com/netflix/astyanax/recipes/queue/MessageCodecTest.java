@@ -0,0 +1,148 @@
+package com.netflix.astyanax.recipes.queue;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import junit.framework.Assert;
+
+import org.junit.Test;
+
+import com.google.common.base.Strings;
+import com.netflix.astyanax.recipes.queue.triggers.RepeatingTrigger;
+import com.netflix.astyanax.recipes.queue.triggers.RunOnceTrigger;
+import com.netflix.astyanax.util.TimeUUIDUtils;
+
+public class MessageCodecTest {
+    private static Message newMessage() {
+        return new Message(TimeUUIDUtils.getUniqueTimeUUIDinMicros(), TimeUUIDUtils.getUniqueTimeUUIDinMicros())
+            .setUniqueKey("key1")
+            .setTaskClass("com.example.Task")
+            .setTimeout(30, TimeUnit.SECONDS)
+            .setPriority((byte) 3)
+            .setKeepHistory(true)
+            .setTrigger(new RepeatingTrigger.Builder()
+                .withInterval(10, TimeUnit.SECONDS)
+                .withRepeatCount(5)
+                .build())
+            .addParameter("string", "value")
+            .addParameter("int", 123)
+            .addParameter("long", -5L)
+            .addParameter("bool", true)
+            .addParameter("double", 1.5)
+            .addParameter("bytes", new byte[] { 1, 2, 3 })
+            .addParameter("null", null);
+    }
+
+    private static void assertMessageEquals(Message expected, Message actual) {
+        Assert.assertEquals(expected.getToken(),        actual.getToken());
+        Assert.assertEquals(expected.getRandom(),       actual.getRandom());
+        Assert.assertEquals(expected.getKey(),          actual.getKey());
+        Assert.assertEquals(expected.hasUniqueKey(),    actual.hasUniqueKey());
+        Assert.assertEquals(expected.getTaskClass(),    actual.getTaskClass());
+        Assert.assertEquals(expected.getTimeout(),      actual.getTimeout());
+        Assert.assertEquals(expected.getPriority(),     actual.getPriority());
+        Assert.assertEquals(expected.isKeepHistory(),   actual.isKeepHistory());
+        Assert.assertEquals(expected.getTrigger().getClass(),       actual.getTrigger().getClass());
+        Assert.assertEquals(expected.getTrigger().getTriggerTime(), actual.getTrigger().getTriggerTime());
+        Assert.assertEquals(expected.getParameters().keySet(),      actual.getParameters().keySet());
+    }
+
+    @Test
+    public void testBinaryRoundTrip() throws Exception {
+        MessageCodec codec = new MessageCodec(MessageEncoding.BINARY);
+        Message message = newMessage();
+
+        Message decoded = codec.decodeMessage(codec.encodeMessage(message));
+        assertMessageEquals(message, decoded);
+
+        RepeatingTrigger trigger = (RepeatingTrigger) decoded.getTrigger();
+        Assert.assertEquals(TimeUnit.SECONDS.toMillis(10), trigger.getInterval());
+        Assert.assertEquals(Long.valueOf(5), trigger.getRepeatCount());
+        Assert.assertNull(trigger.getDelay());
+
+        Map<String, Object> parameters = decoded.getParameters();
+        Assert.assertEquals("value", parameters.get("string"));
+        Assert.assertEquals(123,     parameters.get("int"));
+        Assert.assertEquals(-5L,     parameters.get("long"));
+        Assert.assertEquals(true,    parameters.get("bool"));
+        Assert.assertEquals(1.5,     parameters.get("double"));
+        Assert.assertTrue(Arrays.equals(new byte[] { 1, 2, 3 }, (byte[]) parameters.get("bytes")));
+        Assert.assertTrue(parameters.containsKey("null"));
+    }
+
+    @Test
+    public void testBinaryIsSmallerThanJson() throws Exception {
+        Message message = new Message(TimeUUIDUtils.getUniqueTimeUUIDinMicros(), TimeUUIDUtils.getUniqueTimeUUIDinMicros())
+            .setTrigger(new RunOnceTrigger.Builder().build())
+            .addParameter("id", 1234L);
+        byte[] json   = new MessageCodec(MessageEncoding.JSON).encodeMessage(message);
+        byte[] binary = new MessageCodec(MessageEncoding.BINARY).encodeMessage(message);
+        Assert.assertTrue(binary.length * 3 < json.length);
+    }
+
+    @Test
+    public void testJsonParameters() throws Exception {
+        MessageCodec codec = new MessageCodec(MessageEncoding.BINARY);
+        Message message = newMessage().addParameter("list", Arrays.asList("a", "b"));
+
+        Message decoded = codec.decodeMessage(codec.encodeMessage(message));
+        assertMessageEquals(message, decoded);
+        Assert.assertEquals(Arrays.asList("a", "b"), decoded.getParameters().get("list"));
+        Assert.assertEquals(123, decoded.getParameters().get("int"));
+    }
+
+    @Test
+    public void testCompressedParameters() throws Exception {
+        String payload = Strings.repeat("payload ", 1000);
+        Message message = newMessage().addParameter("payload", payload);
+
+        byte[] uncompressed = new MessageCodec(MessageEncoding.BINARY).encodeMessage(message);
+        MessageCodec codec = new MessageCodec(MessageEncoding.BINARY_SNAPPY);
+        byte[] compressed = codec.encodeMessage(message);
+        Assert.assertTrue(compressed.length < uncompressed.length / 4);
+
+        Message decoded = codec.decodeMessage(compressed);
+        assertMessageEquals(message, decoded);
+        Assert.assertEquals(payload, decoded.getParameters().get("payload"));
+    }
+
+    @Test
+    public void testReadLegacyJson() throws Exception {
+        Message message = newMessage();
+        message.getParameters().remove("bytes");
+        byte[] json = new MessageCodec(MessageEncoding.JSON).encodeMessage(message);
+        Assert.assertEquals('{', json[0]);
+
+        // A queue switched to binary still reads the JSON written before the switch
+        Message decoded = new MessageCodec(MessageEncoding.BINARY).decodeMessage(json);
+        Assert.assertEquals(message.getToken(), decoded.getToken());
+        Assert.assertEquals(message.getKey(),   decoded.getKey());
+        Assert.assertEquals(message.getTrigger().getTriggerTime(), decoded.getTrigger().getTriggerTime());
+        Assert.assertEquals("value", decoded.getParameters().get("string"));
+    }
+
+    @Test
+    public void testHistory() throws Exception {
+        MessageHistory history = new MessageHistory();
+        history.setToken(TimeUUIDUtils.getUniqueTimeUUIDinMicros());
+        history.setTriggerTime(1000);
+        history.setStartTime(2000);
+        history.setEndTime(3000);
+        history.setStatus(MessageStatus.FAILED);
+        history.setError("error");
+
+        byte[] json = new MessageCodec(MessageEncoding.JSON).encodeHistory(history);
+        for (MessageCodec codec : Arrays.asList(new MessageCodec(MessageEncoding.BINARY), new MessageCodec(null))) {
+            for (byte[] data : Arrays.asList(codec.encodeHistory(history), json)) {
+                MessageHistory decoded = codec.decodeHistory(data);
+                Assert.assertEquals(history.getToken(),     decoded.getToken());
+                Assert.assertEquals(history.getStartTime(), decoded.getStartTime());
+                Assert.assertEquals(history.getEndTime(),   decoded.getEndTime());
+                Assert.assertEquals(history.getStatus(),    decoded.getStatus());
+                Assert.assertEquals(history.getError(),     decoded.getError());
+                Assert.assertNull(decoded.getStackTrace());
+            }
+        }
+    }
+}
@@ -0,0 +1,85 @@
+package com.netflix.astyanax.recipes.queue.shard;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import junit.framework.Assert;
+
+import org.junit.Test;
+
+import com.google.common.collect.Maps;
+import com.netflix.astyanax.recipes.queue.MessageQueueSettings;
+import com.netflix.astyanax.recipes.queue.MessageQueueShard;
+
+public class AdaptiveShardReaderPolicyTest {
+    private static MessageQueueSettings newSettings(int shardCount) {
+        MessageQueueSettings settings = new MessageQueueSettings();
+        settings.setShardCount(shardCount);
+        settings.setPollInterval(50);
+        return settings;
+    }
+
+    @Test
+    public void testPrefersHotShards() throws Exception {
+        AdaptiveShardReaderPolicy policy = (AdaptiveShardReaderPolicy) new AdaptiveShardReaderPolicy.Factory()
+            .withMinBackoff(1, TimeUnit.SECONDS)
+            .withMaxBackoff(1, TimeUnit.SECONDS)
+            .create(newSettings(4));
+
+        // Shard 0 is the only one with messages
+        Map<String, Integer> counts = Maps.newHashMap();
+        for (int i = 0; i < 200; i++) {
+            MessageQueueShard shard = policy.nextShard();
+            Assert.assertNotNull(shard);
+            Integer count = counts.get(shard.getName());
+            counts.put(shard.getName(), count == null ? 1 : count + 1);
+            policy.releaseShard(shard, shard.getShard() == 0 ? 10 : 0);
+        }
+
+        // Empty shards were read once before backing off
+        Assert.assertEquals(197, counts.get("Queue:0:0").intValue());
+        Assert.assertEquals(3, policy.getEmptyReadCount());
+        Assert.assertEquals(3, policy.getBackoffShardCount());
+        Assert.assertTrue(policy.getSkew() > 3.9);
+    }
+
+    @Test
+    public void testBackoffWhenEmpty() throws Exception {
+        MessageQueueSettings settings = newSettings(2);
+        settings.setPollInterval(200);
+        AdaptiveShardReaderPolicy policy = new AdaptiveShardReaderPolicy(settings, 100, 1000, 0.5);
+
+        MessageQueueShard first  = policy.nextShard();
+        MessageQueueShard second = policy.nextShard();
+        Assert.assertNotSame(first, second);
+
+        // Both shards are acquired so there is nothing left to read
+        Assert.assertNull(policy.nextShard());
+        Assert.assertEquals(1, policy.getEmptyPollCount());
+
+        // Releasing an empty shard backs it off
+        policy.releaseShard(first, 0);
+        policy.releaseShard(second, 0);
+        Assert.assertEquals(2, policy.getBackoffShardCount());
+
+        long startTime = System.currentTimeMillis();
+        Assert.assertNotNull(policy.nextShard());
+        Assert.assertTrue(System.currentTimeMillis() - startTime >= 80);
+    }
+
+    @Test
+    public void testWriteEndsBackoff() throws Exception {
+        MessageQueueSettings settings = newSettings(1);
+        settings.setPollInterval(5000);
+        AdaptiveShardReaderPolicy policy = new AdaptiveShardReaderPolicy(settings, 5000, 5000, 0.5);
+
+        MessageQueueShard shard = policy.nextShard();
+        policy.releaseShard(shard, 0);
+        Assert.assertEquals(1, policy.getBackoffShardCount());
+
+        shard.incInsertCount(1);
+        long startTime = System.currentTimeMillis();
+        Assert.assertSame(shard, policy.nextShard());
+        Assert.assertTrue(System.currentTimeMillis() - startTime < 1000);
+    }
+}
@@ -238,6 +238,45 @@ public class QueueTest {
         }
     }
     
+    @Test
+    public void testLeasedShardQueue() throws Exception {
+        final CountingQueueStats stats = new CountingQueueStats();
+        
+        final ShardedDistributedMessageQueue scheduler = new ShardedDistributedMessageQueue.Builder()
+            .withColumnFamily(SCHEDULER_NAME_CF_NAME)
+            .withQueueName("TestLeasedShardQueue")
+            .withKeyspace(keyspace)
+            .withConsistencyLevel(CONSISTENCY_LEVEL)
+            .withStats(stats)
+            .withShardCount(1)
+            .withShardLeaseTime(10L, TimeUnit.SECONDS)
+            .withPollInterval(100L,  TimeUnit.MILLISECONDS)
+            .build();
+        
+        scheduler.createQueue();
+        
+        MessageProducer producer = scheduler.createProducer();
+        MessageConsumer consumer = scheduler.createConsumer();
+        
+        for (int i = 0; i < 10; i++) {
+            producer.sendMessage(new Message());
+        }
+        
+        // Drain the shard in several reads under one lease
+        int count = 0;
+        for (int i = 0; i < 5; i++) {
+            List<MessageContext> messages = consumer.readMessages(2, 1, TimeUnit.SECONDS);
+            consumer.ackMessages(messages);
+            count += messages.size();
+        }
+        Assert.assertEquals(10, count);
+        Assert.assertEquals(0, stats.getLockCountentionCount());
+        
+        // Reading the now empty shard releases the lease
+        Assert.assertTrue(consumer.readMessages(2, 1, TimeUnit.SECONDS).isEmpty());
+        Assert.assertEquals(0, scheduler.getMessageCount());
+    }
+    
     @Test
     public void testQueue() throws Exception {
         final CountingQueueStats stats = new CountingQueueStats();
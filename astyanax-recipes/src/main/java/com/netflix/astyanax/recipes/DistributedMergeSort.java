@@ -1,5 +1,694 @@
 package com.netflix.astyanax.recipes;
 
-public class DistributedMergeSort {
+import java.io.Closeable;
+import java.nio.ByteBuffer;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
+import com.google.common.base.Function;
+import com.google.common.base.Preconditions;
+import com.google.common.base.Throwables;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Iterators;
+import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.netflix.astyanax.Keyspace;
+import com.netflix.astyanax.model.Column;
+import com.netflix.astyanax.model.ColumnFamily;
+import com.netflix.astyanax.model.ColumnList;
+import com.netflix.astyanax.model.ConsistencyLevel;
+import com.netflix.astyanax.query.ColumnFamilyQuery;
+import com.netflix.astyanax.retry.RetryPolicy;
+import com.netflix.astyanax.serializers.BigIntegerSerializer;
+import com.netflix.astyanax.serializers.ComparatorType;
+
+/**
+ * Read the columns of several shard rows as a single sorted stream.  This is
+ * useful for time series and indexes that are spread over many rows, such as
+ * rows built with Shards.newStringShardBuilder(), to avoid hot spots.
+ *
+ * Each shard row is read by a cursor that paginates through the row.  The first
+ * page of all shards is requested concurrently and each cursor then fetches up to
+ * readAheadDepth pages ahead of the page being merged.  The cursors are merged
+ * using a heap ordered by the column name so only a few pages per shard are held
+ * in memory at any time and reading stops as soon as the limit is reached.
+ *
+ * Columns are merged in the order of the comparator type of the column family's
+ * column serializer.  BytesType, AsciiType, UTF8Type, LongType, Int32Type and
+ * IntegerType are supported.  Use withComparator() for any other comparator, such
+ * as TimeUUIDType, or when the serializer doesn't match the column family's
+ * comparator.
+ *
+ * Iterate the columns,
+ * <code>
+ *      DistributedMergeSort<ByteBuffer, ByteBuffer>.MergeIterator iter =
+ *          new DistributedMergeSort.Builder<ByteBuffer, ByteBuffer>(keyspace, columnFamily)
+ *              .withShards(Shards.newStringShardBuilder().setPrefix("events_").setShardCount(10).build())
+ *              .withLimit(1000)
+ *              .build()
+ *              .iterator();
+ *      try {
+ *          while (iter.hasNext()) {
+ *              Column<ByteBuffer> column = iter.next();
+ *          }
+ *      }
+ *      finally {
+ *          iter.close();
+ *      }
+ * </code>
+ *
+ * @author elandau
+ *
+ * @param <K>
+ * @param <C>
+ */
+public class DistributedMergeSort<K, C> implements Callable<Boolean> {
+    private final static int DEFAULT_PAGE_SIZE = 100;
+    private final static int DEFAULT_READ_AHEAD_DEPTH = 1;
+    private final static int DEFAULT_MAX_THREADS = 10;
+
+    private static final ByteBuffer EMPTY_BUFFER = ByteBuffer.wrap(new byte[0]);
+
+    private final Keyspace              keyspace;
+    private final ColumnFamily<K, C>    columnFamily;
+    private final List<K>               shards;
+    private final int                   pageSize;
+    private final int                   readAheadDepth;
+    private final int                   limit;
+    private final ByteBuffer            startColumn;
+    private final ByteBuffer            endColumn;
+    private final boolean               reversed;
+    private final Comparator<Column<C>> comparator;
+    private final ConsistencyLevel      consistencyLevel;
+    private final RetryPolicy           retryPolicy;
+    private final ExecutorService       executor;
+    private final int                   concurrencyLevel;
+    private final Function<Column<C>, Boolean> columnFunction;
+
+    public static class Builder<K, C> {
+        private final Keyspace           keyspace;
+        private final ColumnFamily<K, C> columnFamily;
+
+        private List<K>          shards = ImmutableList.of();
+        private int              pageSize = DEFAULT_PAGE_SIZE;
+        private int              readAheadDepth = DEFAULT_READ_AHEAD_DEPTH;
+        private int              limit = 0;
+        private C                startColumn;
+        private C                endColumn;
+        private boolean          reversed = false;
+        private Comparator<C>    comparator;
+        private ConsistencyLevel consistencyLevel;
+        private RetryPolicy      retryPolicy;
+        private ExecutorService  executor;
+        private int              concurrencyLevel = DEFAULT_MAX_THREADS;
+        private Function<Column<C>, Boolean> columnFunction;
+
+        public Builder(Keyspace keyspace, ColumnFamily<K, C> columnFamily) {
+            this.keyspace     = keyspace;
+            this.columnFamily = columnFamily;
+        }
+
+        /**
+         * Row keys of the shards to merge
+         *
+         * @param shards
+         * @return
+         */
+        public Builder<K, C> withShards(Collection<K> shards) {
+            this.shards = ImmutableList.copyOf(shards);
+            return this;
+        }
+
+        /**
+         * Number of columns to read from a shard in each query
+         *
+         * @param pageSize
+         * @return
+         */
+        public Builder<K, C> withPageSize(int pageSize) {
+            Preconditions.checkArgument(pageSize >= 1, "Page size must be >= 1");
+            this.pageSize = pageSize;
+            return this;
+        }
+
+        /**
+         * Number of pages to fetch for each shard ahead of the page currently being
+         * merged.  At most readAheadDepth pages per shard are held in memory in
+         * addition to the one being merged.  With a depth of 0 the next page of a
+         * shard is requested only once the merge needs it.
+         *
+         * @param readAheadDepth
+         * @return
+         */
+        public Builder<K, C> withReadAheadDepth(int readAheadDepth) {
+            Preconditions.checkArgument(readAheadDepth >= 0, "Read ahead depth must be >= 0");
+            this.readAheadDepth = readAheadDepth;
+            return this;
+        }
+
+        /**
+         * Maximum number of columns to return from all shards.  No more pages are read
+         * once the limit is reached.  The default of 0 returns all columns.
+         *
+         * @param limit
+         * @return
+         */
+        public Builder<K, C> withLimit(int limit) {
+            Preconditions.checkArgument(limit >= 0, "Limit must be >= 0");
+            this.limit = limit;
+            return this;
+        }
+
+        /**
+         * Specify the range of columns to merge.  Either column can be null for an
+         * open ended range.
+         *
+         * @param startColumn
+         *            First column in the range
+         * @param endColumn
+         *            Last column in the range
+         * @param reversed
+         *            True to merge in descending order. Note that for reversed,
+         *            startColumn should be greater than endColumn.
+         * @return
+         */
+        public Builder<K, C> withColumnRange(C startColumn, C endColumn, boolean reversed) {
+            this.startColumn = startColumn;
+            this.endColumn   = endColumn;
+            this.reversed    = reversed;
+            return this;
+        }
+
+        /**
+         * Comparator matching the column family's comparator type.  Required unless
+         * the column serializer's comparator type is one of the supported types.
+         *
+         * @param comparator
+         * @return
+         */
+        public Builder<K, C> withComparator(Comparator<C> comparator) {
+            this.comparator = comparator;
+            return this;
+        }
+
+        public Builder<K, C> withConsistencyLevel(ConsistencyLevel consistencyLevel) {
+            this.consistencyLevel = consistencyLevel;
+            return this;
+        }
+
+        public Builder<K, C> withRetryPolicy(RetryPolicy retryPolicy) {
+            this.retryPolicy = retryPolicy;
+            return this;
+        }
+
+        /**
+         * Executor used to read the shards.  The executor is not shut down when
+         * the merge completes.  By default each merge creates its own executor
+         * with up to concurrencyLevel threads.
+         *
+         * @param executor
+         * @return
+         */
+        public Builder<K, C> withExecutor(ExecutorService executor) {
+            this.executor = executor;
+            return this;
+        }
+
+        /**
+         * Maximum number of shards read at the same time when not using a
+         * shared executor
+         *
+         * @param concurrencyLevel
+         * @return
+         */
+        public Builder<K, C> withConcurrencyLevel(int concurrencyLevel) {
+            Preconditions.checkArgument(concurrencyLevel >= 1, "Concurrency level must be >= 1");
+            this.concurrencyLevel = concurrencyLevel;
+            return this;
+        }
+
+        /**
+         * Specify the callback function for each column, in order, when the merge
+         * is run by call().  Return false to stop the merge.
+         *
+         * @param columnFunction
+         * @return
+         */
+        public Builder<K, C> forEachColumn(Function<Column<C>, Boolean> columnFunction) {
+            this.columnFunction = columnFunction;
+            return this;
+        }
+
+        /**
+         * @throws IllegalStateException if no comparator was set and the column
+         *         serializer's comparator type isn't supported
+         */
+        public DistributedMergeSort<K, C> build() {
+            return new DistributedMergeSort<K, C>(this);
+        }
+    }
+
+    private DistributedMergeSort(Builder<K, C> builder) {
+        this.keyspace         = builder.keyspace;
+        this.columnFamily     = builder.columnFamily;
+        this.shards           = builder.shards;
+        this.pageSize         = builder.pageSize;
+        this.readAheadDepth   = builder.readAheadDepth;
+        this.limit            = builder.limit;
+        this.startColumn      = toByteBuffer(builder.startColumn);
+        this.endColumn        = toByteBuffer(builder.endColumn);
+        this.reversed         = builder.reversed;
+        this.consistencyLevel = builder.consistencyLevel;
+        this.retryPolicy      = builder.retryPolicy;
+        this.executor         = builder.executor;
+        this.concurrencyLevel = builder.concurrencyLevel;
+        this.columnFunction   = builder.columnFunction;
+
+        final Comparator<C> nameComparator = builder.comparator;
+        Comparator<Column<C>> comparator;
+        if (nameComparator != null) {
+            comparator = new Comparator<Column<C>>() {
+                @Override
+                public int compare(Column<C> c1, Column<C> c2) {
+                    return nameComparator.compare(c1.getName(), c2.getName());
+                }
+            };
+        }
+        else {
+            final Comparator<ByteBuffer> rawComparator = getRawComparator(
+                    columnFamily.getColumnSerializer().getComparatorType());
+            comparator = new Comparator<Column<C>>() {
+                @Override
+                public int compare(Column<C> c1, Column<C> c2) {
+                    return rawComparator.compare(c1.getRawName(), c2.getRawName());
+                }
+            };
+        }
+
+        if (reversed) {
+            final Comparator<Column<C>> ascending = comparator;
+            comparator = new Comparator<Column<C>>() {
+                @Override
+                public int compare(Column<C> c1, Column<C> c2) {
+                    return ascending.compare(c2, c1);
+                }
+            };
+        }
+        this.comparator = comparator;
+    }
+
+    private ByteBuffer toByteBuffer(C column) {
+        if (column == null)
+            return EMPTY_BUFFER;
+        return columnFamily.getColumnSerializer().toByteBuffer(column);
+    }
+
+    /**
+     * @return Comparator for serialized names in the order of a comparator type
+     */
+    private static Comparator<ByteBuffer> getRawComparator(ComparatorType comparatorType) {
+        switch (comparatorType) {
+        case BYTESTYPE:
+        case ASCIITYPE:
+        case UTF8TYPE:
+            return new Comparator<ByteBuffer>() {
+                @Override
+                public int compare(ByteBuffer b1, ByteBuffer b2) {
+                    return compareUnsigned(b1, b2);
+                }
+            };
+        case LONGTYPE:
+            return new Comparator<ByteBuffer>() {
+                @Override
+                public int compare(ByteBuffer b1, ByteBuffer b2) {
+                    if (!b1.hasRemaining() || !b2.hasRemaining())
+                        return b1.remaining() - b2.remaining();
+                    long l1 = b1.getLong(b1.position());
+                    long l2 = b2.getLong(b2.position());
+                    return l1 < l2 ? -1 : (l1 == l2 ? 0 : 1);
+                }
+            };
+        case INT32TYPE:
+            return new Comparator<ByteBuffer>() {
+                @Override
+                public int compare(ByteBuffer b1, ByteBuffer b2) {
+                    if (!b1.hasRemaining() || !b2.hasRemaining())
+                        return b1.remaining() - b2.remaining();
+                    int i1 = b1.getInt(b1.position());
+                    int i2 = b2.getInt(b2.position());
+                    return i1 < i2 ? -1 : (i1 == i2 ? 0 : 1);
+                }
+            };
+        case INTEGERTYPE:
+            return new Comparator<ByteBuffer>() {
+                @Override
+                public int compare(ByteBuffer b1, ByteBuffer b2) {
+                    if (!b1.hasRemaining() || !b2.hasRemaining())
+                        return b1.remaining() - b2.remaining();
+                    return BigIntegerSerializer.get().fromByteBuffer(b1.duplicate())
+                            .compareTo(BigIntegerSerializer.get().fromByteBuffer(b2.duplicate()));
+                }
+            };
+        default:
+            throw new IllegalStateException("No default comparator for " + comparatorType.getTypeName()
+                    + ", use withComparator()");
+        }
+    }
+
+    private static int compareUnsigned(ByteBuffer b1, ByteBuffer b2) {
+        int length = Math.min(b1.remaining(), b2.remaining());
+        for (int i = 0; i < length; i++) {
+            int result = (b1.get(b1.position() + i) & 0xFF) - (b2.get(b2.position() + i) & 0xFF);
+            if (result != 0)
+                return result;
+        }
+        return b1.remaining() - b2.remaining();
+    }
+
+    /**
+     * Run the merge, calling the forEachColumn function for each column in order.
+     *
+     * @return true if all columns were read or false if the limit was reached or the
+     *         callback stopped the merge
+     */
+    @Override
+    public Boolean call() throws Exception {
+        Preconditions.checkState(columnFunction != null, "Missing call to forEachColumn");
+
+        MergeIterator iter = iterator();
+        try {
+            while (iter.hasNextColumn()) {
+                if (!columnFunction.apply(iter.nextColumn()))
+                    return false;
+            }
+            return !iter.isLimitReached();
+        }
+        finally {
+            iter.close();
+        }
+    }
+
+    /**
+     * Start the merge.  Reading from the shards starts right away.  The iterator
+     * must be closed if it isn't read to the end.
+     */
+    public MergeIterator iterator() {
+        return new MergeIterator();
+    }
+
+    /**
+     * Iterator over the merged columns.  next() and hasNext() wrap any error
+     * reading a shard in a RuntimeException.  Use nextColumn() and hasNextColumn()
+     * to get the original exception.
+     */
+    public class MergeIterator implements Iterator<Column<C>>, Closeable {
+        private final ExecutorService         executor;
+        private final boolean                 ownsExecutor;
+        private final List<ShardCursor>       cursors;
+        private final PriorityQueue<ShardCursor> heap;
+
+        private boolean     started = false;
+        private volatile boolean closed = false;
+        private int         count = 0;
+        private K           currentKey;
+
+        private MergeIterator() {
+            if (DistributedMergeSort.this.executor != null) {
+                this.executor     = DistributedMergeSort.this.executor;
+                this.ownsExecutor = false;
+            }
+            else {
+                this.executor     = Executors.newFixedThreadPool(
+                        Math.max(1, Math.min(shards.size(), concurrencyLevel)),
+                        new ThreadFactoryBuilder().setDaemon(true).setNameFormat("DistributedMergeSort-%d").build());
+                this.ownsExecutor = true;
+            }
+
+            this.cursors = Lists.newArrayListWithCapacity(shards.size());
+            this.heap    = new PriorityQueue<ShardCursor>(Math.max(1, shards.size()), new Comparator<ShardCursor>() {
+                @Override
+                public int compare(ShardCursor s1, ShardCursor s2) {
+                    int result = comparator.compare(s1.head, s2.head);
+                    if (result == 0)
+                        result = s1.index - s2.index;
+                    return result;
+                }
+            });
+
+            // Request the first page of all shards concurrently
+            for (K shard : shards) {
+                ShardCursor cursor = new ShardCursor(this, shard, cursors.size());
+                cursors.add(cursor);
+                cursor.fetchIfNeeded(true);
+            }
+        }
+
+        private void start() throws Exception {
+            if (!started) {
+                started = true;
+                for (ShardCursor cursor : cursors) {
+                    if (cursor.advance())
+                        heap.add(cursor);
+                }
+            }
+        }
+
+        public boolean hasNextColumn() throws Exception {
+            if (closed || isLimitReached())
+                return false;
+            start();
+            if (heap.isEmpty()) {
+                close();
+                return false;
+            }
+            return true;
+        }
+
+        public Column<C> nextColumn() throws Exception {
+            if (!hasNextColumn())
+                throw new NoSuchElementException();
+
+            ShardCursor cursor = heap.poll();
+            Column<C> column = cursor.head;
+            currentKey = cursor.key;
+            count++;
+
+            // Don't read any further than needed once the limit is reached
+            if (isLimitReached())
+                close();
+            else if (cursor.advance())
+                heap.add(cursor);
+            return column;
+        }
+
+        @Override
+        public boolean hasNext() {
+            try {
+                return hasNextColumn();
+            }
+            catch (RuntimeException e) {
+                throw e;
+            }
+            catch (Exception e) {
+                throw new RuntimeException(e);
+            }
+        }
+
+        @Override
+        public Column<C> next() {
+            try {
+                return nextColumn();
+            }
+            catch (RuntimeException e) {
+                throw e;
+            }
+            catch (Exception e) {
+                throw new RuntimeException(e);
+            }
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+
+        /**
+         * @return Row key of the shard of the last column returned
+         */
+        public K getCurrentKey() {
+            return currentKey;
+        }
+
+        /**
+         * @return Number of columns returned so far
+         */
+        public int getCount() {
+            return count;
+        }
+
+        public boolean isLimitReached() {
+            return limit > 0 && count >= limit;
+        }
+
+        /**
+         * Stop reading the shards.  Pages already being read are discarded.
+         */
+        @Override
+        public void close() {
+            if (!closed) {
+                closed = true;
+                heap.clear();
+                if (ownsExecutor)
+                    executor.shutdownNow();
+
+                // Wake up advance() if it's waiting for a page
+                for (ShardCursor cursor : cursors) {
+                    synchronized (cursor) {
+                        cursor.notifyAll();
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Paginates through a single shard.  Pages are fetched in a worker thread and
+     * queued until the merge gets to them.  The next page can only be requested
+     * once the previous page has arrived since it starts after its last column.
+     */
+    private class ShardCursor {
+        private final MergeIterator iter;
+        private final K             key;
+        private final int           index;
+        private final LinkedList<List<Column<C>>> pages = Lists.newLinkedList();
+
+        private Iterator<Column<C>> current = Iterators.<Column<C>>emptyIterator();
+        private Column<C>  head;
+        private ByteBuffer nextStart = startColumn;
+        private boolean    firstPage = true;
+        private boolean    fetching  = false;
+        private boolean    exhausted = false;
+        private Throwable  error;
+
+        ShardCursor(MergeIterator iter, K key, int index) {
+            this.iter  = iter;
+            this.key   = key;
+            this.index = index;
+        }
+
+        /**
+         * Request the next page if no page is being fetched and either the merge
+         * is waiting for it or fewer than readAheadDepth pages are waiting to be
+         * merged
+         *
+         * @param needed True if the merge is waiting for the next page
+         */
+        synchronized void fetchIfNeeded(boolean needed) {
+            if (fetching || exhausted || error != null || iter.closed)
+                return;
+            if (!firstPage && !needed && pages.size() >= readAheadDepth)
+                return;
+
+            fetching = true;
+            final ByteBuffer start = nextStart;
+            final boolean skipFirst = !firstPage;
+            try {
+                iter.executor.submit(new Runnable() {
+                    @Override
+                    public void run() {
+                        fetchPage(start, skipFirst);
+                    }
+                });
+            }
+            catch (Exception e) {
+                // Executor was shut down by close()
+                fetching = false;
+                error    = e;
+                notifyAll();
+            }
+        }
+
+        /**
+         * Read one page from the shard.  Pages after the first start at the last
+         * column of the previous page, which is skipped.
+         */
+        private void fetchPage(ByteBuffer start, boolean skipFirst) {
+            int count = skipFirst ? pageSize + 1 : pageSize;
+            try {
+                ColumnFamilyQuery<K, C> query = keyspace.prepareQuery(columnFamily);
+                if (consistencyLevel != null)
+                    query.setConsistencyLevel(consistencyLevel);
+                if (retryPolicy != null)
+                    query.withRetryPolicy(retryPolicy);
+
+                ColumnList<C> result = query.getKey(key)
+                        .withColumnRange(start, endColumn, reversed, count)
+                        .execute().getResult();
+
+                List<Column<C>> page = Lists.newArrayListWithCapacity(result.size());
+                for (Column<C> column : result) {
+                    if (skipFirst && page.isEmpty() && column.getRawName().equals(start))
+                        continue;
+                    page.add(column);
+                }
+
+                synchronized (this) {
+                    fetching  = false;
+                    firstPage = false;
+                    exhausted = result.size() < count;
+                    if (!result.isEmpty())
+                        nextStart = result.getColumnByIndex(result.size() - 1).getRawName();
+                    if (!page.isEmpty())
+                        pages.add(page);
+                    notifyAll();
+                }
+                fetchIfNeeded(false);
+            }
+            catch (Throwable t) {
+                // Errors are recorded too, otherwise advance() would wait forever
+                synchronized (this) {
+                    fetching = false;
+                    error    = t;
+                    notifyAll();
+                }
+            }
+        }
+
+        /**
+         * Move to the next column of the shard, waiting for its page if it hasn't
+         * arrived yet
+         *
+         * @return false if there are no more columns in the shard
+         */
+        boolean advance() throws Exception {
+            while (!current.hasNext()) {
+                synchronized (this) {
+                    while (pages.isEmpty()) {
+                        if (error != null) {
+                            Throwables.propagateIfPossible(error, Exception.class);
+                            throw new RuntimeException(error);
+                        }
+                        if (exhausted || iter.closed) {
+                            head = null;
+                            return false;
+                        }
+                        fetchIfNeeded(true);
+                        wait();
+                    }
+                    current = pages.removeFirst().iterator();
+                }
+                fetchIfNeeded(false);
+            }
+            head = current.next();
+            return true;
+        }
+    }
 }
@@ -16,23 +16,34 @@
 package com.netflix.astyanax.recipes.locks;
 
 import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeUnit;
 
 import com.google.common.base.Preconditions;
+import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 import com.google.common.collect.Sets;
+import com.google.common.util.concurrent.ListenableFuture;
 import com.netflix.astyanax.ColumnListMutation;
 import com.netflix.astyanax.Keyspace;
 import com.netflix.astyanax.MutationBatch;
+import com.netflix.astyanax.connectionpool.OperationResult;
+import com.netflix.astyanax.connectionpool.exceptions.ConnectionException;
 import com.netflix.astyanax.model.Column;
 import com.netflix.astyanax.model.ColumnFamily;
 import com.netflix.astyanax.model.ColumnList;
 import com.netflix.astyanax.model.ColumnMap;
 import com.netflix.astyanax.model.ConsistencyLevel;
 import com.netflix.astyanax.model.OrderedColumnMap;
+import com.netflix.astyanax.model.Row;
+import com.netflix.astyanax.model.Rows;
+import com.netflix.astyanax.query.RowSliceQuery;
 import com.netflix.astyanax.retry.RetryPolicy;
 import com.netflix.astyanax.retry.RunOnce;
 import com.netflix.astyanax.serializers.ByteBufferSerializer;
@@ -284,8 +295,100 @@ public class ColumnPrefixDistributedRowLock<K> implements DistributedRowLock {
             throw new IllegalStateException("verifyLock() called without attempting to take the lock");
         
         // Read back all columns. There should be only 1 if we got the lock
-        Map<String, Long> lockResult = readLockColumns(readDataColumns);
+        verifyLockColumns(curTimeInMicros, readLockColumns(readDataColumns));
+    }
 
+    /**
+     * Verify that the lock was acquired for several rows, which may be in different column
+     * families.  The lock columns of all rows of a column family are read with a single
+     * multiget and the reads for all column families are done in parallel.  The locks are
+     * then verified in order, same as calling verifyLock() on each lock.
+     * 
+     * @param locks
+     * @param curTimeInMicros
+     * @throws BusyLockException
+     */
+    public static <K> void verifyLocks(Collection<ColumnPrefixDistributedRowLock<K>> locks, long curTimeInMicros) 
+            throws Exception, BusyLockException, StaleLockException {
+        // Group the locks that can be read in the same query
+        Map<List<Object>, List<ColumnPrefixDistributedRowLock<K>>> groups = Maps.newLinkedHashMap();
+        for (ColumnPrefixDistributedRowLock<K> lock : locks) {
+            if (lock.lockColumn == null) 
+                throw new IllegalStateException("verifyLocks() called without attempting to take the lock");
+            
+            List<Object> groupKey = Arrays.<Object>asList(lock.columnFamily, lock.consistencyLevel, lock.prefix, lock.readDataColumns);
+            List<ColumnPrefixDistributedRowLock<K>> group = groups.get(groupKey);
+            if (group == null) {
+                group = Lists.newArrayList();
+                groups.put(groupKey, group);
+            }
+            group.add(lock);
+        }
+        
+        List<ListenableFuture<OperationResult<Rows<K, String>>>> futures = Lists.newArrayListWithCapacity(groups.size());
+        for (List<ColumnPrefixDistributedRowLock<K>> group : groups.values()) {
+            futures.add(readLockColumns(group));
+        }
+        
+        Map<ColumnPrefixDistributedRowLock<K>, ColumnList<String>> results = Maps.newIdentityHashMap();
+        int i = 0;
+        for (List<ColumnPrefixDistributedRowLock<K>> group : groups.values()) {
+            Rows<K, String> rows = waitForResult(futures.get(i++));
+            for (ColumnPrefixDistributedRowLock<K> lock : group) {
+                Row<K, String> row = rows.getRow(lock.key);
+                if (row != null)
+                    results.put(lock, row.getColumns());
+            }
+        }
+        
+        for (ColumnPrefixDistributedRowLock<K> lock : locks) {
+            ColumnList<String> columns = results.get(lock);
+            lock.verifyLockColumns(curTimeInMicros, 
+                    columns == null ? Maps.<String, Long>newHashMap() : lock.parseLockColumns(columns, lock.readDataColumns));
+        }
+    }
+    
+    /**
+     * Read the lock columns of several rows of the same column family with a single multiget.  
+     * All locks must have the same column family, consistency level and prefix.
+     */
+    private static <K> ListenableFuture<OperationResult<Rows<K, String>>> readLockColumns(
+            List<ColumnPrefixDistributedRowLock<K>> locks) throws ConnectionException {
+        ColumnPrefixDistributedRowLock<K> first = locks.get(0);
+        List<K> keys = Lists.newArrayListWithCapacity(locks.size());
+        for (ColumnPrefixDistributedRowLock<K> lock : locks) {
+            keys.add(lock.key);
+        }
+        
+        RowSliceQuery<K, String> query = first.keyspace
+            .prepareQuery(first.columnFamily)
+                .setConsistencyLevel(first.consistencyLevel)
+                .getKeySlice(keys);
+        if (!first.readDataColumns)
+            query.withColumnRange(new RangeBuilder().setStart(first.prefix + "\u0000").setEnd(first.prefix + "\uFFFF").build());
+        return query.executeAsync();
+    }
+    
+    private static <R> R waitForResult(ListenableFuture<OperationResult<R>> future) throws Exception {
+        try {
+            return future.get().getResult();
+        }
+        catch (ExecutionException e) {
+            if (e.getCause() instanceof Exception)
+                throw (Exception) e.getCause();
+            throw e;
+        }
+    }
+    
+    /**
+     * Check the lock columns read from the row to make sure that we are the only one 
+     * holding the lock
+     * 
+     * @param curTimeInMicros
+     * @param lockResult
+     * @throws BusyLockException
+     */
+    private void verifyLockColumns(long curTimeInMicros, Map<String, Long> lockResult) throws BusyLockException, StaleLockException {
         // Cleanup and check that we really got the lock
         for (Entry<String, Long> entry : lockResult.entrySet()) {
             // This is a stale lock that was never cleaned up
@@ -357,10 +460,8 @@ public class ColumnPrefixDistributedRowLock<K> implements DistributedRowLock {
      * @throws Exception
      */
     private Map<String, Long> readLockColumns(boolean readDataColumns) throws Exception {
-        Map<String, Long> result = Maps.newLinkedHashMap();
         // Read all the columns
         if (readDataColumns) {
-            columns = new OrderedColumnMap<String>();
             ColumnList<String> lockResult = keyspace
                 .prepareQuery(columnFamily)
                     .setConsistencyLevel(consistencyLevel)
@@ -368,12 +469,7 @@ public class ColumnPrefixDistributedRowLock<K> implements DistributedRowLock {
                 .execute()
                     .getResult();
     
-            for (Column<String> c : lockResult) {
-                if (c.getName().startsWith(prefix))
-                    result.put(c.getName(), readTimeoutValue(c));
-                else 
-                    columns.add(c);
-            }
+            return parseLockColumns(lockResult, true);
         }
         // Read only the lock columns
         else {
@@ -385,12 +481,29 @@ public class ColumnPrefixDistributedRowLock<K> implements DistributedRowLock {
                 .execute()
                     .getResult();
 
-            for (Column<String> c : lockResult) {
+            return parseLockColumns(lockResult, false);
+        }
+    }
+    
+    /**
+     * Extract the lock columns and their expiration times from the columns read from the row.  
+     * The remaining columns are kept as the data columns if readDataColumns is true.
+     * 
+     * @param lockResult
+     * @param readDataColumns
+     */
+    private Map<String, Long> parseLockColumns(ColumnList<String> lockResult, boolean readDataColumns) {
+        Map<String, Long> result = Maps.newLinkedHashMap();
+        if (readDataColumns)
+            columns = new OrderedColumnMap<String>();
+        
+        for (Column<String> c : lockResult) {
+            if (c.getName().startsWith(prefix))
                 result.put(c.getName(), readTimeoutValue(c));
-            }
-
+            else if (readDataColumns)
+                columns.add(c);
         }
-        return result;    
+        return result;
     }
     
     /**
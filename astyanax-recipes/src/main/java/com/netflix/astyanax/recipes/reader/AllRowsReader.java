@@ -18,11 +18,14 @@ package com.netflix.astyanax.recipes.reader;
 import java.math.BigInteger;
 import java.util.Collection;
 import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.Callable;
 import java.util.concurrent.CyclicBarrier;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicReference;
 
@@ -43,6 +46,7 @@ import com.netflix.astyanax.model.Row;
 import com.netflix.astyanax.model.Rows;
 import com.netflix.astyanax.partitioner.BigInteger127Partitioner;
 import com.netflix.astyanax.partitioner.Partitioner;
+import com.netflix.astyanax.partitioner.Token;
 import com.netflix.astyanax.query.CheckpointManager;
 import com.netflix.astyanax.query.RowSliceQuery;
 import com.netflix.astyanax.shallows.EmptyCheckpointManager;
@@ -61,11 +65,14 @@ public class AllRowsReader<K, C> implements Callable<Boolean> {
     
     private static final Partitioner DEFAULT_PARTITIONER = BigInteger127Partitioner.get();
     private final static int DEFAULT_PAGE_SIZE = 100;
+    private final static int DEFAULT_READ_AHEAD_DEPTH = 0;
+    private final static long PREFETCH_POLL_INTERVAL = 100;
     
     private final Keyspace      keyspace;
     private final ColumnFamily<K, C> columnFamily;
     
     private final   int                 pageSize;
+    private final   int                 readAheadDepth;
     private final   Integer             concurrencyLevel;   // Default to null will force ring describe
     private final   ExecutorService     executor;
     private final   CheckpointManager   checkpointManager;
@@ -80,6 +87,7 @@ public class AllRowsReader<K, C> implements Callable<Boolean> {
     private final   AtomicBoolean       cancelling = new AtomicBoolean(false);
     private final   Partitioner         partitioner;
     private AtomicReference<Exception>  error = new AtomicReference<Exception>();
+    private volatile ExecutorService    prefetchExecutor;
     
     public static class Builder<K, C> {
         private final Keyspace      keyspace;
@@ -87,6 +95,7 @@ public class AllRowsReader<K, C> implements Callable<Boolean> {
         
         private Partitioner         partitioner = DEFAULT_PARTITIONER;
         private int                 pageSize = DEFAULT_PAGE_SIZE;
+        private int                 readAheadDepth = DEFAULT_READ_AHEAD_DEPTH;
         private Integer             concurrencyLevel;   // Default to null will force ring describe
         private ExecutorService     executor;
         private CheckpointManager   checkpointManager = new EmptyCheckpointManager();
@@ -115,6 +124,23 @@ public class AllRowsReader<K, C> implements Callable<Boolean> {
             return this;
         }
 
+        /**
+         * Number of pages to fetch ahead of the page currently being processed for 
+         * each token range.  The next page is requested as soon as the previous page 
+         * arrives so that network wait overlaps with the row callbacks.  At most 
+         * readAheadDepth pages per token range are held in memory in addition to the 
+         * one being processed.  The default of 0 fetches a page only once the previous 
+         * page has been fully processed.
+         * 
+         * @param readAheadDepth
+         * @return
+         */
+        public Builder<K, C> withReadAheadDepth(int readAheadDepth) {
+            Preconditions.checkArgument(readAheadDepth >= 0, "Read ahead depth must be >= 0");
+            this.readAheadDepth = readAheadDepth;
+            return this;
+        }
+
         /**
          * Use this checkpoint manager to keep track of progress as all rows are being iterated
          * @param manager
@@ -291,6 +317,7 @@ public class AllRowsReader<K, C> implements Callable<Boolean> {
                     endToken, 
                     includeEmptyRows, 
                     pageSize,
+                    readAheadDepth,
                     repeatLastToken,
                     partitioner);
         }
@@ -309,6 +336,25 @@ public class AllRowsReader<K, C> implements Callable<Boolean> {
             int pageSize,
             boolean repeatLastToken,
             Partitioner partitioner) {
+        this(keyspace, columnFamily, concurrencyLevel, executor, checkpointManager, rowFunction, rowsFunction, 
+             columnSlice, startToken, endToken, includeEmptyRows, pageSize, DEFAULT_READ_AHEAD_DEPTH, 
+             repeatLastToken, partitioner);
+    }
+    
+    public AllRowsReader(Keyspace keyspace, ColumnFamily<K, C> columnFamily, 
+            Integer concurrencyLevel, 
+            ExecutorService executor,
+            CheckpointManager checkpointManager, 
+            Function<Row<K, C>, Boolean> rowFunction, 
+            Function<Rows<K, C>, Boolean> rowsFunction, 
+            ColumnSlice<C> columnSlice,
+            String startToken, 
+            String endToken, 
+            Boolean includeEmptyRows,
+            int pageSize,
+            int readAheadDepth,
+            boolean repeatLastToken,
+            Partitioner partitioner) {
         super();
         this.keyspace           = keyspace;
         this.columnFamily       = columnFamily;
@@ -321,6 +367,7 @@ public class AllRowsReader<K, C> implements Callable<Boolean> {
         this.startToken         = startToken;
         this.endToken           = endToken;
         this.pageSize           = pageSize;
+        this.readAheadDepth     = readAheadDepth;
         this.repeatLastToken    = repeatLastToken;
         this.partitioner        = partitioner;
         
@@ -335,6 +382,95 @@ public class AllRowsReader<K, C> implements Callable<Boolean> {
             this.includeEmptyRows = false;
     }
 
+    /**
+     * One page of rows read from a token range along with the state needed to
+     * process and checkpoint it.
+     */
+    private static class Page<K, C> {
+        final String    token;
+        final Rows<K,C> rows;
+        final int       rowsToSkip;
+        final boolean   last;
+        final Exception error;
+        
+        Page(String token, Rows<K, C> rows, int rowsToSkip, boolean last) {
+            this.token      = token;
+            this.rows       = rows;
+            this.rowsToSkip = rowsToSkip;
+            this.last       = last;
+            this.error      = null;
+        }
+        
+        Page(Exception error) {
+            this.token      = null;
+            this.rows       = null;
+            this.rowsToSkip = 0;
+            this.last       = true;
+            this.error      = error;
+        }
+    }
+    
+    /**
+     * Tracks the position of the pagination within a single token range.  The 
+     * next page is determined solely by the keys of the previous page so pages
+     * may be fetched ahead of the rows being processed.
+     */
+    private class PageCursor {
+        private final String endToken;
+        private String  currentToken;
+        private int     localPageSize = pageSize;
+        private int     rowsToSkip    = 0;
+        
+        PageCursor(String currentToken, String endToken) {
+            this.currentToken = currentToken;
+            this.endToken     = endToken;
+        }
+        
+        Page<K, C> next() throws ConnectionException {
+            RowSliceQuery<K, C> query = keyspace
+                .prepareQuery(columnFamily).getKeyRange(null, null, currentToken, endToken, localPageSize);
+            
+            if (columnSlice != null)
+                query.withColumnSlice(columnSlice);
+            
+            Rows<K, C> rows = query.execute().getResult();
+            String token = currentToken;
+            int skip = rowsToSkip;
+            
+            // Last page in the range
+            if (rows.isEmpty() || rows.size() != localPageSize) 
+                return new Page<K, C>(token, rows, skip, true);
+            
+            // Get the next block
+            Row<K, C> lastRow = rows.getRowByIndex(rows.size() - 1);
+            Token lastToken = partitioner.getToken(lastRow.getRawKey());
+            if (repeatLastToken) {
+                // Start token is non-inclusive
+                currentToken = partitioner.getTokenMinusOne(lastToken).toString();
+                
+                // Determine the number of rows to skip in the response.  Since we are repeating the
+                // last token it's possible (although unlikely) that there is more than one key mapping to the
+                // token.  We therefore count backwards the number of keys that have the same token and skip 
+                // that number in the next iteration of the loop.  If, for example, 3 keys matched but only 2 were
+                // returned in this iteration then the first 2 keys will be skipped from the next response.
+                rowsToSkip = 1;
+                for (int i = rows.size() - 2; i >= 0; i--, rowsToSkip++) {
+                    if (!lastToken.equals(partitioner.getToken(rows.getRowByIndex(i).getRawKey()))) {
+                        break;
+                    }
+                }
+
+                if (rowsToSkip == localPageSize) {
+                    localPageSize++;
+                }
+            }
+            else {
+                currentToken = lastToken.toString();
+            }
+            return new Page<K, C>(token, rows, skip, false);
+        }
+    }
+    
     private Callable<Boolean> makeTokenRangeTask(final String startToken, final String endToken) {
         return new Callable<Boolean>() {
             @Override
@@ -356,90 +492,11 @@ public class AllRowsReader<K, C> implements Callable<Boolean> {
                         throw new RuntimeException("Failed to get checkpoint for startToken " + startToken, e);
                     }
                     
-                    int localPageSize = pageSize;
-                    int rowsToSkip = 0;
-                    while (!cancelling.get()) {
-                        RowSliceQuery<K, C> query = keyspace
-                            .prepareQuery(columnFamily).getKeyRange(null, null, currentToken, endToken, localPageSize);
-                        
-                        if (columnSlice != null)
-                            query.withColumnSlice(columnSlice);
-                        
-                        Rows<K, C> rows = query.execute().getResult();
-                        if (!rows.isEmpty()) {
-                            try {
-                                if (rowsFunction != null) {
-                                    if (!rowsFunction.apply(rows)) {
-                                        cancel();
-                                        return false;
-                                    }
-                                }
-                                else {
-                                    // Iterate through all the rows and notify the callback function
-                                    for (Row<K,C> row : rows) {
-                                        if (cancelling.get())
-                                            break;
-                                        // When repeating the last row, rows to skip will be > 0 
-                                        // We skip the rows that were repeated from the previous query
-                                        if (rowsToSkip > 0) {
-                                            rowsToSkip--;
-                                            continue;
-                                        }
-                                        if (!includeEmptyRows && (row.getColumns() == null || row.getColumns().isEmpty()))
-                                            continue;
-                                        if (!rowFunction.apply(row)) {
-                                            cancel();
-                                            return false;
-                                        }
-                                    }
-                                }
-                            }
-                            catch (Exception e) {
-                                error.compareAndSet(null, e);
-                                LOG.warn(e.getMessage(), e);
-                                cancel();
-                                throw new RuntimeException("Error processing row", e);
-                            }
-                                
-                            // Get the next block
-                            if (rows.size() == localPageSize) {
-                                Row<K, C> lastRow = rows.getRowByIndex(rows.size() - 1);
-                                String lastToken = partitioner.getTokenForKey(lastRow.getRawKey());
-                                checkpointManager.trackCheckpoint(startToken, currentToken);
-                                if (repeatLastToken) {
-                                    // Start token is non-inclusive
-                                    currentToken = partitioner.getTokenMinusOne(lastToken);
-                                    
-                                    // Determine the number of rows to skip in the response.  Since we are repeating the
-                                    // last token it's possible (although unlikely) that there is more than one key mapping to the
-                                    // token.  We therefore count backwards the number of keys that have the same token and skip 
-                                    // that number in the next iteration of the loop.  If, for example, 3 keys matched but only 2 were
-                                    // returned in this iteration then the first 2 keys will be skipped from the next response.
-                                    rowsToSkip = 1;
-                                    for (int i = rows.size() - 2; i >= 0; i--, rowsToSkip++) {
-                                        if (!lastToken.equals(partitioner.getTokenForKey(rows.getRowByIndex(i).getRawKey()))) {
-                                            break;
-                                        }
-                                    }
-
-                                    if (rowsToSkip == localPageSize) {
-                                        localPageSize++;
-                                    }
-                                }
-                                else {
-                                    currentToken = lastToken;
-                                }
-                                
-                                continue;
-                            }
-                        }
-                        
-                        // We're done!
-                        checkpointManager.trackCheckpoint(startToken, endToken);
-                        return true;
-                    }
-                    cancel();
-                    return false;
+                    PageCursor cursor = new PageCursor(currentToken, endToken);
+                    if (readAheadDepth > 0) 
+                        return readRangeWithPrefetch(startToken, endToken, cursor);
+                    else 
+                        return readRange(startToken, endToken, cursor);
                 } catch (Exception e) {
                     error.compareAndSet(null, e);
                     LOG.error("Error process token/key range", e);
@@ -450,6 +507,130 @@ public class AllRowsReader<K, C> implements Callable<Boolean> {
         };
     }
     
+    /**
+     * Read a token range one page at a time, fetching the next page only after
+     * the current page has been processed.
+     */
+    private boolean readRange(String startToken, String endToken, PageCursor cursor) throws Exception {
+        while (!cancelling.get()) {
+            Page<K, C> page = cursor.next();
+            if (!processPage(startToken, endToken, page)) 
+                return false;
+            if (page.last) 
+                return true;
+        }
+        cancel();
+        return false;
+    }
+    
+    /**
+     * Read a token range while up to readAheadDepth pages are fetched ahead of the 
+     * page being processed.  Pages are handed over through a bounded queue so the 
+     * fetcher blocks once it is readAheadDepth pages ahead.
+     */
+    private boolean readRangeWithPrefetch(String startToken, String endToken, final PageCursor cursor) throws Exception {
+        final BlockingQueue<Page<K, C>> pages = new ArrayBlockingQueue<Page<K, C>>(readAheadDepth);
+        prefetchExecutor.submit(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    Page<K, C> page;
+                    do {
+                        page = cursor.next();
+                    } while (offerPage(pages, page) && !page.last);
+                }
+                catch (Exception e) {
+                    offerPage(pages, new Page<K, C>(e));
+                }
+            }
+        });
+        
+        while (!cancelling.get()) {
+            Page<K, C> page = pages.poll(PREFETCH_POLL_INTERVAL, TimeUnit.MILLISECONDS);
+            if (page == null) 
+                continue;
+            if (page.error != null) 
+                throw page.error;
+            if (!processPage(startToken, endToken, page)) 
+                return false;
+            if (page.last) 
+                return true;
+        }
+        cancel();
+        return false;
+    }
+    
+    /**
+     * Hand a page over to the consumer, giving up if the reader is cancelled
+     * while waiting for space in the queue
+     */
+    private boolean offerPage(BlockingQueue<Page<K, C>> pages, Page<K, C> page) {
+        try {
+            while (!cancelling.get()) {
+                if (pages.offer(page, PREFETCH_POLL_INTERVAL, TimeUnit.MILLISECONDS))
+                    return true;
+            }
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return false;
+    }
+    
+    /**
+     * Notify the callback functions of all rows in the page and checkpoint progress.
+     * 
+     * @return false if a callback function requested that the read be stopped
+     */
+    private boolean processPage(String startToken, String endToken, Page<K, C> page) throws Exception {
+        Rows<K, C> rows = page.rows;
+        if (!rows.isEmpty()) {
+            try {
+                if (rowsFunction != null) {
+                    if (!rowsFunction.apply(rows)) {
+                        cancel();
+                        return false;
+                    }
+                }
+                else {
+                    // Iterate through all the rows and notify the callback function
+                    int rowsToSkip = page.rowsToSkip;
+                    for (Row<K,C> row : rows) {
+                        if (cancelling.get())
+                            break;
+                        // When repeating the last row, rows to skip will be > 0 
+                        // We skip the rows that were repeated from the previous query
+                        if (rowsToSkip > 0) {
+                            rowsToSkip--;
+                            continue;
+                        }
+                        if (!includeEmptyRows && (row.getColumns() == null || row.getColumns().isEmpty()))
+                            continue;
+                        if (!rowFunction.apply(row)) {
+                            cancel();
+                            return false;
+                        }
+                    }
+                }
+            }
+            catch (Exception e) {
+                error.compareAndSet(null, e);
+                LOG.warn(e.getMessage(), e);
+                cancel();
+                throw new RuntimeException("Error processing row", e);
+            }
+        }
+        
+        if (page.last) {
+            // We're done!
+            checkpointManager.trackCheckpoint(startToken, endToken);
+        }
+        else {
+            checkpointManager.trackCheckpoint(startToken, page.token);
+        }
+        return true;
+    }
+    
     /**
      * Main execution block for the all rows query.  
      */
@@ -481,6 +662,15 @@ public class AllRowsReader<K, C> implements Callable<Boolean> {
             }
         }
         
+        // Pages are fetched on separate threads so that fetching never competes with 
+        // the range tasks for slots in the executor
+        if (readAheadDepth > 0) {
+            prefetchExecutor = Executors.newCachedThreadPool(
+                    new ThreadFactoryBuilder().setDaemon(true)
+                        .setNameFormat("AstyanaxAllRowsReaderPrefetch-%d")
+                        .build());
+        }
+        
         try {
             // Use a local executor
             if (executor == null) {
@@ -511,6 +701,12 @@ public class AllRowsReader<K, C> implements Callable<Boolean> {
             
             throw error.get();
         }
+        finally {
+            if (prefetchExecutor != null) {
+                prefetchExecutor.shutdownNow();
+                prefetchExecutor = null;
+            }
+        }
     }
     
     /**
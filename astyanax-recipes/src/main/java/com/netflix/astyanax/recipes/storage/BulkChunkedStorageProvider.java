@@ -0,0 +1,58 @@
+/*******************************************************************************
+ * Copyright 2011 Netflix
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package com.netflix.astyanax.recipes.storage;
+
+import java.nio.ByteBuffer;
+import java.util.Collection;
+import java.util.Map;
+
+import com.netflix.astyanax.connectionpool.exceptions.NotFoundException;
+
+/**
+ * ChunkedStorageProvider that can read and write many chunks of an object in
+ * one request.  ObjectReader and ObjectWriter group chunks into requests of
+ * up to getMaxBatchBytes() bytes when the provider implements this interface.
+ * 
+ * @author elandau
+ * 
+ */
+public interface BulkChunkedStorageProvider extends ChunkedStorageProvider {
+    /**
+     * Write several chunks of an object
+     * 
+     * @param objectName
+     * @param chunks    Chunk data by chunk id
+     * @param ttl
+     * @return bytes written
+     * @throws Exception
+     */
+    int writeChunks(String objectName, Map<Integer, ByteBuffer> chunks, Integer ttl) throws Exception;
+
+    /**
+     * Read several chunks of an object
+     * 
+     * @param objectName
+     * @param chunkIds
+     * @return Chunk data by chunk id
+     * @throws NotFoundException if any of the chunks doesn't exist
+     */
+    Map<Integer, ByteBuffer> readChunks(String objectName, Collection<Integer> chunkIds) throws Exception, NotFoundException;
+
+    /**
+     * @return Preferred maximum size in bytes of the chunks in one request
+     */
+    int getMaxBatchBytes();
+}
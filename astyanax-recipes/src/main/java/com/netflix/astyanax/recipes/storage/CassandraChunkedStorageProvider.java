@@ -16,7 +16,9 @@
 package com.netflix.astyanax.recipes.storage;
 
 import java.nio.ByteBuffer;
+import java.util.Collection;
 import java.util.Map;
+import java.util.SortedMap;
 
 import com.google.common.collect.Maps;
 import com.netflix.astyanax.ColumnListMutation;
@@ -26,6 +28,8 @@ import com.netflix.astyanax.connectionpool.exceptions.NotFoundException;
 import com.netflix.astyanax.model.ColumnFamily;
 import com.netflix.astyanax.model.ColumnList;
 import com.netflix.astyanax.model.ConsistencyLevel;
+import com.netflix.astyanax.model.Row;
+import com.netflix.astyanax.model.Rows;
 import com.netflix.astyanax.retry.BoundedExponentialBackoff;
 import com.netflix.astyanax.retry.RetryPolicy;
 import com.netflix.astyanax.serializers.StringSerializer;
@@ -35,15 +39,19 @@ import com.netflix.astyanax.serializers.StringSerializer;
  * are written to different row keys with the row key name having the format
  * <chunknumber>$<objectname>
  * 
+ * Multiple chunks are read with a single multiget and written with multi row
+ * mutation batches of at most maxBatchBytes of chunk data.
+ * 
  * @author elandau
  * 
  */
-public class CassandraChunkedStorageProvider implements ChunkedStorageProvider {
+public class CassandraChunkedStorageProvider implements BulkChunkedStorageProvider {
 
     private static final RetryPolicy DEFAULT_RETRY_POLICY = new BoundedExponentialBackoff(1000, 10000, 5);
     private static final ConsistencyLevel DEFAULT_CONSISTENCY_LEVEL = ConsistencyLevel.CL_QUORUM;
     private static final int DEFAULT_CHUNKSIZE = 0x4000;
     private static final String DEFAULT_ROW_KEY_FORMAT = "%s$%d";
+    private static final int DEFAULT_MAX_BATCH_BYTES = 0x100000;
 
     public enum Columns {
         DATA, OBJECTSIZE, CHUNKSIZE, CHUNKCOUNT, EXPIRES
@@ -56,6 +64,7 @@ public class CassandraChunkedStorageProvider implements ChunkedStorageProvider {
     private RetryPolicy retryPolicy = DEFAULT_RETRY_POLICY;
     private ConsistencyLevel consistencyLevel = DEFAULT_CONSISTENCY_LEVEL;
     private String rowKeyFormat = DEFAULT_ROW_KEY_FORMAT;
+    private int maxBatchBytes = DEFAULT_MAX_BATCH_BYTES;
 
     public CassandraChunkedStorageProvider(Keyspace keyspace, String cfName) {
         this.keyspace = keyspace;
@@ -77,6 +86,15 @@ public class CassandraChunkedStorageProvider implements ChunkedStorageProvider {
         return this;
     }
 
+    /**
+     * Maximum amount of chunk data read or written in one request.  Set to
+     * the chunk size to read and write one chunk at a time.
+     */
+    public CassandraChunkedStorageProvider withMaxBatchBytes(int maxBatchBytes) {
+        this.maxBatchBytes = maxBatchBytes;
+        return this;
+    }
+
     private String getColumnName(Columns column) {
         if (names.containsKey(column))
             return names.get(column);
@@ -86,17 +104,44 @@ public class CassandraChunkedStorageProvider implements ChunkedStorageProvider {
     @Override
     public int writeChunk(String objectName, int chunkId, ByteBuffer data, Integer ttl) throws Exception {
         MutationBatch m = keyspace.prepareMutationBatch().withRetryPolicy(retryPolicy);
+        addChunk(m, objectName, chunkId, data, ttl);
+        m.execute();
+
+        return data.limit();
+    }
 
+    @Override
+    public int writeChunks(String objectName, Map<Integer, ByteBuffer> chunks, Integer ttl) throws Exception {
+        SortedMap<Integer, ByteBuffer> sorted = Maps.newTreeMap();
+        sorted.putAll(chunks);
+
+        int bytesWritten = 0;
+        int batchBytes   = 0;
+        MutationBatch m  = keyspace.prepareMutationBatch().withRetryPolicy(retryPolicy);
+        for (Map.Entry<Integer, ByteBuffer> chunk : sorted.entrySet()) {
+            int size = chunk.getValue().limit();
+            if (batchBytes > 0 && batchBytes + size > maxBatchBytes) {
+                m.execute();
+                m = keyspace.prepareMutationBatch().withRetryPolicy(retryPolicy);
+                batchBytes = 0;
+            }
+            addChunk(m, objectName, chunk.getKey(), chunk.getValue(), ttl);
+            batchBytes   += size;
+            bytesWritten += size;
+        }
+        if (batchBytes > 0)
+            m.execute();
+
+        return bytesWritten;
+    }
+
+    private void addChunk(MutationBatch m, String objectName, int chunkId, ByteBuffer data, Integer ttl) {
         m.withRow(cf, getRowKey(objectName, chunkId)).putColumn(getColumnName(Columns.DATA), data, ttl)
                 .putColumn(getColumnName(Columns.CHUNKSIZE), data.limit(), ttl);
 
         if (chunkId == 0) {
             m.withRow(cf, objectName).putColumn(getColumnName(Columns.CHUNKSIZE), data.limit(), ttl);
         }
-
-        m.execute();
-
-        return data.limit();
     }
 
     @Override
@@ -106,6 +151,31 @@ public class CassandraChunkedStorageProvider implements ChunkedStorageProvider {
                 .getByteBufferValue();
     }
 
+    @Override
+    public Map<Integer, ByteBuffer> readChunks(String objectName, Collection<Integer> chunkIds) throws Exception {
+        Map<String, Integer> rowKeys = Maps.newLinkedHashMap();
+        for (Integer chunkId : chunkIds) {
+            rowKeys.put(getRowKey(objectName, chunkId), chunkId);
+        }
+
+        Rows<String, String> rows = keyspace.prepareQuery(cf).setConsistencyLevel(ConsistencyLevel.CL_ONE)
+                .withRetryPolicy(retryPolicy).getKeySlice(rowKeys.keySet())
+                .withColumnSlice(getColumnName(Columns.DATA)).execute().getResult();
+
+        Map<Integer, ByteBuffer> chunks = Maps.newHashMapWithExpectedSize(rowKeys.size());
+        for (Row<String, String> row : rows) {
+            Integer chunkId = rowKeys.get(row.getKey());
+            if (chunkId != null && !row.getColumns().isEmpty())
+                chunks.put(chunkId, row.getColumns().getColumnByIndex(0).getByteBufferValue());
+        }
+
+        for (Map.Entry<String, Integer> rowKey : rowKeys.entrySet()) {
+            if (!chunks.containsKey(rowKey.getValue()))
+                throw new NotFoundException("Chunk not found: " + rowKey.getKey());
+        }
+        return chunks;
+    }
+
     private String getRowKey(String objectName, int chunkId) {
         return new String(rowKeyFormat).replace("%s", objectName).replace("%d", Integer.toString(chunkId));
     }
@@ -170,4 +240,9 @@ public class CassandraChunkedStorageProvider implements ChunkedStorageProvider {
         return DEFAULT_CHUNKSIZE;
     }
 
+    @Override
+    public int getMaxBatchBytes() {
+        return maxBatchBytes;
+    }
+
 }
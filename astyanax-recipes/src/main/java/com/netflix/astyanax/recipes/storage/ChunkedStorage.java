@@ -17,6 +17,7 @@ package com.netflix.astyanax.recipes.storage;
 
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.channels.WritableByteChannel;
 
 public class ChunkedStorage {
     public static ObjectWriter newWriter(ChunkedStorageProvider provider, String objectName, InputStream is) {
@@ -27,6 +28,10 @@ public class ChunkedStorage {
         return new ObjectReader(provider, objectName, os);
     }
 
+    public static ObjectReader newReader(ChunkedStorageProvider provider, String objectName, WritableByteChannel channel) {
+        return new ObjectReader(provider, objectName, channel);
+    }
+
     public static ObjectDeleter newDeleter(ChunkedStorageProvider provider, String objectName) {
         return new ObjectDeleter(provider, objectName);
     }
@@ -0,0 +1,465 @@
+/*******************************************************************************
+ * Copyright 2011 Netflix
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package com.netflix.astyanax.recipes.storage;
+
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.commons.codec.binary.Hex;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ArrayListMultimap;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Multimap;
+import com.google.common.collect.Sets;
+import com.netflix.astyanax.ColumnListMutation;
+import com.netflix.astyanax.Keyspace;
+import com.netflix.astyanax.MutationBatch;
+import com.netflix.astyanax.connectionpool.exceptions.NotFoundException;
+import com.netflix.astyanax.model.Column;
+import com.netflix.astyanax.model.ColumnFamily;
+import com.netflix.astyanax.model.ColumnList;
+import com.netflix.astyanax.model.ConsistencyLevel;
+import com.netflix.astyanax.model.Row;
+import com.netflix.astyanax.model.Rows;
+import com.netflix.astyanax.query.RowQuery;
+import com.netflix.astyanax.retry.BoundedExponentialBackoff;
+import com.netflix.astyanax.retry.RetryPolicy;
+import com.netflix.astyanax.serializers.StringSerializer;
+
+/**
+ * ChunkProvider that stores each distinct chunk only once.  Chunks are stored
+ * in a blob row, blob$<sha-256>, keyed by the SHA-256 of their content and every 
+ * object has a manifest row, manifest$<objectname>, mapping its chunk ids to 
+ * chunk hashes.
+ * Writing a chunk that already exists only adds it to the manifest.  Hashing
+ * is done in writeChunks() so it runs on the ObjectWriter worker threads.
+ *
+ * Each blob row has a reference column for every object using it.  When
+ * deleteObject() removes the last reference the blob is condemned and queued
+ * in a garbage row instead of being deleted, since a concurrent writer may be
+ * about to reuse it.  collectGarbage() deletes condemned blobs that still have
+ * no references after a grace period.  A writer that finds a condemned blob
+ * uploads it again, and that upload survives the blob's deletion because the
+ * deletion is done with the condemn timestamp.
+ *
+ * Objects can't be written with a TTL since nothing would condemn their chunks
+ * once the references expired.
+ *
+ * Object metadata is stored the same way as CassandraChunkedStorageProvider, 
+ * in the row object$<objectname>.  Every row key starts with a prefix that 
+ * depends on the type of row so object names never collide with the other rows.
+ *
+ * @author elandau
+ *
+ */
+public class DeduplicatingChunkedStorageProvider implements BulkChunkedStorageProvider {
+
+    private static final RetryPolicy DEFAULT_RETRY_POLICY = new BoundedExponentialBackoff(1000, 10000, 5);
+    private static final ConsistencyLevel DEFAULT_CONSISTENCY_LEVEL = ConsistencyLevel.CL_QUORUM;
+    private static final int DEFAULT_CHUNKSIZE = 0x4000;
+    private static final int DEFAULT_MAX_BATCH_BYTES = 0x100000;
+    private static final int GARBAGE_PAGE_SIZE = 100;
+
+    private static final String HASH_ALGORITHM = "SHA-256";
+    private static final String OBJECT_PREFIX = "object$";
+    private static final String MANIFEST_PREFIX = "manifest$";
+    private static final String BLOB_PREFIX = "blob$";
+    private static final String GARBAGE_ROW_KEY = "garbage$";
+    private static final String REF_PREFIX = "REF:";
+
+    public enum Columns {
+        DATA, SIZE, CONDEMNED
+    }
+
+    private final ColumnFamily<String, String> cf;
+    private final Keyspace keyspace;
+    private final CassandraChunkedStorageProvider metadataProvider;
+
+    private RetryPolicy retryPolicy = DEFAULT_RETRY_POLICY;
+    private ConsistencyLevel consistencyLevel = DEFAULT_CONSISTENCY_LEVEL;
+    private int maxBatchBytes = DEFAULT_MAX_BATCH_BYTES;
+
+    private final AtomicLong storedChunkCount = new AtomicLong();
+    private final AtomicLong duplicateChunkCount = new AtomicLong();
+
+    public DeduplicatingChunkedStorageProvider(Keyspace keyspace, String cfName) {
+        this(keyspace, ColumnFamily.newColumnFamily(cfName, StringSerializer.get(), StringSerializer.get()));
+    }
+
+    public DeduplicatingChunkedStorageProvider(Keyspace keyspace, ColumnFamily<String, String> cf) {
+        this.keyspace = keyspace;
+        this.cf = cf;
+        this.metadataProvider = new CassandraChunkedStorageProvider(keyspace, cf);
+    }
+
+    /**
+     * Maximum amount of chunk data read or written in one request
+     */
+    public DeduplicatingChunkedStorageProvider withMaxBatchBytes(int maxBatchBytes) {
+        this.maxBatchBytes = maxBatchBytes;
+        return this;
+    }
+
+    /**
+     * Consistency level of the reference and manifest reads and writes
+     */
+    public DeduplicatingChunkedStorageProvider setConsistencyLevel(ConsistencyLevel consistencyLevel) {
+        this.consistencyLevel = consistencyLevel;
+        return this;
+    }
+
+    public ConsistencyLevel getConsistencyLevel() {
+        return this.consistencyLevel;
+    }
+
+    private static String getObjectKey(String objectName) {
+        return OBJECT_PREFIX + objectName;
+    }
+
+    private static String getManifestKey(String objectName) {
+        return MANIFEST_PREFIX + objectName;
+    }
+
+    private static String getBlobKey(String hash) {
+        return BLOB_PREFIX + hash;
+    }
+
+    private static String getRefColumn(String objectName) {
+        return REF_PREFIX + objectName;
+    }
+
+    private static String hash(MessageDigest digest, ByteBuffer data) {
+        digest.reset();
+        digest.update(data.duplicate());
+        return new String(Hex.encodeHex(digest.digest()));
+    }
+
+    private MutationBatch prepareMutationBatch() {
+        return keyspace.prepareMutationBatch().withRetryPolicy(retryPolicy).withConsistencyLevel(consistencyLevel);
+    }
+
+    @Override
+    public int writeChunk(String objectName, int chunkId, ByteBuffer data, Integer ttl) throws Exception {
+        return writeChunks(objectName, Collections.singletonMap(chunkId, data), ttl);
+    }
+
+    @Override
+    public int writeChunks(String objectName, Map<Integer, ByteBuffer> chunks, Integer ttl) throws Exception {
+        checkNoTtl(ttl);
+        MessageDigest digest = MessageDigest.getInstance(HASH_ALGORITHM);
+        Map<String, ByteBuffer> blobs = Maps.newLinkedHashMap();
+        int bytesWritten = 0;
+
+        // Add the chunks to the manifest and reference their blobs before
+        // checking whether the blobs exist, so a concurrent deleteObject()
+        // can't condemn a blob without seeing the reference
+        MutationBatch m = prepareMutationBatch();
+        ColumnListMutation<String> manifest = m.withRow(cf, getManifestKey(objectName));
+        for (Map.Entry<Integer, ByteBuffer> chunk : chunks.entrySet()) {
+            String hash = hash(digest, chunk.getValue());
+            manifest.putColumn(chunk.getKey().toString(), hash, null);
+            if (!blobs.containsKey(hash)) {
+                blobs.put(hash, chunk.getValue());
+                m.withRow(cf, getBlobKey(hash)).putEmptyColumn(getRefColumn(objectName), null);
+            }
+            bytesWritten += chunk.getValue().limit();
+        }
+        m.execute();
+
+        Rows<String, String> rows = keyspace.prepareQuery(cf).setConsistencyLevel(consistencyLevel)
+                .withRetryPolicy(retryPolicy).getKeySlice(getBlobKeys(blobs.keySet()))
+                .withColumnSlice(Columns.SIZE.name(), Columns.CONDEMNED.name()).execute().getResult();
+
+        Set<String> existing = Sets.newHashSet();
+        for (Row<String, String> row : rows) {
+            ColumnList<String> columns = row.getColumns();
+            if (columns.getColumnByName(Columns.SIZE.name()) != null
+                    && columns.getColumnByName(Columns.CONDEMNED.name()) == null)
+                existing.add(row.getKey());
+        }
+
+        // Upload the missing and condemned blobs.  Blobs are shared so they
+        // never expire.
+        int batchBytes = 0;
+        m = prepareMutationBatch();
+        for (Map.Entry<String, ByteBuffer> blob : blobs.entrySet()) {
+            String blobKey = getBlobKey(blob.getKey());
+            if (existing.contains(blobKey)) {
+                duplicateChunkCount.incrementAndGet();
+                continue;
+            }
+
+            int size = blob.getValue().limit();
+            if (batchBytes > 0 && batchBytes + size > maxBatchBytes) {
+                m.execute();
+                m = prepareMutationBatch();
+                batchBytes = 0;
+            }
+            m.withRow(cf, blobKey).putColumn(Columns.DATA.name(), blob.getValue(), null)
+                    .putColumn(Columns.SIZE.name(), size, null).deleteColumn(Columns.CONDEMNED.name());
+            batchBytes += size;
+            storedChunkCount.incrementAndGet();
+        }
+        if (batchBytes > 0)
+            m.execute();
+
+        duplicateChunkCount.addAndGet(chunks.size() - blobs.size());
+        return bytesWritten;
+    }
+
+    private static void checkNoTtl(Integer ttl) {
+        Preconditions.checkArgument(ttl == null, "Deduplicated objects can't be written with a TTL");
+    }
+
+    private static List<String> getBlobKeys(Collection<String> hashes) {
+        List<String> keys = Lists.newArrayListWithCapacity(hashes.size());
+        for (String hash : hashes) {
+            keys.add(getBlobKey(hash));
+        }
+        return keys;
+    }
+
+    @Override
+    public ByteBuffer readChunk(String objectName, int chunkId) throws Exception {
+        return readChunks(objectName, Collections.singletonList(chunkId)).get(chunkId);
+    }
+
+    @Override
+    public Map<Integer, ByteBuffer> readChunks(String objectName, Collection<Integer> chunkIds) throws Exception {
+        Multimap<String, Integer> chunksByBlob = readManifest(objectName, chunkIds, ConsistencyLevel.CL_ONE);
+        for (Integer chunkId : chunkIds) {
+            if (!chunksByBlob.containsValue(chunkId))
+                throw new NotFoundException("Chunk not found: " + objectName + "$" + chunkId);
+        }
+
+        Rows<String, String> rows = keyspace.prepareQuery(cf).setConsistencyLevel(ConsistencyLevel.CL_ONE)
+                .withRetryPolicy(retryPolicy).getKeySlice(chunksByBlob.keySet())
+                .withColumnSlice(Columns.DATA.name()).execute().getResult();
+
+        Map<Integer, ByteBuffer> chunks = Maps.newHashMapWithExpectedSize(chunkIds.size());
+        for (Row<String, String> row : rows) {
+            if (row.getColumns().isEmpty())
+                continue;
+            ByteBuffer data = row.getColumns().getColumnByIndex(0).getByteBufferValue();
+            for (Integer chunkId : chunksByBlob.get(row.getKey())) {
+                chunks.put(chunkId, data.duplicate());
+            }
+        }
+
+        for (Map.Entry<String, Integer> chunk : chunksByBlob.entries()) {
+            if (!chunks.containsKey(chunk.getValue()))
+                throw new NotFoundException("Chunk not found: " + chunk.getKey());
+        }
+        return chunks;
+    }
+
+    /**
+     * @return Chunk ids found in the manifest by blob row key
+     */
+    private Multimap<String, Integer> readManifest(String objectName, Collection<Integer> chunkIds,
+            ConsistencyLevel cl) throws Exception {
+        List<String> columnNames = Lists.newArrayListWithCapacity(chunkIds.size());
+        for (Integer chunkId : chunkIds) {
+            columnNames.add(chunkId.toString());
+        }
+
+        ColumnList<String> columns = keyspace.prepareQuery(cf).setConsistencyLevel(cl).withRetryPolicy(retryPolicy)
+                .getKey(getManifestKey(objectName)).withColumnSlice(columnNames).execute().getResult();
+
+        Multimap<String, Integer> chunksByBlob = ArrayListMultimap.create();
+        for (Column<String> column : columns) {
+            chunksByBlob.put(getBlobKey(column.getStringValue()), Integer.valueOf(column.getName()));
+        }
+        return chunksByBlob;
+    }
+
+    @Override
+    public void writeMetadata(String objectName, ObjectMetadata attr) throws Exception {
+        checkNoTtl(attr.getTtl());
+        metadataProvider.writeMetadata(getObjectKey(objectName), attr);
+    }
+
+    @Override
+    public ObjectMetadata readMetadata(String objectName) throws Exception, NotFoundException {
+        try {
+            return metadataProvider.readMetadata(getObjectKey(objectName));
+        }
+        catch (NotFoundException e) {
+            throw new NotFoundException(objectName);
+        }
+    }
+
+    @Override
+    public void deleteObject(String objectName, Integer chunkCount) throws Exception, NotFoundException {
+        if (chunkCount == null) {
+            ObjectMetadata attr = readMetadata(objectName);
+            if (attr.getChunkCount() == null)
+                throw new NotFoundException("Object not found :" + objectName);
+            chunkCount = attr.getChunkCount();
+        }
+
+        List<Integer> chunkIds = Lists.newArrayListWithCapacity(chunkCount);
+        for (int i = 0; i < chunkCount; i++) {
+            chunkIds.add(i);
+        }
+        Set<String> blobKeys = readManifest(objectName, chunkIds, consistencyLevel).keySet();
+
+        MutationBatch m = prepareMutationBatch();
+        for (String blobKey : blobKeys) {
+            m.withRow(cf, blobKey).deleteColumn(getRefColumn(objectName));
+        }
+        m.withRow(cf, getManifestKey(objectName)).delete();
+        m.withRow(cf, getObjectKey(objectName)).delete();
+        m.execute();
+
+        if (blobKeys.isEmpty())
+            return;
+
+        // Condemn the blobs that are no longer referenced by any object
+        Rows<String, String> rows = keyspace.prepareQuery(cf).setConsistencyLevel(consistencyLevel)
+                .withRetryPolicy(retryPolicy).getKeySlice(blobKeys)
+                .withColumnRange(REF_PREFIX, "", false, 1).execute().getResult();
+
+        long condemnTime = TimeUnit.MICROSECONDS.convert(System.currentTimeMillis(), TimeUnit.MILLISECONDS);
+        m = prepareMutationBatch();
+        boolean condemned = false;
+        for (Row<String, String> row : rows) {
+            if (!hasReference(row.getColumns())) {
+                m.withRow(cf, row.getKey()).setTimestamp(condemnTime).putColumn(Columns.CONDEMNED.name(), condemnTime, null);
+                m.withRow(cf, GARBAGE_ROW_KEY).putColumn(row.getKey().substring(BLOB_PREFIX.length()), condemnTime, null);
+                condemned = true;
+            }
+        }
+        if (condemned)
+            m.execute();
+    }
+
+    /**
+     * The reference columns are read with an open ended slice since no fixed
+     * end sorts after every UTF-8 object name.
+     *
+     * @param columns First column at or after REF_PREFIX in a blob row
+     */
+    private static boolean hasReference(ColumnList<String> columns) {
+        return !columns.isEmpty() && columns.getColumnByIndex(0).getName().startsWith(REF_PREFIX);
+    }
+
+    /**
+     * Delete the blobs that were condemned at least gracePeriod ago and were
+     * not referenced again since.  The grace period must be longer than the
+     * longest write of a single chunk batch.
+     *
+     * @param gracePeriod
+     * @param units
+     * @return Number of blobs deleted
+     * @throws Exception
+     */
+    public int collectGarbage(long gracePeriod, TimeUnit units) throws Exception {
+        long cutoff = TimeUnit.MICROSECONDS.convert(System.currentTimeMillis(), TimeUnit.MILLISECONDS)
+                - TimeUnit.MICROSECONDS.convert(gracePeriod, units);
+
+        RowQuery<String, String> query = keyspace.prepareQuery(cf).setConsistencyLevel(consistencyLevel)
+                .withRetryPolicy(retryPolicy).getKey(GARBAGE_ROW_KEY).autoPaginate(true)
+                .withColumnRange("", "", false, GARBAGE_PAGE_SIZE);
+
+        int deleted = 0;
+        ColumnList<String> page;
+        while (!(page = query.execute().getResult()).isEmpty()) {
+            Map<String, Long> candidates = Maps.newHashMap();
+            for (Column<String> column : page) {
+                if (column.getLongValue() <= cutoff)
+                    candidates.put(getBlobKey(column.getName()), column.getLongValue());
+            }
+            if (!candidates.isEmpty())
+                deleted += collectGarbage(candidates);
+        }
+        return deleted;
+    }
+
+    private int collectGarbage(Map<String, Long> candidates) throws Exception {
+        Rows<String, String> refs = keyspace.prepareQuery(cf).setConsistencyLevel(consistencyLevel)
+                .withRetryPolicy(retryPolicy).getKeySlice(candidates.keySet())
+                .withColumnRange(REF_PREFIX, "", false, 1).execute().getResult();
+        Rows<String, String> condemned = keyspace.prepareQuery(cf).setConsistencyLevel(consistencyLevel)
+                .withRetryPolicy(retryPolicy).getKeySlice(candidates.keySet())
+                .withColumnSlice(Columns.CONDEMNED.name()).execute().getResult();
+
+        Set<String> referenced = Sets.newHashSet();
+        for (Row<String, String> row : refs) {
+            if (hasReference(row.getColumns()))
+                referenced.add(row.getKey());
+        }
+
+        // Deletes use the condemn timestamp so uploads, references and
+        // condemnations newer than this one are kept
+        int deleted = 0;
+        MutationBatch m = prepareMutationBatch();
+        ColumnListMutation<String> garbage = m.withRow(cf, GARBAGE_ROW_KEY);
+        for (Row<String, String> row : condemned) {
+            Long condemnTime = candidates.get(row.getKey());
+            if (condemnTime == null)
+                continue;
+
+            Column<String> column = row.getColumns().getColumnByName(Columns.CONDEMNED.name());
+            if (column != null && column.getLongValue() == condemnTime) {
+                if (referenced.contains(row.getKey())) {
+                    m.withRow(cf, row.getKey()).setTimestamp(condemnTime).deleteColumn(Columns.CONDEMNED.name());
+                }
+                else {
+                    m.withRow(cf, row.getKey()).setTimestamp(condemnTime).delete();
+                    deleted++;
+                }
+            }
+            garbage.setTimestamp(condemnTime).deleteColumn(row.getKey().substring(BLOB_PREFIX.length()));
+        }
+        m.execute();
+        return deleted;
+    }
+
+    /**
+     * @return Number of distinct chunks uploaded by this provider
+     */
+    public long getStoredChunkCount() {
+        return storedChunkCount.get();
+    }
+
+    /**
+     * @return Number of chunks written by this provider that were already stored
+     */
+    public long getDuplicateChunkCount() {
+        return duplicateChunkCount.get();
+    }
+
+    @Override
+    public int getDefaultChunkSize() {
+        return DEFAULT_CHUNKSIZE;
+    }
+
+    @Override
+    public int getMaxBatchBytes() {
+        return maxBatchBytes;
+    }
+
+}
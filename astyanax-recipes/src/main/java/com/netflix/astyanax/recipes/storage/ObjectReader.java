@@ -15,17 +15,22 @@
  ******************************************************************************/
 package com.netflix.astyanax.recipes.storage;
 
+import java.io.IOException;
 import java.io.OutputStream;
 import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
 import java.util.Collections;
+import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
-import java.util.concurrent.atomic.AtomicLong;
-import java.util.concurrent.atomic.AtomicReference;
-import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -37,45 +42,118 @@ import com.netflix.astyanax.connectionpool.exceptions.NotFoundException;
 import com.netflix.astyanax.retry.RetryPolicy;
 import com.netflix.astyanax.retry.RunOnce;
 
+/**
+ * Read an object, or a byte range of an object, into an OutputStream or a
+ * WritableByteChannel.
+ *
+ * Chunks are read through a sliding window.  Up to windowSize reads are
+ * in flight or waiting to be written at any time.  Each read is for a single
+ * chunk, or for a run of chunks of up to getMaxBatchBytes() when the provider
+ * is a BulkChunkedStorageProvider.  The chunk at the head of
+ * the window is written as soon as it arrives and the read of the next chunk
+ * is started in its place, so a slow chunk only holds back the chunks behind
+ * it in the window instead of a whole batch.  Chunks are always written in
+ * order.
+ *
+ * Byte ranges are mapped to chunk ids using the chunk size of the object,
+ * which assumes every chunk other than the last one is full, as written by
+ * ObjectWriter.
+ */
 public class ObjectReader implements Callable<ObjectMetadata> {
     private static final Logger LOG = LoggerFactory.getLogger(ObjectReader.class);
 
     private static final int DEFAULT_CONCURRENCY_LEVEL = 4;
     private static final int MAX_WAIT_TIME_TO_FINISH = 60;
-    private static final int DEFAULT_BATCH_SIZE = 11;
 
     private final ChunkedStorageProvider provider;
     private final String objectName;
     private final OutputStream os;
+    private final WritableByteChannel channel;
 
     private int concurrencyLevel = DEFAULT_CONCURRENCY_LEVEL;
     private int maxWaitTimeInSeconds = MAX_WAIT_TIME_TO_FINISH;
-    private int batchSize = DEFAULT_BATCH_SIZE;
+    private int windowSize = 0;
+    private long offset = 0;
+    private Long length = null;
+    private ExecutorService executor;
     private RetryPolicy retryPolicy;
     private ObjectReadCallback callback = new NoOpObjectReadCallback();
 
     public ObjectReader(ChunkedStorageProvider provider, String objectName, OutputStream os) {
+        this(provider, objectName, os, null);
+    }
+
+    /**
+     * Write the object directly to a channel, such as a FileChannel, without
+     * copying it through a byte array
+     */
+    public ObjectReader(ChunkedStorageProvider provider, String objectName, WritableByteChannel channel) {
+        this(provider, objectName, null, channel);
+    }
+
+    private ObjectReader(ChunkedStorageProvider provider, String objectName, OutputStream os, WritableByteChannel channel) {
         this.provider = provider;
         this.objectName = objectName;
         this.os = os;
+        this.channel = channel;
         this.retryPolicy = new RunOnce();
     }
 
+    /**
+     * @deprecated Chunks are no longer read in batches. Use withWindowSize
+     */
+    @Deprecated
     public ObjectReader withBatchSize(int size) {
-        this.batchSize = size;
+        return withWindowSize(size);
+    }
+
+    /**
+     * Maximum number of reads in flight or waiting to be written.  Defaults
+     * to twice the concurrency level.
+     */
+    public ObjectReader withWindowSize(int size) {
+        Preconditions.checkArgument(size > 0, "Window size must be > 0");
+        this.windowSize = size;
         return this;
     }
 
+    /**
+     * Number of threads reading chunks.  Only applies when the reader
+     * creates its own executor.
+     */
     public ObjectReader withConcurrencyLevel(int level) {
         this.concurrencyLevel = level;
         return this;
     }
 
+    /**
+     * Read chunks on a shared executor instead of creating a thread pool for
+     * this read.  The executor is not shut down by the reader.
+     */
+    public ObjectReader withExecutor(ExecutorService executor) {
+        this.executor = executor;
+        return this;
+    }
+
+    /**
+     * Only read length bytes of the object starting at offset
+     */
+    public ObjectReader withRange(long offset, long length) {
+        Preconditions.checkArgument(offset >= 0, "Offset must be >= 0");
+        Preconditions.checkArgument(length >= 0, "Length must be >= 0");
+        this.offset = offset;
+        this.length = length;
+        return this;
+    }
+
     public ObjectReader withRetryPolicy(RetryPolicy retryPolicy) {
         this.retryPolicy = retryPolicy;
         return this;
     }
 
+    /**
+     * Maximum time to wait for the next chunk in the window
+     */
     public ObjectReader withMaxWaitTime(int maxWaitTimeInSeconds) {
         this.maxWaitTimeInSeconds = maxWaitTimeInSeconds;
         return this;
@@ -91,7 +169,7 @@ public class ObjectReader implements Callable<ObjectMetadata> {
         LOG.info("Reading: " + objectName);
 
         Preconditions.checkNotNull(objectName);
-        Preconditions.checkNotNull(os);
+        Preconditions.checkArgument(os != null || channel != null, "Must provide an output stream or channel");
 
         try {
             // Try to get the file metadata first. The entire file must be
@@ -115,75 +193,99 @@ public class ObjectReader implements Callable<ObjectMetadata> {
                 }
             } while (true);
 
-            final AtomicReference<Exception> exception = new AtomicReference<Exception>();
-            final AtomicLong totalBytesRead = new AtomicLong();
-
-            // Iterate sequentially building up the batches. Once a complete
-            // batch of ids is ready
-            // randomize fetching the chunks and then download them in parallel
-            List<Integer> idsToRead = Lists.newArrayList();
-            for (int block = 0; block < attributes.getChunkCount(); block++) {
-                idsToRead.add(block);
-
-                // Got a batch, or reached the end
-                if (idsToRead.size() == batchSize || block == attributes.getChunkCount() - 1) {
-
-                    // Read blocks in random order
-                    final int firstBlockId = idsToRead.get(0);
-                    Collections.shuffle(idsToRead);
-                    final AtomicReferenceArray<ByteBuffer> chunks = new AtomicReferenceArray<ByteBuffer>(
-                            idsToRead.size());
-                    ExecutorService executor = Executors.newFixedThreadPool(
-                            concurrencyLevel,
-                            new ThreadFactoryBuilder().setDaemon(true)
-                                    .setNameFormat("ChunkReader-" + objectName + "-%d").build());
-                    try {
-                        for (final int chunkId : idsToRead) {
-                            executor.submit(new Runnable() {
-                                @Override
-                                public void run() {
-                                    // Do the fetch
-                                    RetryPolicy retry = retryPolicy.duplicate();
-                                    while (exception.get() == null) {
-                                        try {
-                                            ByteBuffer chunk = provider.readChunk(objectName, chunkId);
-                                            totalBytesRead.addAndGet(chunk.limit());
-                                            chunks.set(chunkId - firstBlockId, chunk);
-                                            callback.onChunk(chunkId, chunk);
-                                            break;
-                                        }
-                                        catch (Exception e) {
-                                            callback.onChunkException(chunkId, e);
-                                            if (retry.allowRetry())
-                                                continue;
-                                            exception.compareAndSet(null, e);
-                                        }
-                                    }
-                                }
-                            });
-                        }
-                    }
-                    finally {
-                        executor.shutdown();
-                        if (!executor.awaitTermination(maxWaitTimeInSeconds, TimeUnit.SECONDS)) {
-                            throw new Exception("Took too long to fetch object: " + objectName);
-                        }
+            long objectSize  = attributes.getObjectSize();
+            long chunkSize   = attributes.getChunkSize();
+            long startOffset = offset;
+            long endOffset   = length == null ? objectSize : offset + length;
+            if (endOffset > objectSize) {
+                throw new IllegalArgumentException("Range " + startOffset + "-" + endOffset + " is past the end of object "
+                        + objectName + " of size " + objectSize);
+            }
+
+            // A full read reads every chunk so the object size can be verified
+            int firstChunk;
+            int lastChunk;
+            if (length == null) {
+                firstChunk = 0;
+                lastChunk  = attributes.getChunkCount() - 1;
+            }
+            else if (length == 0) {
+                firstChunk = 0;
+                lastChunk  = -1;
+            }
+            else {
+                firstChunk = (int) (startOffset / chunkSize);
+                lastChunk  = (int) ((endOffset - 1) / chunkSize);
+            }
+
+            ExecutorService executor = this.executor;
+            if (executor == null) {
+                executor = Executors.newFixedThreadPool(concurrencyLevel, new ThreadFactoryBuilder().setDaemon(true)
+                        .setNameFormat("ChunkReader-" + objectName + "-%d").build());
+            }
+
+            // Each read in the window is for a run of consecutive chunks when
+            // the provider can read many chunks in one request
+            int chunksPerRead = 1;
+            if (provider instanceof BulkChunkedStorageProvider)
+                chunksPerRead = (int) Math.max(1, ((BulkChunkedStorageProvider) provider).getMaxBatchBytes() / chunkSize);
+
+            final AtomicBoolean cancelled = new AtomicBoolean(false);
+            LinkedList<Future<List<ByteBuffer>>> window = new LinkedList<Future<List<ByteBuffer>>>();
+            int windowSize = this.windowSize > 0 ? this.windowSize : concurrencyLevel * 2;
+            long totalBytesRead = 0;
+            long totalBytesWritten = 0;
+            try {
+                int nextChunk = firstChunk;
+                while (nextChunk <= lastChunk && window.size() < windowSize) {
+                    int count = Math.min(chunksPerRead, lastChunk - nextChunk + 1);
+                    window.add(executor.submit(newChunkReader(nextChunk, count, cancelled)));
+                    nextChunk += count;
+                }
+
+                int chunkId = firstChunk;
+                while (!window.isEmpty()) {
+                    List<ByteBuffer> chunks = waitForChunks(window.removeFirst());
+
+                    // Slide the window before writing so the write overlaps the next read
+                    if (nextChunk <= lastChunk) {
+                        int count = Math.min(chunksPerRead, lastChunk - nextChunk + 1);
+                        window.add(executor.submit(newChunkReader(nextChunk, count, cancelled)));
+                        nextChunk += count;
                     }
 
-                    if (exception.get() != null)
-                        throw exception.get();
+                    for (ByteBuffer chunk : chunks) {
+                        ByteBuffer data = chunk.duplicate();
+                        totalBytesRead += data.remaining();
 
-                    for (int i = 0; i < chunks.length(); i++) {
-                        os.write(chunks.get(i).array());
-                        os.flush();
+                        long chunkStart = chunkId++ * chunkSize;
+                        int  from       = (int) Math.max(0, startOffset - chunkStart);
+                        int  to         = (int) Math.min(data.remaining(), endOffset - chunkStart);
+                        if (from < to) {
+                            data.limit(data.position() + to);
+                            data.position(data.position() + from);
+                            totalBytesWritten += data.remaining();
+                            write(data);
+                        }
                     }
-                    idsToRead.clear();
                 }
             }
+            finally {
+                cancelled.set(true);
+                for (Future<List<ByteBuffer>> future : window) {
+                    future.cancel(true);
+                }
+                if (executor != this.executor)
+                    executor.shutdownNow();
+            }
 
-            if (totalBytesRead.get() != attributes.getObjectSize()) {
-                throw new Exception("Bytes read (" + totalBytesRead.get() + ") does not match object size ("
-                        + attributes.getObjectSize() + ") for object " + objectName);
+            if (length == null && totalBytesRead != objectSize) {
+                throw new Exception("Bytes read (" + totalBytesRead + ") does not match object size ("
+                        + objectSize + ") for object " + objectName);
+            }
+            if (totalBytesWritten != endOffset - startOffset) {
+                throw new Exception("Bytes read (" + totalBytesWritten + ") does not match requested length ("
+                        + (endOffset - startOffset) + ") for object " + objectName);
             }
             callback.onSuccess();
             return attributes;
@@ -193,4 +295,82 @@ public class ObjectReader implements Callable<ObjectMetadata> {
             throw e;
         }
     }
+
+    /**
+     * @return Task that reads count chunks starting at firstChunkId, in order
+     */
+    private Callable<List<ByteBuffer>> newChunkReader(final int firstChunkId, final int count, final AtomicBoolean cancelled) {
+        return new Callable<List<ByteBuffer>>() {
+            @Override
+            public List<ByteBuffer> call() throws Exception {
+                RetryPolicy retry = retryPolicy.duplicate();
+                while (true) {
+                    try {
+                        List<ByteBuffer> chunks = readChunks(firstChunkId, count);
+                        for (int i = 0; i < count; i++) {
+                            callback.onChunk(firstChunkId + i, chunks.get(i));
+                        }
+                        return chunks;
+                    }
+                    catch (Exception e) {
+                        callback.onChunkException(firstChunkId, e);
+                        if (cancelled.get() || !retry.allowRetry())
+                            throw e;
+                    }
+                }
+            }
+        };
+    }
+
+    private List<ByteBuffer> readChunks(int firstChunkId, int count) throws Exception {
+        if (count == 1)
+            return Collections.singletonList(provider.readChunk(objectName, firstChunkId));
+
+        List<Integer> chunkIds = Lists.newArrayListWithCapacity(count);
+        for (int i = 0; i < count; i++) {
+            chunkIds.add(firstChunkId + i);
+        }
+        Map<Integer, ByteBuffer> chunks = ((BulkChunkedStorageProvider) provider).readChunks(objectName, chunkIds);
+
+        List<ByteBuffer> ordered = Lists.newArrayListWithCapacity(count);
+        for (Integer chunkId : chunkIds) {
+            ByteBuffer chunk = chunks.get(chunkId);
+            if (chunk == null)
+                throw new NotFoundException("Chunk " + chunkId + " of " + objectName + " not found");
+            ordered.add(chunk);
+        }
+        return ordered;
+    }
+
+    private List<ByteBuffer> waitForChunks(Future<List<ByteBuffer>> future) throws Exception {
+        try {
+            return future.get(maxWaitTimeInSeconds, TimeUnit.SECONDS);
+        }
+        catch (TimeoutException e) {
+            throw new Exception("Took too long to fetch object: " + objectName);
+        }
+        catch (ExecutionException e) {
+            if (e.getCause() instanceof Exception)
+                throw (Exception) e.getCause();
+            throw e;
+        }
+    }
+
+    private void write(ByteBuffer data) throws IOException {
+        if (channel != null) {
+            while (data.hasRemaining())
+                channel.write(data);
+        }
+        else {
+            if (data.hasArray()) {
+                os.write(data.array(), data.arrayOffset() + data.position(), data.remaining());
+            }
+            else {
+                byte[] bytes = new byte[data.remaining()];
+                data.get(bytes);
+                os.write(bytes);
+            }
+            os.flush();
+        }
+    }
 }
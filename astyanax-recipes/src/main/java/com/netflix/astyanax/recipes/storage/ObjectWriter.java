@@ -18,6 +18,7 @@ package com.netflix.astyanax.recipes.storage;
 import java.io.IOException;
 import java.io.InputStream;
 import java.nio.ByteBuffer;
+import java.util.Map;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
@@ -31,6 +32,7 @@ import org.slf4j.LoggerFactory;
 
 import com.google.common.base.Preconditions;
 import com.google.common.base.Supplier;
+import com.google.common.collect.Maps;
 import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import com.netflix.astyanax.util.BlockingConcurrentWindowCounter;
 
@@ -94,6 +96,13 @@ public class ObjectWriter implements Callable<ObjectMetadata> {
         final AtomicInteger nChunksWritten = new AtomicInteger(0);
         final AtomicReference<Exception> exception = new AtomicReference<Exception>();
 
+        // Each task writes a run of consecutive chunks when the provider can
+        // write many chunks in one request
+        int chunksPerWrite = 1;
+        if (provider instanceof BulkChunkedStorageProvider)
+            chunksPerWrite = Math.max(1, ((BulkChunkedStorageProvider) provider).getMaxBatchBytes() / chunkSize);
+        final int blockSize = chunkSize * chunksPerWrite;
+
         try {
             final ExecutorService executor = Executors.newFixedThreadPool(concurrencyLevel, new ThreadFactoryBuilder()
                     .setDaemon(true).setNameFormat("ChunkWriter-" + objectName + "-%d").build());
@@ -107,19 +116,20 @@ public class ObjectWriter implements Callable<ObjectMetadata> {
                 while (!done && exception.get() == null) {
                     // This throttles us so we don't get too far ahead of
                     // ourselves if one of the threads is stuck
-                    final int chunkNumber = chunkCounter.incrementAndGet();
+                    final int blockNumber = chunkCounter.incrementAndGet();
+                    final int firstChunk = blockNumber * chunksPerWrite;
 
                     // Get a block or allocate a new one
                     final ByteBuffer bb = blocks.poll(new Supplier<ByteBuffer>() {
                         @Override
                         public ByteBuffer get() {
-                            return ByteBuffer.allocate(chunkSize);
+                            return ByteBuffer.allocate(blockSize);
                         }
                     });
 
                     // Reset the array and copy some data
                     bb.position(0);
-                    int nBytesRead = readFully(is, bb.array(), 0, chunkSize);
+                    int nBytesRead = readFully(is, bb.array(), 0, blockSize);
                     if (nBytesRead > 0) {
                         bb.limit(nBytesRead);
 
@@ -129,21 +139,32 @@ public class ObjectWriter implements Callable<ObjectMetadata> {
                             public void run() {
                                 try {
                                     if (exception.get() == null) {
-                                        LOG.debug("WRITE " + chunkNumber + " size=" + bb.limit());
-                                        provider.writeChunk(objectName, chunkNumber, bb, ttl);
-                                        callback.onChunk(chunkNumber, bb.limit());
+                                        if (bb.limit() <= chunkSize) {
+                                            LOG.debug("WRITE " + firstChunk + " size=" + bb.limit());
+                                            provider.writeChunk(objectName, firstChunk, bb, ttl);
+                                            callback.onChunk(firstChunk, bb.limit());
+                                            nChunksWritten.incrementAndGet();
+                                        }
+                                        else {
+                                            Map<Integer, ByteBuffer> chunks = splitChunks(firstChunk, bb);
+                                            LOG.debug("WRITE " + firstChunk + "-" + (firstChunk + chunks.size() - 1) + " size=" + bb.limit());
+                                            ((BulkChunkedStorageProvider) provider).writeChunks(objectName, chunks, ttl);
+                                            for (Map.Entry<Integer, ByteBuffer> chunk : chunks.entrySet()) {
+                                                callback.onChunk(chunk.getKey(), chunk.getValue().limit());
+                                            }
+                                            nChunksWritten.addAndGet(chunks.size());
+                                        }
                                         nBytesWritten.addAndGet(bb.limit());
-                                        nChunksWritten.incrementAndGet();
                                     }
                                 }
                                 catch (Exception e) {
                                     LOG.error(e.getMessage());
                                     exception.compareAndSet(null, e);
-                                    callback.onChunkException(chunkNumber, e);
+                                    callback.onChunkException(firstChunk, e);
                                 }
                                 finally {
                                     blocks.add(bb);
-                                    chunkCounter.release(chunkNumber);
+                                    chunkCounter.release(blockNumber);
                                 }
                             }
                         });
@@ -175,7 +196,7 @@ public class ObjectWriter implements Callable<ObjectMetadata> {
             LOG.warn(e.getMessage());
             e.printStackTrace();
             try {
-                provider.deleteObject(objectName, nChunksWritten.get() + concurrencyLevel);
+                provider.deleteObject(objectName, nChunksWritten.get() + concurrencyLevel * chunksPerWrite);
             }
             catch (Exception e2) {
                 LOG.warn(e2.getMessage());
@@ -184,6 +205,20 @@ public class ObjectWriter implements Callable<ObjectMetadata> {
         }
     }
 
+    /**
+     * Split a block read from the input stream into chunkSize chunks
+     */
+    private Map<Integer, ByteBuffer> splitChunks(int firstChunk, ByteBuffer block) {
+        Map<Integer, ByteBuffer> chunks = Maps.newLinkedHashMap();
+        for (int offset = 0; offset < block.limit(); offset += chunkSize) {
+            ByteBuffer chunk = block.duplicate();
+            chunk.position(offset);
+            chunk.limit(Math.min(offset + chunkSize, block.limit()));
+            chunks.put(firstChunk + offset / chunkSize, chunk.slice());
+        }
+        return chunks;
+    }
+
     /**
      * Should switch to IOUtils.read() when we update to the latest version of
      * commons-io
@@ -16,20 +16,26 @@
 package com.netflix.astyanax.recipes.uniqueness;
 
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
 
 import javax.annotation.Nullable;
 
 import com.google.common.base.Function;
 import com.google.common.base.Supplier;
 import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.util.concurrent.ListenableFuture;
 import com.netflix.astyanax.Keyspace;
 import com.netflix.astyanax.MutationBatch;
+import com.netflix.astyanax.connectionpool.OperationResult;
 import com.netflix.astyanax.connectionpool.exceptions.ConnectionException;
 import com.netflix.astyanax.connectionpool.exceptions.NotFoundException;
 import com.netflix.astyanax.model.Column;
 import com.netflix.astyanax.model.ColumnFamily;
 import com.netflix.astyanax.model.ColumnList;
 import com.netflix.astyanax.model.ConsistencyLevel;
+import com.netflix.astyanax.model.Rows;
 import com.netflix.astyanax.recipes.locks.BusyLockException;
 import com.netflix.astyanax.recipes.locks.StaleLockException;
 
@@ -66,14 +72,14 @@ public class DedicatedMultiRowUniquenessConstraint<C> implements UniquenessConst
             m.withRow(columnFamily, row).deleteColumn(uniqueColumnName);
         }
         
-        void verifyLock() throws Exception {
-            // Phase 2: Read back all columns. There should be only 1
-            ColumnList<C> result = keyspace.prepareQuery(columnFamily).setConsistencyLevel(consistencyLevel)
-                    .getKey(row).execute().getResult();
-
-            if (result.size() != 1) {
-                throw new NotUniqueException(row.toString());
+        void addToGroup(Map<ColumnFamily<?, C>, RowGroup<?>> groups) {
+            @SuppressWarnings("unchecked")
+            RowGroup<K> group = (RowGroup<K>) groups.get(columnFamily);
+            if (group == null) {
+                group = new RowGroup<K>(columnFamily);
+                groups.put(columnFamily, group);
             }
+            group.rows.add(row);
         }
         
         Column<C> getUniqueColumn() throws ConnectionException {
@@ -93,6 +99,44 @@ public class DedicatedMultiRowUniquenessConstraint<C> implements UniquenessConst
         }
     }
     
+    /**
+     * Rows of the same column family, which are read back with a single multiget
+     */
+    private class RowGroup<K> {
+        private final ColumnFamily<K, C> columnFamily;
+        private final List<K> rows = Lists.newArrayList();
+        private ListenableFuture<OperationResult<Rows<K, C>>> future;
+        
+        RowGroup(ColumnFamily<K, C> columnFamily) {
+            this.columnFamily = columnFamily;
+        }
+        
+        void readLocks() throws ConnectionException {
+            future = keyspace.prepareQuery(columnFamily).setConsistencyLevel(consistencyLevel)
+                    .getKeySlice(rows).executeAsync();
+        }
+        
+        void verifyLocks() throws Exception {
+            Rows<K, C> result;
+            try {
+                result = future.get().getResult();
+            }
+            catch (ExecutionException e) {
+                if (e.getCause() instanceof Exception)
+                    throw (Exception) e.getCause();
+                throw e;
+            }
+            
+            // Phase 2: Read back all columns. There should be only 1
+            for (K row : rows) {
+                com.netflix.astyanax.model.Row<K, C> columns = result.getRow(row);
+                if (columns == null || columns.getColumns().size() != 1) {
+                    throw new NotUniqueException(row.toString());
+                }
+            }
+        }
+    }
+    
     private final List<Row<?>> locks = Lists.newArrayList();
 
     public DedicatedMultiRowUniquenessConstraint(Keyspace keyspace, Supplier<C> uniqueColumnSupplier) {
@@ -177,10 +221,7 @@ public class DedicatedMultiRowUniquenessConstraint<C> implements UniquenessConst
             }
             m.execute();
 
-            // Check each lock in order
-            for (Row<?> lock : locks) {
-                lock.verifyLock();
-            }
+            verifyLocks();
 
             // Commit the unique columns
             for (Row<?> lock : locks) {
@@ -207,6 +248,28 @@ public class DedicatedMultiRowUniquenessConstraint<C> implements UniquenessConst
     }
 
 
+    /**
+     * Verify that the unique column is the only column in all rows.  The rows of each 
+     * column family are read with a single multiget and the reads for all column 
+     * families are done in parallel.
+     * 
+     * @throws NotUniqueException
+     * @throws Exception
+     */
+    public void verifyLocks() throws NotUniqueException, Exception {
+        Map<ColumnFamily<?, C>, RowGroup<?>> groups = Maps.newLinkedHashMap();
+        for (Row<?> lock : locks) {
+            lock.addToGroup(groups);
+        }
+        
+        for (RowGroup<?> group : groups.values()) {
+            group.readLocks();
+        }
+        for (RowGroup<?> group : groups.values()) {
+            group.verifyLocks();
+        }
+    }
+
     @Override
     public void release() throws Exception {
         MutationBatch m = keyspace.prepareMutationBatch();
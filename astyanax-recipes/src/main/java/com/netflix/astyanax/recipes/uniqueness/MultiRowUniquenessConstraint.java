@@ -35,7 +35,8 @@ import com.netflix.astyanax.util.TimeUUIDUtils;
  * Check uniqueness for multiple rows.  This test is done by
  * 1.  First writing a unique column to all rows, in a single batch.  Include a TTL for some failure conditions.
  * 2.  Reading back the unique columns from each row (must be done in a separate call)
- *      and making sure there is only one such column
+ *      and making sure there is only one such column.  The rows of a column family are
+ *      read with a single multiget.
  * 3.  Committing the columns without a TTL
  * 
  * 
@@ -134,10 +135,8 @@ public class MultiRowUniquenessConstraint implements UniquenessConstraint {
             }
             m.execute();
 
-            // Check each lock in order
-            for (ColumnPrefixDistributedRowLock<String> lock : locks) {
-                lock.verifyLock(now);
-            }
+            // Check all locks with one read per column family
+            ColumnPrefixDistributedRowLock.verifyLocks(locks, now);
 
             // Commit the unique columns
             m = keyspace.prepareMutationBatch();
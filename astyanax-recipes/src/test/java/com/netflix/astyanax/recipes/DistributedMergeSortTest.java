@@ -0,0 +1,309 @@
+package com.netflix.astyanax.recipes;
+
+import java.nio.ByteBuffer;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import junit.framework.Assert;
+
+import org.apache.cassandra.thrift.InvalidRequestException;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.common.base.Function;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.netflix.astyanax.Keyspace;
+import com.netflix.astyanax.MutationBatch;
+import com.netflix.astyanax.connectionpool.exceptions.BadRequestException;
+import com.netflix.astyanax.model.Column;
+import com.netflix.astyanax.model.ColumnFamily;
+import com.netflix.astyanax.serializers.LongSerializer;
+import com.netflix.astyanax.serializers.StringSerializer;
+import com.netflix.astyanax.serializers.TimeUUIDSerializer;
+import com.netflix.astyanax.util.TimeUUIDUtils;
+
+public class DistributedMergeSortTest {
+    private static final ColumnFamily<String, String> CF_STRING = ColumnFamily.newColumnFamily(
+            "MergeString", StringSerializer.get(), StringSerializer.get());
+
+    private static final ColumnFamily<String, Long> CF_LONG = ColumnFamily.newColumnFamily(
+            "MergeLong", StringSerializer.get(), LongSerializer.get());
+
+    private static final ColumnFamily<String, UUID> CF_TIMEUUID = ColumnFamily.newColumnFamily(
+            "MergeTimeUUID", StringSerializer.get(), TimeUUIDSerializer.get());
+
+    private static final List<String> SHARDS = ImmutableList.of("shard_0", "shard_1", "shard_2");
+
+    private InMemoryCassandra cassandra;
+    private Keyspace keyspace;
+    private ExecutorService executor;
+
+    @Before
+    public void setup() {
+        cassandra = new InMemoryCassandra().setComparator(CF_LONG.getName(), new Comparator<ByteBuffer>() {
+            @Override
+            public int compare(ByteBuffer b1, ByteBuffer b2) {
+                return LongSerializer.get().fromByteBuffer(b1.duplicate())
+                        .compareTo(LongSerializer.get().fromByteBuffer(b2.duplicate()));
+            }
+        });
+        keyspace = cassandra.newKeyspace("Merge");
+        executor = Executors.newCachedThreadPool();
+    }
+
+    @After
+    public void teardown() {
+        executor.shutdownNow();
+    }
+
+    private static ByteBuffer toKey(String shard) {
+        return StringSerializer.get().toByteBuffer(shard);
+    }
+
+    /**
+     * Write column i to shard i % 3 so every page of the merge draws from all shards
+     *
+     * @return Column names in sorted order
+     */
+    private List<String> writeStringColumns(int count) throws Exception {
+        List<String> names = Lists.newArrayList();
+        MutationBatch m = keyspace.prepareMutationBatch();
+        for (int i = 0; i < count; i++) {
+            String name = String.format("c%03d", i);
+            names.add(name);
+            m.withRow(CF_STRING, SHARDS.get(i % SHARDS.size())).putColumn(name, i, null);
+        }
+        m.execute();
+        return names;
+    }
+
+    private static <C> List<C> getNames(DistributedMergeSort<String, C> merge) throws Exception {
+        List<C> names = Lists.newArrayList();
+        DistributedMergeSort<String, C>.MergeIterator iter = merge.iterator();
+        try {
+            while (iter.hasNextColumn()) {
+                names.add(iter.nextColumn().getName());
+            }
+        }
+        finally {
+            iter.close();
+        }
+        return names;
+    }
+
+    @Test
+    public void testMergeOrder() throws Exception {
+        List<String> names = writeStringColumns(50);
+
+        Assert.assertEquals(names, getNames(new DistributedMergeSort.Builder<String, String>(keyspace, CF_STRING)
+                .withShards(SHARDS)
+                .withPageSize(4)
+                .withExecutor(executor)
+                .build()));
+
+        Collections.reverse(names);
+        Assert.assertEquals(names, getNames(new DistributedMergeSort.Builder<String, String>(keyspace, CF_STRING)
+                .withShards(SHARDS)
+                .withPageSize(4)
+                .withColumnRange(null, null, true)
+                .build()));
+    }
+
+    @Test
+    public void testLimit() throws Exception {
+        List<String> names = writeStringColumns(50);
+
+        final List<String> merged = Lists.newArrayList();
+        Function<Column<String>, Boolean> collect = new Function<Column<String>, Boolean>() {
+            @Override
+            public Boolean apply(Column<String> column) {
+                merged.add(column.getName());
+                return true;
+            }
+        };
+
+        Assert.assertFalse(new DistributedMergeSort.Builder<String, String>(keyspace, CF_STRING)
+                .withShards(SHARDS)
+                .withPageSize(4)
+                .withLimit(7)
+                .forEachColumn(collect)
+                .build()
+                .call());
+        Assert.assertEquals(names.subList(0, 7), merged);
+
+        merged.clear();
+        Assert.assertTrue(new DistributedMergeSort.Builder<String, String>(keyspace, CF_STRING)
+                .withShards(SHARDS)
+                .withPageSize(4)
+                .withLimit(100)
+                .forEachColumn(collect)
+                .build()
+                .call());
+        Assert.assertEquals(names, merged);
+    }
+
+    private int readAfterFirstColumn(int readAheadDepth) throws Exception {
+        MutationBatch m = keyspace.prepareMutationBatch();
+        for (int i = 0; i < 50; i++) {
+            m.withRow(CF_STRING, "shard_" + readAheadDepth).putColumn(String.format("c%03d", i), i, null);
+        }
+        m.execute();
+
+        DistributedMergeSort<String, String>.MergeIterator iter =
+                new DistributedMergeSort.Builder<String, String>(keyspace, CF_STRING)
+                    .withShards(ImmutableList.of("shard_" + readAheadDepth))
+                    .withPageSize(10)
+                    .withReadAheadDepth(readAheadDepth)
+                    .withExecutor(executor)
+                    .build()
+                    .iterator();
+        try {
+            Assert.assertEquals("c000", iter.nextColumn().getName());
+            Thread.sleep(200);
+            return cassandra.getReadCount(toKey("shard_" + readAheadDepth));
+        }
+        finally {
+            iter.close();
+        }
+    }
+
+    @Test
+    public void testReadAheadDepth() throws Exception {
+        // The page being merged plus readAheadDepth pages
+        Assert.assertEquals(2, readAfterFirstColumn(1));
+        Assert.assertEquals(3, readAfterFirstColumn(2));
+
+        // The next page is only read once the merge needs it
+        Assert.assertEquals(1, readAfterFirstColumn(0));
+    }
+
+    @Test
+    public void testShardErrorIsPropagated() throws Exception {
+        writeStringColumns(10);
+        cassandra.setError(toKey(SHARDS.get(1)), new InvalidRequestException("Bad shard"));
+
+        DistributedMergeSort<String, String>.MergeIterator iter =
+                new DistributedMergeSort.Builder<String, String>(keyspace, CF_STRING)
+                    .withShards(SHARDS)
+                    .build()
+                    .iterator();
+        try {
+            iter.hasNextColumn();
+            Assert.fail();
+        }
+        catch (BadRequestException e) {
+        }
+        finally {
+            iter.close();
+        }
+    }
+
+    @Test
+    public void testShardErrorDoesNotHangMerge() throws Exception {
+        writeStringColumns(10);
+        cassandra.setError(toKey(SHARDS.get(2)), new AssertionError("Broken shard"));
+
+        final DistributedMergeSort<String, String>.MergeIterator iter =
+                new DistributedMergeSort.Builder<String, String>(keyspace, CF_STRING)
+                    .withShards(SHARDS)
+                    .build()
+                    .iterator();
+
+        Future<Boolean> hasNext = executor.submit(new Callable<Boolean>() {
+            @Override
+            public Boolean call() throws Exception {
+                return iter.hasNextColumn();
+            }
+        });
+
+        try {
+            hasNext.get(1000, TimeUnit.MILLISECONDS);
+            Assert.fail();
+        }
+        catch (ExecutionException e) {
+            Assert.assertTrue(e.getCause() instanceof AssertionError);
+        }
+        finally {
+            iter.close();
+        }
+    }
+
+    @Test
+    public void testDefaultComparatorFollowsColumnType() throws Exception {
+        // Negative longs sort after positive longs as unsigned bytes
+        List<Long> names = Lists.newArrayList();
+        MutationBatch m = keyspace.prepareMutationBatch();
+        for (long i = -10; i < 10; i++) {
+            names.add(i * 1000);
+            m.withRow(CF_LONG, SHARDS.get((int)(i + 10) % SHARDS.size())).putColumn(i * 1000, i, null);
+        }
+        m.execute();
+
+        Assert.assertEquals(names, getNames(new DistributedMergeSort.Builder<String, Long>(keyspace, CF_LONG)
+                .withShards(SHARDS)
+                .withPageSize(3)
+                .build()));
+    }
+
+    @Test
+    public void testUnsupportedComparatorRequiresComparator() throws Exception {
+        try {
+            new DistributedMergeSort.Builder<String, UUID>(keyspace, CF_TIMEUUID)
+                .withShards(SHARDS)
+                .build();
+            Assert.fail();
+        }
+        catch (IllegalStateException e) {
+        }
+
+        UUID uuid = TimeUUIDUtils.getUniqueTimeUUIDinMicros();
+        MutationBatch m = keyspace.prepareMutationBatch();
+        m.withRow(CF_TIMEUUID, SHARDS.get(0)).putColumn(uuid, 1, null);
+        m.execute();
+
+        Assert.assertEquals(ImmutableList.of(uuid), getNames(
+                new DistributedMergeSort.Builder<String, UUID>(keyspace, CF_TIMEUUID)
+                    .withShards(SHARDS)
+                    .withComparator(new Comparator<UUID>() {
+                        @Override
+                        public int compare(UUID u1, UUID u2) {
+                            return u1.compareTo(u2);
+                        }
+                    })
+                    .build()));
+    }
+
+    @Test
+    public void testCloseWakesWaitingMerge() throws Exception {
+        writeStringColumns(10);
+        cassandra.setReadLatency(2000);
+
+        final DistributedMergeSort<String, String>.MergeIterator iter =
+                new DistributedMergeSort.Builder<String, String>(keyspace, CF_STRING)
+                    .withShards(SHARDS)
+                    .withExecutor(executor)
+                    .build()
+                    .iterator();
+
+        Future<Boolean> hasNext = executor.submit(new Callable<Boolean>() {
+            @Override
+            public Boolean call() throws Exception {
+                return iter.hasNextColumn();
+            }
+        });
+
+        Thread.sleep(100);
+        iter.close();
+        Assert.assertFalse(hasNext.get(500, TimeUnit.MILLISECONDS));
+    }
+}
@@ -0,0 +1,317 @@
+package com.netflix.astyanax.recipes;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.nio.ByteBuffer;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.cassandra.thrift.Cassandra;
+import org.apache.cassandra.thrift.Column;
+import org.apache.cassandra.thrift.ColumnOrSuperColumn;
+import org.apache.cassandra.thrift.ColumnParent;
+import org.apache.cassandra.thrift.Deletion;
+import org.apache.cassandra.thrift.InvalidRequestException;
+import org.apache.cassandra.thrift.Mutation;
+import org.apache.cassandra.thrift.SlicePredicate;
+import org.apache.cassandra.thrift.SliceRange;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.primitives.UnsignedBytes;
+import com.netflix.astyanax.Keyspace;
+import com.netflix.astyanax.connectionpool.ConnectionPool;
+import com.netflix.astyanax.connectionpool.Host;
+import com.netflix.astyanax.connectionpool.Operation;
+import com.netflix.astyanax.connectionpool.impl.OperationResultImpl;
+import com.netflix.astyanax.impl.AstyanaxConfigurationImpl;
+import com.netflix.astyanax.shallows.EmptyKeyspaceTracerFactory;
+import com.netflix.astyanax.thrift.ThriftKeyspaceImpl;
+
+/**
+ * Single node, in memory stand in for cassandra that implements the part of the
+ * thrift api used by the recipes: batch_mutate, get_slice and multiget_slice on
+ * standard column families.  Cells keep their timestamps so deletes and writes
+ * with explicit timestamps are resolved the way cassandra resolves them.
+ * Columns are sorted as unsigned bytes unless a comparator is set for the
+ * column family.
+ */
+public class InMemoryCassandra {
+    private static final Host HOST = new Host("127.0.0.1", 9160);
+
+    private static final Comparator<ByteBuffer> BYTES_COMPARATOR = new Comparator<ByteBuffer>() {
+        @Override
+        public int compare(ByteBuffer b1, ByteBuffer b2) {
+            return UnsignedBytes.lexicographicalComparator().compare(toArray(b1), toArray(b2));
+        }
+    };
+
+    private static class Cell {
+        final ByteBuffer value;
+        final long       timestamp;
+        final int        ttl;
+        final long       expiration;
+
+        Cell(ByteBuffer value, long timestamp, int ttl) {
+            this.value      = value;
+            this.timestamp  = timestamp;
+            this.ttl        = ttl;
+            this.expiration = ttl > 0 ? System.currentTimeMillis() + ttl * 1000L : Long.MAX_VALUE;
+        }
+
+        boolean isLive() {
+            return value != null && expiration > System.currentTimeMillis();
+        }
+    }
+
+    private static class Row {
+        long deletedAt = Long.MIN_VALUE;
+        final NavigableMap<ByteBuffer, Cell> cells;
+
+        Row(Comparator<ByteBuffer> comparator) {
+            this.cells = new TreeMap<ByteBuffer, Cell>(comparator);
+        }
+    }
+
+    private final Map<String, Map<ByteBuffer, Row>>     columnFamilies = Maps.newHashMap();
+    private final Map<String, Comparator<ByteBuffer>>   comparators    = Maps.newConcurrentMap();
+    private final Map<ByteBuffer, Throwable>            errors         = Maps.newConcurrentMap();
+    private final Map<ByteBuffer, AtomicInteger>        readCounts     = Maps.newConcurrentMap();
+    private volatile long                               readLatency    = 0;
+
+    private final Cassandra.Client client = new Cassandra.Client(null) {
+        @Override
+        public void set_keyspace(String keyspace) {
+        }
+
+        @Override
+        public void batch_mutate(Map<ByteBuffer, Map<String, List<Mutation>>> mutationMap,
+                org.apache.cassandra.thrift.ConsistencyLevel cl) throws InvalidRequestException {
+            mutate(mutationMap);
+        }
+
+        @Override
+        public List<ColumnOrSuperColumn> get_slice(ByteBuffer key, ColumnParent parent, SlicePredicate predicate,
+                org.apache.cassandra.thrift.ConsistencyLevel cl) throws InvalidRequestException {
+            return slice(parent.getColumn_family(), key, predicate);
+        }
+
+        @Override
+        public Map<ByteBuffer, List<ColumnOrSuperColumn>> multiget_slice(List<ByteBuffer> keys, ColumnParent parent,
+                SlicePredicate predicate, org.apache.cassandra.thrift.ConsistencyLevel cl) throws InvalidRequestException {
+            Map<ByteBuffer, List<ColumnOrSuperColumn>> rows = Maps.newLinkedHashMap();
+            for (ByteBuffer key : keys) {
+                rows.put(key, slice(parent.getColumn_family(), key, predicate));
+            }
+            return rows;
+        }
+    };
+
+    /**
+     * Sort the columns of a column family with this comparator instead of as
+     * unsigned bytes.  Must be called before the column family is written.
+     */
+    public InMemoryCassandra setComparator(String columnFamily, Comparator<ByteBuffer> comparator) {
+        comparators.put(columnFamily, comparator);
+        return this;
+    }
+
+    /**
+     * Fail all following reads of a row with this exception or read it
+     * normally again if null
+     */
+    public void setError(ByteBuffer key, Throwable error) {
+        if (error == null)
+            errors.remove(key);
+        else
+            errors.put(key, error);
+    }
+
+    /**
+     * Delay every get_slice and multiget_slice by this many milliseconds
+     */
+    public void setReadLatency(long readLatency) {
+        this.readLatency = readLatency;
+    }
+
+    /**
+     * @return Number of get_slice and multiget_slice calls that read the row
+     */
+    public int getReadCount(ByteBuffer key) {
+        AtomicInteger count = readCounts.get(key);
+        return count == null ? 0 : count.get();
+    }
+
+    /**
+     * @return Keyspace that executes every operation once, on the calling thread
+     */
+    @SuppressWarnings("unchecked")
+    public Keyspace newKeyspace(String ksName) {
+        ConnectionPool<Cassandra.Client> pool = (ConnectionPool<Cassandra.Client>) Proxy.newProxyInstance(
+                ConnectionPool.class.getClassLoader(), new Class<?>[] { ConnectionPool.class }, new InvocationHandler() {
+                    @Override
+                    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                        if (method.getName().equals("executeWithFailover")) {
+                            Operation<Cassandra.Client, Object> operation = (Operation<Cassandra.Client, Object>) args[0];
+                            return new OperationResultImpl<Object>(HOST, operation.execute(client, null), 0);
+                        }
+                        if (method.getReturnType() == Boolean.TYPE)
+                            return false;
+                        return null;
+                    }
+                });
+        return new ThriftKeyspaceImpl(ksName, pool, new AstyanaxConfigurationImpl(), EmptyKeyspaceTracerFactory.getInstance());
+    }
+
+    private synchronized void mutate(Map<ByteBuffer, Map<String, List<Mutation>>> mutationMap) throws InvalidRequestException {
+        for (Map.Entry<ByteBuffer, Map<String, List<Mutation>>> rowMutations : mutationMap.entrySet()) {
+            for (Map.Entry<String, List<Mutation>> cfMutations : rowMutations.getValue().entrySet()) {
+                Row row = getRow(cfMutations.getKey(), rowMutations.getKey());
+                for (Mutation mutation : cfMutations.getValue()) {
+                    if (mutation.isSetColumn_or_supercolumn()) {
+                        Column column = mutation.getColumn_or_supercolumn().getColumn();
+                        if (column == null)
+                            throw new InvalidRequestException("Only standard columns are supported");
+                        put(row, column.bufferForName(), new Cell(copy(column.bufferForValue()), column.getTimestamp(),
+                                column.isSetTtl() ? column.getTtl() : 0));
+                    }
+                    else {
+                        delete(row, mutation.getDeletion());
+                    }
+                }
+            }
+        }
+    }
+
+    private static void put(Row row, ByteBuffer name, Cell cell) {
+        if (cell.timestamp <= row.deletedAt)
+            return;
+        Cell existing = row.cells.get(name);
+        if (existing == null || existing.timestamp < cell.timestamp
+                || (existing.timestamp == cell.timestamp && cell.value == null))
+            row.cells.put(copy(name), cell);
+    }
+
+    private static void delete(Row row, Deletion deletion) throws InvalidRequestException {
+        long timestamp = deletion.getTimestamp();
+        if (!deletion.isSetPredicate()) {
+            row.deletedAt = Math.max(row.deletedAt, timestamp);
+            for (Cell cell : Lists.newArrayList(row.cells.values())) {
+                if (cell.timestamp <= timestamp)
+                    row.cells.values().remove(cell);
+            }
+        }
+        else if (deletion.getPredicate().isSetColumn_names()) {
+            for (ByteBuffer name : deletion.getPredicate().getColumn_names()) {
+                put(row, name, new Cell(null, timestamp, 0));
+            }
+        }
+        else {
+            throw new InvalidRequestException("Range deletions are not supported");
+        }
+    }
+
+    private List<ColumnOrSuperColumn> slice(String columnFamily, ByteBuffer key, SlicePredicate predicate)
+            throws InvalidRequestException {
+        synchronized (readCounts) {
+            AtomicInteger count = readCounts.get(key);
+            if (count == null) {
+                count = new AtomicInteger();
+                readCounts.put(copy(key), count);
+            }
+            count.incrementAndGet();
+        }
+
+        Throwable error = errors.get(key);
+        if (error != null) {
+            if (error instanceof Error)
+                throw (Error) error;
+            if (error instanceof InvalidRequestException)
+                throw (InvalidRequestException) error;
+            throw new RuntimeException(error);
+        }
+
+        if (readLatency > 0) {
+            try {
+                Thread.sleep(readLatency);
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException(e);
+            }
+        }
+        return readSlice(columnFamily, key, predicate);
+    }
+
+    private synchronized List<ColumnOrSuperColumn> readSlice(String columnFamily, ByteBuffer key, SlicePredicate predicate) {
+        Row row = getRow(columnFamily, key);
+        List<ColumnOrSuperColumn> columns = Lists.newArrayList();
+        if (predicate.isSetColumn_names()) {
+            NavigableMap<ByteBuffer, Cell> selected = new TreeMap<ByteBuffer, Cell>(row.cells.comparator());
+            for (ByteBuffer name : predicate.getColumn_names()) {
+                Cell cell = row.cells.get(name);
+                if (cell != null)
+                    selected.put(name, cell);
+            }
+            addLive(selected, Integer.MAX_VALUE, columns);
+        }
+        else {
+            SliceRange range = predicate.getSlice_range();
+            NavigableMap<ByteBuffer, Cell> cells = range.isReversed() ? row.cells.descendingMap() : row.cells;
+            ByteBuffer start  = range.bufferForStart();
+            ByteBuffer finish = range.bufferForFinish();
+            if (start.hasRemaining())
+                cells = cells.tailMap(start, true);
+            if (finish.hasRemaining())
+                cells = cells.headMap(finish, true);
+            addLive(cells, range.getCount(), columns);
+        }
+        return columns;
+    }
+
+    private static void addLive(NavigableMap<ByteBuffer, Cell> cells, int count, List<ColumnOrSuperColumn> columns) {
+        for (Map.Entry<ByteBuffer, Cell> entry : cells.entrySet()) {
+            if (columns.size() >= count)
+                break;
+            Cell cell = entry.getValue();
+            if (!cell.isLive())
+                continue;
+            Column column = new Column(entry.getKey().duplicate())
+                .setValue(cell.value.duplicate())
+                .setTimestamp(cell.timestamp);
+            if (cell.ttl > 0)
+                column.setTtl(cell.ttl);
+            columns.add(new ColumnOrSuperColumn().setColumn(column));
+        }
+    }
+
+    private Row getRow(String columnFamily, ByteBuffer key) {
+        Map<ByteBuffer, Row> rows = columnFamilies.get(columnFamily);
+        if (rows == null) {
+            rows = Maps.newHashMap();
+            columnFamilies.put(columnFamily, rows);
+        }
+        Row row = rows.get(key);
+        if (row == null) {
+            Comparator<ByteBuffer> comparator = comparators.get(columnFamily);
+            row = new Row(comparator == null ? BYTES_COMPARATOR : comparator);
+            rows.put(copy(key), row);
+        }
+        return row;
+    }
+
+    private static ByteBuffer copy(ByteBuffer buffer) {
+        return ByteBuffer.wrap(toArray(buffer));
+    }
+
+    private static byte[] toArray(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.remaining()];
+        buffer.duplicate().get(bytes);
+        return bytes;
+    }
+}
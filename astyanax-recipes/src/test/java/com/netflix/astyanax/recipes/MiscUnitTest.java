@@ -1,5 +1,7 @@
 package com.netflix.astyanax.recipes;
 
+import java.util.Arrays;
+import java.util.List;
 import java.util.UUID;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
@@ -17,6 +19,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.google.common.base.Function;
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import com.netflix.astyanax.AstyanaxContext;
 import com.netflix.astyanax.ColumnListMutation;
@@ -36,6 +39,7 @@ import com.netflix.astyanax.model.ConsistencyLevel;
 import com.netflix.astyanax.model.Row;
 import com.netflix.astyanax.partitioner.Murmur3Partitioner;
 import com.netflix.astyanax.recipes.UUIDStringSupplier;
+import com.netflix.astyanax.recipes.locks.BusyLockException;
 import com.netflix.astyanax.recipes.locks.ColumnPrefixDistributedRowLock;
 import com.netflix.astyanax.recipes.locks.StaleLockException;
 import com.netflix.astyanax.recipes.reader.AllRowsReader;
@@ -619,6 +623,155 @@ public class MiscUnitTest {
         }
     }
     
+    @Test
+    public void testMultiRowUniquenessAcrossColumnFamilies() throws Exception {
+        MultiRowUniquenessConstraint unique = new MultiRowUniquenessConstraint(keyspace)
+            .withConsistencyLevel(ConsistencyLevel.CL_ONE)
+            .withTtl(60)
+            .withLockId("abc")
+            .withRow(LOCK_CF_LONG,   "testMultiCfUniqueness_A")
+            .withRow(LOCK_CF_LONG,   "testMultiCfUniqueness_B")
+            .withRow(LOCK_CF_STRING, "testMultiCfUniqueness_A")
+            .withRow(LOCK_CF_STRING, "testMultiCfUniqueness_B");
+        
+        List<ColumnPrefixDistributedRowLock<String>> rows = ImmutableList.of(
+                newLock(LOCK_CF_LONG,   "testMultiCfUniqueness_A"),
+                newLock(LOCK_CF_LONG,   "testMultiCfUniqueness_B"),
+                newLock(LOCK_CF_STRING, "testMultiCfUniqueness_A"),
+                newLock(LOCK_CF_STRING, "testMultiCfUniqueness_B"));
+        
+        unique.acquire();
+        try {
+            // Every row is left with only the committed lock column
+            for (ColumnPrefixDistributedRowLock<String> row : rows) {
+                Assert.assertEquals(ImmutableMap.of(ColumnPrefixDistributedRowLock.DEFAULT_LOCK_PREFIX + "abc", 0L), 
+                        row.readLockColumns());
+            }
+        }
+        finally {
+            unique.release();
+        }
+        
+        for (ColumnPrefixDistributedRowLock<String> row : rows) {
+            Assert.assertTrue(row.readLockColumns().isEmpty());
+        }
+    }
+    
+    @Test
+    public void testMultiRowUniquenessContended() throws Exception {
+        MultiRowUniquenessConstraint unique = new MultiRowUniquenessConstraint(keyspace)
+            .withConsistencyLevel(ConsistencyLevel.CL_ONE)
+            .withTtl(60)
+            .withRow(LOCK_CF_LONG,   "testMultiRowUniquenessContended_A")
+            .withRow(LOCK_CF_STRING, "testMultiRowUniquenessContended_B");
+        
+        MultiRowUniquenessConstraint unique2 = new MultiRowUniquenessConstraint(keyspace)
+            .withConsistencyLevel(ConsistencyLevel.CL_ONE)
+            .withTtl(60)
+            .withRow(LOCK_CF_LONG,   "testMultiRowUniquenessContended_C")
+            .withRow(LOCK_CF_STRING, "testMultiRowUniquenessContended_B");
+        
+        unique.acquire();
+        try {
+            try {
+                unique2.acquire();
+                Assert.fail();
+            }
+            catch (NotUniqueException e) {
+                Assert.assertTrue(e.getCause() instanceof BusyLockException);
+            }
+            
+            // The row that wasn't contended is rolled back too
+            Assert.assertTrue(newLock(LOCK_CF_LONG, "testMultiRowUniquenessContended_C").readLockColumns().isEmpty());
+        }
+        finally {
+            unique.release();
+        }
+        
+        unique2.acquire();
+        unique2.release();
+    }
+    
+    @Test
+    public void testVerifyLocksBusy() throws Exception {
+        ColumnPrefixDistributedRowLock<String> holder = newLock(LOCK_CF_STRING, "testVerifyLocksBusy_B");
+        holder.acquire();
+        try {
+            List<ColumnPrefixDistributedRowLock<String>> locks = ImmutableList.of(
+                    newLock(LOCK_CF_LONG,   "testVerifyLocksBusy_A"),
+                    newLock(LOCK_CF_STRING, "testVerifyLocksBusy_B"));
+            try {
+                ColumnPrefixDistributedRowLock.verifyLocks(locks, fillLockMutations(locks));
+                Assert.fail();
+            }
+            catch (BusyLockException e) {
+            }
+            finally {
+                releaseLocks(locks);
+            }
+        }
+        finally {
+            holder.release();
+        }
+    }
+    
+    @Test
+    public void testVerifyLocksStale() throws Exception {
+        ColumnPrefixDistributedRowLock<String> stale = newLock(LOCK_CF_LONG, "testVerifyLocksStale_A")
+            .expireLockAfter(1, TimeUnit.SECONDS);
+        stale.acquire();
+        Thread.sleep(2000);
+        
+        List<ColumnPrefixDistributedRowLock<String>> locks = ImmutableList.of(
+                newLock(LOCK_CF_LONG,   "testVerifyLocksStale_A").failOnStaleLock(true),
+                newLock(LOCK_CF_STRING, "testVerifyLocksStale_B").failOnStaleLock(true));
+        try {
+            ColumnPrefixDistributedRowLock.verifyLocks(locks, fillLockMutations(locks));
+            Assert.fail();
+        }
+        catch (StaleLockException e) {
+        }
+        finally {
+            releaseLocks(locks);
+        }
+        
+        // Without failOnStaleLock the stale lock is cleaned up
+        MultiRowUniquenessConstraint unique = new MultiRowUniquenessConstraint(keyspace)
+            .withConsistencyLevel(ConsistencyLevel.CL_ONE)
+            .withRow(LOCK_CF_LONG,   "testVerifyLocksStale_A")
+            .withRow(LOCK_CF_STRING, "testVerifyLocksStale_B");
+        unique.acquire();
+        unique.release();
+        Assert.assertTrue(newLock(LOCK_CF_LONG, "testVerifyLocksStale_A").readLockColumns().isEmpty());
+    }
+    
+    private static ColumnPrefixDistributedRowLock<String> newLock(ColumnFamily<String, String> columnFamily, String rowKey) {
+        return new ColumnPrefixDistributedRowLock<String>(keyspace, columnFamily, rowKey)
+            .withConsistencyLevel(ConsistencyLevel.CL_ONE);
+    }
+    
+    /**
+     * Write the lock columns of all the locks in one batch
+     * @return Time the locks were written at, in microseconds
+     */
+    private static long fillLockMutations(List<ColumnPrefixDistributedRowLock<String>> locks) throws Exception {
+        long now = TimeUnit.MICROSECONDS.convert(System.currentTimeMillis(), TimeUnit.MILLISECONDS);
+        MutationBatch m = keyspace.prepareMutationBatch().setConsistencyLevel(ConsistencyLevel.CL_ONE);
+        for (ColumnPrefixDistributedRowLock<String> lock : locks) {
+            lock.fillLockMutation(m, now, null);
+        }
+        m.execute();
+        return now;
+    }
+    
+    private static void releaseLocks(List<ColumnPrefixDistributedRowLock<String>> locks) throws Exception {
+        MutationBatch m = keyspace.prepareMutationBatch().setConsistencyLevel(ConsistencyLevel.CL_ONE);
+        for (ColumnPrefixDistributedRowLock<String> lock : locks) {
+            lock.fillReleaseMutation(m, false);
+        }
+        m.execute();
+    }
+    
     @Test
     public void testRowUniquenessConstraint() throws Exception {
         RowUniquenessConstraint<String, String> unique = new RowUniquenessConstraint<String, String>
@@ -835,6 +988,28 @@ public class MiscUnitTest {
         
     }
     
+    @Test
+    public void testAllRowsReaderWithReadAhead() throws Exception {
+        final AtomicLong counter = new AtomicLong(0);
+        
+        AllRowsReader<String, String> reader = new AllRowsReader.Builder<String, String>(keyspace, CF_STANDARD1)
+                .withPageSize(3)
+                .withConcurrencyLevel(2)
+                .withReadAheadDepth(2)
+                .forEachRow(new Function<Row<String, String>, Boolean>() {
+                    @Override
+                    public Boolean apply(@Nullable Row<String, String> row) {
+                        counter.incrementAndGet();
+                        return true;
+                    }
+                })
+                .build();
+        
+        boolean result = reader.call();
+        Assert.assertEquals(counter.get(), 27);
+        Assert.assertTrue(result);
+    }
+    
     @Test
     public void testAllRowsReaderWithCancel() throws Exception {
         final AtomicLong counter = new AtomicLong(0);
@@ -905,4 +1080,51 @@ public class MiscUnitTest {
             LOG.info("Failed to execute", e);
         }
     }
+
+    @Test
+    public void testDistributedMergeSort() throws Exception {
+        DistributedMergeSort<String, String>.MergeIterator iter = new DistributedMergeSort.Builder<String, String>(keyspace, CF_STANDARD1)
+                .withShards(Arrays.asList("A", "B", "C"))
+                .withColumnRange("a", "z", false)
+                .withPageSize(4)
+                .withReadAheadDepth(2)
+                .build()
+                .iterator();
+        
+        String last = "";
+        int count = 0;
+        try {
+            while (iter.hasNext()) {
+                Column<String> column = iter.next();
+                Assert.assertTrue(column.getName().compareTo(last) >= 0);
+                last = column.getName();
+                count++;
+            }
+        }
+        finally {
+            iter.close();
+        }
+        Assert.assertEquals(26 * 3, count);
+        Assert.assertEquals("z", last);
+        
+        final AtomicLong counter = new AtomicLong();
+        boolean result = new DistributedMergeSort.Builder<String, String>(keyspace, CF_STANDARD1)
+                .withShards(Arrays.asList("A", "B", "C"))
+                .withColumnRange("z", "a", true)
+                .withPageSize(4)
+                .withLimit(10)
+                .forEachColumn(new Function<Column<String>, Boolean>() {
+                    @Override
+                    public Boolean apply(@Nullable Column<String> column) {
+                        // Each column is in all three shards
+                        long index = counter.getAndIncrement();
+                        Assert.assertEquals(Character.toString((char) ('z' - index / 3)), column.getName());
+                        return true;
+                    }
+                })
+                .build()
+                .call();
+        Assert.assertFalse(result);
+        Assert.assertEquals(10, counter.get());
+    }
 }
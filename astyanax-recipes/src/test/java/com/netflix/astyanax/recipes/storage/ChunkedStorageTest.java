@@ -0,0 +1,129 @@
+package com.netflix.astyanax.recipes.storage;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.channels.Channels;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import junit.framework.Assert;
+
+import org.junit.Test;
+
+import com.netflix.astyanax.retry.RetryNTimes;
+
+public class ChunkedStorageTest {
+    private static final int CHUNK_SIZE = 100;
+
+    private static byte[] newData(int size) {
+        byte[] data = new byte[size];
+        new Random(size).nextBytes(data);
+        return data;
+    }
+
+    private static ObjectMetadata write(ChunkedStorageProvider provider, String objectName, byte[] data) throws Exception {
+        return ChunkedStorage.newWriter(provider, objectName, new ByteArrayInputStream(data))
+            .withChunkSize(CHUNK_SIZE)
+            .call();
+    }
+
+    @Test
+    public void testReadInOrder() throws Exception {
+        MemoryChunkedStorageProvider provider = new MemoryChunkedStorageProvider(CHUNK_SIZE);
+        byte[] data = newData(CHUNK_SIZE * 50 + 17);
+        ObjectMetadata meta = write(provider, "object", data);
+        Assert.assertEquals(51, meta.getChunkCount().intValue());
+
+        ByteArrayOutputStream os = new ByteArrayOutputStream();
+        ChunkedStorage.newReader(provider, "object", os)
+            .withConcurrencyLevel(8)
+            .withWindowSize(5)
+            .call();
+        Assert.assertTrue(Arrays.equals(data, os.toByteArray()));
+    }
+
+    @Test
+    public void testRetryAndSharedExecutor() throws Exception {
+        MemoryChunkedStorageProvider provider = new MemoryChunkedStorageProvider(CHUNK_SIZE);
+        byte[] data = newData(CHUNK_SIZE * 10);
+        write(provider, "object", data);
+        provider.failOnce("object", 3);
+        provider.failOnce("object", 7);
+
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            ByteArrayOutputStream os = new ByteArrayOutputStream();
+            ChunkedStorage.newReader(provider, "object", Channels.newChannel(os))
+                .withExecutor(executor)
+                .withRetryPolicy(new RetryNTimes(2))
+                .call();
+            Assert.assertTrue(Arrays.equals(data, os.toByteArray()));
+            Assert.assertFalse(executor.isShutdown());
+        }
+        finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testFailedChunk() throws Exception {
+        MemoryChunkedStorageProvider provider = new MemoryChunkedStorageProvider(CHUNK_SIZE);
+        write(provider, "object", newData(CHUNK_SIZE * 10));
+        provider.failOnce("object", 5);
+
+        try {
+            ChunkedStorage.newReader(provider, "object", new ByteArrayOutputStream()).call();
+            Assert.fail();
+        }
+        catch (Exception e) {
+            Assert.assertEquals("Failed to read object$5", e.getMessage());
+        }
+    }
+
+    @Test
+    public void testRange() throws Exception {
+        MemoryChunkedStorageProvider provider = new MemoryChunkedStorageProvider(CHUNK_SIZE);
+        byte[] data = newData(CHUNK_SIZE * 20 + 50);
+        write(provider, "object", data);
+
+        long[][] ranges = { {0, 10}, {150, 300}, {100, 100}, {1990, 60}, {0, data.length}, {data.length, 0} };
+        for (long[] range : ranges) {
+            int offset = (int) range[0];
+            int length = (int) range[1];
+
+            int readsBefore = provider.getReadCount();
+            ByteArrayOutputStream os = new ByteArrayOutputStream();
+            ChunkedStorage.newReader(provider, "object", os)
+                .withRange(offset, length)
+                .call();
+            Assert.assertTrue(Arrays.equals(Arrays.copyOfRange(data, offset, offset + length), os.toByteArray()));
+
+            // Only the chunks overlapping the range are read
+            int expectedReads = length == 0 ? 0 : (offset + length - 1) / CHUNK_SIZE - offset / CHUNK_SIZE + 1;
+            Assert.assertEquals(expectedReads, provider.getReadCount() - readsBefore);
+        }
+    }
+
+    @Test
+    public void testBatchedReadAndWrite() throws Exception {
+        MemoryChunkedStorageProvider provider = new MemoryChunkedStorageProvider(CHUNK_SIZE, CHUNK_SIZE * 8);
+        byte[] data = newData(CHUNK_SIZE * 50 + 17);
+        ObjectMetadata meta = write(provider, "object", data);
+        Assert.assertEquals(51, meta.getChunkCount().intValue());
+        Assert.assertEquals(51, provider.getChunkCount());
+        Assert.assertEquals(7, provider.getWriteCount());
+
+        ByteArrayOutputStream os = new ByteArrayOutputStream();
+        ChunkedStorage.newReader(provider, "object", os).call();
+        Assert.assertTrue(Arrays.equals(data, os.toByteArray()));
+        Assert.assertEquals(7, provider.getReadCount());
+
+        // Chunks 7 to 9 are read in one request
+        os = new ByteArrayOutputStream();
+        ChunkedStorage.newReader(provider, "object", os).withRange(750, 200).call();
+        Assert.assertTrue(Arrays.equals(Arrays.copyOfRange(data, 750, 950), os.toByteArray()));
+        Assert.assertEquals(8, provider.getReadCount());
+    }
+}
@@ -0,0 +1,171 @@
+package com.netflix.astyanax.recipes.storage;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import junit.framework.Assert;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.common.primitives.Bytes;
+import com.netflix.astyanax.connectionpool.exceptions.NotFoundException;
+import com.netflix.astyanax.recipes.InMemoryCassandra;
+
+public class DeduplicatingChunkedStorageProviderTest {
+    private static final int CHUNK_SIZE = 100;
+
+    private DeduplicatingChunkedStorageProvider provider;
+
+    @Before
+    public void setup() {
+        provider = new DeduplicatingChunkedStorageProvider(new InMemoryCassandra().newKeyspace("Storage"), "Storage");
+    }
+
+    private static byte[] newData(int seed, int size) {
+        byte[] data = new byte[size];
+        new Random(seed).nextBytes(data);
+        return data;
+    }
+
+    private void write(String objectName, byte[] data) throws Exception {
+        ChunkedStorage.newWriter(provider, objectName, new ByteArrayInputStream(data))
+            .withChunkSize(CHUNK_SIZE)
+            .call();
+    }
+
+    private byte[] read(String objectName) throws Exception {
+        ByteArrayOutputStream os = new ByteArrayOutputStream();
+        ChunkedStorage.newReader(provider, objectName, os).call();
+        return os.toByteArray();
+    }
+
+    @Test
+    public void testSharedChunksAreStoredOnce() throws Exception {
+        byte[] data = newData(1, CHUNK_SIZE * 5);
+        write("a", data);
+        write("b", data);
+
+        Assert.assertEquals(5, provider.getStoredChunkCount());
+        Assert.assertEquals(5, provider.getDuplicateChunkCount());
+        Assert.assertTrue(Arrays.equals(data, read("a")));
+        Assert.assertTrue(Arrays.equals(data, read("b")));
+    }
+
+    @Test
+    public void testDeleteKeepsSharedBlobs() throws Exception {
+        byte[] data = newData(1, CHUNK_SIZE * 5);
+        write("a", data);
+        write("b", data);
+
+        provider.deleteObject("a", null);
+        Assert.assertEquals(0, provider.collectGarbage(0, TimeUnit.MILLISECONDS));
+        Assert.assertTrue(Arrays.equals(data, read("b")));
+
+        try {
+            read("a");
+            Assert.fail();
+        }
+        catch (NotFoundException e) {
+        }
+    }
+
+    @Test
+    public void testGarbageCollectsOnlyUnreferencedBlobs() throws Exception {
+        byte[] shared = newData(1, CHUNK_SIZE * 3);
+        byte[] a = Bytes.concat(shared, newData(2, CHUNK_SIZE * 2));
+        byte[] b = Bytes.concat(shared, newData(3, CHUNK_SIZE * 2));
+        write("a", a);
+        write("b", b);
+        Assert.assertEquals(7, provider.getStoredChunkCount());
+
+        provider.deleteObject("a", null);
+
+        // Condemned blobs are kept for the grace period
+        Assert.assertEquals(0, provider.collectGarbage(1, TimeUnit.HOURS));
+        Assert.assertEquals(2, provider.collectGarbage(0, TimeUnit.MILLISECONDS));
+        Assert.assertEquals(0, provider.collectGarbage(0, TimeUnit.MILLISECONDS));
+        Assert.assertTrue(Arrays.equals(b, read("b")));
+
+        // The collected chunks are uploaded again by the next writer
+        write("c", a);
+        Assert.assertEquals(9, provider.getStoredChunkCount());
+        Assert.assertTrue(Arrays.equals(a, read("c")));
+    }
+
+    @Test
+    public void testRewritingCondemnedBlobKeepsIt() throws Exception {
+        byte[] data = newData(1, CHUNK_SIZE * 3);
+        write("a", data);
+        provider.deleteObject("a", null);
+
+        // A writer reusing the condemned blobs before they are collected
+        write("b", data);
+        Assert.assertEquals(6, provider.getStoredChunkCount());
+
+        Assert.assertEquals(0, provider.collectGarbage(0, TimeUnit.MILLISECONDS));
+        Assert.assertTrue(Arrays.equals(data, read("b")));
+
+        // Once b is deleted too the blobs are collected
+        provider.deleteObject("b", null);
+        Assert.assertEquals(3, provider.collectGarbage(0, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    public void testObjectNamesDontCollideWithInternalRows() throws Exception {
+        byte[] data = newData(1, CHUNK_SIZE * 2);
+        byte[] other = newData(2, CHUNK_SIZE * 2);
+        write("a", data);
+        write("a$manifest", other);
+        write("manifest$a", other);
+        write("garbage$", other);
+        write("blob$garbage", other);
+
+        provider.deleteObject("a$manifest", null);
+        Assert.assertTrue(Arrays.equals(data, read("a")));
+
+        provider.deleteObject("a", null);
+        Assert.assertEquals(2, provider.collectGarbage(0, TimeUnit.MILLISECONDS));
+
+        Assert.assertTrue(Arrays.equals(other, read("manifest$a")));
+        Assert.assertTrue(Arrays.equals(other, read("garbage$")));
+        Assert.assertTrue(Arrays.equals(other, read("blob$garbage")));
+    }
+
+    @Test
+    public void testSupplementaryCharacterNamesAreReferences() throws Exception {
+        // Sorts after "REF:\uffff" as UTF-8
+        String name = "\ud83d\ude00";
+        byte[] data = newData(1, CHUNK_SIZE * 3);
+        write("a", data);
+        write(name, data);
+
+        provider.deleteObject("a", null);
+        Assert.assertEquals(0, provider.collectGarbage(0, TimeUnit.MILLISECONDS));
+        Assert.assertTrue(Arrays.equals(data, read(name)));
+
+        provider.deleteObject(name, null);
+        Assert.assertEquals(3, provider.collectGarbage(0, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    public void testTtlIsRejected() throws Exception {
+        try {
+            provider.writeChunk("a", 0, ByteBuffer.wrap(newData(1, CHUNK_SIZE)), 60);
+            Assert.fail();
+        }
+        catch (IllegalArgumentException e) {
+        }
+
+        try {
+            provider.writeMetadata("a", new ObjectMetadata().setChunkCount(1).setTtl(60));
+            Assert.fail();
+        }
+        catch (IllegalArgumentException e) {
+        }
+    }
+}
@@ -0,0 +1,135 @@
+package com.netflix.astyanax.recipes.storage;
+
+import java.nio.ByteBuffer;
+import java.util.Collection;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import com.netflix.astyanax.connectionpool.exceptions.NotFoundException;
+
+/**
+ * In memory provider for testing readers and writers.  Reads of chunks in
+ * failChunks fail once before succeeding.  Read and write counts are the
+ * number of requests, which can be for many chunks.
+ */
+public class MemoryChunkedStorageProvider implements BulkChunkedStorageProvider {
+    private final Map<String, ByteBuffer>     chunks     = Maps.newConcurrentMap();
+    private final Map<String, ObjectMetadata> metadata   = Maps.newConcurrentMap();
+    private final Set<String>                 failChunks = Sets.newSetFromMap(Maps.<String, Boolean>newConcurrentMap());
+    private final AtomicInteger               readCount  = new AtomicInteger();
+    private final AtomicInteger               writeCount = new AtomicInteger();
+    private final int                         chunkSize;
+    private final int                         maxBatchBytes;
+
+    public MemoryChunkedStorageProvider(int chunkSize) {
+        this(chunkSize, chunkSize);
+    }
+
+    public MemoryChunkedStorageProvider(int chunkSize, int maxBatchBytes) {
+        this.chunkSize     = chunkSize;
+        this.maxBatchBytes = maxBatchBytes;
+    }
+
+    private static String getKey(String objectName, int chunkId) {
+        return objectName + "$" + chunkId;
+    }
+
+    public void failOnce(String objectName, int chunkId) {
+        failChunks.add(getKey(objectName, chunkId));
+    }
+
+    public int getReadCount() {
+        return readCount.get();
+    }
+
+    public int getWriteCount() {
+        return writeCount.get();
+    }
+
+    public int getChunkCount() {
+        return chunks.size();
+    }
+
+    @Override
+    public int writeChunk(String objectName, int chunkId, ByteBuffer data, Integer ttl) throws Exception {
+        writeCount.incrementAndGet();
+        return putChunk(objectName, chunkId, data);
+    }
+
+    @Override
+    public int writeChunks(String objectName, Map<Integer, ByteBuffer> chunks, Integer ttl) throws Exception {
+        writeCount.incrementAndGet();
+        int bytesWritten = 0;
+        for (Map.Entry<Integer, ByteBuffer> chunk : chunks.entrySet()) {
+            bytesWritten += putChunk(objectName, chunk.getKey(), chunk.getValue());
+        }
+        return bytesWritten;
+    }
+
+    private int putChunk(String objectName, int chunkId, ByteBuffer data) {
+        ByteBuffer copy = ByteBuffer.allocate(data.remaining());
+        copy.put(data.duplicate()).flip();
+        chunks.put(getKey(objectName, chunkId), copy);
+        return copy.remaining();
+    }
+
+    @Override
+    public ByteBuffer readChunk(String objectName, int chunkId) throws Exception, NotFoundException {
+        readCount.incrementAndGet();
+        return getChunk(objectName, chunkId);
+    }
+
+    @Override
+    public Map<Integer, ByteBuffer> readChunks(String objectName, Collection<Integer> chunkIds) throws Exception {
+        readCount.incrementAndGet();
+        Map<Integer, ByteBuffer> result = Maps.newHashMap();
+        for (Integer chunkId : chunkIds) {
+            result.put(chunkId, getChunk(objectName, chunkId));
+        }
+        return result;
+    }
+
+    private ByteBuffer getChunk(String objectName, int chunkId) throws Exception {
+        String key = getKey(objectName, chunkId);
+        if (failChunks.remove(key))
+            throw new Exception("Failed to read " + key);
+        ByteBuffer chunk = chunks.get(key);
+        if (chunk == null)
+            throw new NotFoundException(key);
+        return chunk.duplicate();
+    }
+
+    @Override
+    public void deleteObject(String objectName, Integer chunkCount) throws Exception {
+        for (int i = 0; i < chunkCount; i++) {
+            chunks.remove(getKey(objectName, i));
+        }
+        metadata.remove(objectName);
+    }
+
+    @Override
+    public void writeMetadata(String objectName, ObjectMetadata attr) throws Exception {
+        metadata.put(objectName, attr);
+    }
+
+    @Override
+    public ObjectMetadata readMetadata(String objectName) throws Exception, NotFoundException {
+        ObjectMetadata attr = metadata.get(objectName);
+        if (attr == null)
+            throw new NotFoundException(objectName);
+        return attr;
+    }
+
+    @Override
+    public int getDefaultChunkSize() {
+        return chunkSize;
+    }
+
+    @Override
+    public int getMaxBatchBytes() {
+        return maxBatchBytes;
+    }
+}
@@ -0,0 +1,134 @@
+/*******************************************************************************
+ * Copyright 2011 Netflix
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package com.netflix.astyanax.thrift;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.ExecutionException;
+
+import org.apache.cassandra.thrift.Cassandra;
+
+import com.google.common.util.concurrent.SettableFuture;
+import com.netflix.astyanax.CassandraOperationTracer;
+import com.netflix.astyanax.connectionpool.AsyncCallback;
+import com.netflix.astyanax.connectionpool.AsyncOperation;
+import com.netflix.astyanax.connectionpool.ConnectionContext;
+import com.netflix.astyanax.connectionpool.Host;
+import com.netflix.astyanax.connectionpool.exceptions.ConnectionException;
+import com.netflix.astyanax.connectionpool.exceptions.InterruptedOperationException;
+
+/**
+ * Base for operations executed on a {@link Cassandra.AsyncClient}.  Subclasses
+ * start the thrift call in internalExecuteAsync and complete the callback from
+ * the thrift AsyncMethodCallback.
+ * 
+ * @author elandau
+ *
+ * @param <R>
+ */
+public abstract class AbstractAsyncOperationImpl<R> implements AsyncOperation<Cassandra.AsyncClient, R> {
+    private final CassandraOperationTracer tracer;
+    private final Host pinnedHost;
+    private final String keyspaceName;
+
+    public AbstractAsyncOperationImpl(CassandraOperationTracer tracer, Host host, String keyspaceName) {
+        this.tracer = tracer;
+        this.pinnedHost = host;
+        this.keyspaceName = keyspaceName;
+    }
+
+    public AbstractAsyncOperationImpl(CassandraOperationTracer tracer, String keyspaceName) {
+        this(tracer, null, keyspaceName);
+    }
+
+    @Override
+    public ByteBuffer getRowKey() {
+        return null;
+    }
+
+    @Override
+    public String getKeyspace() {
+        return keyspaceName;
+    }
+
+    @Override
+    public Host getPinnedHost() {
+        return pinnedHost;
+    }
+
+    @Override
+    public R execute(Cassandra.AsyncClient client, ConnectionContext state) throws ConnectionException {
+        final SettableFuture<R> future = SettableFuture.create();
+        executeAsync(client, state, new AsyncCallback<R>() {
+            @Override
+            public void success(R result) {
+                future.set(result);
+            }
+
+            @Override
+            public void failure(Exception e) {
+                future.setException(e);
+            }
+        });
+        
+        try {
+            return future.get();
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedOperationException("Interrupted waiting for async operation");
+        }
+        catch (ExecutionException e) {
+            throw ThriftConverter.ToConnectionPoolException(e.getCause());
+        }
+    }
+
+    @Override
+    public void executeAsync(Cassandra.AsyncClient client, ConnectionContext state, final AsyncCallback<R> callback) {
+        tracer.start();
+        try {
+            internalExecuteAsync(client, state, new AsyncCallback<R>() {
+                @Override
+                public void success(R result) {
+                    tracer.success();
+                    callback.success(result);
+                }
+
+                @Override
+                public void failure(Exception e) {
+                    ConnectionException ce = ThriftConverter.ToConnectionPoolException(e);
+                    tracer.failure(ce);
+                    callback.failure(ce);
+                }
+            });
+        }
+        catch (Exception e) {
+            ConnectionException ce = ThriftConverter.ToConnectionPoolException(e);
+            tracer.failure(ce);
+            callback.failure(ce);
+        }
+    }
+
+    /**
+     * Start the thrift call.  Exactly one of callback.success or callback.failure
+     * must eventually be called unless an exception is thrown.
+     * 
+     * @param client
+     * @param state
+     * @param callback
+     * @throws Exception
+     */
+    protected abstract void internalExecuteAsync(Cassandra.AsyncClient client, ConnectionContext state, AsyncCallback<R> callback) throws Exception;
+}
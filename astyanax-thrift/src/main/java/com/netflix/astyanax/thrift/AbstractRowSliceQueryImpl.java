@@ -29,6 +29,8 @@ import com.netflix.astyanax.query.RowSliceQuery;
 
 public abstract class AbstractRowSliceQueryImpl<K, C> implements RowSliceQuery<K, C> {
     protected SlicePredicate predicate = new SlicePredicate().setSlice_range(ThriftUtils.createAllInclusiveSliceRange());
+    protected int scatterBatchSize   = 0;
+    protected int scatterParallelism = 0;
     private Serializer<C> serializer;
 
     public AbstractRowSliceQueryImpl(Serializer<C> serializer) {
@@ -81,4 +83,15 @@ public abstract class AbstractRowSliceQueryImpl<K, C> implements RowSliceQuery<K
         return this;
     }
 
+    @Override
+    public RowSliceQuery<K, C> withTokenAwareScatter(int maxKeysPerBatch, int maxParallelism) {
+        this.scatterBatchSize   = maxKeysPerBatch;
+        this.scatterParallelism = maxParallelism;
+        return this;
+    }
+
+    protected boolean isTokenAwareScatter() {
+        return scatterBatchSize > 0 && scatterParallelism > 0;
+    }
+
 }
@@ -62,6 +62,7 @@ public abstract class AbstractThriftMutationBatchImpl implements MutationBatch {
     private Host                pinnedHost;
     private RetryPolicy         retry;
     private WriteAheadLog       wal;
+    private boolean             tokenAwareSplitting = false;
 
     private Map<ByteBuffer, Map<String, List<Mutation>>> mutationMap = Maps.newLinkedHashMap();
     private Map<KeyAndColumnFamily, ColumnListMutation<?>> rowLookup = Maps.newHashMap();
@@ -347,6 +348,12 @@ public abstract class AbstractThriftMutationBatchImpl implements MutationBatch {
         return this;
     }
 
+    @Override
+    public MutationBatch withTokenAwareSplitting(boolean enabled) {
+        this.tokenAwareSplitting = enabled;
+        return this;
+    }
+
     @Override
     public MutationBatch usingWriteAheadLog(WriteAheadLog manager) {
         this.wal = manager;
@@ -365,4 +372,8 @@ public abstract class AbstractThriftMutationBatchImpl implements MutationBatch {
         return this.wal;
     }
 
+    public boolean isTokenAwareSplitting() {
+        return this.tokenAwareSplitting;
+    }
+
 }
@@ -39,6 +39,7 @@ import com.netflix.astyanax.model.ColumnFamily;
 import com.netflix.astyanax.model.ColumnSlice;
 import com.netflix.astyanax.model.Rows;
 import com.netflix.astyanax.partitioner.Partitioner;
+import com.netflix.astyanax.partitioner.Token;
 import com.netflix.astyanax.query.AllRowsQuery;
 import com.netflix.astyanax.query.CheckpointManager;
 import com.netflix.astyanax.shallows.EmptyCheckpointManager;
@@ -258,13 +259,13 @@ public class ThriftAllRowsQueryImpl<K, C> implements AllRowsQuery<K, C> {
                             
                             if (bContinue) {
                                 // Determine the start token for the next page
-                                String token = partitioner.getTokenForKey(lastRow.bufferForKey()).toString();
-                                checkpointManager.trackCheckpoint(tokenPair.left, token);
+                                Token token = partitioner.getToken(lastRow.bufferForKey());
+                                checkpointManager.trackCheckpoint(tokenPair.left, token.toString());
                                 if (getRepeatLastToken()) {
-                                    range.setStart_token(partitioner.getTokenMinusOne(token));
+                                    range.setStart_token(partitioner.getTokenMinusOne(token).toString());
                                 }
                                 else {
-                                    range.setStart_token(token);
+                                    range.setStart_token(token.toString());
                                 }
                             }
                             else {
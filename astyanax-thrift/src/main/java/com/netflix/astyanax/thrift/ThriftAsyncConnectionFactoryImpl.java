@@ -0,0 +1,477 @@
+/*******************************************************************************
+ * Copyright 2011 Netflix
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package com.netflix.astyanax.thrift;
+
+import com.google.common.collect.Maps;
+import com.google.common.util.concurrent.SettableFuture;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.netflix.astyanax.AstyanaxConfiguration;
+import com.netflix.astyanax.AuthenticationCredentials;
+import com.netflix.astyanax.CassandraOperationTracer;
+import com.netflix.astyanax.CassandraOperationType;
+import com.netflix.astyanax.KeyspaceTracerFactory;
+import com.netflix.astyanax.connectionpool.AsyncCallback;
+import com.netflix.astyanax.connectionpool.AsyncConnection;
+import com.netflix.astyanax.connectionpool.AsyncOperation;
+import com.netflix.astyanax.connectionpool.Connection;
+import com.netflix.astyanax.connectionpool.ConnectionFactory;
+import com.netflix.astyanax.connectionpool.ConnectionPoolConfiguration;
+import com.netflix.astyanax.connectionpool.ConnectionPoolMonitor;
+import com.netflix.astyanax.connectionpool.Host;
+import com.netflix.astyanax.connectionpool.HostConnectionPool;
+import com.netflix.astyanax.connectionpool.Operation;
+import com.netflix.astyanax.connectionpool.OperationResult;
+import com.netflix.astyanax.connectionpool.RateLimiter;
+import com.netflix.astyanax.connectionpool.exceptions.BadConfigurationException;
+import com.netflix.astyanax.connectionpool.exceptions.ConnectionException;
+import com.netflix.astyanax.connectionpool.exceptions.InterruptedOperationException;
+import com.netflix.astyanax.connectionpool.exceptions.IsTimeoutException;
+import com.netflix.astyanax.connectionpool.exceptions.ThrottledException;
+import com.netflix.astyanax.connectionpool.exceptions.TransportException;
+import com.netflix.astyanax.connectionpool.impl.OperationResultImpl;
+import com.netflix.astyanax.connectionpool.impl.SimpleRateLimiterImpl;
+
+import org.apache.cassandra.thrift.AuthenticationRequest;
+import org.apache.cassandra.thrift.Cassandra;
+import org.apache.thrift.async.AsyncMethodCallback;
+import org.apache.thrift.async.TAsyncClientManager;
+import org.apache.thrift.protocol.TBinaryProtocol;
+import org.apache.thrift.transport.TNonblockingSocket;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Connection factory for non-blocking thrift connections.  All connections
+ * created by this factory share a single selector thread (TAsyncClientManager)
+ * which writes framed requests and reads responses for every socket, so an
+ * in-flight request costs a borrowed connection but no parked thread.
+ * 
+ * Thrift async clients allow only one outstanding call per connection, so
+ * concurrency comes from the number of connections per host and not from
+ * pipelining on a single socket.  Connections are meant to be used with 
+ * {@link com.netflix.astyanax.connectionpool.ConnectionPool#executeWithFailoverAsync}, 
+ * which returns the connection to the pool as soon as the response arrives.
+ * 
+ * @author elandau
+ */
+public class ThriftAsyncConnectionFactoryImpl implements ConnectionFactory<Cassandra.AsyncClient> {
+    private static final String NAME_FORMAT = "ThriftAsyncConnection<%s-%d>";
+    private static final Logger LOG = LoggerFactory.getLogger(ThriftAsyncConnectionFactoryImpl.class);
+    private final static ExecutorService executor = Executors.newCachedThreadPool(new ThreadFactoryBuilder().setDaemon(true)
+            .build());
+    private final static TBinaryProtocol.Factory protocolFactory = new TBinaryProtocol.Factory();
+
+    private final AtomicLong idCounter = new AtomicLong(0);
+    private final RateLimiter limiter;
+    private final ConnectionPoolConfiguration cpConfig;
+    private final KeyspaceTracerFactory tracerFactory;
+    private final ConnectionPoolMonitor monitor;
+    private final AstyanaxConfiguration asConfig;
+    private final TAsyncClientManager clientManager;
+
+    public ThriftAsyncConnectionFactoryImpl(AstyanaxConfiguration asConfig, ConnectionPoolConfiguration cpConfig, KeyspaceTracerFactory tracerFactory,
+            ConnectionPoolMonitor monitor) {
+        this.cpConfig = cpConfig;
+        this.asConfig = asConfig;
+        this.limiter = new SimpleRateLimiterImpl(cpConfig);
+        this.tracerFactory = tracerFactory;
+        this.monitor = monitor;
+        try {
+            this.clientManager = new TAsyncClientManager();
+        }
+        catch (IOException e) {
+            throw new RuntimeException("Failed to start thrift async client manager", e);
+        }
+    }
+
+    @Override
+    public Connection<Cassandra.AsyncClient> createConnection(final HostConnectionPool<Cassandra.AsyncClient> pool)
+            throws ThrottledException {
+        if (limiter.check() == false) {
+            throw new ThrottledException("Too many connection attempts");
+        }
+
+        return new ThriftAsyncConnection(pool);
+    }
+    
+    /**
+     * Stop the selector thread.  Must be called after the connection pool 
+     * using this factory has been shut down.
+     */
+    public void shutdown() {
+        clientManager.stop();
+    }
+
+    public class ThriftAsyncConnection implements AsyncConnection<Cassandra.AsyncClient> {
+        private final long id = idCounter.incrementAndGet();
+        private Cassandra.AsyncClient cassandraClient;
+        private TNonblockingSocket transport;
+        private AtomicLong operationCounter = new AtomicLong();
+        private AtomicBoolean closed = new AtomicBoolean(false);
+
+        private volatile ConnectionException lastException = null;
+        private volatile String keyspaceName;
+
+        private final HostConnectionPool<Cassandra.AsyncClient> pool;
+
+        private Map<String, Object> metadata = Maps.newConcurrentMap();
+
+        public ThriftAsyncConnection(HostConnectionPool<Cassandra.AsyncClient> pool) {
+            this.pool = pool;
+        }
+
+        @Override
+        public <R> OperationResult<R> execute(Operation<Cassandra.AsyncClient, R> op) throws ConnectionException {
+            if (!(op instanceof AsyncOperation)) {
+                throw new BadConfigurationException("operation", op.getClass().getName(), AsyncOperation.class.getName());
+            }
+            
+            final SettableFuture<OperationResult<R>> future = SettableFuture.create();
+            executeAsync((AsyncOperation<Cassandra.AsyncClient, R>) op, new AsyncCallback<OperationResult<R>>() {
+                @Override
+                public void success(OperationResult<R> result) {
+                    future.set(result);
+                }
+
+                @Override
+                public void failure(Exception e) {
+                    future.setException(e);
+                }
+            });
+
+            try {
+                return future.get();
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedOperationException("Interrupted waiting for async operation");
+            }
+            catch (ExecutionException e) {
+                throw ThriftConverter.ToConnectionPoolException(e.getCause());
+            }
+        }
+        
+        @Override
+        public <R> void executeAsync(final AsyncOperation<Cassandra.AsyncClient, R> op, final AsyncCallback<OperationResult<R>> callback) {
+            operationCounter.incrementAndGet();
+            lastException = null;
+            cassandraClient.setTimeout(cpConfig.getSocketTimeout()); // In case the configuration changed
+            
+            // Set a new keyspace, if it changed
+            if (op.getKeyspace() != null && (keyspaceName == null || !op.getKeyspace().equals(keyspaceName))) {
+                final CassandraOperationTracer tracer = tracerFactory.newTracer(CassandraOperationType.SET_KEYSPACE)
+                        .start();
+                final long startTime = System.nanoTime();
+                try {
+                    cassandraClient.set_keyspace(op.getKeyspace(), new AsyncMethodCallback<Cassandra.AsyncClient.set_keyspace_call>() {
+                        @Override
+                        public void onComplete(Cassandra.AsyncClient.set_keyspace_call response) {
+                            try {
+                                response.getResult();
+                            }
+                            catch (Exception e) {
+                                onError(e);
+                                return;
+                            }
+                            
+                            if (asConfig.getCqlVersion() != null) {
+                                setCqlVersion(op, callback, tracer, startTime);
+                            }
+                            else {
+                                onKeyspaceSet(op, callback, tracer, startTime);
+                            }
+                        }
+
+                        @Override
+                        public void onError(Exception e) {
+                            tracer.failure(onFailure(e, startTime));
+                            callback.failure(lastException);
+                        }
+                    });
+                }
+                catch (Exception e) {
+                    tracer.failure(onFailure(e, startTime));
+                    callback.failure(lastException);
+                }
+            }
+            else {
+                executeOperation(op, callback);
+            }
+        }
+        
+        private <R> void setCqlVersion(final AsyncOperation<Cassandra.AsyncClient, R> op, final AsyncCallback<OperationResult<R>> callback,
+                final CassandraOperationTracer tracer, final long startTime) {
+            try {
+                cassandraClient.set_cql_version(asConfig.getCqlVersion(), new AsyncMethodCallback<Cassandra.AsyncClient.set_cql_version_call>() {
+                    @Override
+                    public void onComplete(Cassandra.AsyncClient.set_cql_version_call response) {
+                        try {
+                            response.getResult();
+                        }
+                        catch (Exception e) {
+                            onError(e);
+                            return;
+                        }
+                        onKeyspaceSet(op, callback, tracer, startTime);
+                    }
+
+                    @Override
+                    public void onError(Exception e) {
+                        tracer.failure(onFailure(e, startTime));
+                        callback.failure(lastException);
+                    }
+                });
+            }
+            catch (Exception e) {
+                tracer.failure(onFailure(e, startTime));
+                callback.failure(lastException);
+            }
+        }
+        
+        private <R> void onKeyspaceSet(AsyncOperation<Cassandra.AsyncClient, R> op, AsyncCallback<OperationResult<R>> callback,
+                CassandraOperationTracer tracer, long startTime) {
+            keyspaceName = op.getKeyspace();
+            long now = System.nanoTime();
+            pool.addLatencySample(now - startTime, now);
+            tracer.success();
+            
+            // We don't want to include the set_keyspace in our latency calculation
+            executeOperation(op, callback);
+        }
+
+        private <R> void executeOperation(AsyncOperation<Cassandra.AsyncClient, R> op, final AsyncCallback<OperationResult<R>> callback) {
+            final long startTime = System.nanoTime();
+            try {
+                op.executeAsync(cassandraClient, this, new AsyncCallback<R>() {
+                    @Override
+                    public void success(R result) {
+                        long now = System.nanoTime();
+                        long latency = now - startTime;
+                        pool.addLatencySample(latency, now);
+                        callback.success(new OperationResultImpl<R>(getHost(), result, latency));
+                    }
+
+                    @Override
+                    public void failure(Exception e) {
+                        callback.failure(onFailure(e, startTime));
+                    }
+                });
+            }
+            catch (Exception e) {
+                callback.failure(onFailure(e, startTime));
+            }
+        }
+        
+        /**
+         * Record the failure on the connection and return the converted exception
+         */
+        private ConnectionException onFailure(Exception e, long startTime) {
+            long now = System.nanoTime();
+            ConnectionException ce = ThriftConverter.ToConnectionPoolException(e);
+            
+            // A client in an error state can't be used for any further calls
+            if (cassandraClient.hasError() && !(ce instanceof IsTimeoutException)) {
+                ce = new TransportException(ce);
+            }
+            lastException = ce.setLatency(now - startTime);
+            if (ce instanceof IsTimeoutException) {
+                pool.addLatencySample(TimeUnit.NANOSECONDS.convert(cpConfig.getSocketTimeout(), TimeUnit.MILLISECONDS), now);
+            }
+            return lastException;
+        }
+
+        @Override
+        public void open() throws ConnectionException {
+            if (cassandraClient != null) {
+                throw new IllegalStateException("Open called on already open connection");
+            }
+
+            long startTime = System.currentTimeMillis();
+            try {
+                if (cpConfig.getSSLConnectionContext() != null) {
+                    throw new BadConfigurationException("sslConnectionContext", "set", "null (SSL is not supported by async connections)");
+                }
+                
+                transport = new TNonblockingSocket(getHost().getIpAddress(), getHost().getPort(), cpConfig.getConnectTimeout());
+                transport.getSocketChannel().socket().setTcpNoDelay(true);
+                transport.getSocketChannel().socket().setKeepAlive(true);
+                
+                cassandraClient = new Cassandra.AsyncClient(protocolFactory, clientManager, transport);
+                cassandraClient.setTimeout(cpConfig.getSocketTimeout());
+                
+                AuthenticationCredentials credentials = cpConfig.getAuthenticationCredentials();
+                if (credentials != null) {
+                    Map<String, String> thriftCredentials = Maps.newHashMapWithExpectedSize(2);
+                    thriftCredentials.put("username", credentials.getUsername());
+                    thriftCredentials.put("password", credentials.getPassword());
+                    login(new AuthenticationRequest(thriftCredentials));
+                }
+                monitor.incConnectionCreated(getHost());
+            }
+            catch (Exception e) {
+                pool.addLatencySample(TimeUnit.NANOSECONDS.convert(cpConfig.getSocketTimeout(), TimeUnit.MILLISECONDS), System.nanoTime());
+                closeClient();
+                ConnectionException ce = ThriftConverter.ToConnectionPoolException(e).setHost(getHost())
+                        .setLatency(System.currentTimeMillis() - startTime);
+                monitor.incConnectionCreateFailed(getHost(), ce);
+                throw ce;
+            }
+            catch (Throwable t) {
+                LOG.error("Error creating connection", t);
+                pool.addLatencySample(TimeUnit.NANOSECONDS.convert(cpConfig.getSocketTimeout(), TimeUnit.MILLISECONDS), System.nanoTime());
+                closeClient();
+                ConnectionException ce = ThriftConverter.ToConnectionPoolException(new RuntimeException("Error openning connection", t)).setHost(getHost())
+                        .setLatency(System.currentTimeMillis() - startTime);
+                monitor.incConnectionCreateFailed(getHost(), ce);
+                throw ce;
+            }
+        }
+        
+        /**
+         * Login is the only call made on the connection before it is handed to
+         * the pool so it is simplest to just wait for it here
+         */
+        private void login(AuthenticationRequest request) throws Exception {
+            final SettableFuture<Void> future = SettableFuture.create();
+            cassandraClient.login(request, new AsyncMethodCallback<Cassandra.AsyncClient.login_call>() {
+                @Override
+                public void onComplete(Cassandra.AsyncClient.login_call response) {
+                    try {
+                        response.getResult();
+                        future.set(null);
+                    }
+                    catch (Exception e) {
+                        future.setException(e);
+                    }
+                }
+
+                @Override
+                public void onError(Exception e) {
+                    future.setException(e);
+                }
+            });
+            
+            try {
+                future.get();
+            }
+            catch (ExecutionException e) {
+                throw (e.getCause() instanceof Exception) ? (Exception)e.getCause() : e;
+            }
+        }
+
+        @Override
+        public void openAsync(final AsyncOpenCallback<Cassandra.AsyncClient> callback) {
+            final Connection<Cassandra.AsyncClient> This = this;
+            executor.submit(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        open();
+                        callback.success(This);
+                    }
+                    catch (Exception e) {
+                        pool.addLatencySample(TimeUnit.NANOSECONDS.convert(cpConfig.getSocketTimeout(), TimeUnit.MILLISECONDS), System.nanoTime());
+                        callback.failure(This, ThriftConverter.ToConnectionPoolException(e));
+                    }
+                }
+            });
+        }
+
+        @Override
+        public void close() {
+            if (closed.compareAndSet(false, true)) {
+                monitor.incConnectionClosed(getHost(), lastException);
+                closeClient();
+            }
+        }
+
+        private void closeClient() {
+            if (transport != null) {
+                try {
+                    transport.close();
+                }
+                catch (Exception e) {
+                }
+                finally {
+                    transport = null;
+                }
+            }
+        }
+
+        @Override
+        public HostConnectionPool<Cassandra.AsyncClient> getHostConnectionPool() {
+            return pool;
+        }
+
+        @Override
+        public ConnectionException getLastException() {
+            return lastException;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(NAME_FORMAT, getHost().getHostName(), id);
+        }
+
+        /**
+         * Compares the toString of these clients
+         */
+        @Override
+        public boolean equals(Object obj) {
+            return toString().equals(obj.toString());
+        }
+
+        @Override
+        public int hashCode() {
+            return toString().hashCode();
+        }
+
+        @Override
+        public long getOperationCount() {
+            return operationCounter.get();
+        }
+
+        @Override
+        public Host getHost() {
+            return pool.getHost();
+        }
+
+        @Override
+        public void setMetadata(String key, Object data) {
+            metadata.put(key, data);
+        }
+
+        @Override
+        public Object getMetadata(String key) {
+            return metadata.get(key);
+        }
+
+        @Override
+        public boolean hasMetadata(String key) {
+            return metadata.containsKey(key);
+        }
+    }
+}
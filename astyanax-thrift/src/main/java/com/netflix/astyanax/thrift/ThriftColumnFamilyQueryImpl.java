@@ -20,6 +20,7 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.Callable;
@@ -33,6 +34,7 @@ import org.apache.cassandra.thrift.CounterSuperColumn;
 import org.apache.cassandra.thrift.KeyRange;
 import org.apache.cassandra.thrift.Mutation;
 import org.apache.cassandra.thrift.SuperColumn;
+import org.apache.thrift.async.AsyncMethodCallback;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -41,9 +43,11 @@ import com.google.common.collect.Maps;
 import com.google.common.util.concurrent.ListeningExecutorService;
 import com.google.common.util.concurrent.ListenableFuture;
 import com.google.common.util.concurrent.MoreExecutors;
+import com.netflix.astyanax.CassandraOperationTracer;
 import com.netflix.astyanax.CassandraOperationType;
 import com.netflix.astyanax.KeyspaceTracerFactory;
 import com.netflix.astyanax.RowCopier;
+import com.netflix.astyanax.connectionpool.AsyncCallback;
 import com.netflix.astyanax.connectionpool.ConnectionPool;
 import com.netflix.astyanax.connectionpool.ConnectionContext;
 import com.netflix.astyanax.connectionpool.Host;
@@ -111,7 +115,7 @@ public class ThriftColumnFamilyQueryImpl<K, C> implements ColumnFamilyQuery<K, C
                 return new ColumnQuery<C>() {
                     @Override
                     public OperationResult<Column<C>> execute() throws ConnectionException {
-                        return connectionPool.executeWithFailover(new AbstractKeyspaceOperationImpl<Column<C>>(
+                        return connectionPool.executeWithFailover(new AbstractKeyspaceReadOperationImpl<Column<C>>(
                                 tracerFactory.newTracer(CassandraOperationType.GET_COLUMN, columnFamily), pinnedHost,
                                 keyspace.getKeyspaceName()) {
                             @Override
@@ -122,33 +126,7 @@ public class ThriftColumnFamilyQueryImpl<K, C> implements ColumnFamilyQuery<K, C
                                                 columnFamily.getName()).setColumn(
                                                 columnFamily.getColumnSerializer().toByteBuffer(column)),
                                         ThriftConverter.ToThriftConsistencyLevel(consistencyLevel));
-                                if (cosc.isSetColumn()) {
-                                    org.apache.cassandra.thrift.Column c = cosc.getColumn();
-                                    return new ThriftColumnImpl<C>(columnFamily.getColumnSerializer().fromBytes(
-                                            c.getName()), c);
-                                }
-                                else if (cosc.isSetSuper_column()) {
-                                    // TODO: Super columns
-                                    // should be deprecated
-                                    SuperColumn sc = cosc.getSuper_column();
-                                    return new ThriftSuperColumnImpl<C>(columnFamily.getColumnSerializer().fromBytes(
-                                            sc.getName()), sc);
-                                }
-                                else if (cosc.isSetCounter_column()) {
-                                    org.apache.cassandra.thrift.CounterColumn c = cosc.getCounter_column();
-                                    return new ThriftCounterColumnImpl<C>(columnFamily.getColumnSerializer().fromBytes(
-                                            c.getName()), c);
-                                }
-                                else if (cosc.isSetCounter_super_column()) {
-                                    // TODO: Super columns
-                                    // should be deprecated
-                                    CounterSuperColumn sc = cosc.getCounter_super_column();
-                                    return new ThriftCounterSuperColumnImpl<C>(columnFamily.getColumnSerializer()
-                                            .fromBytes(sc.getName()), sc);
-                                }
-                                else {
-                                    throw new RuntimeException("Unknown column type in response");
-                                }
+                                return toColumn(cosc);
                             }
 
                             @Override
@@ -160,6 +138,47 @@ public class ThriftColumnFamilyQueryImpl<K, C> implements ColumnFamilyQuery<K, C
 
                     @Override
                     public ListenableFuture<OperationResult<Column<C>>> executeAsync() throws ConnectionException {
+                        if (keyspace.asyncConnectionPool != null) {
+                            return keyspace.asyncConnectionPool.executeWithFailoverAsync(new AbstractAsyncOperationImpl<Column<C>>(
+                                    tracerFactory.newTracer(CassandraOperationType.GET_COLUMN, columnFamily), pinnedHost,
+                                    keyspace.getKeyspaceName()) {
+                                @Override
+                                protected void internalExecuteAsync(Cassandra.AsyncClient client, ConnectionContext state,
+                                        final AsyncCallback<Column<C>> callback) throws Exception {
+                                    client.get(
+                                            columnFamily.getKeySerializer().toByteBuffer(rowKey),
+                                            new org.apache.cassandra.thrift.ColumnPath().setColumn_family(
+                                                    columnFamily.getName()).setColumn(
+                                                    columnFamily.getColumnSerializer().toByteBuffer(column)),
+                                            ThriftConverter.ToThriftConsistencyLevel(consistencyLevel),
+                                            new AsyncMethodCallback<Cassandra.AsyncClient.get_call>() {
+                                                @Override
+                                                public void onComplete(Cassandra.AsyncClient.get_call response) {
+                                                    Column<C> result;
+                                                    try {
+                                                        result = toColumn(response.getResult());
+                                                    }
+                                                    catch (Exception e) {
+                                                        callback.failure(e);
+                                                        return;
+                                                    }
+                                                    callback.success(result);
+                                                }
+
+                                                @Override
+                                                public void onError(Exception e) {
+                                                    callback.failure(e);
+                                                }
+                                            });
+                                }
+
+                                @Override
+                                public ByteBuffer getRowKey() {
+                                    return columnFamily.getKeySerializer().toByteBuffer(rowKey);
+                                }
+                            }, retry);
+                        }
+                        
                         return executor.submit(new Callable<OperationResult<Column<C>>>() {
                             @Override
                             public OperationResult<Column<C>> call() throws Exception {
@@ -172,61 +191,39 @@ public class ThriftColumnFamilyQueryImpl<K, C> implements ColumnFamilyQuery<K, C
 
             @Override
             public OperationResult<ColumnList<C>> execute() throws ConnectionException {
-                return connectionPool.executeWithFailover(
-                        new AbstractKeyspaceOperationImpl<ColumnList<C>>(tracerFactory.newTracer(
-                                CassandraOperationType.GET_ROW, columnFamily), pinnedHost, keyspace.getKeyspaceName()) {
+                CassandraOperationTracer tracer = tracerFactory.newTracer(CassandraOperationType.GET_ROW, columnFamily);
+                
+                // Each page moves the start of the predicate so it must run exactly once and is never hedged
+                if (isPaginating) {
+                    return connectionPool.executeWithFailover(
+                            new AbstractKeyspaceOperationImpl<ColumnList<C>>(tracer, pinnedHost, keyspace.getKeyspaceName()) {
+                                @Override
+                                public ColumnList<C> execute(Client client, ConnectionContext context) throws ConnectionException {
+                                    if (paginateNoMore) {
+                                        return new EmptyColumnList<C>();
+                                    }
 
-                            @Override
-                            public ColumnList<C> execute(Client client, ConnectionContext context) throws ConnectionException {
-                                if (isPaginating && paginateNoMore) {
-                                    return new EmptyColumnList<C>();
+                                    return super.execute(client, context);
                                 }
 
-                                return super.execute(client, context);
-                            }
+                                @Override
+                                public ColumnList<C> internalExecute(Client client, ConnectionContext context) throws Exception {
+                                    return getNextPage(client);
+                                }
 
+                                @Override
+                                public ByteBuffer getRowKey() {
+                                    return columnFamily.getKeySerializer().toByteBuffer(rowKey);
+                                }
+                            }, retry);
+                }
+                
+                return connectionPool.executeWithFailover(
+                        new AbstractKeyspaceReadOperationImpl<ColumnList<C>>(tracer, pinnedHost, keyspace.getKeyspaceName()) {
                             @Override
                             public ColumnList<C> internalExecute(Client client, ConnectionContext context) throws Exception {
-                                List<ColumnOrSuperColumn> columnList = client.get_slice(columnFamily.getKeySerializer()
-                                        .toByteBuffer(rowKey), new ColumnParent().setColumn_family(columnFamily
-                                        .getName()), predicate, ThriftConverter
-                                        .ToThriftConsistencyLevel(consistencyLevel));
-
-                                // Special handling for pagination
-                                if (isPaginating && predicate.isSetSlice_range()) {
-                                    // Did we reach the end of the query.
-                                    if (columnList.size() != predicate.getSlice_range().getCount()) {
-                                        paginateNoMore = true;
-                                    }
-
-                                    // If this is the first page then adjust the
-                                    // count so we fetch one extra column
-                                    // that will later be dropped
-                                    if (firstPage) {
-                                        firstPage = false;
-                                        if (predicate.getSlice_range().getCount() != Integer.MAX_VALUE)
-                                            predicate.getSlice_range().setCount(predicate.getSlice_range().getCount() + 1);
-                                    }
-                                    else {
-                                        if (!columnList.isEmpty())
-                                            columnList.remove(0);
-                                    }
-
-                                    // Set the start column for the next page to
-                                    // the last column of this page.
-                                    // We will discard this column later.
-                                    if (!columnList.isEmpty()) {
-                                        ColumnOrSuperColumn last = Iterables.getLast(columnList);
-                                        if (last.isSetColumn()) {
-                                            predicate.getSlice_range().setStart(last.getColumn().getName());
-                                        } else if (last.isSetCounter_column()) {
-                                            predicate.getSlice_range().setStart(last.getCounter_column().getName());
-                                        }
-                                    }
-                                }
-                                ColumnList<C> result = new ThriftColumnOrSuperColumnListImpl<C>(columnList,
+                                return new ThriftColumnOrSuperColumnListImpl<C>(getSlice(client),
                                         columnFamily.getColumnSerializer());
-                                return result;
                             }
 
                             @Override
@@ -236,12 +233,56 @@ public class ThriftColumnFamilyQueryImpl<K, C> implements ColumnFamilyQuery<K, C
                         }, retry);
             }
 
+            private List<ColumnOrSuperColumn> getSlice(Client client) throws Exception {
+                return client.get_slice(columnFamily.getKeySerializer().toByteBuffer(rowKey), 
+                        new ColumnParent().setColumn_family(columnFamily.getName()), predicate, 
+                        ThriftConverter.ToThriftConsistencyLevel(consistencyLevel));
+            }
+
+            private ColumnList<C> getNextPage(Client client) throws Exception {
+                List<ColumnOrSuperColumn> columnList = getSlice(client);
+
+                // Special handling for pagination
+                if (predicate.isSetSlice_range()) {
+                    // Did we reach the end of the query.
+                    if (columnList.size() != predicate.getSlice_range().getCount()) {
+                        paginateNoMore = true;
+                    }
+
+                    // If this is the first page then adjust the
+                    // count so we fetch one extra column
+                    // that will later be dropped
+                    if (firstPage) {
+                        firstPage = false;
+                        if (predicate.getSlice_range().getCount() != Integer.MAX_VALUE)
+                            predicate.getSlice_range().setCount(predicate.getSlice_range().getCount() + 1);
+                    }
+                    else {
+                        if (!columnList.isEmpty())
+                            columnList.remove(0);
+                    }
+
+                    // Set the start column for the next page to
+                    // the last column of this page.
+                    // We will discard this column later.
+                    if (!columnList.isEmpty()) {
+                        ColumnOrSuperColumn last = Iterables.getLast(columnList);
+                        if (last.isSetColumn()) {
+                            predicate.getSlice_range().setStart(last.getColumn().getName());
+                        } else if (last.isSetCounter_column()) {
+                            predicate.getSlice_range().setStart(last.getCounter_column().getName());
+                        }
+                    }
+                }
+                return new ThriftColumnOrSuperColumnListImpl<C>(columnList, columnFamily.getColumnSerializer());
+            }
+
             @Override
             public ColumnCountQuery getCount() {
                 return new ColumnCountQuery() {
                     @Override
                     public OperationResult<Integer> execute() throws ConnectionException {
-                        return connectionPool.executeWithFailover(new AbstractKeyspaceOperationImpl<Integer>(
+                        return connectionPool.executeWithFailover(new AbstractKeyspaceReadOperationImpl<Integer>(
                                 tracerFactory.newTracer(CassandraOperationType.GET_COLUMN_COUNT, columnFamily),
                                 pinnedHost, keyspace.getKeyspaceName()) {
                             @Override
@@ -272,6 +313,47 @@ public class ThriftColumnFamilyQueryImpl<K, C> implements ColumnFamilyQuery<K, C
 
             @Override
             public ListenableFuture<OperationResult<ColumnList<C>>> executeAsync() throws ConnectionException {
+                // Pagination mutates the predicate between calls so it always runs on the blocking path
+                if (keyspace.asyncConnectionPool != null && !isPaginating) {
+                    return keyspace.asyncConnectionPool.executeWithFailoverAsync(new AbstractAsyncOperationImpl<ColumnList<C>>(
+                            tracerFactory.newTracer(CassandraOperationType.GET_ROW, columnFamily), pinnedHost,
+                            keyspace.getKeyspaceName()) {
+                        @Override
+                        protected void internalExecuteAsync(Cassandra.AsyncClient client, ConnectionContext state,
+                                final AsyncCallback<ColumnList<C>> callback) throws Exception {
+                            client.get_slice(columnFamily.getKeySerializer().toByteBuffer(rowKey), 
+                                    new ColumnParent().setColumn_family(columnFamily.getName()), 
+                                    predicate, 
+                                    ThriftConverter.ToThriftConsistencyLevel(consistencyLevel),
+                                    new AsyncMethodCallback<Cassandra.AsyncClient.get_slice_call>() {
+                                        @Override
+                                        public void onComplete(Cassandra.AsyncClient.get_slice_call response) {
+                                            List<ColumnOrSuperColumn> columnList;
+                                            try {
+                                                columnList = response.getResult();
+                                            }
+                                            catch (Exception e) {
+                                                callback.failure(e);
+                                                return;
+                                            }
+                                            callback.success(new ThriftColumnOrSuperColumnListImpl<C>(columnList,
+                                                    columnFamily.getColumnSerializer()));
+                                        }
+
+                                        @Override
+                                        public void onError(Exception e) {
+                                            callback.failure(e);
+                                        }
+                                    });
+                        }
+
+                        @Override
+                        public ByteBuffer getRowKey() {
+                            return columnFamily.getKeySerializer().toByteBuffer(rowKey);
+                        }
+                    }, retry);
+                }
+                
                 return executor.submit(new Callable<OperationResult<ColumnList<C>>>() {
                     @Override
                     public OperationResult<ColumnList<C>> call() throws Exception {
@@ -280,6 +362,18 @@ public class ThriftColumnFamilyQueryImpl<K, C> implements ColumnFamilyQuery<K, C
                 });
             }
 
+            @Override
+            public Iterable<Column<C>> iterateColumns(final int prefetchPages) {
+                final ByteBuffer key = columnFamily.getKeySerializer().toByteBuffer(rowKey);
+                return new Iterable<Column<C>>() {
+                    @Override
+                    public Iterator<Column<C>> iterator() {
+                        return new ThriftPrefetchingColumnIterator<K, C>(ThriftColumnFamilyQueryImpl.this, key, 
+                                predicate, prefetchPages);
+                    }
+                };
+            }
+
             @Override
             public RowCopier<K, C> copyTo(final ColumnFamily<K, C> otherColumnFamily, final K otherRowKey) {
                 return new RowCopier<K, C>() {
@@ -376,7 +470,7 @@ public class ThriftColumnFamilyQueryImpl<K, C> implements ColumnFamilyQuery<K, C
             @Override
             public OperationResult<Rows<K, C>> execute() throws ConnectionException {
                 return connectionPool.executeWithFailover(
-                        new AbstractKeyspaceOperationImpl<Rows<K, C>>(tracerFactory.newTracer(
+                        new AbstractKeyspaceReadOperationImpl<Rows<K, C>>(tracerFactory.newTracer(
                                 CassandraOperationType.GET_ROWS_RANGE, columnFamily), pinnedHost, keyspace
                                 .getKeyspaceName()) {
                             @Override
@@ -435,8 +529,12 @@ public class ThriftColumnFamilyQueryImpl<K, C> implements ColumnFamilyQuery<K, C
         return new AbstractRowSliceQueryImpl<K, C>(columnFamily.getColumnSerializer()) {
             @Override
             public OperationResult<Rows<K, C>> execute() throws ConnectionException {
+                if (isTokenAwareScatter() && pinnedHost == null) {
+                    return new ThriftTokenAwareMultigetImpl<K, C>(ThriftColumnFamilyQueryImpl.this, predicate,
+                            scatterBatchSize, scatterParallelism).execute(keys);
+                }
                 return connectionPool.executeWithFailover(
-                        new AbstractKeyspaceOperationImpl<Rows<K, C>>(tracerFactory.newTracer(
+                        new AbstractKeyspaceReadOperationImpl<Rows<K, C>>(tracerFactory.newTracer(
                                 CassandraOperationType.GET_ROWS_SLICE, columnFamily), pinnedHost, keyspace
                                 .getKeyspaceName()) {
                             @Override
@@ -472,7 +570,7 @@ public class ThriftColumnFamilyQueryImpl<K, C> implements ColumnFamilyQuery<K, C
                     @Override
                     public OperationResult<Map<K, Integer>> execute() throws ConnectionException {
                         return connectionPool.executeWithFailover(
-                                new AbstractKeyspaceOperationImpl<Map<K, Integer>>(tracerFactory.newTracer(
+                                new AbstractKeyspaceReadOperationImpl<Map<K, Integer>>(tracerFactory.newTracer(
                                         CassandraOperationType.GET_ROWS_SLICE, columnFamily), pinnedHost, keyspace
                                         .getKeyspaceName()) {
                                     @Override
@@ -516,8 +614,12 @@ public class ThriftColumnFamilyQueryImpl<K, C> implements ColumnFamilyQuery<K, C
         return new AbstractRowSliceQueryImpl<K, C>(columnFamily.getColumnSerializer()) {
             @Override
             public OperationResult<Rows<K, C>> execute() throws ConnectionException {
+                if (isTokenAwareScatter() && pinnedHost == null) {
+                    return new ThriftTokenAwareMultigetImpl<K, C>(ThriftColumnFamilyQueryImpl.this, predicate,
+                            scatterBatchSize, scatterParallelism).execute(keys);
+                }
                 return connectionPool.executeWithFailover(
-                        new AbstractKeyspaceOperationImpl<Rows<K, C>>(tracerFactory.newTracer(
+                        new AbstractKeyspaceReadOperationImpl<Rows<K, C>>(tracerFactory.newTracer(
                                 CassandraOperationType.GET_ROWS_SLICE, columnFamily), pinnedHost, keyspace
                                 .getKeyspaceName()) {
                             @Override
@@ -560,7 +662,7 @@ public class ThriftColumnFamilyQueryImpl<K, C> implements ColumnFamilyQuery<K, C
                     @Override
                     public OperationResult<Map<K, Integer>> execute() throws ConnectionException {
                         return connectionPool.executeWithFailover(
-                                new AbstractKeyspaceOperationImpl<Map<K, Integer>>(tracerFactory.newTracer(
+                                new AbstractKeyspaceReadOperationImpl<Map<K, Integer>>(tracerFactory.newTracer(
                                         CassandraOperationType.GET_ROWS_SLICE, columnFamily), pinnedHost, keyspace
                                         .getKeyspaceName()) {
                                     @Override
@@ -611,55 +713,74 @@ public class ThriftColumnFamilyQueryImpl<K, C> implements ColumnFamilyQuery<K, C
         return new AbstractIndexQueryImpl<K, C>(columnFamily) {
             @Override
             public OperationResult<Rows<K, C>> execute() throws ConnectionException {
-                return connectionPool.executeWithFailover(
-                        new AbstractKeyspaceOperationImpl<Rows<K, C>>(tracerFactory.newTracer(
-                                CassandraOperationType.GET_ROWS_BY_INDEX, columnFamily), pinnedHost, keyspace
-                                .getKeyspaceName()) {
-                            @Override
-                            public Rows<K, C> execute(Client client, ConnectionContext context) throws ConnectionException {
-                                if (isPaginating && paginateNoMore) {
-                                    return new EmptyRowsImpl<K, C>();
-                                }
+                CassandraOperationTracer tracer = tracerFactory.newTracer(CassandraOperationType.GET_ROWS_BY_INDEX, columnFamily);
+                
+                // Each page moves the start key of the index clause so it must run exactly once and is never hedged
+                if (isPaginating) {
+                    return connectionPool.executeWithFailover(
+                            new AbstractKeyspaceOperationImpl<Rows<K, C>>(tracer, pinnedHost, keyspace.getKeyspaceName()) {
+                                @Override
+                                public Rows<K, C> execute(Client client, ConnectionContext context) throws ConnectionException {
+                                    if (paginateNoMore) {
+                                        return new EmptyRowsImpl<K, C>();
+                                    }
 
-                                return super.execute(client, context);
-                            }
+                                    return super.execute(client, context);
+                                }
 
+                                @Override
+                                public Rows<K, C> internalExecute(Client client, ConnectionContext context) throws Exception {
+                                    return getNextPage(client);
+                                }
+                            }, retry);
+                }
+                
+                return connectionPool.executeWithFailover(
+                        new AbstractKeyspaceReadOperationImpl<Rows<K, C>>(tracer, pinnedHost, keyspace.getKeyspaceName()) {
                             @Override
                             public Rows<K, C> internalExecute(Client client, ConnectionContext context) throws Exception {
-                                List<org.apache.cassandra.thrift.KeySlice> cfmap;
-                                cfmap = client.get_indexed_slices(
-                                        new ColumnParent().setColumn_family(columnFamily.getName()), indexClause,
-                                        predicate, ThriftConverter.ToThriftConsistencyLevel(consistencyLevel));
-
+                                List<org.apache.cassandra.thrift.KeySlice> cfmap = getSlices(client);
                                 if (cfmap == null) {
                                     return new EmptyRowsImpl<K, C>();
                                 }
-                                else {
-                                    if (isPaginating) {
-                                        if (!firstPage && !cfmap.isEmpty() &&
-                                              cfmap.get(0).bufferForKey().equals(indexClause.bufferForStart_key())) {
-                                            cfmap.remove(0);
-                                        }
-
-                                        try {
-                                            if (!cfmap.isEmpty()) {
-                                                setNextStartKey(ByteBuffer.wrap(Iterables.getLast(cfmap).getKey()));
-                                            }
-                                            else {
-                                                paginateNoMore = true;
-                                            }
-                                        }
-                                        catch (ArithmeticException e) {
-                                            paginateNoMore = true;
-                                        }
-                                    }
-                                    return new ThriftRowsSliceImpl<K, C>(cfmap, columnFamily.getKeySerializer(),
-                                            columnFamily.getColumnSerializer());
-                                }
+                                return new ThriftRowsSliceImpl<K, C>(cfmap, columnFamily.getKeySerializer(),
+                                        columnFamily.getColumnSerializer());
                             }
                         }, retry);
             }
 
+            private List<org.apache.cassandra.thrift.KeySlice> getSlices(Client client) throws Exception {
+                return client.get_indexed_slices(
+                        new ColumnParent().setColumn_family(columnFamily.getName()), indexClause,
+                        predicate, ThriftConverter.ToThriftConsistencyLevel(consistencyLevel));
+            }
+
+            private Rows<K, C> getNextPage(Client client) throws Exception {
+                List<org.apache.cassandra.thrift.KeySlice> cfmap = getSlices(client);
+                if (cfmap == null) {
+                    return new EmptyRowsImpl<K, C>();
+                }
+
+                if (!firstPage && !cfmap.isEmpty() &&
+                      cfmap.get(0).bufferForKey().equals(indexClause.bufferForStart_key())) {
+                    cfmap.remove(0);
+                }
+
+                try {
+                    if (!cfmap.isEmpty()) {
+                        setNextStartKey(ByteBuffer.wrap(Iterables.getLast(cfmap).getKey()));
+                    }
+                    else {
+                        paginateNoMore = true;
+                    }
+                }
+                catch (ArithmeticException e) {
+                    paginateNoMore = true;
+                }
+                return new ThriftRowsSliceImpl<K, C>(cfmap, columnFamily.getKeySerializer(),
+                        columnFamily.getColumnSerializer());
+            }
+
             @Override
             public ListenableFuture<OperationResult<Rows<K, C>>> executeAsync() throws ConnectionException {
                 return executor.submit(new Callable<OperationResult<Rows<K, C>>>() {
@@ -718,4 +839,34 @@ public class ThriftColumnFamilyQueryImpl<K, C> implements ColumnFamilyQuery<K, C
     public RowSliceQuery<K, C> getRowSlice(Iterable<K> keys) {
         return getKeySlice(keys);
     }
+
+    private Column<C> toColumn(ColumnOrSuperColumn cosc) {
+        if (cosc.isSetColumn()) {
+            org.apache.cassandra.thrift.Column c = cosc.getColumn();
+            return new ThriftColumnImpl<C>(columnFamily.getColumnSerializer().fromBytes(
+                    c.getName()), c);
+        }
+        else if (cosc.isSetSuper_column()) {
+            // TODO: Super columns
+            // should be deprecated
+            SuperColumn sc = cosc.getSuper_column();
+            return new ThriftSuperColumnImpl<C>(columnFamily.getColumnSerializer().fromBytes(
+                    sc.getName()), sc);
+        }
+        else if (cosc.isSetCounter_column()) {
+            org.apache.cassandra.thrift.CounterColumn c = cosc.getCounter_column();
+            return new ThriftCounterColumnImpl<C>(columnFamily.getColumnSerializer().fromBytes(
+                    c.getName()), c);
+        }
+        else if (cosc.isSetCounter_super_column()) {
+            // TODO: Super columns
+            // should be deprecated
+            CounterSuperColumn sc = cosc.getCounter_super_column();
+            return new ThriftCounterSuperColumnImpl<C>(columnFamily.getColumnSerializer()
+                    .fromBytes(sc.getName()), sc);
+        }
+        else {
+            throw new RuntimeException("Unknown column type in response");
+        }
+    }
 }
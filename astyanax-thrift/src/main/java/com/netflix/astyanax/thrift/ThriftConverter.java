@@ -167,6 +167,10 @@ public class ThriftConverter {
         else if (e instanceof SocketTimeoutException) {
             return new TimeoutException(e);
         }
+        else if (e instanceof java.util.concurrent.TimeoutException) {
+            // Raised by the async client manager when a call exceeds its timeout
+            return new TimeoutException(e);
+        }
         else if (e instanceof TimedOutException) {
             return new OperationTimeoutException(e);
         }
@@ -18,8 +18,8 @@ package com.netflix.astyanax.thrift;
 import org.apache.cassandra.thrift.Cassandra;
 
 import com.netflix.astyanax.AstyanaxConfiguration;
+import com.netflix.astyanax.AsyncAstyanaxTypeFactory;
 import com.netflix.astyanax.Cluster;
-import com.netflix.astyanax.AstyanaxTypeFactory;
 import com.netflix.astyanax.Keyspace;
 import com.netflix.astyanax.KeyspaceTracerFactory;
 import com.netflix.astyanax.connectionpool.ConnectionFactory;
@@ -27,7 +27,7 @@ import com.netflix.astyanax.connectionpool.ConnectionPool;
 import com.netflix.astyanax.connectionpool.ConnectionPoolConfiguration;
 import com.netflix.astyanax.connectionpool.ConnectionPoolMonitor;
 
-public class ThriftFamilyFactory implements AstyanaxTypeFactory<Cassandra.Client> {
+public class ThriftFamilyFactory implements AsyncAstyanaxTypeFactory<Cassandra.Client, Cassandra.AsyncClient> {
 
     private final static ThriftFamilyFactory instance = new ThriftFamilyFactory();
 
@@ -41,6 +41,13 @@ public class ThriftFamilyFactory implements AstyanaxTypeFactory<Cassandra.Client
         return new ThriftKeyspaceImpl(ksName, cp, asConfig, tracerFactory);
     }
 
+    @Override
+    public Keyspace createKeyspace(String ksName, ConnectionPool<Cassandra.Client> cp,
+            ConnectionPool<Cassandra.AsyncClient> asyncCp, AstyanaxConfiguration asConfig,
+            KeyspaceTracerFactory tracerFactory) {
+        return new ThriftKeyspaceImpl(ksName, cp, asyncCp, asConfig, tracerFactory);
+    }
+
     @Override
     public Cluster createCluster(ConnectionPool<Cassandra.Client> cp, AstyanaxConfiguration asConfig,
             KeyspaceTracerFactory tracerFactory) {
@@ -54,4 +61,16 @@ public class ThriftFamilyFactory implements AstyanaxTypeFactory<Cassandra.Client
                 monitor);
     }
 
+    @Override
+    public ConnectionFactory<Cassandra.AsyncClient> createAsyncConnectionFactory(AstyanaxConfiguration asConfig,
+            ConnectionPoolConfiguration cfConfig, KeyspaceTracerFactory tracerFactory, ConnectionPoolMonitor monitor) {
+        return new ThriftAsyncConnectionFactoryImpl(asConfig, cfConfig, tracerFactory, monitor);
+    }
+
+    @Override
+    public void shutdownAsyncConnectionFactory(ConnectionFactory<Cassandra.AsyncClient> connectionFactory) {
+        if (connectionFactory instanceof ThriftAsyncConnectionFactoryImpl) {
+            ((ThriftAsyncConnectionFactoryImpl) connectionFactory).shutdown();
+        }
+    }
 }
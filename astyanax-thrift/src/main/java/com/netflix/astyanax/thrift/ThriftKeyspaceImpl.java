@@ -16,24 +16,32 @@
 package com.netflix.astyanax.thrift;
 
 import java.nio.ByteBuffer;
+import java.util.Collection;
 import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import org.apache.cassandra.thrift.Cassandra;
 import org.apache.cassandra.thrift.CounterColumn;
+import org.apache.cassandra.thrift.Mutation;
 import org.apache.cassandra.thrift.Cassandra.Client;
+import org.apache.thrift.async.AsyncMethodCallback;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.google.common.base.Function;
 import com.google.common.cache.Cache;
 import com.google.common.cache.CacheBuilder;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
+import com.google.common.util.concurrent.Futures;
 import com.google.common.util.concurrent.ListeningExecutorService;
 import com.google.common.util.concurrent.ListenableFuture;
 import com.google.common.util.concurrent.MoreExecutors;
@@ -46,16 +54,22 @@ import com.netflix.astyanax.MutationBatch;
 import com.netflix.astyanax.WriteAheadEntry;
 import com.netflix.astyanax.WriteAheadLog;
 import com.netflix.astyanax.SerializerPackage;
+import com.netflix.astyanax.connectionpool.AsyncCallback;
 import com.netflix.astyanax.connectionpool.ConnectionPool;
 import com.netflix.astyanax.connectionpool.ConnectionContext;
+import com.netflix.astyanax.connectionpool.Host;
 import com.netflix.astyanax.connectionpool.Operation;
 import com.netflix.astyanax.connectionpool.OperationResult;
 import com.netflix.astyanax.connectionpool.TokenRange;
 import com.netflix.astyanax.connectionpool.exceptions.ConnectionException;
+import com.netflix.astyanax.connectionpool.exceptions.InterruptedOperationException;
 import com.netflix.astyanax.connectionpool.exceptions.NotFoundException;
 import com.netflix.astyanax.connectionpool.exceptions.OperationException;
 import com.netflix.astyanax.connectionpool.exceptions.SchemaDisagreementException;
+import com.netflix.astyanax.connectionpool.impl.OperationResultImpl;
+import com.netflix.astyanax.connectionpool.impl.TokenHostConnectionPoolPartition;
 import com.netflix.astyanax.connectionpool.impl.TokenRangeImpl;
+import com.netflix.astyanax.connectionpool.impl.Topology;
 import com.netflix.astyanax.cql.CqlStatement;
 import com.netflix.astyanax.ddl.KeyspaceDefinition;
 import com.netflix.astyanax.ddl.SchemaChangeResult;
@@ -74,6 +88,7 @@ public final class ThriftKeyspaceImpl implements Keyspace {
     private final static Logger LOG = LoggerFactory.getLogger(ThriftKeyspaceImpl.class);
     
     final ConnectionPool<Cassandra.Client> connectionPool;
+    final ConnectionPool<Cassandra.AsyncClient> asyncConnectionPool;
     final AstyanaxConfiguration config;
     final String                ksName;
     final ListeningExecutorService executor;
@@ -87,7 +102,23 @@ public final class ThriftKeyspaceImpl implements Keyspace {
             ConnectionPool<Cassandra.Client> pool, 
             AstyanaxConfiguration config,
             final KeyspaceTracerFactory tracerFactory) {
+        this(ksName, pool, null, config, tracerFactory);
+    }
+    
+    /**
+     * Create a keyspace which uses a second, non-blocking connection pool for
+     * executeAsync() on mutation batches and single row queries.  The async pool
+     * must be created with a {@link ThriftAsyncConnectionFactoryImpl}.  Without
+     * it executeAsync() runs the blocking execute() on the async executor.
+     */
+    public ThriftKeyspaceImpl(
+            String ksName, 
+            ConnectionPool<Cassandra.Client> pool, 
+            ConnectionPool<Cassandra.AsyncClient> asyncPool,
+            AstyanaxConfiguration config,
+            final KeyspaceTracerFactory tracerFactory) {
         this.connectionPool = pool;
+        this.asyncConnectionPool = asyncPool;
         this.config         = config;
         this.ksName         = ksName;
         this.executor       = MoreExecutors.listeningDecorator(config.getAsyncExecutor());
@@ -113,6 +144,16 @@ public final class ThriftKeyspaceImpl implements Keyspace {
                     walEntry.writeMutation(this);
                 }
                 try {
+                    if (isTokenAwareSplitting() && getPinnedHost() == null && getMutationMap().size() > 1) {
+                        OperationResult<Void> result = executeTokenAwareMutation(getMutationMap(), getConsistencyLevel(), 
+                                getRetryPolicy());
+                        discardMutations();
+                        if (walEntry != null) {
+                            wal.removeEntry(walEntry);
+                        }
+                        return result;
+                    }
+                    
                     OperationResult<Void> result = executeOperation(
                             new AbstractKeyspaceOperationImpl<Void>(
                                     tracerFactory.newTracer(CassandraOperationType.BATCH_MUTATE), getPinnedHost(),
@@ -149,10 +190,43 @@ public final class ThriftKeyspaceImpl implements Keyspace {
 
             @Override
             public ListenableFuture<OperationResult<Void>> executeAsync() throws ConnectionException {
-                return executor.submit(new Callable<OperationResult<Void>>() {
+                if (asyncConnectionPool == null) {
+                    return executor.submit(new Callable<OperationResult<Void>>() {
+                        @Override
+                        public OperationResult<Void> call() throws Exception {
+                            return execute();
+                        }
+                    });
+                }
+                
+                final WriteAheadLog wal = getWriteAheadLog();
+                WriteAheadEntry walEntry = null;
+                if (wal != null) {
+                    walEntry = wal.createEntry();
+                    walEntry.writeMutation(this);
+                }
+                
+                ListenableFuture<OperationResult<Void>> future;
+                if (isTokenAwareSplitting() && getPinnedHost() == null && getMutationMap().size() > 1) {
+                    future = executeTokenAwareMutationAsync(getMutationMap(), getConsistencyLevel(), getRetryPolicy());
+                }
+                else {
+                    ByteBuffer rowKey = null;
+                    if (getMutationMap().size() == 1)
+                        rowKey = getMutationMap().keySet().iterator().next();
+                    future = executeMutationGroupAsync(getMutationMap(), getConsistencyLevel(), getPinnedHost(), rowKey,
+                            getRetryPolicy());
+                }
+                
+                final WriteAheadEntry entry = walEntry;
+                return Futures.transform(future, new Function<OperationResult<Void>, OperationResult<Void>>() {
                     @Override
-                    public OperationResult<Void> call() throws Exception {
-                        return execute();
+                    public OperationResult<Void> apply(OperationResult<Void> result) {
+                        discardMutations();
+                        if (entry != null) {
+                            wal.removeEntry(entry);
+                        }
+                        return result;
                     }
                 });
             }
@@ -473,6 +547,215 @@ public final class ThriftKeyspaceImpl implements Keyspace {
                 }, config.getRetryPolicy().duplicate());
     }
 
+    /**
+     * Split a multi row mutation into groups of rows owned by the same token
+     * partition and send each group to its owners in parallel.  Groups that 
+     * have not been picked up by the async executor by the time the caller 
+     * waits for them are executed on the calling thread, so this is safe to 
+     * call from a task running on the same (bounded) executor.
+     */
+    private OperationResult<Void> executeTokenAwareMutation(Map<ByteBuffer, Map<String, List<Mutation>>> mutationMap,
+            ConsistencyLevel consistencyLevel, RetryPolicy retry) throws ConnectionException {
+        Collection<Map<ByteBuffer, Map<String, List<Mutation>>>> groups = groupByPartition(connectionPool.getTopology(), mutationMap);
+        if (groups.size() == 1) {
+            return executeMutationGroup(mutationMap, consistencyLevel, retry);
+        }
+        
+        List<MutationGroupTask> tasks = Lists.newArrayListWithCapacity(groups.size());
+        for (Map<ByteBuffer, Map<String, List<Mutation>>> group : groups) {
+            MutationGroupTask task = new MutationGroupTask(group, consistencyLevel, retry.duplicate());
+            if (!tasks.isEmpty()) {
+                try {
+                    task.future = executor.submit(task);
+                }
+                catch (RejectedExecutionException e) {
+                    // Will run on the calling thread
+                }
+            }
+            tasks.add(task);
+        }
+        
+        List<OperationResult<Void>> results = Lists.newArrayListWithCapacity(tasks.size());
+        ConnectionException error = null;
+        for (MutationGroupTask task : tasks) {
+            try {
+                results.add(task.get());
+            }
+            catch (ConnectionException e) {
+                if (error == null)
+                    error = e;
+            }
+        }
+        
+        if (error != null) {
+            throw error;
+        }
+        
+        return mergeGroupResults(results);
+    }
+    
+    /**
+     * Async version of executeTokenAwareMutation.  Each group is sent on the 
+     * non-blocking connection pool and the returned future fails if any of
+     * the groups fails.
+     */
+    private ListenableFuture<OperationResult<Void>> executeTokenAwareMutationAsync(
+            Map<ByteBuffer, Map<String, List<Mutation>>> mutationMap, ConsistencyLevel consistencyLevel, 
+            RetryPolicy retry) throws ConnectionException {
+        Collection<Map<ByteBuffer, Map<String, List<Mutation>>>> groups = groupByPartition(asyncConnectionPool.getTopology(), mutationMap);
+        if (groups.size() == 1) {
+            return executeMutationGroupAsync(mutationMap, consistencyLevel, null, mutationMap.keySet().iterator().next(), retry);
+        }
+        
+        List<ListenableFuture<OperationResult<Void>>> futures = Lists.newArrayListWithCapacity(groups.size());
+        for (Map<ByteBuffer, Map<String, List<Mutation>>> group : groups) {
+            futures.add(executeMutationGroupAsync(group, consistencyLevel, null, group.keySet().iterator().next(), 
+                    retry.duplicate()));
+        }
+        
+        return Futures.transform(Futures.allAsList(futures), new Function<List<OperationResult<Void>>, OperationResult<Void>>() {
+            @Override
+            public OperationResult<Void> apply(List<OperationResult<Void>> results) {
+                return mergeGroupResults(results);
+            }
+        });
+    }
+    
+    /**
+     * Group the rows of a mutation by the token partition that owns them
+     */
+    static <CL> Collection<Map<ByteBuffer, Map<String, List<Mutation>>>> groupByPartition(Topology<CL> topology, 
+            Map<ByteBuffer, Map<String, List<Mutation>>> mutationMap) {
+        Map<TokenHostConnectionPoolPartition<CL>, Map<ByteBuffer, Map<String, List<Mutation>>>> groups 
+            = new IdentityHashMap<TokenHostConnectionPoolPartition<CL>, Map<ByteBuffer, Map<String, List<Mutation>>>>();
+        for (Entry<ByteBuffer, Map<String, List<Mutation>>> row : mutationMap.entrySet()) {
+            TokenHostConnectionPoolPartition<CL> partition = topology.getPartition(row.getKey());
+            Map<ByteBuffer, Map<String, List<Mutation>>> group = groups.get(partition);
+            if (group == null) {
+                group = Maps.newLinkedHashMap();
+                groups.put(partition, group);
+            }
+            group.put(row.getKey(), row.getValue());
+        }
+        return groups.values();
+    }
+    
+    /**
+     * The result of a split mutation is as slow as its slowest group
+     */
+    private static OperationResult<Void> mergeGroupResults(List<OperationResult<Void>> results) {
+        long latency = 0;
+        int attempts = 0;
+        for (OperationResult<Void> result : results) {
+            latency  = Math.max(latency, result.getLatency());
+            attempts = Math.max(attempts, result.getAttemptsCount());
+        }
+        
+        OperationResult<Void> result = new OperationResultImpl<Void>(results.get(0).getHost(), null, latency);
+        result.setAttemptsCount(attempts);
+        return result;
+    }
+    
+    /**
+     * Send a group of rows that are all owned by the same token partition
+     */
+    private OperationResult<Void> executeMutationGroup(final Map<ByteBuffer, Map<String, List<Mutation>>> group,
+            final ConsistencyLevel consistencyLevel, RetryPolicy retry) throws ConnectionException {
+        final ByteBuffer routingKey = group.keySet().iterator().next();
+        return executeOperation(
+                new AbstractKeyspaceOperationImpl<Void>(
+                        tracerFactory.newTracer(CassandraOperationType.BATCH_MUTATE), getKeyspaceName()) {
+                    @Override
+                    public Void internalExecute(Client client, ConnectionContext context) throws Exception {
+                        client.batch_mutate(group, ThriftConverter.ToThriftConsistencyLevel(consistencyLevel));
+                        return null;
+                    }
+
+                    @Override
+                    public ByteBuffer getRowKey() {
+                        return routingKey;
+                    }
+                }, retry);
+    }
+    
+    /**
+     * Send a group of rows on the non-blocking connection pool
+     */
+    private ListenableFuture<OperationResult<Void>> executeMutationGroupAsync(
+            final Map<ByteBuffer, Map<String, List<Mutation>>> group, final ConsistencyLevel consistencyLevel, 
+            Host pinnedHost, final ByteBuffer routingKey, RetryPolicy retry) throws ConnectionException {
+        return asyncConnectionPool.executeWithFailoverAsync(
+                new AbstractAsyncOperationImpl<Void>(
+                        tracerFactory.newTracer(CassandraOperationType.BATCH_MUTATE), pinnedHost, getKeyspaceName()) {
+                    @Override
+                    protected void internalExecuteAsync(Cassandra.AsyncClient client, ConnectionContext state,
+                            final AsyncCallback<Void> callback) throws Exception {
+                        client.batch_mutate(group, ThriftConverter.ToThriftConsistencyLevel(consistencyLevel),
+                                new AsyncMethodCallback<Cassandra.AsyncClient.batch_mutate_call>() {
+                                    @Override
+                                    public void onComplete(Cassandra.AsyncClient.batch_mutate_call response) {
+                                        try {
+                                            response.getResult();
+                                        }
+                                        catch (Exception e) {
+                                            callback.failure(e);
+                                            return;
+                                        }
+                                        callback.success(null);
+                                    }
+
+                                    @Override
+                                    public void onError(Exception e) {
+                                        callback.failure(e);
+                                    }
+                                });
+                    }
+
+                    @Override
+                    public ByteBuffer getRowKey() {
+                        return routingKey;
+                    }
+                }, retry);
+    }
+    
+    private class MutationGroupTask implements Callable<OperationResult<Void>> {
+        private final AtomicBoolean started = new AtomicBoolean(false);
+        private final Map<ByteBuffer, Map<String, List<Mutation>>> group;
+        private final ConsistencyLevel consistencyLevel;
+        private final RetryPolicy retry;
+        private Future<OperationResult<Void>> future;
+        
+        MutationGroupTask(Map<ByteBuffer, Map<String, List<Mutation>>> group, ConsistencyLevel consistencyLevel, RetryPolicy retry) {
+            this.group            = group;
+            this.consistencyLevel = consistencyLevel;
+            this.retry            = retry;
+        }
+        
+        @Override
+        public OperationResult<Void> call() throws Exception {
+            if (!started.compareAndSet(false, true)) 
+                return null;
+            return executeMutationGroup(group, consistencyLevel, retry);
+        }
+        
+        OperationResult<Void> get() throws ConnectionException {
+            if (future == null || started.compareAndSet(false, true)) {
+                return executeMutationGroup(group, consistencyLevel, retry);
+            }
+            
+            try {
+                return future.get();
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedOperationException("Interrupted waiting for mutation group");
+            }
+            catch (ExecutionException e) {
+                throw ThriftConverter.ToConnectionPoolException(e.getCause());
+            }
+        }
+    }
+
     private <R> OperationResult<R> executeOperation(Operation<Cassandra.Client, R> operation, RetryPolicy retry)
             throws OperationException, ConnectionException {
         return connectionPool.executeWithFailover(operation, retry);
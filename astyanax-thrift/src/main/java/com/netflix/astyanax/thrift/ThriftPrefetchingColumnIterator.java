@@ -0,0 +1,268 @@
+/*******************************************************************************
+ * Copyright 2011 Netflix
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package com.netflix.astyanax.thrift;
+
+import java.nio.ByteBuffer;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+
+import org.apache.cassandra.thrift.Cassandra.Client;
+import org.apache.cassandra.thrift.ColumnOrSuperColumn;
+import org.apache.cassandra.thrift.ColumnParent;
+import org.apache.cassandra.thrift.SlicePredicate;
+import org.apache.cassandra.thrift.SliceRange;
+
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.netflix.astyanax.CassandraOperationType;
+import com.netflix.astyanax.connectionpool.ConnectionContext;
+import com.netflix.astyanax.connectionpool.exceptions.ConnectionException;
+import com.netflix.astyanax.model.Column;
+import com.netflix.astyanax.thrift.model.ThriftColumnOrSuperColumnListImpl;
+
+/**
+ * Iterator over all columns of a single row that fetches the following pages
+ * in the background while the caller consumes the current page.
+ * 
+ * A page can only be requested once the last column of the previous page is 
+ * known so pages are fetched one at a time.  As soon as a page arrives the next 
+ * one is requested, until up to prefetchPages pages are waiting to be consumed.  
+ * The fetch chain stops there and resumes as the caller moves on to the next 
+ * page, so an abandoned iterator holds at most prefetchPages pages and never 
+ * leaves a thread blocked.
+ * 
+ * Each page after the first starts at the last column of the previous page
+ * and that repeated column is dropped.  The page size is adjusted after every
+ * page so that a page holds roughly TARGET_PAGE_BYTES of column data.
+ * 
+ * @author elandau
+ *
+ * @param <K>
+ * @param <C>
+ */
+class ThriftPrefetchingColumnIterator<K, C> implements Iterator<Column<C>> {
+    private static final int DEFAULT_PAGE_SIZE   = 1000;
+    private static final int MIN_PAGE_SIZE       = 16;
+    private static final int MAX_PAGE_SIZE       = 10000;
+    private static final int TARGET_PAGE_BYTES   = 1024 * 1024;
+    
+    /**
+     * A fetched or in-flight page and the column it was started from
+     */
+    private static class Page {
+        final ByteBuffer start;
+        ListenableFuture<List<ColumnOrSuperColumn>> future;
+        
+        Page(ByteBuffer start) {
+            this.start = start;
+        }
+    }
+    
+    private final ThriftColumnFamilyQueryImpl<K, C> query;
+    private final ByteBuffer     rowKey;
+    private final SlicePredicate predicate;
+    private final int            prefetchPages;
+    
+    // Guarded by this
+    private final LinkedList<Page> pages = new LinkedList<Page>();
+    private ByteBuffer nextStart;
+    private int        pageSize;
+    private boolean    inFlight;
+    private boolean    exhausted;
+    private boolean    firstPage = true;
+    
+    private Iterator<Column<C>> current;
+    
+    ThriftPrefetchingColumnIterator(ThriftColumnFamilyQueryImpl<K, C> query, ByteBuffer rowKey, 
+            SlicePredicate predicate, int prefetchPages) {
+        this.query         = query;
+        this.rowKey        = rowKey;
+        this.predicate     = new SlicePredicate(predicate);
+        this.prefetchPages = Math.max(1, prefetchPages);
+        
+        if (this.predicate.isSetSlice_range()) {
+            SliceRange range = this.predicate.getSlice_range();
+            this.nextStart = range.bufferForStart();
+            this.pageSize  = range.getCount() == Integer.MAX_VALUE ? DEFAULT_PAGE_SIZE : range.getCount();
+        }
+        
+        synchronized (this) {
+            fetchMore();
+        }
+    }
+
+    @Override
+    public boolean hasNext() {
+        while (current == null || !current.hasNext()) {
+            Page page;
+            synchronized (this) {
+                page = pages.poll();
+                if (page == null) 
+                    return false;
+                fetchMore();
+            }
+            current = toColumns(page);
+        }
+        return true;
+    }
+
+    @Override
+    public Column<C> next() {
+        if (!hasNext())
+            throw new NoSuchElementException();
+        return current.next();
+    }
+
+    @Override
+    public void remove() {
+        throw new UnsupportedOperationException();
+    }
+    
+    /**
+     * Request the next page unless one is already in flight, the end of the row 
+     * was reached or enough pages are waiting to be consumed.  Must be called
+     * while holding the lock on this.
+     */
+    private void fetchMore() {
+        if (inFlight || exhausted || pages.size() >= prefetchPages)
+            return;
+        
+        final Page page = new Page(firstPage ? null : nextStart);
+        final SlicePredicate pagePredicate = new SlicePredicate(predicate);
+        if (pagePredicate.isSetSlice_range()) {
+            pagePredicate.getSlice_range().setStart(nextStart);
+            pagePredicate.getSlice_range().setCount(firstPage ? pageSize : pageSize + 1);
+        }
+        firstPage = false;
+        inFlight  = true;
+        
+        page.future = query.executor.submit(new Callable<List<ColumnOrSuperColumn>>() {
+            @Override
+            public List<ColumnOrSuperColumn> call() throws Exception {
+                return fetchPage(pagePredicate);
+            }
+        });
+        pages.add(page);
+        
+        page.future.addListener(new Runnable() {
+            @Override
+            public void run() {
+                onPageFetched(page, pagePredicate);
+            }
+        }, MoreExecutors.sameThreadExecutor());
+    }
+    
+    private synchronized void onPageFetched(Page page, SlicePredicate pagePredicate) {
+        inFlight = false;
+        
+        List<ColumnOrSuperColumn> columns;
+        try {
+            columns = page.future.get();
+        } catch (Exception e) {
+            // Reported to the caller once it reaches this page
+            exhausted = true;
+            return;
+        }
+        
+        if (!pagePredicate.isSetSlice_range() || columns.size() < pagePredicate.getSlice_range().getCount()) {
+            exhausted = true;
+            return;
+        }
+        
+        ColumnOrSuperColumn last = columns.get(columns.size() - 1);
+        nextStart = getName(last);
+        
+        // Size the next page based on the average column size observed so far
+        long bytes = 0;
+        for (ColumnOrSuperColumn column : columns) 
+            bytes += estimateSize(column);
+        long averageSize = Math.max(1, bytes / columns.size());
+        pageSize = (int)Math.max(MIN_PAGE_SIZE, Math.min(MAX_PAGE_SIZE, TARGET_PAGE_BYTES / averageSize));
+        
+        fetchMore();
+    }
+    
+    private List<ColumnOrSuperColumn> fetchPage(final SlicePredicate pagePredicate) throws ConnectionException {
+        return query.connectionPool.executeWithFailover(
+                new AbstractKeyspaceReadOperationImpl<List<ColumnOrSuperColumn>>(query.tracerFactory.newTracer(
+                        CassandraOperationType.GET_ROW, query.columnFamily), query.pinnedHost, query.keyspace.getKeyspaceName()) {
+                    @Override
+                    public List<ColumnOrSuperColumn> internalExecute(Client client, ConnectionContext context) throws Exception {
+                        return client.get_slice(rowKey, 
+                                new ColumnParent().setColumn_family(query.columnFamily.getName()), 
+                                pagePredicate, 
+                                ThriftConverter.ToThriftConsistencyLevel(query.consistencyLevel));
+                    }
+
+                    @Override
+                    public ByteBuffer getRowKey() {
+                        return rowKey;
+                    }
+                }, query.retry.duplicate()).getResult();
+    }
+    
+    /**
+     * Wait for a page and drop the column repeated from the previous page
+     */
+    private Iterator<Column<C>> toColumns(Page page) {
+        List<ColumnOrSuperColumn> columns;
+        try {
+            columns = page.future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted waiting for column page", e);
+        } catch (ExecutionException e) {
+            throw new RuntimeException(ThriftConverter.ToConnectionPoolException(e.getCause()));
+        }
+        
+        if (page.start != null && !columns.isEmpty() && page.start.equals(getName(columns.get(0)))) 
+            columns = columns.subList(1, columns.size());
+        
+        return new ThriftColumnOrSuperColumnListImpl<C>(columns, query.columnFamily.getColumnSerializer()).iterator();
+    }
+    
+    private static ByteBuffer getName(ColumnOrSuperColumn column) {
+        if (column.isSetColumn())
+            return column.getColumn().bufferForName();
+        if (column.isSetCounter_column())
+            return column.getCounter_column().bufferForName();
+        if (column.isSetSuper_column())
+            return column.getSuper_column().bufferForName();
+        if (column.isSetCounter_super_column())
+            return column.getCounter_super_column().bufferForName();
+        return null;
+    }
+    
+    private static long estimateSize(ColumnOrSuperColumn column) {
+        if (column.isSetColumn()) {
+            org.apache.cassandra.thrift.Column c = column.getColumn();
+            return c.bufferForName().remaining() + (c.isSetValue() ? c.bufferForValue().remaining() : 0) + 8;
+        }
+        if (column.isSetCounter_column()) 
+            return column.getCounter_column().bufferForName().remaining() + 8;
+        if (column.isSetSuper_column()) {
+            long size = column.getSuper_column().bufferForName().remaining();
+            for (org.apache.cassandra.thrift.Column c : column.getSuper_column().getColumns())
+                size += c.bufferForName().remaining() + (c.isSetValue() ? c.bufferForValue().remaining() : 0) + 8;
+            return size;
+        }
+        return 64;
+    }
+}
@@ -0,0 +1,242 @@
+/*******************************************************************************
+ * Copyright 2011 Netflix
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package com.netflix.astyanax.thrift;
+
+import java.nio.ByteBuffer;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.apache.cassandra.thrift.Cassandra;
+import org.apache.cassandra.thrift.Cassandra.Client;
+import org.apache.cassandra.thrift.ColumnOrSuperColumn;
+import org.apache.cassandra.thrift.ColumnParent;
+import org.apache.cassandra.thrift.SlicePredicate;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.netflix.astyanax.CassandraOperationType;
+import com.netflix.astyanax.connectionpool.ConnectionContext;
+import com.netflix.astyanax.connectionpool.Host;
+import com.netflix.astyanax.connectionpool.OperationResult;
+import com.netflix.astyanax.connectionpool.exceptions.ConnectionException;
+import com.netflix.astyanax.connectionpool.exceptions.InterruptedOperationException;
+import com.netflix.astyanax.connectionpool.impl.OperationResultImpl;
+import com.netflix.astyanax.connectionpool.impl.TokenHostConnectionPoolPartition;
+import com.netflix.astyanax.connectionpool.impl.Topology;
+import com.netflix.astyanax.model.Rows;
+import com.netflix.astyanax.shallows.EmptyRowsImpl;
+import com.netflix.astyanax.thrift.model.ThriftRowsListImpl;
+
+/**
+ * Scatter/gather multiget.  Keys are grouped by the token partition that owns
+ * them and split into sub-batches of at most maxKeysPerBatch keys.  Up to
+ * maxParallelism workers pull sub-batches off a shared queue and send each
+ * one to its owning hosts.  The calling thread is always one of the workers
+ * and any worker that has not been started by the executor once the queue
+ * has drained is simply cancelled, so the query never blocks waiting for
+ * executor capacity.
+ *
+ * The stitched result preserves the order in which keys were requested.
+ *
+ * @author elandau
+ *
+ * @param <K>
+ * @param <C>
+ */
+class ThriftTokenAwareMultigetImpl<K, C> {
+    private final ThriftColumnFamilyQueryImpl<K, C> query;
+    private final SlicePredicate predicate;
+    private final int maxKeysPerBatch;
+    private final int maxParallelism;
+
+    private final ConcurrentLinkedQueue<List<ByteBuffer>> batches = new ConcurrentLinkedQueue<List<ByteBuffer>>();
+    private final ConcurrentMap<ByteBuffer, List<ColumnOrSuperColumn>> rows = Maps.newConcurrentMap();
+    private final AtomicReference<ConnectionException> error = new AtomicReference<ConnectionException>();
+    private final AtomicReference<Host> firstHost = new AtomicReference<Host>();
+    private long latency  = 0;
+    private int  attempts = 0;
+
+    ThriftTokenAwareMultigetImpl(ThriftColumnFamilyQueryImpl<K, C> query, SlicePredicate predicate, int maxKeysPerBatch, int maxParallelism) {
+        this.query           = query;
+        this.predicate       = predicate;
+        this.maxKeysPerBatch = maxKeysPerBatch;
+        this.maxParallelism  = maxParallelism;
+    }
+
+    OperationResult<Rows<K, C>> execute(Iterable<K> keys) throws ConnectionException {
+        List<ByteBuffer> orderedKeys = query.columnFamily.getKeySerializer().toBytesList(Lists.newArrayList(keys));
+        if (orderedKeys.isEmpty()) {
+            return new OperationResultImpl<Rows<K, C>>(Host.NO_HOST, new EmptyRowsImpl<K, C>(), 0);
+        }
+
+        // Group keys by owning partition and cut each group into sub-batches
+        Topology<Cassandra.Client> topology = query.connectionPool.getTopology();
+        Map<TokenHostConnectionPoolPartition<Cassandra.Client>, List<ByteBuffer>> groups
+            = new IdentityHashMap<TokenHostConnectionPoolPartition<Cassandra.Client>, List<ByteBuffer>>();
+        for (ByteBuffer key : orderedKeys) {
+            TokenHostConnectionPoolPartition<Cassandra.Client> partition = topology.getPartition(key);
+            List<ByteBuffer> group = groups.get(partition);
+            if (group == null) {
+                group = Lists.newArrayList();
+                groups.put(partition, group);
+            }
+            group.add(key);
+        }
+        for (List<ByteBuffer> group : groups.values()) {
+            batches.addAll(Lists.partition(group, maxKeysPerBatch));
+        }
+
+        // Start the workers.  The first one always runs on the calling thread
+        List<Worker> workers = Lists.newArrayList();
+        int workerCount = Math.min(maxParallelism, batches.size());
+        for (int i = 1; i < workerCount; i++) {
+            Worker worker = new Worker();
+            try {
+                worker.future = query.executor.submit(worker);
+                workers.add(worker);
+            }
+            catch (RejectedExecutionException e) {
+                break;
+            }
+        }
+        try {
+            new Worker().call();
+        }
+        finally {
+            // Collect every worker, even if the calling thread failed, so no 
+            // sub-batch is left running once the query returns
+            for (Worker worker : workers) {
+                try {
+                    worker.await();
+                }
+                catch (ConnectionException e) {
+                    error.compareAndSet(null, e);
+                }
+            }
+        }
+
+        if (error.get() != null) {
+            throw error.get();
+        }
+
+        // Stitch the rows back together in the requested order
+        Map<ByteBuffer, List<ColumnOrSuperColumn>> ordered = Maps.newLinkedHashMap();
+        for (ByteBuffer key : orderedKeys) {
+            List<ColumnOrSuperColumn> columns = rows.get(key);
+            if (columns != null)
+                ordered.put(key, columns);
+        }
+
+        Rows<K, C> result;
+        if (ordered.isEmpty()) {
+            result = new EmptyRowsImpl<K, C>();
+        }
+        else {
+            result = new ThriftRowsListImpl<K, C>(ordered, query.columnFamily.getKeySerializer(),
+                    query.columnFamily.getColumnSerializer());
+        }
+
+        OperationResult<Rows<K, C>> opResult = new OperationResultImpl<Rows<K, C>>(firstHost.get(), result, latency);
+        opResult.setAttemptsCount(attempts);
+        return opResult;
+    }
+
+    private OperationResult<Map<ByteBuffer, List<ColumnOrSuperColumn>>> executeBatch(final List<ByteBuffer> batch) throws ConnectionException {
+        return query.connectionPool.executeWithFailover(
+                new AbstractKeyspaceReadOperationImpl<Map<ByteBuffer, List<ColumnOrSuperColumn>>>(query.tracerFactory.newTracer(
+                        CassandraOperationType.GET_ROWS_SLICE, query.columnFamily), query.keyspace.getKeyspaceName()) {
+                    @Override
+                    public Map<ByteBuffer, List<ColumnOrSuperColumn>> internalExecute(Client client, ConnectionContext context) throws Exception {
+                        return client.multiget_slice(batch,
+                                new ColumnParent().setColumn_family(query.columnFamily.getName()),
+                                predicate,
+                                ThriftConverter.ToThriftConsistencyLevel(query.consistencyLevel));
+                    }
+
+                    @Override
+                    public ByteBuffer getRowKey() {
+                        return batch.get(0);
+                    }
+                }, query.retry.duplicate());
+    }
+
+    private synchronized void recordResult(OperationResult<?> result) {
+        firstHost.compareAndSet(null, result.getHost());
+        latency  = Math.max(latency,  result.getLatency());
+        attempts = Math.max(attempts, result.getAttemptsCount());
+    }
+
+    private class Worker implements Callable<Void> {
+        private final AtomicBoolean started = new AtomicBoolean(false);
+        private Future<Void> future;
+
+        @Override
+        public Void call() {
+            if (!started.compareAndSet(false, true))
+                return null;
+
+            List<ByteBuffer> batch;
+            while (error.get() == null && (batch = batches.poll()) != null) {
+                try {
+                    OperationResult<Map<ByteBuffer, List<ColumnOrSuperColumn>>> result = executeBatch(batch);
+                    if (result.getResult() != null)
+                        rows.putAll(result.getResult());
+                    recordResult(result);
+                }
+                catch (ConnectionException e) {
+                    error.compareAndSet(null, e);
+                }
+                catch (RuntimeException e) {
+                    // Stop the other workers after their current batch
+                    batches.clear();
+                    throw e;
+                }
+            }
+            return null;
+        }
+
+        /**
+         * Wait for the worker to finish.  A worker that was never picked up
+         * by the executor is claimed here so it becomes a no-op.
+         */
+        void await() throws ConnectionException {
+            if (started.compareAndSet(false, true))
+                return;
+
+            try {
+                future.get();
+            }
+            catch (InterruptedException e) {
+                batches.clear();
+                future.cancel(true);
+                Thread.currentThread().interrupt();
+                throw new InterruptedOperationException("Interrupted waiting for multiget batch");
+            }
+            catch (ExecutionException e) {
+                throw ThriftConverter.ToConnectionPoolException(e.getCause());
+            }
+        }
+    }
+}
@@ -0,0 +1,174 @@
+package com.netflix.astyanax.thrift;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.apache.cassandra.thrift.Cassandra;
+import org.apache.cassandra.thrift.Column;
+import org.apache.cassandra.thrift.ColumnOrSuperColumn;
+import org.apache.cassandra.thrift.Mutation;
+import org.apache.cassandra.thrift.SlicePredicate;
+import org.apache.cassandra.thrift.SliceRange;
+import org.apache.thrift.TException;
+import org.apache.thrift.server.TNonblockingServer;
+import org.apache.thrift.transport.TNonblockingServerSocket;
+
+import com.google.common.collect.Iterables;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import com.netflix.astyanax.connectionpool.Host;
+import com.netflix.astyanax.serializers.StringSerializer;
+
+/**
+ * Thrift server on a local port that records batch_mutate and multiget_slice
+ * calls.  multiget_slice returns a single column 'c' per key whose value is the
+ * key itself.  get_slice returns a range of the columns set by setColumns() for
+ * any key.  All other calls that return a value fail.
+ *
+ * @author elandau
+ */
+public class MockCassandraServer {
+    private final int port;
+    private final TNonblockingServer server;
+    private final List<Map<ByteBuffer, Map<String, List<Mutation>>>> batches = new CopyOnWriteArrayList<Map<ByteBuffer, Map<String, List<Mutation>>>>();
+    private final List<List<ByteBuffer>> multigets = new CopyOnWriteArrayList<List<ByteBuffer>>();
+    private final Map<String, Exception> errors = Maps.newConcurrentMap();
+    private volatile long latency = 0;
+    private volatile NavigableSet<String> columns = Sets.newTreeSet();
+
+    public MockCassandraServer() throws Exception {
+        ServerSocket socket = new ServerSocket(0);
+        this.port = socket.getLocalPort();
+        socket.close();
+
+        Cassandra.Iface handler = (Cassandra.Iface) Proxy.newProxyInstance(Cassandra.Iface.class.getClassLoader(),
+                new Class<?>[] { Cassandra.Iface.class }, new InvocationHandler() {
+                    @SuppressWarnings("unchecked")
+                    @Override
+                    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                        Exception error = errors.get(method.getName());
+                        if (error != null)
+                            throw error;
+                        if (method.getName().equals("batch_mutate")) {
+                            Thread.sleep(latency);
+                            batches.add((Map<ByteBuffer, Map<String, List<Mutation>>>) args[0]);
+                            return null;
+                        }
+                        if (method.getName().equals("multiget_slice")) {
+                            Thread.sleep(latency);
+                            List<ByteBuffer> keys = (List<ByteBuffer>) args[0];
+                            multigets.add(keys);
+                            Map<ByteBuffer, List<ColumnOrSuperColumn>> rows = Maps.newHashMap();
+                            for (ByteBuffer key : keys) {
+                                Column column = new Column(StringSerializer.get().toByteBuffer("c"))
+                                    .setValue(key.duplicate())
+                                    .setTimestamp(1);
+                                rows.put(key, Lists.newArrayList(new ColumnOrSuperColumn().setColumn(column)));
+                            }
+                            return rows;
+                        }
+                        if (method.getName().equals("get_slice")) {
+                            Thread.sleep(latency);
+                            return getSlice(((SlicePredicate) args[2]).getSlice_range());
+                        }
+                        if (method.getReturnType() == Void.TYPE)
+                            return null;
+                        throw new TException("Not supported " + method.getName());
+                    }
+                });
+
+        server = new TNonblockingServer(new TNonblockingServer.Args(new TNonblockingServerSocket(port))
+                .processor(new Cassandra.Processor<Cassandra.Iface>(handler)));
+        Thread thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                server.serve();
+            }
+        }, "MockCassandraServer-" + port);
+        thread.setDaemon(true);
+        thread.start();
+
+        // Wait for the server to start listening
+        for (int i = 0; i < 100; i++) {
+            try {
+                new Socket("127.0.0.1", port).close();
+                return;
+            }
+            catch (Exception e) {
+                Thread.sleep(50);
+            }
+        }
+        throw new IllegalStateException("Server did not start on port " + port);
+    }
+
+    private List<ColumnOrSuperColumn> getSlice(SliceRange range) {
+        NavigableSet<String> slice = columns;
+        if (range.bufferForStart().hasRemaining())
+            slice = slice.tailSet(StringSerializer.get().fromByteBuffer(range.bufferForStart()), true);
+        List<ColumnOrSuperColumn> result = Lists.newArrayList();
+        for (String name : Iterables.limit(slice, range.getCount())) {
+            Column column = new Column(StringSerializer.get().toByteBuffer(name))
+                .setValue(StringSerializer.get().toByteBuffer(name))
+                .setTimestamp(1);
+            result.add(new ColumnOrSuperColumn().setColumn(column));
+        }
+        return result;
+    }
+
+    public Host getHost() {
+        return new Host("127.0.0.1", port);
+    }
+
+    /**
+     * @return Mutation maps received by batch_mutate in the order they arrived
+     */
+    public List<Map<ByteBuffer, Map<String, List<Mutation>>>> getBatches() {
+        return batches;
+    }
+
+    /**
+     * @return Keys of each multiget_slice call in the order they arrived
+     */
+    public List<List<ByteBuffer>> getMultigets() {
+        return multigets;
+    }
+
+    /**
+     * Fail all following calls to a thrift method with this exception or 
+     * accept them again if null
+     */
+    public void setError(String methodName, Exception error) {
+        if (error == null)
+            errors.remove(methodName);
+        else
+            errors.put(methodName, error);
+    }
+
+    /**
+     * Columns of every row read with get_slice
+     */
+    public void setColumns(Collection<String> columns) {
+        this.columns = Sets.newTreeSet(columns);
+    }
+
+    /**
+     * Delay every batch_mutate, get_slice and multiget_slice by this many milliseconds
+     */
+    public void setLatency(long latency) {
+        this.latency = latency;
+    }
+
+    public void stop() {
+        server.stop();
+    }
+}
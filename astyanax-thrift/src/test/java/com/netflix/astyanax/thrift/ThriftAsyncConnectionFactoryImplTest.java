@@ -0,0 +1,142 @@
+package com.netflix.astyanax.thrift;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.cassandra.thrift.Cassandra;
+import org.apache.cassandra.thrift.InvalidRequestException;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.common.collect.ImmutableList;
+import com.netflix.astyanax.AstyanaxContext;
+import com.netflix.astyanax.Keyspace;
+import com.netflix.astyanax.MutationBatch;
+import com.netflix.astyanax.connectionpool.ConnectionPool;
+import com.netflix.astyanax.connectionpool.NodeDiscoveryType;
+import com.netflix.astyanax.connectionpool.exceptions.BadRequestException;
+import com.netflix.astyanax.connectionpool.impl.ConnectionPoolConfigurationImpl;
+import com.netflix.astyanax.connectionpool.impl.ConnectionPoolMBeanManager;
+import com.netflix.astyanax.connectionpool.impl.CountingConnectionPoolMonitor;
+import com.netflix.astyanax.connectionpool.impl.RoundRobinConnectionPoolImpl;
+import com.netflix.astyanax.impl.AstyanaxConfigurationImpl;
+import com.netflix.astyanax.model.ColumnFamily;
+import com.netflix.astyanax.serializers.StringSerializer;
+import com.netflix.astyanax.shallows.EmptyKeyspaceTracerFactory;
+
+public class ThriftAsyncConnectionFactoryImplTest {
+    private static final String KEYSPACE_NAME = "AsyncKeyspace";
+
+    private static final ColumnFamily<String, String> CF_STANDARD = ColumnFamily.newColumnFamily(
+            "Standard1", StringSerializer.get(), StringSerializer.get());
+
+    private MockCassandraServer server;
+    private ConnectionPoolConfigurationImpl cpConfig;
+    private AstyanaxConfigurationImpl asConfig;
+    private ThriftAsyncConnectionFactoryImpl factory;
+    private ConnectionPool<Cassandra.Client> pool;
+    private ConnectionPool<Cassandra.AsyncClient> asyncPool;
+
+    @Before
+    public void setup() throws Exception {
+        server = new MockCassandraServer();
+
+        CountingConnectionPoolMonitor monitor = new CountingConnectionPoolMonitor();
+        cpConfig = new ConnectionPoolConfigurationImpl("ThriftAsyncConnectionFactoryImplTest")
+            .setMaxConnsPerHost(2);
+        cpConfig.initialize();
+        asConfig = new AstyanaxConfigurationImpl();
+
+        factory = new ThriftAsyncConnectionFactoryImpl(asConfig, cpConfig, EmptyKeyspaceTracerFactory.getInstance(), monitor);
+        asyncPool = new RoundRobinConnectionPoolImpl<Cassandra.AsyncClient>(
+                new ConnectionPoolConfigurationImpl(cpConfig.getName() + "_async", cpConfig), factory, monitor);
+        asyncPool.setHosts(ImmutableList.of(server.getHost()));
+        pool = new RoundRobinConnectionPoolImpl<Cassandra.Client>(cpConfig,
+                new ThriftSyncConnectionFactoryImpl(asConfig, cpConfig, EmptyKeyspaceTracerFactory.getInstance(), monitor), monitor);
+        pool.setHosts(ImmutableList.of(server.getHost()));
+    }
+
+    @After
+    public void teardown() {
+        asyncPool.shutdown();
+        pool.shutdown();
+        factory.shutdown();
+        server.stop();
+    }
+
+    @Test
+    public void testMutationBatchExecuteAsync() throws Exception {
+        Keyspace keyspace = new ThriftKeyspaceImpl(KEYSPACE_NAME, pool, asyncPool, asConfig,
+                EmptyKeyspaceTracerFactory.getInstance());
+
+        MutationBatch m = keyspace.prepareMutationBatch();
+        m.withRow(CF_STANDARD, "A").putColumn("a", "1");
+        m.withRow(CF_STANDARD, "B").putColumn("b", "2");
+        m.executeAsync().get(5, TimeUnit.SECONDS);
+
+        Assert.assertEquals(1, server.getBatches().size());
+        Assert.assertEquals(2, server.getBatches().get(0).size());
+        Assert.assertTrue(m.isEmpty());
+
+        // The connection is returned to the pool and can be reused
+        m.withRow(CF_STANDARD, "C").putColumn("c", "3");
+        m.executeAsync().get(5, TimeUnit.SECONDS);
+        Assert.assertEquals(2, server.getBatches().size());
+    }
+
+    @Test
+    public void testMutationBatchExecuteAsyncFailure() throws Exception {
+        Keyspace keyspace = new ThriftKeyspaceImpl(KEYSPACE_NAME, pool, asyncPool, asConfig,
+                EmptyKeyspaceTracerFactory.getInstance());
+        server.setError("batch_mutate", new InvalidRequestException("Bad mutation"));
+
+        MutationBatch m = keyspace.prepareMutationBatch();
+        m.withRow(CF_STANDARD, "A").putColumn("a", "1");
+        try {
+            m.executeAsync().get(5, TimeUnit.SECONDS);
+            Assert.fail();
+        }
+        catch (ExecutionException e) {
+            Assert.assertTrue(e.getCause().toString(), e.getCause() instanceof BadRequestException);
+        }
+
+        // Mutations are kept so the caller can retry
+        Assert.assertFalse(m.isEmpty());
+        Assert.assertTrue(server.getBatches().isEmpty());
+    }
+
+    @Test
+    public void testContextWithAsyncConnectionPool() throws Exception {
+        AstyanaxContext<Keyspace> context = new AstyanaxContext.Builder()
+            .forCluster("ThriftAsyncConnectionFactoryImplTest")
+            .forKeyspace(KEYSPACE_NAME)
+            .withAstyanaxConfiguration(new AstyanaxConfigurationImpl()
+                .setDiscoveryType(NodeDiscoveryType.NONE))
+            .withConnectionPoolConfiguration(new ConnectionPoolConfigurationImpl("ThriftAsyncContext")
+                .setSeeds("127.0.0.1:" + server.getHost().getPort()))
+            .withAsyncConnectionPool(true)
+            .buildKeyspace(ThriftFamilyFactory.getInstance());
+        context.start();
+        ConnectionPoolMBeanManager mbeans = ConnectionPoolMBeanManager.getInstance();
+        try {
+            Assert.assertNotNull(context.getAsyncConnectionPool());
+
+            // Each pool registers its own monitor
+            Assert.assertNotNull(mbeans.getCassandraMonitor("ThriftAsyncContext"));
+            Assert.assertNotNull(mbeans.getCassandraMonitor("ThriftAsyncContext_async"));
+
+            MutationBatch m = context.getEntity().prepareMutationBatch();
+            m.withRow(CF_STANDARD, "A").putColumn("a", "1");
+            m.executeAsync().get(5, TimeUnit.SECONDS);
+
+            Assert.assertEquals(1, server.getBatches().size());
+        }
+        finally {
+            context.shutdown();
+        }
+        Assert.assertNull(mbeans.getCassandraMonitor("ThriftAsyncContext"));
+        Assert.assertNull(mbeans.getCassandraMonitor("ThriftAsyncContext_async"));
+    }
+}
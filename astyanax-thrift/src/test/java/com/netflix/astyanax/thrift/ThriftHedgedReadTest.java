@@ -0,0 +1,114 @@
+package com.netflix.astyanax.thrift;
+
+import java.util.List;
+
+import org.apache.cassandra.thrift.Cassandra;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.netflix.astyanax.Keyspace;
+import com.netflix.astyanax.MutationBatch;
+import com.netflix.astyanax.connectionpool.ConnectionPool;
+import com.netflix.astyanax.connectionpool.impl.ConnectionPoolConfigurationImpl;
+import com.netflix.astyanax.connectionpool.impl.CountingConnectionPoolMonitor;
+import com.netflix.astyanax.connectionpool.impl.RoundRobinConnectionPoolImpl;
+import com.netflix.astyanax.connectionpool.impl.SmaLatencyScoreStrategyImpl;
+import com.netflix.astyanax.impl.AstyanaxConfigurationImpl;
+import com.netflix.astyanax.model.Column;
+import com.netflix.astyanax.model.ColumnFamily;
+import com.netflix.astyanax.model.ColumnList;
+import com.netflix.astyanax.query.RowQuery;
+import com.netflix.astyanax.serializers.StringSerializer;
+import com.netflix.astyanax.shallows.EmptyKeyspaceTracerFactory;
+
+/**
+ * Hedged reads against two local thrift servers that both turn slow once the
+ * pool has some latency history for them
+ */
+public class ThriftHedgedReadTest {
+    private static final ColumnFamily<String, String> CF_STANDARD = ColumnFamily.newColumnFamily(
+            "Standard1", StringSerializer.get(), StringSerializer.get());
+
+    private MockCassandraServer server1;
+    private MockCassandraServer server2;
+    private CountingConnectionPoolMonitor monitor;
+    private ConnectionPool<Cassandra.Client> pool;
+    private Keyspace keyspace;
+    private List<String> columns;
+
+    @Before
+    public void setup() throws Exception {
+        columns = Lists.newArrayList();
+        for (int i = 0; i < 25; i++) {
+            columns.add(String.format("c%02d", i));
+        }
+
+        server1 = new MockCassandraServer();
+        server2 = new MockCassandraServer();
+        server1.setColumns(columns);
+        server2.setColumns(columns);
+
+        monitor = new CountingConnectionPoolMonitor();
+        ConnectionPoolConfigurationImpl cpConfig = new ConnectionPoolConfigurationImpl("ThriftHedgedReadTest")
+            .setLatencyScoreStrategy(new SmaLatencyScoreStrategyImpl())
+            .setHedgeLatencyPercentile(0.9f);
+        cpConfig.initialize();
+        AstyanaxConfigurationImpl asConfig = new AstyanaxConfigurationImpl();
+
+        pool = new RoundRobinConnectionPoolImpl<Cassandra.Client>(cpConfig,
+                new ThriftSyncConnectionFactoryImpl(asConfig, cpConfig, EmptyKeyspaceTracerFactory.getInstance(), monitor), monitor);
+        pool.setHosts(ImmutableList.of(server1.getHost(), server2.getHost()));
+        keyspace = new ThriftKeyspaceImpl("HedgedKeyspace", pool, asConfig, EmptyKeyspaceTracerFactory.getInstance());
+
+        // Mutations are never hedged so they only build up the latency history
+        for (int i = 0; i < 10; i++) {
+            MutationBatch m = keyspace.prepareMutationBatch();
+            m.withRow(CF_STANDARD, "A").putColumn("c", "v");
+            m.execute();
+        }
+
+        server1.setLatency(200);
+        server2.setLatency(200);
+    }
+
+    @After
+    public void teardown() {
+        pool.shutdown();
+        server1.stop();
+        server2.stop();
+    }
+
+    @Test
+    public void testSliceIsHedged() throws Exception {
+        ColumnList<String> result = keyspace.prepareQuery(CF_STANDARD)
+            .getKey("A")
+            .withColumnRange(null, (String) null, false, 10)
+            .execute().getResult();
+
+        Assert.assertEquals(10, result.size());
+        Assert.assertEquals(1, monitor.getHedgeSentCount());
+    }
+
+    @Test
+    public void testPaginatedReadIsNotHedged() throws Exception {
+        RowQuery<String, String> query = keyspace.prepareQuery(CF_STANDARD)
+            .getKey("A")
+            .withColumnRange(null, (String) null, false, 10)
+            .autoPaginate(true);
+
+        List<String> names = Lists.newArrayList();
+        ColumnList<String> page;
+        while (!(page = query.execute().getResult()).isEmpty()) {
+            for (Column<String> column : page) {
+                names.add(column.getName());
+            }
+        }
+
+        Assert.assertEquals(columns, names);
+        Assert.assertEquals(0, monitor.getHedgeSentCount());
+    }
+}
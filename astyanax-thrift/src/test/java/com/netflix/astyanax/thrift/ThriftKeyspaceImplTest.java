@@ -579,6 +579,28 @@ public class ThriftKeyspaceImplTest {
         }
     }
 
+    @Test
+    public void iterateColumns() throws Exception {
+        MutationBatch m = keyspace.prepareMutationBatch();
+        ColumnListMutation<String> row = m.withRow(CF_STANDARD1, "IterateColumns");
+        for (int i = 0; i < 95; i++) {
+            row.putColumn(String.format("%03d", i), "value" + i, null);
+        }
+        m.execute();
+
+        RowQuery<String, String> query = keyspace
+                .prepareQuery(CF_STANDARD1)
+                .getKey("IterateColumns")
+                .withColumnRange(new RangeBuilder().setLimit(10).build());
+
+        int count = 0;
+        for (Column<String> column : query.iterateColumns(2)) {
+            Assert.assertEquals(String.format("%03d", count), column.getName());
+            count++;
+        }
+        Assert.assertEquals(95, count);
+    }
+
     @Test
     public void example() {
         AstyanaxContext<Keyspace> context = new AstyanaxContext.Builder()
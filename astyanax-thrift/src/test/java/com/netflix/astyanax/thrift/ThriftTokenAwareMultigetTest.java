@@ -0,0 +1,186 @@
+package com.netflix.astyanax.thrift;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.cassandra.thrift.Cassandra;
+import org.apache.cassandra.thrift.InvalidRequestException;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+import com.netflix.astyanax.Keyspace;
+import com.netflix.astyanax.connectionpool.ConnectionPool;
+import com.netflix.astyanax.connectionpool.Host;
+import com.netflix.astyanax.connectionpool.TokenRange;
+import com.netflix.astyanax.connectionpool.exceptions.BadRequestException;
+import com.netflix.astyanax.connectionpool.impl.ConnectionPoolConfigurationImpl;
+import com.netflix.astyanax.connectionpool.impl.CountingConnectionPoolMonitor;
+import com.netflix.astyanax.connectionpool.impl.TokenAwareConnectionPoolImpl;
+import com.netflix.astyanax.connectionpool.impl.TokenRangeImpl;
+import com.netflix.astyanax.impl.AstyanaxConfigurationImpl;
+import com.netflix.astyanax.model.ColumnFamily;
+import com.netflix.astyanax.model.Row;
+import com.netflix.astyanax.model.Rows;
+import com.netflix.astyanax.partitioner.BigInteger127Partitioner;
+import com.netflix.astyanax.serializers.StringSerializer;
+import com.netflix.astyanax.shallows.EmptyKeyspaceTracerFactory;
+
+/**
+ * Token aware scatter/gather multiget against two local thrift servers that
+ * each own half of the ring
+ */
+public class ThriftTokenAwareMultigetTest {
+    private static final ColumnFamily<String, String> CF_STANDARD = ColumnFamily.newColumnFamily(
+            "Standard1", StringSerializer.get(), StringSerializer.get());
+
+    private static final BigInteger MIDDLE_TOKEN = BigInteger.valueOf(2).pow(126);
+
+    private MockCassandraServer lowServer;
+    private MockCassandraServer highServer;
+    private ConnectionPool<Cassandra.Client> pool;
+    private AstyanaxConfigurationImpl asConfig;
+    private List<String> keys;
+
+    @Before
+    public void setup() throws Exception {
+        lowServer  = new MockCassandraServer();
+        highServer = new MockCassandraServer();
+
+        Host lowHost = lowServer.getHost().setTokenRanges(ImmutableList.<TokenRange>of(
+                new TokenRangeImpl(BigInteger127Partitioner.MINIMUM.toString(), MIDDLE_TOKEN.toString(), null)));
+        Host highHost = highServer.getHost().setTokenRanges(ImmutableList.<TokenRange>of(
+                new TokenRangeImpl(MIDDLE_TOKEN.toString(), BigInteger127Partitioner.MAXIMUM.toString(), null)));
+
+        CountingConnectionPoolMonitor monitor = new CountingConnectionPoolMonitor();
+        ConnectionPoolConfigurationImpl cpConfig = new ConnectionPoolConfigurationImpl("ThriftTokenAwareMultigetTest")
+            .setMaxConnsPerHost(4);
+        cpConfig.initialize();
+        asConfig = new AstyanaxConfigurationImpl();
+
+        pool = new TokenAwareConnectionPoolImpl<Cassandra.Client>(cpConfig,
+                new ThriftSyncConnectionFactoryImpl(asConfig, cpConfig, EmptyKeyspaceTracerFactory.getInstance(), monitor), monitor);
+        pool.setHosts(ImmutableList.of(lowHost, highHost));
+
+        keys = Lists.newArrayList();
+        for (int i = 0; i < 20; i++) {
+            keys.add("key" + i);
+        }
+    }
+
+    @After
+    public void teardown() {
+        pool.shutdown();
+        lowServer.stop();
+        highServer.stop();
+    }
+
+    private Keyspace createKeyspace(ConnectionPool<Cassandra.Client> pool) {
+        return new ThriftKeyspaceImpl("TokenAwareKeyspace", pool, asConfig, EmptyKeyspaceTracerFactory.getInstance());
+    }
+
+    private static boolean isLowKey(ByteBuffer key) {
+        return new BigInteger(BigInteger127Partitioner.get().getTokenForKey(key)).compareTo(MIDDLE_TOKEN) <= 0;
+    }
+
+    @Test
+    public void testMergedResultKeepsRequestOrder() throws Exception {
+        Rows<String, String> rows = createKeyspace(pool).prepareQuery(CF_STANDARD)
+            .getKeySlice(keys)
+            .withTokenAwareScatter(3, 4)
+            .execute().getResult();
+
+        List<String> rowKeys = Lists.newArrayList();
+        for (Row<String, String> row : rows) {
+            rowKeys.add(row.getKey());
+            Assert.assertEquals(row.getKey(), row.getColumns().getStringValue("c", null));
+        }
+        Assert.assertEquals(keys, rowKeys);
+
+        // Every sub-batch went to the owner of its keys
+        Set<String> requested = Sets.newHashSet();
+        for (MockCassandraServer server : ImmutableList.of(lowServer, highServer)) {
+            Assert.assertFalse(server.getMultigets().isEmpty());
+            for (List<ByteBuffer> batch : server.getMultigets()) {
+                Assert.assertTrue(batch.size() <= 3);
+                for (ByteBuffer key : batch) {
+                    Assert.assertEquals(server == lowServer, isLowKey(key));
+                    requested.add(StringSerializer.get().fromByteBuffer(key));
+                }
+            }
+        }
+        Assert.assertEquals(Sets.newHashSet(keys), requested);
+    }
+
+    @Test
+    public void testFailedBatchFailsQuery() throws Exception {
+        highServer.setError("multiget_slice", new InvalidRequestException("Bad query"));
+        try {
+            createKeyspace(pool).prepareQuery(CF_STANDARD)
+                .getKeySlice(keys)
+                .withTokenAwareScatter(3, 4)
+                .execute();
+            Assert.fail();
+        }
+        catch (BadRequestException e) {
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    @Test
+    public void testCallerFailureWaitsForWorkers() throws Exception {
+        lowServer.setLatency(20);
+        highServer.setLatency(20);
+
+        // Fails every batch sent from the calling thread and counts the batches in flight
+        final Thread caller = Thread.currentThread();
+        final AtomicInteger inFlight = new AtomicInteger();
+        ConnectionPool<Cassandra.Client> failingPool = (ConnectionPool<Cassandra.Client>) Proxy.newProxyInstance(
+                ConnectionPool.class.getClassLoader(), new Class<?>[] { ConnectionPool.class }, new InvocationHandler() {
+                    @Override
+                    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                        if (method.getName().equals("executeWithFailover")) {
+                            if (Thread.currentThread() == caller)
+                                throw new IllegalStateException("Caller failed");
+                            inFlight.incrementAndGet();
+                        }
+                        try {
+                            return method.invoke(pool, args);
+                        }
+                        catch (InvocationTargetException e) {
+                            throw e.getCause();
+                        }
+                        finally {
+                            if (method.getName().equals("executeWithFailover"))
+                                inFlight.decrementAndGet();
+                        }
+                    }
+                });
+
+        try {
+            createKeyspace(failingPool).prepareQuery(CF_STANDARD)
+                .getKeySlice(keys)
+                .withTokenAwareScatter(1, 4)
+                .execute();
+            Assert.fail();
+        }
+        catch (IllegalStateException e) {
+        }
+        Assert.assertEquals(0, inFlight.get());
+
+        // The remaining batches were abandoned rather than drained by the workers
+        int sent = lowServer.getMultigets().size() + highServer.getMultigets().size();
+        Assert.assertTrue("Sent " + sent, sent < keys.size());
+    }
+}
@@ -0,0 +1,152 @@
+package com.netflix.astyanax.thrift;
+
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.cassandra.thrift.Cassandra;
+import org.apache.cassandra.thrift.InvalidRequestException;
+import org.apache.cassandra.thrift.Mutation;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Sets;
+import com.netflix.astyanax.Keyspace;
+import com.netflix.astyanax.MutationBatch;
+import com.netflix.astyanax.connectionpool.ConnectionPool;
+import com.netflix.astyanax.connectionpool.Host;
+import com.netflix.astyanax.connectionpool.TokenRange;
+import com.netflix.astyanax.connectionpool.exceptions.BadRequestException;
+import com.netflix.astyanax.connectionpool.impl.ConnectionPoolConfigurationImpl;
+import com.netflix.astyanax.connectionpool.impl.CountingConnectionPoolMonitor;
+import com.netflix.astyanax.connectionpool.impl.TokenAwareConnectionPoolImpl;
+import com.netflix.astyanax.connectionpool.impl.TokenRangeImpl;
+import com.netflix.astyanax.impl.AstyanaxConfigurationImpl;
+import com.netflix.astyanax.model.ColumnFamily;
+import com.netflix.astyanax.partitioner.BigInteger127Partitioner;
+import com.netflix.astyanax.serializers.StringSerializer;
+import com.netflix.astyanax.shallows.EmptyKeyspaceTracerFactory;
+
+/**
+ * Token aware splitting of mutation batches against two local thrift servers
+ * that each own half of the ring
+ */
+public class ThriftTokenAwareMutationTest {
+    private static final ColumnFamily<String, String> CF_STANDARD = ColumnFamily.newColumnFamily(
+            "Standard1", StringSerializer.get(), StringSerializer.get());
+
+    private static final BigInteger MIDDLE_TOKEN = BigInteger.valueOf(2).pow(126);
+
+    private MockCassandraServer lowServer;
+    private MockCassandraServer highServer;
+    private ConnectionPool<Cassandra.Client> pool;
+    private Keyspace keyspace;
+
+    @Before
+    public void setup() throws Exception {
+        lowServer  = new MockCassandraServer();
+        highServer = new MockCassandraServer();
+
+        Host lowHost = lowServer.getHost().setTokenRanges(ImmutableList.<TokenRange>of(
+                new TokenRangeImpl(BigInteger127Partitioner.MINIMUM.toString(), MIDDLE_TOKEN.toString(), null)));
+        Host highHost = highServer.getHost().setTokenRanges(ImmutableList.<TokenRange>of(
+                new TokenRangeImpl(MIDDLE_TOKEN.toString(), BigInteger127Partitioner.MAXIMUM.toString(), null)));
+
+        CountingConnectionPoolMonitor monitor = new CountingConnectionPoolMonitor();
+        ConnectionPoolConfigurationImpl cpConfig = new ConnectionPoolConfigurationImpl("ThriftTokenAwareMutationTest");
+        cpConfig.initialize();
+        AstyanaxConfigurationImpl asConfig = new AstyanaxConfigurationImpl();
+
+        pool = new TokenAwareConnectionPoolImpl<Cassandra.Client>(cpConfig,
+                new ThriftSyncConnectionFactoryImpl(asConfig, cpConfig, EmptyKeyspaceTracerFactory.getInstance(), monitor), monitor);
+        pool.setHosts(ImmutableList.of(lowHost, highHost));
+        keyspace = new ThriftKeyspaceImpl("TokenAwareKeyspace", pool, asConfig, EmptyKeyspaceTracerFactory.getInstance());
+    }
+
+    @After
+    public void teardown() {
+        pool.shutdown();
+        lowServer.stop();
+        highServer.stop();
+    }
+
+    private static boolean isLowKey(String key) {
+        BigInteger token = new BigInteger(BigInteger127Partitioner.get().getTokenForKey(StringSerializer.get().toByteBuffer(key)));
+        return token.compareTo(MIDDLE_TOKEN) <= 0;
+    }
+
+    private static Set<String> getKeys(List<Map<ByteBuffer, Map<String, List<Mutation>>>> batches) {
+        Set<String> keys = Sets.newHashSet();
+        for (Map<ByteBuffer, Map<String, List<Mutation>>> batch : batches) {
+            for (ByteBuffer key : batch.keySet()) {
+                keys.add(StringSerializer.get().fromByteBuffer(key));
+            }
+        }
+        return keys;
+    }
+
+    private MutationBatch prepareBatch(Set<String> lowKeys, Set<String> highKeys) {
+        MutationBatch m = keyspace.prepareMutationBatch();
+        for (int i = 0; lowKeys.size() < 5 || highKeys.size() < 5; i++) {
+            String key = "key" + i;
+            if (isLowKey(key))
+                lowKeys.add(key);
+            else
+                highKeys.add(key);
+            m.withRow(CF_STANDARD, key).putColumn("c", "v");
+        }
+        return m;
+    }
+
+    @Test
+    public void testRowsGroupedByTokenOwner() throws Exception {
+        Set<String> lowKeys  = Sets.newHashSet();
+        Set<String> highKeys = Sets.newHashSet();
+        MutationBatch m = prepareBatch(lowKeys, highKeys).withTokenAwareSplitting(true);
+        m.execute();
+
+        Assert.assertEquals(1, lowServer.getBatches().size());
+        Assert.assertEquals(1, highServer.getBatches().size());
+        Assert.assertEquals(lowKeys,  getKeys(lowServer.getBatches()));
+        Assert.assertEquals(highKeys, getKeys(highServer.getBatches()));
+        Assert.assertTrue(m.isEmpty());
+    }
+
+    @Test
+    public void testPinnedHostIsNotSplit() throws Exception {
+        Set<String> lowKeys  = Sets.newHashSet();
+        Set<String> highKeys = Sets.newHashSet();
+        MutationBatch m = prepareBatch(lowKeys, highKeys)
+            .withTokenAwareSplitting(true)
+            .pinToHost(lowServer.getHost());
+        m.execute();
+
+        Assert.assertEquals(1, lowServer.getBatches().size());
+        Assert.assertEquals(Sets.union(lowKeys, highKeys), getKeys(lowServer.getBatches()));
+        Assert.assertTrue(highServer.getBatches().isEmpty());
+    }
+
+    @Test
+    public void testFailedGroupFailsBatch() throws Exception {
+        highServer.setError("batch_mutate", new InvalidRequestException("Bad mutation"));
+
+        Set<String> lowKeys  = Sets.newHashSet();
+        Set<String> highKeys = Sets.newHashSet();
+        MutationBatch m = prepareBatch(lowKeys, highKeys).withTokenAwareSplitting(true);
+        try {
+            m.execute();
+            Assert.fail();
+        }
+        catch (BadRequestException e) {
+        }
+
+        // The other group was still written but the batch is kept for a retry
+        Assert.assertEquals(lowKeys, getKeys(lowServer.getBatches()));
+        Assert.assertFalse(m.isEmpty());
+    }
+}